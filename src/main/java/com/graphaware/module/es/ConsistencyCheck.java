@@ -0,0 +1,454 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.module.es.mapping.Mapping;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.ClearScroll;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Doc;
+import io.searchbox.core.Index;
+import io.searchbox.core.MultiGet;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import io.searchbox.params.Parameters;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.Supplier;
+
+/**
+ * Compares the graph with Elasticsearch and repairs the differences, e.g. after updates got lost.
+ * <p/>
+ * The graph is walked in chunks of consecutive entity IDs. The documents each chunk maps to are fetched with a single
+ * <code>_mget</code> request; missing documents and documents whose source differs from the mapping (stale) are
+ * repaired by re-indexing their entities from their current state. Then the live indices are scrolled through, and
+ * documents whose key doesn't resolve to an entity that maps to them (orphaned) are deleted in bulk. Indices are only
+ * scrolled through when the keys of all the entity types mapped to them can be resolved.
+ * <p/>
+ * Checks are throttled to a maximum number of compared entities and documents per second, and stop when the thread is
+ * interrupted. Not thread-safe, a check must not run concurrently with another one.
+ */
+public class ConsistencyCheck {
+
+    private static final Log LOG = LoggerFactory.getLogger(ConsistencyCheck.class);
+
+    private static final Gson GSON = new Gson();
+    private static final String SCROLL_KEEP_ALIVE = "5m";
+    private static final long REPLICATION_TIMEOUT = 10_000;
+
+    private final GraphDatabaseService database;
+    private final ElasticSearchWriter writer;
+    private final Mapping mapping;
+    private final JestClient client;
+    private final int chunkSize;
+    private final int rate;
+    private final List<EntityType> types = new ArrayList<>();
+
+    private final Map<String, Long> counts = new LinkedHashMap<>();
+    private long startedAt;
+    private long compared;
+
+    /**
+     * Create a new check.
+     *
+     * @param database  to check.
+     * @param writer    to repair through.
+     * @param mapping   of entities to documents.
+     * @param client    to read documents with, owned by the caller.
+     * @param chunkSize number of entities or documents compared at a time.
+     * @param rate      maximum number of entities and documents compared per second, 0 for no limit.
+     */
+    public ConsistencyCheck(GraphDatabaseService database, ElasticSearchWriter writer, Mapping mapping, JestClient client, int chunkSize, int rate) {
+        this.database = database;
+        this.writer = writer;
+        this.mapping = mapping;
+        this.client = client;
+        this.chunkSize = chunkSize;
+        this.rate = rate;
+    }
+
+    /**
+     * Add a type of entities to check.
+     *
+     * @param name      of the type, e.g. <code>nodes</code>.
+     * @param index     live index the entities are mapped to by default, scrolled through for orphaned documents.
+     *                  <code>null</code> if not known (e.g. with json mappings), orphaned documents aren't looked for then.
+     * @param input     of all the entities of the type, in ID order.
+     * @param operation creates a write operation (re-)indexing the entity with the given ID, <code>null</code> if the
+     *                  entity shouldn't be indexed.
+     * @param resolver  resolves document keys to entity IDs, leaving out keys that can't be resolved. <code>null</code>
+     *                  if keys can't be resolved at all, the index of the type isn't scrolled through then.
+     * @return this check.
+     */
+    public ConsistencyCheck withEntityType(String name, String index, Supplier<Iterable<? extends Entity>> input, LongFunction<WriteOperation<?>> operation, Function<Collection<String>, Map<String, Long>> resolver) {
+        types.add(new EntityType(name, index, input, operation, resolver));
+        counts.put(name, 0L);
+        return this;
+    }
+
+    /**
+     * Run the check.
+     *
+     * @param repair whether to repair the differences, or only count them.
+     * @return number of checked entities of each type, checked documents, missing, stale and orphaned documents, and
+     * repaired documents, by name.
+     */
+    public Map<String, Number> run(boolean repair) {
+        for (String counter : new String[]{"documents", "missing", "stale", "orphaned", "repaired"}) {
+            counts.put(counter, 0L);
+        }
+        startedAt = System.currentTimeMillis();
+        compared = 0;
+
+        LOG.info("Checking consistency of Elasticsearch with the graph" + (repair ? " and repairing differences" : "") + "...");
+
+        //updates committed so far may not have been replicated yet, they'd look missing or stale
+        writer.awaitReplication(writer.getReplicationTracker().getLastCommitted(), REPLICATION_TIMEOUT, false);
+
+        for (EntityType type : types) {
+            checkEntities(type, repair);
+        }
+
+        Map<String, List<EntityType>> typesByIndex = new LinkedHashMap<>();
+        Set<String> unresolvable = new HashSet<>();
+        for (EntityType type : types) {
+            if (type.index == null) {
+                LOG.info("Index of " + type.name + " not known, not looking for orphaned documents");
+                continue;
+            }
+            if (type.resolver == null) {
+                LOG.info("Keys of " + type.name + " can't be resolved, not looking for orphaned documents in " + type.index);
+                unresolvable.add(type.index); //documents of other types can't be told apart from these
+            }
+            typesByIndex.computeIfAbsent(type.index, index -> new ArrayList<>()).add(type);
+        }
+        for (Map.Entry<String, List<EntityType>> entry : typesByIndex.entrySet()) {
+            if (!unresolvable.contains(entry.getKey()) && !Thread.currentThread().isInterrupted()) {
+                checkDocuments(entry.getKey(), entry.getValue(), repair);
+            }
+        }
+
+        if (Thread.currentThread().isInterrupted()) {
+            LOG.info("Consistency check interrupted: " + counts);
+        } else {
+            LOG.info("Finished consistency check: " + counts);
+        }
+
+        return new LinkedHashMap<>(counts);
+    }
+
+    /**
+     * Walk the entities of a type in chunks, and find the documents they map to that are missing or stale.
+     */
+    private void checkEntities(EntityType type, boolean repair) {
+        Iterator<? extends Entity> entities = type.input.get().iterator();
+
+        while (entities.hasNext() && !Thread.currentThread().isInterrupted()) {
+            int checked = 0;
+            List<Long> owners = new ArrayList<>();
+            List<BulkableAction<? extends JestResult>> documents = new ArrayList<>();
+
+            try (Transaction tx = database.beginTx()) {
+                while (entities.hasNext() && checked < chunkSize) {
+                    long id = entities.next().getId();
+                    checked++;
+                    for (BulkableAction<? extends JestResult> document : expectedDocuments(type, id)) {
+                        owners.add(id);
+                        documents.add(document);
+                    }
+                }
+
+                Set<Long> differing = findDiffering(documents, owners);
+                if (repair && !differing.isEmpty()) {
+                    repair(type, differing);
+                }
+
+                tx.success();
+            }
+
+            increment(type.name, checked);
+            throttle(checked);
+        }
+    }
+
+    /**
+     * @return documents the entity maps to, empty if it shouldn't be indexed or doesn't exist anymore.
+     */
+    private List<BulkableAction<? extends JestResult>> expectedDocuments(EntityType type, long id) {
+        WriteOperation<?> operation;
+        try {
+            operation = type.operation.apply(id);
+        } catch (NotFoundException e) {
+            return Collections.emptyList();
+        }
+
+        if (operation == null) {
+            return Collections.emptyList();
+        }
+
+        List<BulkableAction<? extends JestResult>> documents = new ArrayList<>();
+        for (BulkableAction<? extends JestResult> action : mapping.getActions(operation)) {
+            if (action instanceof Index) {
+                documents.add(action);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * Fetch documents and compare them with the expected ones.
+     *
+     * @param documents expected documents.
+     * @param owners    IDs of the entities of the expected documents, at the same positions.
+     * @return IDs of the entities with missing or stale documents.
+     */
+    private Set<Long> findDiffering(List<BulkableAction<? extends JestResult>> documents, List<Long> owners) {
+        Set<Long> differing = new LinkedHashSet<>();
+        if (documents.isEmpty()) {
+            return differing;
+        }
+
+        List<Doc> docs = new ArrayList<>(documents.size());
+        for (BulkableAction<? extends JestResult> document : documents) {
+            docs.add(new Doc(document.getIndex(), document.getType(), document.getId()));
+        }
+
+        JsonArray found;
+        try {
+            JestResult result = client.execute(new MultiGet.Builder.ByDoc(docs).build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to fetch " + docs.size() + " documents from Elasticsearch. Details: " + result.getErrorMessage());
+                return differing;
+            }
+            found = result.getJsonObject().getAsJsonArray("docs");
+        } catch (IOException e) {
+            LOG.warn("Failed to fetch " + docs.size() + " documents from Elasticsearch.", e);
+            return differing;
+        }
+
+        //documents are returned in the order they were requested in
+        for (int i = 0; i < documents.size() && i < found.size(); i++) {
+            JsonObject doc = found.get(i).getAsJsonObject();
+            if (!doc.has("found") || !doc.get("found").getAsBoolean()) {
+                increment("missing", 1);
+                differing.add(owners.get(i));
+            } else if (!source(documents.get(i)).equals(doc.get("_source"))) {
+                increment("stale", 1);
+                differing.add(owners.get(i));
+            }
+        }
+        increment("documents", documents.size());
+
+        return differing;
+    }
+
+    private static JsonElement source(BulkableAction<? extends JestResult> document) {
+        return new JsonParser().parse(document.getData(GSON));
+    }
+
+    /**
+     * Re-index entities from their current state, like live updates.
+     */
+    private void repair(EntityType type, Collection<Long> ids) {
+        List<WriteOperation<?>> operations = new ArrayList<>(ids.size());
+        for (long id : ids) {
+            try {
+                WriteOperation<?> operation = type.operation.apply(id);
+                if (operation != null) {
+                    operations.add(operation);
+                }
+            } catch (NotFoundException e) {
+                //deleted since, its deletion is replicated anyway
+            }
+        }
+
+        List<WriteOperation<?>> failed = writer.processRecoveredOperations(Collections.singletonList(operations));
+        increment("repaired", operations.size() - failed.size());
+    }
+
+    /**
+     * Scroll through the documents of an index, and find those whose keys don't resolve to an entity mapped to them.
+     * The scroll is cleared however the check ends, rather than being kept open on the cluster until it expires.
+     */
+    private void checkDocuments(String index, List<EntityType> types, boolean repair) {
+        String query = "{\"size\":" + chunkSize + ",\"_source\":false,\"sort\":[\"_doc\"]}";
+        String scrollId = null;
+
+        try {
+            JestResult page = client.execute(new Search.Builder(query).addIndex(index).setParameter(Parameters.SCROLL, SCROLL_KEEP_ALIVE).build());
+
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!page.isSucceeded()) {
+                    LOG.warn("Failed to scroll through Elasticsearch index " + index + ". Details: " + page.getErrorMessage());
+                    return;
+                }
+
+                if (page.getJsonObject().has("_scroll_id")) {
+                    scrollId = page.getJsonObject().get("_scroll_id").getAsString();
+                }
+
+                JsonArray hits = page.getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits");
+                if (hits.size() == 0) {
+                    return;
+                }
+
+                List<BulkableAction<? extends JestResult>> orphans;
+                try {
+                    orphans = findOrphans(index, types, hits);
+                } catch (UnsupportedOperationException e) {
+                    LOG.warn("Keys of documents in " + index + " can't be resolved, not looking for orphaned documents: " + e.getMessage());
+                    return;
+                }
+
+                increment("orphaned", orphans.size());
+                if (repair && !orphans.isEmpty() && writer.executeActions(orphans)) {
+                    increment("repaired", orphans.size());
+                }
+
+                throttle(hits.size());
+
+                page = client.execute(new SearchScroll.Builder(scrollId, SCROLL_KEEP_ALIVE).build());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to scroll through Elasticsearch index " + index, e);
+        } finally {
+            clearScroll(scrollId);
+        }
+    }
+
+    private void clearScroll(String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+
+        try {
+            JestResult result = client.execute(new ClearScroll.Builder().addScrollId(scrollId).build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to clear Elasticsearch scroll, it is kept until it expires. Details: " + result.getErrorMessage());
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to clear Elasticsearch scroll, it is kept until it expires", e);
+        }
+    }
+
+    /**
+     * @return actions deleting the orphaned documents among the given hits, from the concrete indices they were found in.
+     * @throws UnsupportedOperationException if a resolver can't resolve keys.
+     */
+    private List<BulkableAction<? extends JestResult>> findOrphans(String index, List<EntityType> types, JsonArray hits) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (JsonElement hit : hits) {
+            keys.add(hit.getAsJsonObject().get("_id").getAsString());
+        }
+
+        List<BulkableAction<? extends JestResult>> orphans = new ArrayList<>();
+
+        try (Transaction tx = database.beginTx()) {
+            Set<String> mapped = new LinkedHashSet<>(); //index/type/id of documents that entities map to
+            for (EntityType type : types) {
+                for (Long id : type.resolver.apply(keys).values()) {
+                    for (BulkableAction<? extends JestResult> document : expectedDocuments(type, id)) {
+                        mapped.add(document.getIndex() + "/" + document.getType() + "/" + document.getId());
+                    }
+                }
+            }
+
+            for (JsonElement element : hits) {
+                JsonObject hit = element.getAsJsonObject();
+                String id = hit.get("_id").getAsString();
+                String documentType = hit.get("_type").getAsString();
+                String concrete = hit.has("_index") ? hit.get("_index").getAsString() : index;
+
+                //entities map to the scrolled index name, which may be an alias of the index the hit was found in
+                String key = "/" + documentType + "/" + id;
+                if (!mapped.contains(concrete + key) && !mapped.contains(index + key)) {
+                    orphans.add(new Delete.Builder(id).index(concrete).type(documentType).build());
+                }
+            }
+
+            tx.success();
+        }
+
+        increment("documents", hits.size());
+        return orphans;
+    }
+
+    private void increment(String counter, long delta) {
+        counts.put(counter, counts.get(counter) + delta);
+    }
+
+    /**
+     * Sleep as long as needed to stay under the maximum rate.
+     *
+     * @param count number of entities or documents just compared.
+     */
+    private void throttle(int count) {
+        compared += count;
+        if (rate <= 0) {
+            return;
+        }
+
+        long wait = startedAt + compared * 1000 / rate - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class EntityType {
+        private final String name;
+        private final String index;
+        private final Supplier<Iterable<? extends Entity>> input;
+        private final LongFunction<WriteOperation<?>> operation;
+        private final Function<Collection<String>, Map<String, Long>> resolver;
+
+        private EntityType(String name, String index, Supplier<Iterable<? extends Entity>> input, LongFunction<WriteOperation<?>> operation, Function<Collection<String>, Map<String, Long>> resolver) {
+            this.name = name;
+            this.index = index;
+            this.input = input;
+            this.operation = operation;
+            this.resolver = resolver;
+        }
+    }
+}
@@ -18,6 +18,9 @@ import com.graphaware.common.policy.inclusion.InclusionPolicies;
 import com.graphaware.common.policy.inclusion.none.IncludeNoRelationships;
 import com.graphaware.module.es.mapping.DefaultMapping;
 import com.graphaware.module.es.mapping.Mapping;
+import com.graphaware.module.es.util.LoadBalancingStrategy;
+import com.graphaware.module.es.util.OverflowPolicy;
+import com.graphaware.module.es.util.RefreshPolicy;
 import com.graphaware.runtime.config.BaseTxDrivenModuleConfiguration;
 import com.graphaware.runtime.policy.InclusionPoliciesFactory;
 
@@ -45,6 +48,37 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
     private static final int DEFAULT_REINDEX_BATCH_SIZE = 1000;
     private static final String DEFAULT_AUTH_USER = null;
     private static final String DEFAULT_AUTH_PASSWORD = null;
+    private static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 20;
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 10;
+    private static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    private static final int DEFAULT_READ_TIMEOUT = 20000;
+    private static final int DEFAULT_CONNECTION_REQUEST_TIMEOUT = -1;
+    private static final int DEFAULT_KEEP_ALIVE = -1;
+    private static final int DEFAULT_MAX_IDLE_TIME = 0;
+    private static final boolean DEFAULT_REQUEST_COMPRESSION = false;
+    private static final boolean DEFAULT_DISCOVERY = false;
+    private static final int DEFAULT_DISCOVERY_FREQUENCY = 60000;
+    private static final LoadBalancingStrategy DEFAULT_LOAD_BALANCING = LoadBalancingStrategy.ROUND_ROBIN;
+    private static final int DEFAULT_HOST_EJECTION_TIME = 30000;
+    private static final boolean DEFAULT_BULK_COMPRESSION = false;
+    private static final int DEFAULT_SEARCH_CONCURRENCY = 10;
+    private static final int DEFAULT_SEARCH_QUEUE_SIZE = 0;
+    private static final int DEFAULT_SEARCH_TIMEOUT = 30000;
+    private static final int DEFAULT_SEARCH_CACHE_SIZE = 0;
+    private static final int DEFAULT_SEARCH_CACHE_TTL = 60000;
+    private static final String DEFAULT_SEARCH_PREFETCH_PROPERTIES = null;
+    private static final boolean DEFAULT_SEARCH_PREFETCH_LABELS = false;
+    private static final RefreshPolicy DEFAULT_REFRESH_POLICY = RefreshPolicy.NONE;
+    private static final int DEFAULT_REFRESH_EVERY = 10;
+    private static final boolean DEFAULT_BULK_LOAD_MODE = false;
+    private static final int DEFAULT_BULK_LOAD_MAX_SEGMENTS = 0;
+    private static final boolean DEFAULT_VERSIONED_REINDEX = false;
+    private static final String DEFAULT_NODE_CONDITION = null;
+    private static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.NONE;
+    private static final int DEFAULT_OVERFLOW_TIMEOUT = 1000;
+    private static final String DEFAULT_SPILL_FILE = "data/elasticsearch-overflow.ndjson";
+    private static final int DEFAULT_CONSISTENCY_CHECK_INTERVAL = 0;
+    private static final int DEFAULT_CONSISTENCY_CHECK_RATE = 1000;
 
     private final String protocol;
     private final String uri;
@@ -58,6 +92,37 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
     private final Mapping mapping;
     private final int reindexBatchSize;
     private final boolean asyncIndexation;
+    private final int maxTotalConnections;
+    private final int maxConnectionsPerRoute;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int connectionRequestTimeout;
+    private final int keepAlive;
+    private final int maxIdleTime;
+    private final boolean requestCompression;
+    private final boolean discovery;
+    private final int discoveryFrequency;
+    private final LoadBalancingStrategy loadBalancing;
+    private final int hostEjectionTime;
+    private final boolean bulkCompression;
+    private final int searchConcurrency;
+    private final int searchQueueSize;
+    private final int searchTimeout;
+    private final int searchCacheSize;
+    private final int searchCacheTtl;
+    private final String searchPrefetchProperties;
+    private final boolean searchPrefetchLabels;
+    private final RefreshPolicy refreshPolicy;
+    private final int refreshEvery;
+    private final boolean bulkLoadMode;
+    private final int bulkLoadMaxSegments;
+    private final boolean versionedReindex;
+    private final String nodeCondition;
+    private final OverflowPolicy overflowPolicy;
+    private final int overflowTimeout;
+    private final String spillFile;
+    private final int consistencyCheckInterval;
+    private final int consistencyCheckRate;
 
 
     /**
@@ -68,16 +133,47 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
      *                          the last time the module was started, or if it is the first time the module was registered.
      *                          0 for never. The purpose of this is not to re-index all the time if the user is unaware.
      * @param protocol          Elasticsearch connection protocol. Default is <code>http</code>
-     * @param uri               Elasticsearch URI. Must not be <code>null</code>.
-     * @param port              Elasticsearch port. Must not be <code>null</code>.
+     * @param uri               Elasticsearch URI, or a comma-separated list of hosts (optionally with port). Must not be <code>null</code>.
+     * @param port              Elasticsearch port, used for hosts listed without one. Must not be <code>null</code>.
      * @param keyProperty       name of the node property that serves as the key, under which the node will be indexed in Elasticsearch. Must not be <code>null</code> or empty.
      * @param retryOnError      whether to retry an index update after a failure (<code>true</code>) or throw the update away (<code>false</code>).
      * @param queueCapacity     capacity of the queue holding operations to be written to Elasticsearch. Must be positive.
      * @param executeBulk       whether or not to execute updates against Elasticsearch in bulk. It is recommended to set this to <code>true</code>.*
      * @param mapping           name of the mapping class to use to convert Neo4j node/relationships to ElasticSearch documents.
      * @param asyncIndexation   whether indexation should be asynchronous (meaning that the plugin will be responsive even though indexation is not finished)
+     * @param maxTotalConnections maximum number of pooled HTTP connections to Elasticsearch. Must be positive.
+     * @param maxConnectionsPerRoute maximum number of pooled HTTP connections to a single Elasticsearch host. Must be positive.
+     * @param connectTimeout    timeout in ms for establishing a connection to Elasticsearch.
+     * @param readTimeout       socket timeout in ms, i.e. maximum inactivity between two data packets when reading a response.
+     * @param connectionRequestTimeout timeout in ms for leasing a connection from the pool, -1 for no timeout.
+     * @param keepAlive         maximum time in ms an idle connection is kept alive, -1 to honour the server's Keep-Alive header only.
+     * @param maxIdleTime       time in ms after which idle connections are evicted from the pool, 0 to never evict.
+     * @param requestCompression whether to gzip request bodies sent to Elasticsearch.
+     * @param discovery         whether to periodically discover cluster nodes and spread requests over them.
+     * @param discoveryFrequency how often (in ms) cluster nodes are discovered.
+     * @param loadBalancing     how requests are spread over Elasticsearch hosts.
+     * @param hostEjectionTime  time (in ms) a failing host is excluded from load balancing.
+     * @param bulkCompression   whether to gzip bulk request bodies.
+     * @param searchConcurrency maximum number of concurrent searches sent to Elasticsearch.
+     * @param searchQueueSize   maximum number of searches waiting for a free search thread.
+     * @param searchTimeout     time (in ms) a procedure waits for a search to complete.
+     * @param searchCacheSize   maximum number of cached search responses, 0 to disable caching.
+     * @param searchCacheTtl    time (in ms) a search response is cached for.
+     * @param searchPrefetchProperties comma-separated keys of properties to load with the entities resolved from search hits, <code>null</code> for none.
+     * @param searchPrefetchLabels whether to load labels of the nodes resolved from search hits.
+     * @param refreshPolicy     when replicated updates are made searchable.
+     * @param refreshEvery      number of flushes between refreshes with the batch refresh policy.
+     * @param bulkLoadMode      whether to optimize index settings for bulk loading while re-indexing the database.
+     * @param bulkLoadMaxSegments number of segments to force-merge indices to after bulk loading, 0 to let Elasticsearch decide.
+     * @param versionedReindex  whether to re-index into new versioned indices, swapped in by an alias once populated.
+     * @param nodeCondition     expression of the node inclusion policy, used to find the labels of indexed nodes, can be <code>null</code>.
+     * @param overflowPolicy    what happens to updates when the queue is full.
+     * @param overflowTimeout   maximum time in ms a transaction waits for room in a full queue with the block overflow policy.
+     * @param spillFile         file that updates are appended to with the spill overflow policy.
+     * @param consistencyCheckInterval time in ms between background consistency checks, 0 to disable them.
+     * @param consistencyCheckRate maximum number of entities and documents a consistency check compares per second, 0 for no limit.
      */
-    private ElasticSearchConfiguration(InclusionPolicies inclusionPolicies, long initializeUntil, String protocol, String uri, String port, String keyProperty, boolean retryOnError, int queueCapacity, int reindexBatchSize, boolean executeBulk, String authUser, String authPassword, Mapping mapping, boolean asyncIndexation) {
+    private ElasticSearchConfiguration(InclusionPolicies inclusionPolicies, long initializeUntil, String protocol, String uri, String port, String keyProperty, boolean retryOnError, int queueCapacity, int reindexBatchSize, boolean executeBulk, String authUser, String authPassword, Mapping mapping, boolean asyncIndexation, int maxTotalConnections, int maxConnectionsPerRoute, int connectTimeout, int readTimeout, int connectionRequestTimeout, int keepAlive, int maxIdleTime, boolean requestCompression, boolean discovery, int discoveryFrequency, LoadBalancingStrategy loadBalancing, int hostEjectionTime, boolean bulkCompression, int searchConcurrency, int searchQueueSize, int searchTimeout, int searchCacheSize, int searchCacheTtl, String searchPrefetchProperties, boolean searchPrefetchLabels, RefreshPolicy refreshPolicy, int refreshEvery, boolean bulkLoadMode, int bulkLoadMaxSegments, boolean versionedReindex, String nodeCondition, OverflowPolicy overflowPolicy, int overflowTimeout, String spillFile, int consistencyCheckInterval, int consistencyCheckRate) {
         super(inclusionPolicies, initializeUntil);
         this.protocol = protocol;
         this.uri = uri;
@@ -91,6 +187,37 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
         this.authPassword = authPassword;
         this.mapping = mapping;
         this.asyncIndexation = asyncIndexation;
+        this.maxTotalConnections = maxTotalConnections;
+        this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.connectionRequestTimeout = connectionRequestTimeout;
+        this.keepAlive = keepAlive;
+        this.maxIdleTime = maxIdleTime;
+        this.requestCompression = requestCompression;
+        this.discovery = discovery;
+        this.discoveryFrequency = discoveryFrequency;
+        this.loadBalancing = loadBalancing;
+        this.hostEjectionTime = hostEjectionTime;
+        this.bulkCompression = bulkCompression;
+        this.searchConcurrency = searchConcurrency;
+        this.searchQueueSize = searchQueueSize;
+        this.searchTimeout = searchTimeout;
+        this.searchCacheSize = searchCacheSize;
+        this.searchCacheTtl = searchCacheTtl;
+        this.searchPrefetchProperties = searchPrefetchProperties;
+        this.searchPrefetchLabels = searchPrefetchLabels;
+        this.refreshPolicy = refreshPolicy;
+        this.refreshEvery = refreshEvery;
+        this.bulkLoadMode = bulkLoadMode;
+        this.bulkLoadMaxSegments = bulkLoadMaxSegments;
+        this.versionedReindex = versionedReindex;
+        this.nodeCondition = nodeCondition;
+        this.overflowPolicy = overflowPolicy;
+        this.overflowTimeout = overflowTimeout;
+        this.spillFile = spillFile;
+        this.consistencyCheckInterval = consistencyCheckInterval;
+        this.consistencyCheckRate = consistencyCheckRate;
     }
 
     /**
@@ -98,57 +225,181 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
      */
     @Override
     public ElasticSearchConfiguration newInstance(InclusionPolicies inclusionPolicies, long initializeUntil) {
-        return new ElasticSearchConfiguration(inclusionPolicies, initializeUntil, getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), DEFAULT_AUTH_USER, DEFAULT_AUTH_PASSWORD, getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(inclusionPolicies, initializeUntil, getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), DEFAULT_AUTH_USER, DEFAULT_AUTH_PASSWORD, getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public static ElasticSearchConfiguration defaultConfiguration() {
-        return new ElasticSearchConfiguration(DEFAULT_INCLUSION_POLICIES, NEVER, DEFAULT_PROTOCOL, null, null, DEFAULT_KEY_PROPERTY, DEFAULT_RETRY_ON_ERROR, DEFAULT_QUEUE_CAPACITY, DEFAULT_REINDEX_BATCH_SIZE, DEFAULT_EXECUTE_BULK, DEFAULT_AUTH_USER, DEFAULT_AUTH_PASSWORD, DEFAULT_MAPPING, DEFAULT_ASYNC_INDEXATION);
+        return new ElasticSearchConfiguration(DEFAULT_INCLUSION_POLICIES, NEVER, DEFAULT_PROTOCOL, null, null, DEFAULT_KEY_PROPERTY, DEFAULT_RETRY_ON_ERROR, DEFAULT_QUEUE_CAPACITY, DEFAULT_REINDEX_BATCH_SIZE, DEFAULT_EXECUTE_BULK, DEFAULT_AUTH_USER, DEFAULT_AUTH_PASSWORD, DEFAULT_MAPPING, DEFAULT_ASYNC_INDEXATION, DEFAULT_MAX_TOTAL_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT, DEFAULT_CONNECTION_REQUEST_TIMEOUT, DEFAULT_KEEP_ALIVE, DEFAULT_MAX_IDLE_TIME, DEFAULT_REQUEST_COMPRESSION, DEFAULT_DISCOVERY, DEFAULT_DISCOVERY_FREQUENCY, DEFAULT_LOAD_BALANCING, DEFAULT_HOST_EJECTION_TIME, DEFAULT_BULK_COMPRESSION, DEFAULT_SEARCH_CONCURRENCY, DEFAULT_SEARCH_QUEUE_SIZE, DEFAULT_SEARCH_TIMEOUT, DEFAULT_SEARCH_CACHE_SIZE, DEFAULT_SEARCH_CACHE_TTL, DEFAULT_SEARCH_PREFETCH_PROPERTIES, DEFAULT_SEARCH_PREFETCH_LABELS, DEFAULT_REFRESH_POLICY, DEFAULT_REFRESH_EVERY, DEFAULT_BULK_LOAD_MODE, DEFAULT_BULK_LOAD_MAX_SEGMENTS, DEFAULT_VERSIONED_REINDEX, DEFAULT_NODE_CONDITION, DEFAULT_OVERFLOW_POLICY, DEFAULT_OVERFLOW_TIMEOUT, DEFAULT_SPILL_FILE, DEFAULT_CONSISTENCY_CHECK_INTERVAL, DEFAULT_CONSISTENCY_CHECK_RATE);
     }
 
     public ElasticSearchConfiguration withProtocol(String protocol) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), protocol, getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), protocol, getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withUri(String uri) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), uri, getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), uri, getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withPort(String port) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), port, getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), port, getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withKeyProperty(String keyProperty) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), keyProperty, isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), keyProperty, isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withRetryOnError(boolean retryOnError) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), retryOnError, getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), retryOnError, getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withQueueCapacity(int queueCapacity) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(),  getKeyProperty(), isRetryOnError(), queueCapacity, getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(),  getKeyProperty(), isRetryOnError(), queueCapacity, getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withReindexBatchSize(int reindexBatchSize) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), reindexBatchSize, isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), reindexBatchSize, isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withExecuteBulk(boolean executeBulk) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), executeBulk, getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), executeBulk, getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
     
     public ElasticSearchConfiguration withAuthCredentials(String authUser, String authPassword) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), authUser, authPassword, getMapping(), isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), authUser, authPassword, getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withMapping(Mapping mapping, Map<String, String> mappingConfig) {
         // prevents mappings from being started without configure() from being called
         mapping.configure(mappingConfig);
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), mapping, isAsyncIndexation());
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), mapping, isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
     }
 
     public ElasticSearchConfiguration withAsyncIndexation(boolean asyncIndexation) {
-        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), asyncIndexation);
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), asyncIndexation, getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withMaxTotalConnections(int maxTotalConnections) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), maxTotalConnections, getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), maxConnectionsPerRoute, getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withConnectTimeout(int connectTimeout) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), connectTimeout, getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withReadTimeout(int readTimeout) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), readTimeout, getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withConnectionRequestTimeout(int connectionRequestTimeout) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), connectionRequestTimeout, getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withKeepAlive(int keepAlive) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), keepAlive, getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withMaxIdleTime(int maxIdleTime) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), maxIdleTime, isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withRequestCompression(boolean requestCompression) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), requestCompression, isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withDiscovery(boolean discovery) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), discovery, getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withDiscoveryFrequency(int discoveryFrequency) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), discoveryFrequency, getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withLoadBalancing(LoadBalancingStrategy loadBalancing) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), loadBalancing, getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withHostEjectionTime(int hostEjectionTime) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), hostEjectionTime, isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withBulkCompression(boolean bulkCompression) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), bulkCompression, getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchConcurrency(int searchConcurrency) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), searchConcurrency, getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchQueueSize(int searchQueueSize) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), searchQueueSize, getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchTimeout(int searchTimeout) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), searchTimeout, getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchCacheSize(int searchCacheSize) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), searchCacheSize, getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchCacheTtl(int searchCacheTtl) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), searchCacheTtl, getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchPrefetchProperties(String searchPrefetchProperties) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), searchPrefetchProperties, isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSearchPrefetchLabels(boolean searchPrefetchLabels) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), searchPrefetchLabels, getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withRefreshPolicy(RefreshPolicy refreshPolicy) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), refreshPolicy, getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withRefreshEvery(int refreshEvery) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), refreshEvery, isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withBulkLoadMode(boolean bulkLoadMode) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), bulkLoadMode, getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withBulkLoadMaxSegments(int bulkLoadMaxSegments) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), bulkLoadMaxSegments, isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withVersionedReindex(boolean versionedReindex) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), versionedReindex, getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withNodeCondition(String nodeCondition) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), nodeCondition, getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), overflowPolicy, getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withOverflowTimeout(int overflowTimeout) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), overflowTimeout, getSpillFile(), getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withSpillFile(String spillFile) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), spillFile, getConsistencyCheckInterval(), getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withConsistencyCheckInterval(int consistencyCheckInterval) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), consistencyCheckInterval, getConsistencyCheckRate());
+    }
+
+    public ElasticSearchConfiguration withConsistencyCheckRate(int consistencyCheckRate) {
+        return new ElasticSearchConfiguration(getInclusionPolicies(), initializeUntil(), getProtocol(), getUri(), getPort(), getKeyProperty(), isRetryOnError(), getQueueCapacity(), getReindexBatchSize(), isExecuteBulk(), getAuthUser(), getAuthPassword(), getMapping(), isAsyncIndexation(), getMaxTotalConnections(), getMaxConnectionsPerRoute(), getConnectTimeout(), getReadTimeout(), getConnectionRequestTimeout(), getKeepAlive(), getMaxIdleTime(), isRequestCompression(), isDiscovery(), getDiscoveryFrequency(), getLoadBalancing(), getHostEjectionTime(), isBulkCompression(), getSearchConcurrency(), getSearchQueueSize(), getSearchTimeout(), getSearchCacheSize(), getSearchCacheTtl(), getSearchPrefetchProperties(), isSearchPrefetchLabels(), getRefreshPolicy(), getRefreshEvery(), isBulkLoadMode(), getBulkLoadMaxSegments(), isVersionedReindex(), getNodeCondition(), getOverflowPolicy(), getOverflowTimeout(), getSpillFile(), getConsistencyCheckInterval(), consistencyCheckRate);
     }
 
     public String getProtocol() {
@@ -199,6 +450,130 @@ public class ElasticSearchConfiguration extends BaseTxDrivenModuleConfiguration<
         return mapping;
     }
 
+    public int getMaxTotalConnections() {
+        return maxTotalConnections;
+    }
+
+    public int getMaxConnectionsPerRoute() {
+        return maxConnectionsPerRoute;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public int getConnectionRequestTimeout() {
+        return connectionRequestTimeout;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive;
+    }
+
+    public int getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public boolean isRequestCompression() {
+        return requestCompression;
+    }
+
+    public boolean isDiscovery() {
+        return discovery;
+    }
+
+    public int getDiscoveryFrequency() {
+        return discoveryFrequency;
+    }
+
+    public LoadBalancingStrategy getLoadBalancing() {
+        return loadBalancing;
+    }
+
+    public int getHostEjectionTime() {
+        return hostEjectionTime;
+    }
+
+    public boolean isBulkCompression() {
+        return bulkCompression;
+    }
+
+    public int getSearchConcurrency() {
+        return searchConcurrency;
+    }
+
+    public int getSearchQueueSize() {
+        return searchQueueSize;
+    }
+
+    public int getSearchTimeout() {
+        return searchTimeout;
+    }
+
+    public int getSearchCacheSize() {
+        return searchCacheSize;
+    }
+
+    public int getSearchCacheTtl() {
+        return searchCacheTtl;
+    }
+
+    public String getSearchPrefetchProperties() {
+        return searchPrefetchProperties;
+    }
+
+    public boolean isSearchPrefetchLabels() {
+        return searchPrefetchLabels;
+    }
+
+    public RefreshPolicy getRefreshPolicy() {
+        return refreshPolicy;
+    }
+
+    public int getRefreshEvery() {
+        return refreshEvery;
+    }
+
+    public boolean isBulkLoadMode() {
+        return bulkLoadMode;
+    }
+
+    public int getBulkLoadMaxSegments() {
+        return bulkLoadMaxSegments;
+    }
+
+    public boolean isVersionedReindex() {
+        return versionedReindex;
+    }
+
+    public String getNodeCondition() {
+        return nodeCondition;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public int getOverflowTimeout() {
+        return overflowTimeout;
+    }
+
+    public String getSpillFile() {
+        return spillFile;
+    }
+
+    public int getConsistencyCheckInterval() {
+        return consistencyCheckInterval;
+    }
+
+    public int getConsistencyCheckRate() {
+        return consistencyCheckRate;
+    }
+
     /**
      * {@inheritDoc}
      */
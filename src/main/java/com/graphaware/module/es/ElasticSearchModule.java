@@ -18,10 +18,25 @@ import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.common.policy.inclusion.InclusionPolicies;
 import com.graphaware.common.policy.inclusion.none.IncludeNoNodes;
 import com.graphaware.common.policy.inclusion.none.IncludeNoRelationships;
+import com.graphaware.common.representation.DetachedEntity;
 import com.graphaware.common.representation.DetachedNode;
 import com.graphaware.common.representation.DetachedRelationship;
+import com.graphaware.module.es.mapping.JsonFileMapping;
 import com.graphaware.module.es.mapping.expression.NodeExpressions;
 import com.graphaware.module.es.mapping.expression.RelationshipExpressions;
+import com.graphaware.module.es.mapping.json.DocumentMappingRepresentation;
+import com.graphaware.module.es.mapping.json.GraphDocumentMapper;
+import com.graphaware.module.es.search.SearchExecutor;
+import com.graphaware.module.es.search.SearchResultCache;
+import com.graphaware.module.es.search.Searcher;
+import com.graphaware.module.es.search.resolver.KeyToIdResolver;
+import com.graphaware.module.es.search.resolver.ResolverFactory;
+import com.graphaware.module.es.util.LabelConditions;
+import com.graphaware.module.es.util.OverflowLog;
+import com.graphaware.module.es.util.OverflowPolicy;
+import com.graphaware.module.es.util.QueueOverflow;
+import com.graphaware.module.es.util.ReindexBuffer;
+import com.graphaware.module.es.util.ReplicationTracker;
 import com.graphaware.runtime.config.TxDrivenModuleConfiguration;
 import com.graphaware.runtime.metadata.TxDrivenModuleMetadata;
 import com.graphaware.runtime.module.thirdparty.DefaultThirdPartyIntegrationModule;
@@ -29,16 +44,38 @@ import com.graphaware.runtime.module.thirdparty.WriterBasedThirdPartyIntegration
 import com.graphaware.tx.executor.batch.IterableInputBatchTransactionExecutor;
 import com.graphaware.tx.executor.input.AllNodes;
 import com.graphaware.tx.executor.input.AllRelationships;
+import com.graphaware.tx.executor.input.TransactionalInput;
 import com.graphaware.writer.thirdparty.NodeCreated;
 import com.graphaware.writer.thirdparty.RelationshipCreated;
 import com.graphaware.writer.thirdparty.ThirdPartyWriter;
 import com.graphaware.writer.thirdparty.WriteOperation;
+import io.searchbox.client.JestClient;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
 import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static org.springframework.util.Assert.notNull;
 
@@ -49,11 +86,22 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
 
     private static final Log LOG = LoggerFactory.getLogger(ElasticSearchModuleBootstrapper.class);
 
+    //maximum time in ms reconciliation waits for the updates queued before the overflowed ones to be replicated
+    private static final long RECONCILIATION_WAIT = 60_000;
+
     private final ElasticSearchConfiguration config;
     private boolean reindex = false; //this is checked in a single thread
     private boolean isReindexed = false;
     private final ElasticSearchWriter writer;
     private final int reindexBatchSize;
+    private final SearchExecutor searchExecutor;
+    private final SearchResultCache searchCache;
+    private JestClient searchClient; //guarded by this
+    private ExecutorService mappingChangeExecutor;
+    private final QueueOverflow overflow;
+    private ScheduledExecutorService replayExecutor;
+    private ScheduledExecutorService consistencyCheckExecutor;
+    private final Lock consistencyCheckLock = new ReentrantLock();
 
     /**
      * Create a new module.
@@ -68,6 +116,15 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
         this.config = config;
         this.writer = (ElasticSearchWriter) writer;
         this.reindexBatchSize = config.getReindexBatchSize();
+        this.searchExecutor = new SearchExecutor(config.getSearchConcurrency(), config.getSearchQueueSize(), config.getSearchTimeout());
+        this.searchCache = config.getSearchCacheSize() > 0 ? new SearchResultCache(config.getSearchCacheSize(), config.getSearchCacheTtl(), this.writer.getIndexGenerations()) : null;
+        this.overflow = new QueueOverflow(
+                config.getOverflowPolicy(),
+                config.getQueueCapacity(),
+                config.getOverflowTimeout(),
+                this.writer.getReplicationTracker(),
+                config.getMapping()::getActions,
+                config.getOverflowPolicy() == OverflowPolicy.SPILL ? new OverflowLog(new File(config.getSpillFile())) : new OverflowLog());
     }
 
     /**
@@ -91,6 +148,62 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
             reindex = false;
         }
         isReindexed = true;
+
+        if (config.getMapping() instanceof JsonFileMapping) {
+            JsonFileMapping mapping = (JsonFileMapping) config.getMapping();
+            mapping.setEntityReaders(
+                    id -> readAgain(database, () -> nodeExpressions(database.getNodeById(id))),
+                    id -> readAgain(database, () -> relationshipExpressions(database.getRelationshipById(id))));
+            if (mapping.isReindexOnChange()) {
+                listenToMappingChanges(database, mapping);
+            }
+        }
+
+        if (overflow.getPolicy() == OverflowPolicy.SPILL) {
+            replaySpilledUpdates(database);
+        }
+
+        if (config.getConsistencyCheckInterval() > 0) {
+            scheduleConsistencyChecks(database);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void afterCommit(Collection<WriteOperation<?>> state) {
+        //registered with the replication tracker when admitted, before the operations are queued, so the writer can't flush them untracked
+        if (!overflow.admit(state)) {
+            return; //no room in the queue, recorded for reconciliation instead
+        }
+
+        super.afterCommit(state);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        searchExecutor.shutdown();
+        synchronized (this) {
+            if (searchClient != null) {
+                searchClient.shutdownClient();
+                searchClient = null;
+            }
+        }
+        if (mappingChangeExecutor != null) {
+            mappingChangeExecutor.shutdownNow();
+        }
+        if (replayExecutor != null) {
+            replayExecutor.shutdownNow();
+        }
+        if (consistencyCheckExecutor != null) {
+            consistencyCheckExecutor.shutdownNow();
+        }
+        super.shutdown();
+        overflow.close();
     }
 
     /**
@@ -119,6 +232,84 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
         return isReindexed;
     }
 
+    /**
+     * @return executor that all searches of this module go through.
+     */
+    public SearchExecutor getSearchExecutor() {
+        return searchExecutor;
+    }
+
+    /**
+     * @return client that all searches of this module send their requests through, created on first use. With several
+     * hosts or node discovery, this is the only {@link com.graphaware.module.es.util.ClusterJestClient} polling the
+     * cluster for searches.
+     */
+    public synchronized JestClient getSearchClient() {
+        if (searchClient == null) {
+            searchClient = Searcher.createClient(searchClientConfiguration(config));
+        }
+        return searchClient;
+    }
+
+    /**
+     * Cancelling a search that timed out doesn't unblock its thread while it waits on the socket, only the socket
+     * timeout does. To make sure a hung host can't hold all search threads for longer than the search timeout, the
+     * search client's connect and read timeouts are capped at the search timeout.
+     *
+     * @param config module configuration.
+     * @return configuration of the client used for searches.
+     */
+    static ElasticSearchConfiguration searchClientConfiguration(ElasticSearchConfiguration config) {
+        int searchTimeout = config.getSearchTimeout();
+        if (searchTimeout <= 0) {
+            return config;
+        }
+
+        ElasticSearchConfiguration result = config;
+        if (config.getReadTimeout() <= 0 || config.getReadTimeout() > searchTimeout) {
+            LOG.warn("Elasticsearch read timeout (" + config.getReadTimeout() + " ms) exceeds the search timeout, capping it at " + searchTimeout + " ms for searches.");
+            result = result.withReadTimeout(searchTimeout);
+        }
+        if (config.getConnectTimeout() <= 0 || config.getConnectTimeout() > searchTimeout) {
+            result = result.withConnectTimeout(searchTimeout);
+        }
+        return result;
+    }
+
+    /**
+     * @return cache of search responses shared by all searches of this module, <code>null</code> if caching is disabled.
+     */
+    public SearchResultCache getSearchCache() {
+        return searchCache;
+    }
+
+    /**
+     * @return runtime statistics of the module by name.
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.putAll(writer.getCompressionStatistics().asMap());
+        statistics.putAll(searchExecutor.getStatistics());
+        if (searchCache != null) {
+            statistics.putAll(searchCache.getStatistics());
+        }
+        statistics.put("replicationCommitted", writer.getReplicationTracker().getLastCommitted());
+        statistics.put("replicationAcknowledged", writer.getReplicationTracker().getAcknowledged());
+        statistics.putAll(overflow.getStatistics());
+        return statistics;
+    }
+
+    /**
+     * Wait until all transactions committed before this call have been replicated to Elasticsearch.
+     *
+     * @param timeout maximum time to wait in ms.
+     * @param refresh whether to make the replicated updates searchable, if the refresh policy hasn't already done so.
+     * @return <code>true</code> iff replicated (and refreshed, if requested) within the timeout.
+     */
+    public boolean awaitReplication(long timeout, boolean refresh) {
+        return writer.awaitReplication(writer.getReplicationTracker().getLastCommitted(), timeout, refresh);
+    }
+
     private boolean shouldReIndex(String logMessage) {
         long initializeUntil = config.initializeUntil();
         long now = System.currentTimeMillis();
@@ -137,18 +328,27 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
         Runnable indexation = () -> {
             final InclusionPolicies policies = getConfiguration().getInclusionPolicies();
 
-            if (!(policies.getNodeInclusionPolicy() instanceof IncludeNoNodes)) {
-                LOG.info("Re-indexing nodes" + (async ? " (async)" : "") + "...");
-                reindexNodes(database);
-            } else {
-                LOG.info("Skipping nodes indexation.");
-            }
+            writer.beginVersionedReindex();
+            writer.beginBulkLoad();
+            boolean completed = false;
+            try {
+                if (!(policies.getNodeInclusionPolicy() instanceof IncludeNoNodes)) {
+                    LOG.info("Re-indexing nodes" + (async ? " (async)" : "") + "...");
+                    reindexNodes(database);
+                } else {
+                    LOG.info("Skipping nodes indexation.");
+                }
 
-            if (!(policies.getRelationshipInclusionPolicy() instanceof IncludeNoRelationships)) {
-                LOG.info("Re-indexing relationships" + (async ? " (async)" : "") + "...");
-                reindexRelationships(database);
-            } else {
-                LOG.info("Skipping relationships indexation.");
+                if (!(policies.getRelationshipInclusionPolicy() instanceof IncludeNoRelationships)) {
+                    LOG.info("Re-indexing relationships" + (async ? " (async)" : "") + "...");
+                    reindexRelationships(database);
+                } else {
+                    LOG.info("Skipping relationships indexation.");
+                }
+                completed = true;
+            } finally {
+                writer.endBulkLoad();
+                writer.endVersionedReindex(completed);
             }
 
             LOG.info("Finished re-indexing database.");
@@ -163,69 +363,541 @@ public class ElasticSearchModule extends DefaultThirdPartyIntegrationModule {
         }
     }
 
+    /**
+     * Detach an entity again, e.g. because the mapping has changed since its operation was queued.
+     *
+     * @return the entity, <code>null</code> if it has been deleted since.
+     */
+    private static <T> T readAgain(GraphDatabaseService database, Supplier<T> read) {
+        try (Transaction tx = database.beginTx()) {
+            T entity = read.get();
+            tx.success();
+            return entity;
+        } catch (NotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Re-index, one at a time in a background thread, the entities matched by the mappers of a json mapping that have
+     * changed when the mapping file was reloaded.
+     */
+    private void listenToMappingChanges(GraphDatabaseService database, JsonFileMapping mapping) {
+        mappingChangeExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Elasticsearch mapping change indexation");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        mapping.setChangeListener((previous, current) -> {
+            try {
+                mappingChangeExecutor.execute(() -> {
+                    try {
+                        reindexMappingChange(database, previous, current);
+                    } catch (RuntimeException e) {
+                        LOG.error("Error while re-indexing changed mapping", e);
+                    } finally {
+                        mapping.changeReindexed();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                mapping.changeReindexed(); //shutting down
+            }
+        });
+    }
+
+    private void reindexMappingChange(GraphDatabaseService database, DocumentMappingRepresentation previous, DocumentMappingRepresentation current) {
+        List<GraphDocumentMapper> nodeMappers = current.getChangedNodeMappers(previous);
+        List<GraphDocumentMapper> relationshipMappers = current.getChangedRelationshipMappers(previous);
+
+        LOG.info("Mapping changed, re-indexing entities matched by " + nodeMappers.size() + " node and " + relationshipMappers.size() + " relationship mappers...");
+
+        if (!nodeMappers.isEmpty()) {
+            reindexNodes(database, GraphDocumentMapper.requiredLabels(nodeMappers), node -> matchesAny(nodeMappers, nodeExpressions(node)));
+        }
+        if (!relationshipMappers.isEmpty()) {
+            reindexRelationships(database, new AllRelationships(database, reindexBatchSize), relationship -> matchesAny(relationshipMappers, relationshipExpressions(relationship)));
+        }
+
+        LOG.info("Finished re-indexing changed mapping.");
+    }
+
+    private static boolean matchesAny(List<GraphDocumentMapper> mappers, DetachedEntity entity) {
+        for (GraphDocumentMapper mapper : mappers) {
+            if (mapper.supports(entity)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Re-index a subset of the graph, e.g. the nodes with a label that a mapper has been added for. Nodes with labels
+     * are found through the label scan store, so the cost is proportional to the size of the subset. Neo4j has no
+     * relationship type scan store, so relationships of given types are found by scanning all relationships, which only
+     * loads the properties of those of the given types.
+     *
+     * @param database to re-index.
+     * @param scope    of re-indexing.
+     * @return number of re-indexed nodes and relationships by name.
+     * @throws IllegalArgumentException if the scope refers to a mapper that doesn't exist.
+     */
+    public Map<String, Number> reindex(GraphDatabaseService database, ReindexScope scope) {
+        GraphDocumentMapper nodeMapper = null;
+        GraphDocumentMapper relationshipMapper = null;
+        if (scope.getMapper() != null) {
+            if (!(config.getMapping() instanceof JsonFileMapping)) {
+                throw new IllegalArgumentException("Re-indexing by mapper requires a json mapping");
+            }
+            DocumentMappingRepresentation representation = ((JsonFileMapping) config.getMapping()).getMappingRepresentation();
+            nodeMapper = findMapper(representation.getNodeMappers(), scope.getMapper());
+            relationshipMapper = findMapper(representation.getRelationshipMappers(), scope.getMapper());
+            if (nodeMapper == null && relationshipMapper == null) {
+                throw new IllegalArgumentException("No mapper named " + scope.getMapper());
+            }
+        }
+
+        boolean nodes = scope.includesNodes() && (scope.getMapper() == null || nodeMapper != null);
+        boolean relationships = scope.includesRelationships() && (scope.getMapper() == null || relationshipMapper != null);
+
+        Predicate<Node> nodeFilter = this::shouldReindexNode;
+        if (nodeMapper != null) {
+            GraphDocumentMapper mapper = nodeMapper;
+            nodeFilter = nodeFilter.and(node -> mapper.supports(nodeExpressions(node)));
+        }
+
+        Set<String> types = scope.getTypes();
+        Predicate<Relationship> relationshipFilter = relationship -> types.isEmpty() || types.contains(relationship.getType().name());
+        relationshipFilter = relationshipFilter.and(this::shouldReindexRelationship);
+        if (relationshipMapper != null) {
+            GraphDocumentMapper mapper = relationshipMapper;
+            relationshipFilter = relationshipFilter.and(relationship -> mapper.supports(relationshipExpressions(relationship)));
+        }
+
+        Set<String> nodeLabels;
+        if (!scope.getLabels().isEmpty()) {
+            nodeLabels = scope.getLabels();
+        } else if (nodeMapper != null) {
+            nodeLabels = GraphDocumentMapper.requiredLabels(Collections.singleton(nodeMapper));
+        } else {
+            nodeLabels = indexedLabels();
+        }
+
+        Predicate<Node> finalNodeFilter = nodeFilter;
+        Predicate<Relationship> finalRelationshipFilter = relationshipFilter;
+        return runInOwnThread("Elasticsearch selective indexation", "re-indexing " + scope, () -> {
+            LOG.info("Re-indexing " + scope + "...");
+
+            Map<String, Number> counts = new LinkedHashMap<>();
+            counts.put("nodes", nodes ? reindexNodes(database, nodeLabels, finalNodeFilter) : 0);
+            counts.put("relationships", relationships ? reindexRelationships(database, new AllRelationships(database, reindexBatchSize), finalRelationshipFilter) : 0);
+
+            LOG.info("Finished re-indexing " + scope + ": " + counts);
+            return counts;
+        });
+    }
+
+    /**
+     * Run a task in a new thread and wait for it, so that its batches are committed in their own transactions rather
+     * than in the caller's (e.g. a procedure's).
+     */
+    private static <T> T runInOwnThread(String threadName, String description, Callable<T> callable) {
+        FutureTask<T> task = new FutureTask<>(callable);
+        Thread thread = new Thread(task, threadName);
+        thread.start();
+
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while " + description, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while " + description, e.getCause());
+        }
+    }
+
+    /**
+     * Reconcile the updates that didn't fit in the replication queue, according to the {@link OverflowPolicy}: delete
+     * the documents of deleted entities and re-index the updated entities from their current state. Updates that fail
+     * to be replicated again stay recorded.
+     * <p/>
+     * Updates of transactions committed before the overflowed ones are replicated first, so that they don't overwrite
+     * the reconciled documents, e.g. re-create the document of an entity deleted since.
+     *
+     * @param database to read the updated entities from.
+     * @return number of deleted documents, re-indexed nodes and relationships by name.
+     * @throws IllegalStateException if the earlier updates aren't replicated in time. The overflowed ones stay recorded.
+     */
+    public Map<String, Number> reconcile(GraphDatabaseService database) {
+        return runInOwnThread("Elasticsearch reconciliation", "reconciling overflowed updates", () -> reconcileOverflow(database));
+    }
+
+    private Map<String, Number> reconcileOverflow(GraphDatabaseService database) {
+        ReplicationTracker tracker = writer.getReplicationTracker();
+        long committedBefore = tracker.getLastCommitted(); //includes all transactions queued before the recorded ones
+        OverflowLog.Entries entries = overflow.drain();
+
+        Map<String, Number> counts = new LinkedHashMap<>();
+        counts.put("deleted", 0);
+        counts.put("nodes", 0);
+        counts.put("relationships", 0);
+        if (entries.isEmpty()) {
+            return counts;
+        }
+
+        boolean replicated;
+        try {
+            replicated = tracker.await(committedBefore, RECONCILIATION_WAIT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            replicated = false;
+        }
+        if (!replicated) {
+            overflow.record(entries);
+            throw new IllegalStateException("Updates queued before those that overflowed haven't been replicated within " + RECONCILIATION_WAIT + " ms, try again later");
+        }
+
+        LOG.info("Reconciling " + entries.size() + " updates that overflowed the replication queue...");
+
+        AtomicLong failures = new AtomicLong();
+        try {
+            if (writer.executeActions(entries.getDeletes())) {
+                counts.put("deleted", entries.getDeletes().size());
+            } else {
+                OverflowLog.Entries failed = new OverflowLog.Entries();
+                entries.getDeletes().forEach(failed::addDelete);
+                overflow.record(failed);
+                failures.addAndGet(failed.size());
+            }
+
+            counts.put("nodes", reindexIds(database, entries.getNodes(),
+                    id -> shouldReindexNode(database.getNodeById(id)),
+                    id -> new NodeCreated<>(nodeExpressions(database.getNodeById(id))), failures));
+
+            counts.put("relationships", reindexIds(database, entries.getRelationships(),
+                    id -> shouldReindexRelationship(database.getRelationshipById(id)),
+                    id -> new RelationshipCreated<>(relationshipExpressions(database.getRelationshipById(id))), failures));
+        } catch (RuntimeException e) {
+            overflow.record(entries); //re-indexing and deleting again is harmless, losing updates isn't
+            throw e;
+        }
+
+        overflow.reconciled(entries.size() - failures.get());
+        LOG.info("Finished reconciling overflowed updates: " + counts);
+        return counts;
+    }
+
+    /**
+     * Re-index nodes or relationships by ID, like live updates, recording those that fail in the overflow log again.
+     *
+     * @param failures incremented by the number of entities that failed to be re-indexed.
+     * @return number of re-indexed entities.
+     */
+    private long reindexIds(GraphDatabaseService database, Collection<Long> ids, LongPredicate filter, LongFunction<WriteOperation<?>> operationFactory, AtomicLong failures) {
+        final ReindexBuffer buffer = new ReindexBuffer(reindexBatchSize, operationFactory, groups -> {
+            List<WriteOperation<?>> failed = writer.processRecoveredOperations(groups);
+            if (!failed.isEmpty()) {
+                overflow.record(failed);
+                failures.addAndGet(failed.size());
+            }
+        });
+
+        Iterator<Long> iterator = ids.iterator();
+        while (iterator.hasNext()) {
+            try (Transaction tx = database.beginTx()) {
+                boolean flushed = false;
+                while (iterator.hasNext() && !flushed) {
+                    long id = iterator.next();
+                    try {
+                        flushed = filter.test(id) && buffer.add(id);
+                    } catch (NotFoundException e) {
+                        //deleted since, its deletion has been replicated or recorded
+                    }
+                }
+                if (!iterator.hasNext()) {
+                    buffer.flush();
+                }
+                tx.success();
+            }
+        }
+
+        return buffer.getWritten();
+    }
+
+    /**
+     * Replay spilled updates in the background once the replication queue is less than half full, including those
+     * spilled before a restart.
+     */
+    private void replaySpilledUpdates(GraphDatabaseService database) {
+        replayExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Elasticsearch overflow replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        replayExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                if (overflow.shouldReplay()) {
+                    reconcileOverflow(database);
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Error while replaying spilled updates", e);
+            }
+        }, 1, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Compare the graph with Elasticsearch, and optionally repair the differences: missing and stale documents are
+     * re-indexed, orphaned documents deleted. Throttled to the configured rate.
+     *
+     * @param database to check.
+     * @param repair   whether to repair the differences, or only count them.
+     * @return number of checked nodes, relationships and documents, of missing, stale, orphaned and repaired documents
+     * by name.
+     * @throws IllegalStateException if a check is already running.
+     */
+    public Map<String, Number> checkConsistency(GraphDatabaseService database, boolean repair) {
+        return runInOwnThread("Elasticsearch consistency check", "checking consistency", () -> runConsistencyCheck(database, repair));
+    }
+
+    private Map<String, Number> runConsistencyCheck(GraphDatabaseService database, boolean repair) {
+        if (!consistencyCheckLock.tryLock()) {
+            throw new IllegalStateException("A consistency check is already running");
+        }
+
+        JestClient client = Searcher.createClient(config);
+        try {
+            //without a resolver, missing and stale documents are still found, only orphaned ones aren't
+            KeyToIdResolver resolver = null;
+            try (Transaction tx = database.beginTx()) {
+                resolver = ResolverFactory.createResolver(database, config.getMapping().getKeyProperty());
+                tx.success();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to resolve document keys, not looking for orphaned documents: " + e.getMessage());
+            }
+
+            Function<Collection<String>, Map<String, Long>> nodeResolver = resolver != null ? resolver::getNodeIDs : null;
+            Function<Collection<String>, Map<String, Long>> relationshipResolver = null;
+            if (resolver != null && resolver.canResolveRelationships()) {
+                KeyToIdResolver relationships = resolver;
+                relationshipResolver = keys -> resolveRelationshipIds(relationships, keys);
+            }
+
+            return new ConsistencyCheck(database, writer, config.getMapping(), client, reindexBatchSize, config.getConsistencyCheckRate())
+                    .withEntityType(
+                            "nodes",
+                            config.getMapping().getIndexFor(Node.class),
+                            () -> new AllNodes(database, reindexBatchSize),
+                            id -> {
+                                Node node = database.getNodeById(id);
+                                return shouldReindexNode(node) ? new NodeCreated<>(nodeExpressions(node)) : null;
+                            },
+                            nodeResolver)
+                    .withEntityType(
+                            "relationships",
+                            config.getMapping().getIndexFor(Relationship.class),
+                            () -> new AllRelationships(database, reindexBatchSize),
+                            id -> {
+                                Relationship relationship = database.getRelationshipById(id);
+                                return shouldReindexRelationship(relationship) ? new RelationshipCreated<>(relationshipExpressions(relationship)) : null;
+                            },
+                            relationshipResolver)
+                    .run(repair);
+        } finally {
+            client.shutdownClient();
+            consistencyCheckLock.unlock();
+        }
+    }
+
+    private static Map<String, Long> resolveRelationshipIds(KeyToIdResolver resolver, Collection<String> keys) {
+        Map<String, Long> ids = new HashMap<>();
+        for (String key : keys) {
+            try {
+                ids.put(key, resolver.getRelationshipID(key));
+            } catch (NotFoundException e) {
+                //orphaned
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Check consistency in the background, at low priority.
+     */
+    private void scheduleConsistencyChecks(GraphDatabaseService database) {
+        consistencyCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Elasticsearch consistency check");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        long interval = config.getConsistencyCheckInterval();
+        consistencyCheckExecutor.scheduleWithFixedDelay(() -> {
+            try {
+                runConsistencyCheck(database, true);
+            } catch (IllegalStateException e) {
+                LOG.info("Skipping scheduled consistency check: " + e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.error("Error while checking consistency", e);
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private static GraphDocumentMapper findMapper(List<GraphDocumentMapper> mappers, String name) {
+        if (mappers != null) {
+            for (GraphDocumentMapper mapper : mappers) {
+                if (name.equals(mapper.getName())) {
+                    return mapper;
+                }
+            }
+        }
+        return null;
+    }
+
     public void reindexNodes(GraphDatabaseService database) {
-        final Collection<WriteOperation<?>> operations = new HashSet<>();
+        reindexNodes(database, indexedLabels(), this::shouldReindexNode);
+    }
+
+    /**
+     * @return labels of which all indexed nodes have at least one, according to the mapping or the node inclusion
+     * policy, <code>null</code> if nodes without any of them can be indexed.
+     */
+    private Set<String> indexedLabels() {
+        Set<String> mappingLabels = config.getMapping().getNodeLabels();
+        if (config.getMapping().bypassInclusionPolicies()) {
+            return mappingLabels;
+        }
+
+        Set<String> policyLabels = LabelConditions.requiredLabels(config.getNodeCondition());
+        if (mappingLabels == null || (policyLabels != null && policyLabels.size() < mappingLabels.size())) {
+            return policyLabels;
+        }
+        return mappingLabels;
+    }
+
+    /**
+     * Re-index nodes, through the label scan store if they must have one of the given labels.
+     *
+     * @param labels of which the re-indexed nodes have one, <code>null</code> to scan all nodes.
+     * @return number of re-indexed nodes.
+     */
+    private long reindexNodes(GraphDatabaseService database, Set<String> labels, Predicate<Node> filter) {
+        if (labels == null) {
+            return reindexNodes(database, new AllNodes(database, reindexBatchSize), filter);
+        }
+
+        LOG.info("Re-indexing nodes with labels " + labels + " through the label scan store");
+        return reindexNodesWithLabels(database, labels, filter);
+    }
+
+    /**
+     * Re-index nodes with any of the given labels, found through the label scan store. Nodes with several of the labels
+     * are only re-indexed once, with the first of them.
+     *
+     * @return number of re-indexed nodes.
+     */
+    private long reindexNodesWithLabels(GraphDatabaseService database, Collection<String> labels, Predicate<Node> filter) {
+        List<Label> scanned = new ArrayList<>();
+        long count = 0;
+
+        for (String name : labels) {
+            Label label = Label.label(name);
+            List<Label> alreadyScanned = new ArrayList<>(scanned);
+            count += reindexNodes(
+                    database,
+                    new TransactionalInput<Node>(database, reindexBatchSize, db -> () -> db.findNodes(label)),
+                    node -> alreadyScanned.stream().noneMatch(node::hasLabel) && filter.test(node));
+            scanned.add(label);
+        }
+
+        return count;
+    }
+
+    /**
+     * @return number of re-indexed nodes.
+     */
+    private long reindexNodes(GraphDatabaseService database, Iterable<Node> input, Predicate<Node> filter) {
+        final ReindexBuffer buffer = new ReindexBuffer(
+                reindexBatchSize,
+                id -> new NodeCreated<>(nodeExpressions(database.getNodeById(id))),
+                writer::processReindexOperations);
 
         new IterableInputBatchTransactionExecutor<>(
                 database,
                 reindexBatchSize,
-                new AllNodes(database, reindexBatchSize),
+                input,
                 (db, node, batchNumber, stepNumber) -> {
-
-                    if (shouldReindexNode(node)) {
-                        operations.add(new NodeCreated<>(new NodeExpressions(node)));
-                    }
-
-                    if (operations.size() >= reindexBatchSize) {
-                        writer.processOperations(Arrays.asList(operations));
-                        operations.clear();
+                    if (filter.test(node) && buffer.add(node.getId())) {
                         LOG.info("Done " + reindexBatchSize + " nodes");
                     }
                 }
         ).execute();
 
-        if (operations.size() > 0) {
-            writer.processOperations(Arrays.asList(operations));
-            operations.clear();
+        try (Transaction tx = database.beginTx()) {
+            buffer.flush();
+            tx.success();
         }
+
+        return buffer.getWritten();
     }
 
     private void reindexRelationships(GraphDatabaseService database) {
+        reindexRelationships(database, new AllRelationships(database, reindexBatchSize), this::shouldReindexRelationship);
+    }
 
-        final Collection<WriteOperation<?>> operations = new HashSet<>();
+    /**
+     * @return number of re-indexed relationships.
+     */
+    private long reindexRelationships(GraphDatabaseService database, Iterable<Relationship> input, Predicate<Relationship> filter) {
+        final ReindexBuffer buffer = new ReindexBuffer(
+                reindexBatchSize,
+                id -> new RelationshipCreated<>(relationshipExpressions(database.getRelationshipById(id))),
+                writer::processReindexOperations);
 
         new IterableInputBatchTransactionExecutor<>(
                 database,
                 reindexBatchSize,
-                new AllRelationships(database, reindexBatchSize),
+                input,
                 (db, rel, batchNumber, stepNumber) -> {
-
-                    if (shouldReindexRelationship(rel)) {
-                        operations.add(new RelationshipCreated<>(new RelationshipExpressions(rel)));
-                    }
-
-                    if (operations.size() >= reindexBatchSize) {
-                        writer.processOperations(Arrays.asList(operations));
-                        operations.clear();
+                    if (filter.test(rel) && buffer.add(rel.getId())) {
                         LOG.info("Done " + reindexBatchSize + " relationships");
                     }
                 }
         ).execute();
 
-        if (operations.size() > 0) {
-            writer.processOperations(Arrays.asList(operations));
-            operations.clear();
+        try (Transaction tx = database.beginTx()) {
+            buffer.flush();
+            tx.success();
         }
+
+        return buffer.getWritten();
     }
 
     @Override
     protected DetachedRelationship<Long, ? extends DetachedNode<Long>> relationshipRepresentation(Relationship relationship) {
-        return new RelationshipExpressions(relationship);
+        return relationshipExpressions(relationship);
     }
 
     @Override
     protected DetachedNode<Long> nodeRepresentation(Node node) {
-        return new NodeExpressions(node);
+        return nodeExpressions(node);
+    }
+
+    /**
+     * Detach a node, with only the properties the mapping needs.
+     */
+    private NodeExpressions nodeExpressions(Node node) {
+        String[] properties = config.getMapping().getRequiredNodeProperties();
+        return properties != null ? new NodeExpressions(node, properties) : new NodeExpressions(node);
+    }
+
+    /**
+     * Detach a relationship, with only the properties the mapping needs.
+     */
+    private RelationshipExpressions relationshipExpressions(Relationship relationship) {
+        String[] properties = config.getMapping().getRequiredRelationshipProperties();
+        return properties != null ? new RelationshipExpressions(relationship, properties) : new RelationshipExpressions(relationship);
     }
 
     private boolean shouldReindexNode(Node node) {
@@ -16,6 +16,9 @@ package com.graphaware.module.es;
 
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.module.es.mapping.Mapping;
+import com.graphaware.module.es.util.LoadBalancingStrategy;
+import com.graphaware.module.es.util.OverflowPolicy;
+import com.graphaware.module.es.util.RefreshPolicy;
 import com.graphaware.module.es.util.ServiceLoader;
 import com.graphaware.runtime.module.BaseRuntimeModuleBootstrapper;
 import com.graphaware.runtime.module.RuntimeModule;
@@ -23,6 +26,7 @@ import com.graphaware.runtime.module.RuntimeModuleBootstrapper;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.logging.Log;
 
+import java.io.File;
 import java.util.Map;
 
 /**
@@ -44,6 +48,38 @@ public class ElasticSearchModuleBootstrapper extends BaseRuntimeModuleBootstrapp
     private static final String AUTH_USER = "authUser";
     private static final String AUTH_PASSWORD = "authPassword";
     private static final String MAPPING = "mapping";
+    private static final String MAX_TOTAL_CONNECTIONS = "maxTotalConnections";
+    private static final String MAX_CONNECTIONS_PER_ROUTE = "maxConnectionsPerRoute";
+    private static final String CONNECT_TIMEOUT = "connectTimeout";
+    private static final String READ_TIMEOUT = "readTimeout";
+    private static final String CONNECTION_REQUEST_TIMEOUT = "connectionRequestTimeout";
+    private static final String KEEP_ALIVE = "keepAlive";
+    private static final String MAX_IDLE_TIME = "maxIdleTime";
+    private static final String REQUEST_COMPRESSION = "requestCompression";
+    private static final String DISCOVERY = "discovery";
+    private static final String DISCOVERY_FREQUENCY = "discoveryFrequency";
+    private static final String LOAD_BALANCING = "loadBalancing";
+    private static final String HOST_EJECTION_TIME = "hostEjectionTime";
+    private static final String BULK_COMPRESSION = "bulkCompression";
+    private static final String SEARCH_CONCURRENCY = "searchConcurrency";
+    private static final String SEARCH_QUEUE_SIZE = "searchQueueSize";
+    private static final String SEARCH_TIMEOUT = "searchTimeout";
+    private static final String SEARCH_CACHE_SIZE = "searchCacheSize";
+    private static final String SEARCH_CACHE_TTL = "searchCacheTtl";
+    private static final String SEARCH_PREFETCH_PROPERTIES = "searchPrefetchProperties";
+    private static final String SEARCH_PREFETCH_LABELS = "searchPrefetchLabels";
+    private static final String REFRESH_POLICY = "refreshPolicy";
+    private static final String REFRESH_EVERY = "refreshEvery";
+    private static final String BULK_LOAD_MODE = "bulkLoadMode";
+    private static final String BULK_LOAD_MAX_SEGMENTS = "bulkLoadMaxSegments";
+    private static final String VERSIONED_REINDEX = "versionedReindex";
+    private static final String NODE = "node"; //inclusion policy, applied by the framework
+    private static final String OVERFLOW_POLICY = "overflowPolicy";
+    private static final String OVERFLOW_TIMEOUT = "overflowTimeout";
+    private static final String SPILL_FILE = "spillFile";
+    private static final String CONSISTENCY_CHECK_INTERVAL = "consistencyCheckInterval";
+    private static final String CONSISTENCY_CHECK_RATE = "consistencyCheckRate";
+    private static final String NEO4J_HOME = "unsupported.dbms.directories.neo4j_home";
 
     @Override
     protected ElasticSearchConfiguration defaultConfiguration() {
@@ -111,6 +147,165 @@ public class ElasticSearchModuleBootstrapper extends BaseRuntimeModuleBootstrapp
             LOG.info("Elasticsearch Auth Credentials bulk execution set to %s", configuration.isExecuteBulk());
         }
 
+        if (configExists(config, MAX_TOTAL_CONNECTIONS)) {
+            configuration = configuration.withMaxTotalConnections(Integer.valueOf(config.get(MAX_TOTAL_CONNECTIONS)));
+            LOG.info("Elasticsearch max total connections set to %s", configuration.getMaxTotalConnections());
+        }
+
+        if (configExists(config, MAX_CONNECTIONS_PER_ROUTE)) {
+            configuration = configuration.withMaxConnectionsPerRoute(Integer.valueOf(config.get(MAX_CONNECTIONS_PER_ROUTE)));
+            LOG.info("Elasticsearch max connections per route set to %s", configuration.getMaxConnectionsPerRoute());
+        }
+
+        if (configExists(config, CONNECT_TIMEOUT)) {
+            configuration = configuration.withConnectTimeout(Integer.valueOf(config.get(CONNECT_TIMEOUT)));
+            LOG.info("Elasticsearch connect timeout set to %s", configuration.getConnectTimeout());
+        }
+
+        if (configExists(config, READ_TIMEOUT)) {
+            configuration = configuration.withReadTimeout(Integer.valueOf(config.get(READ_TIMEOUT)));
+            LOG.info("Elasticsearch read timeout set to %s", configuration.getReadTimeout());
+        }
+
+        if (configExists(config, CONNECTION_REQUEST_TIMEOUT)) {
+            configuration = configuration.withConnectionRequestTimeout(Integer.valueOf(config.get(CONNECTION_REQUEST_TIMEOUT)));
+            LOG.info("Elasticsearch connection request timeout set to %s", configuration.getConnectionRequestTimeout());
+        }
+
+        if (configExists(config, KEEP_ALIVE)) {
+            configuration = configuration.withKeepAlive(Integer.valueOf(config.get(KEEP_ALIVE)));
+            LOG.info("Elasticsearch connection keep-alive set to %s", configuration.getKeepAlive());
+        }
+
+        if (configExists(config, MAX_IDLE_TIME)) {
+            configuration = configuration.withMaxIdleTime(Integer.valueOf(config.get(MAX_IDLE_TIME)));
+            LOG.info("Elasticsearch connection max idle time set to %s", configuration.getMaxIdleTime());
+        }
+
+        if (configExists(config, REQUEST_COMPRESSION)) {
+            configuration = configuration.withRequestCompression(Boolean.valueOf(config.get(REQUEST_COMPRESSION)));
+            LOG.info("Elasticsearch request compression set to %s", configuration.isRequestCompression());
+        }
+
+        if (configExists(config, DISCOVERY)) {
+            configuration = configuration.withDiscovery(Boolean.valueOf(config.get(DISCOVERY)));
+            LOG.info("Elasticsearch node discovery set to %s", configuration.isDiscovery());
+        }
+
+        if (configExists(config, DISCOVERY_FREQUENCY)) {
+            configuration = configuration.withDiscoveryFrequency(Integer.valueOf(config.get(DISCOVERY_FREQUENCY)));
+            LOG.info("Elasticsearch node discovery frequency set to %s", configuration.getDiscoveryFrequency());
+        }
+
+        if (configExists(config, LOAD_BALANCING)) {
+            configuration = configuration.withLoadBalancing(LoadBalancingStrategy.fromString(config.get(LOAD_BALANCING)));
+            LOG.info("Elasticsearch load balancing set to %s", configuration.getLoadBalancing());
+        }
+
+        if (configExists(config, HOST_EJECTION_TIME)) {
+            configuration = configuration.withHostEjectionTime(Integer.valueOf(config.get(HOST_EJECTION_TIME)));
+            LOG.info("Elasticsearch host ejection time set to %s", configuration.getHostEjectionTime());
+        }
+
+        if (configExists(config, BULK_COMPRESSION)) {
+            configuration = configuration.withBulkCompression(Boolean.valueOf(config.get(BULK_COMPRESSION)));
+            LOG.info("Elasticsearch bulk request compression set to %s", configuration.isBulkCompression());
+        }
+
+        if (configExists(config, SEARCH_CONCURRENCY)) {
+            configuration = configuration.withSearchConcurrency(Integer.valueOf(config.get(SEARCH_CONCURRENCY)));
+            LOG.info("Elasticsearch search concurrency set to %s", configuration.getSearchConcurrency());
+        }
+
+        if (configExists(config, SEARCH_QUEUE_SIZE)) {
+            configuration = configuration.withSearchQueueSize(Integer.valueOf(config.get(SEARCH_QUEUE_SIZE)));
+            LOG.info("Elasticsearch search queue size set to %s", configuration.getSearchQueueSize());
+        }
+
+        if (configExists(config, SEARCH_TIMEOUT)) {
+            configuration = configuration.withSearchTimeout(Integer.valueOf(config.get(SEARCH_TIMEOUT)));
+            LOG.info("Elasticsearch search timeout set to %s", configuration.getSearchTimeout());
+        }
+
+        if (configExists(config, SEARCH_CACHE_SIZE)) {
+            configuration = configuration.withSearchCacheSize(Integer.valueOf(config.get(SEARCH_CACHE_SIZE)));
+            LOG.info("Elasticsearch search cache size set to %s", configuration.getSearchCacheSize());
+        }
+
+        if (configExists(config, SEARCH_CACHE_TTL)) {
+            configuration = configuration.withSearchCacheTtl(Integer.valueOf(config.get(SEARCH_CACHE_TTL)));
+            LOG.info("Elasticsearch search cache TTL set to %s", configuration.getSearchCacheTtl());
+        }
+
+        if (configExists(config, SEARCH_PREFETCH_PROPERTIES)) {
+            configuration = configuration.withSearchPrefetchProperties(config.get(SEARCH_PREFETCH_PROPERTIES));
+            LOG.info("Elasticsearch search prefetched properties set to %s", configuration.getSearchPrefetchProperties());
+        }
+
+        if (configExists(config, SEARCH_PREFETCH_LABELS)) {
+            configuration = configuration.withSearchPrefetchLabels(Boolean.valueOf(config.get(SEARCH_PREFETCH_LABELS)));
+            LOG.info("Elasticsearch search label prefetching set to %s", configuration.isSearchPrefetchLabels());
+        }
+
+        if (configExists(config, REFRESH_POLICY)) {
+            configuration = configuration.withRefreshPolicy(RefreshPolicy.fromString(config.get(REFRESH_POLICY)));
+            LOG.info("Elasticsearch refresh policy set to %s", configuration.getRefreshPolicy());
+        }
+
+        if (configExists(config, REFRESH_EVERY)) {
+            configuration = configuration.withRefreshEvery(Integer.valueOf(config.get(REFRESH_EVERY)));
+            LOG.info("Elasticsearch refresh every N flushes set to %s", configuration.getRefreshEvery());
+        }
+
+        if (configExists(config, BULK_LOAD_MODE)) {
+            configuration = configuration.withBulkLoadMode(Boolean.valueOf(config.get(BULK_LOAD_MODE)));
+            LOG.info("Elasticsearch bulk load mode set to %s", configuration.isBulkLoadMode());
+        }
+
+        if (configExists(config, BULK_LOAD_MAX_SEGMENTS)) {
+            configuration = configuration.withBulkLoadMaxSegments(Integer.valueOf(config.get(BULK_LOAD_MAX_SEGMENTS)));
+            LOG.info("Elasticsearch bulk load force-merge segments set to %s", configuration.getBulkLoadMaxSegments());
+        }
+
+        if (configExists(config, VERSIONED_REINDEX)) {
+            configuration = configuration.withVersionedReindex(Boolean.valueOf(config.get(VERSIONED_REINDEX)));
+            LOG.info("Elasticsearch versioned re-indexing set to %s", configuration.isVersionedReindex());
+        }
+
+        if (configExists(config, NODE)) {
+            configuration = configuration.withNodeCondition(config.get(NODE));
+        }
+
+        if (configExists(config, OVERFLOW_POLICY)) {
+            configuration = configuration.withOverflowPolicy(OverflowPolicy.fromString(config.get(OVERFLOW_POLICY)));
+            LOG.info("Elasticsearch queue overflow policy set to %s", configuration.getOverflowPolicy());
+        }
+
+        if (configExists(config, OVERFLOW_TIMEOUT)) {
+            configuration = configuration.withOverflowTimeout(Integer.valueOf(config.get(OVERFLOW_TIMEOUT)));
+            LOG.info("Elasticsearch queue overflow timeout set to %s", configuration.getOverflowTimeout());
+        }
+
+        if (configExists(config, SPILL_FILE)) {
+            configuration = configuration.withSpillFile(config.get(SPILL_FILE));
+        }
+
+        //relative to the Neo4j home directory, like the json mapping file, rather than the working directory
+        if (!new File(configuration.getSpillFile()).isAbsolute() && configExists(config, NEO4J_HOME)) {
+            configuration = configuration.withSpillFile(new File(config.get(NEO4J_HOME), configuration.getSpillFile()).getPath());
+        }
+        LOG.info("Elasticsearch overflow spill file set to %s", configuration.getSpillFile());
+
+        if (configExists(config, CONSISTENCY_CHECK_INTERVAL)) {
+            configuration = configuration.withConsistencyCheckInterval(Integer.valueOf(config.get(CONSISTENCY_CHECK_INTERVAL)));
+            LOG.info("Elasticsearch consistency check interval set to %s", configuration.getConsistencyCheckInterval());
+        }
+
+        if (configExists(config, CONSISTENCY_CHECK_RATE)) {
+            configuration = configuration.withConsistencyCheckRate(Integer.valueOf(config.get(CONSISTENCY_CHECK_RATE)));
+            LOG.info("Elasticsearch consistency check rate set to %s", configuration.getConsistencyCheckRate());
+        }
+
         String mappingClass = configExists(config, MAPPING) ? config.get(MAPPING) : "com.graphaware.module.es.mapping.DefaultMapping";
         Mapping mapping = ServiceLoader.loadMapping(mappingClass);
         configuration = configuration.withMapping(mapping, config);
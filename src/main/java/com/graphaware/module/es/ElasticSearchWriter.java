@@ -14,25 +14,44 @@
 
 package com.graphaware.module.es;
 
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.module.es.executor.BulkOperationExecutorFactory;
 import com.graphaware.module.es.executor.OperationExecutor;
 import com.graphaware.module.es.executor.OperationExecutorFactory;
 import com.graphaware.module.es.executor.RequestPerOperationExecutorFactory;
 import com.graphaware.module.es.mapping.Mapping;
+import com.graphaware.module.es.search.IndexGenerations;
 import com.graphaware.module.es.search.Searcher;
+import com.graphaware.module.es.util.BulkLoadSettings;
+import com.graphaware.module.es.util.CompressionStatistics;
+import com.graphaware.module.es.util.RefreshPolicy;
+import com.graphaware.module.es.util.ReplicationTracker;
+import com.graphaware.module.es.util.VersionedReindex;
 import com.graphaware.writer.thirdparty.BaseThirdPartyWriter;
 import com.graphaware.writer.thirdparty.ThirdPartyWriter;
 import com.graphaware.writer.thirdparty.WriteOperation;
 import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.settings.GetSettings;
 import org.neo4j.logging.Log;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.springframework.util.Assert.notNull;
 
@@ -44,29 +63,33 @@ public class ElasticSearchWriter extends BaseThirdPartyWriter {
     private static final Log LOG = LoggerFactory.getLogger(ElasticSearchWriter.class);
 
     private JestClient client;
-    private final String protocol;
-    private final String uri;
-    private final String port;
+    private final ElasticSearchConfiguration configuration;
     private final boolean retryOnError;
     private final OperationExecutorFactory executorFactory;
     private final AtomicBoolean indexExists = new AtomicBoolean(false); //this must be thread-safe
-    private final String authUser;
-    private final String authPassword;
     private final Mapping mapping;
     private final boolean async;
+    private final CompressionStatistics compressionStatistics = new CompressionStatistics();
+    private final IndexGenerations indexGenerations = new IndexGenerations();
+    private final RefreshPolicy refreshPolicy;
+    private final int refreshEvery;
+    private final Set<String> indicesToRefresh = new HashSet<>(); //guarded by itself, re-indexing may flush from another thread
+    private int flushesSinceRefresh = 0;
+    private final ReplicationTracker replicationTracker = new ReplicationTracker();
+    private volatile BulkLoadSettings bulkLoadSettings;
+    private volatile VersionedReindex versionedReindex;
+    private final ReadWriteLock indexSwapLock = new ReentrantReadWriteLock(); //flushes (read) vs. alias swaps (write)
 
     public ElasticSearchWriter(ElasticSearchConfiguration configuration) {
         super(configuration.getQueueCapacity());
 
         notNull(configuration, "Configuration cannot be null");
 
-        this.protocol = configuration.getProtocol();
-        this.uri = configuration.getUri();
-        this.port = configuration.getPort();
+        this.configuration = configuration;
         this.retryOnError = configuration.isRetryOnError();
-        this.executorFactory = configuration.isExecuteBulk() ? new BulkOperationExecutorFactory() : new RequestPerOperationExecutorFactory();
-        this.authUser = configuration.getAuthUser();
-        this.authPassword = configuration.getAuthPassword();
+        this.executorFactory = configuration.isExecuteBulk() ? new BulkOperationExecutorFactory(configuration.getRefreshPolicy().getParameter()) : new RequestPerOperationExecutorFactory();
+        this.refreshPolicy = configuration.getRefreshPolicy();
+        this.refreshEvery = Math.max(1, configuration.getRefreshEvery());
         this.mapping = configuration.getMapping();
         this.async = configuration.isAsyncIndexation();
     }
@@ -80,7 +103,11 @@ public class ElasticSearchWriter extends BaseThirdPartyWriter {
 
         super.start();
         client = createClient();
+        indexGenerations.setResolver(this::resolveIndices);
         createIndexIfNotExist();
+        if (new BulkLoadSettings(client, mapping.getIndices()).recover()) {
+            indexGenerations.settingsChanged();
+        }
 
         LOG.info("Started Elasticsearch Writer.");
     }
@@ -94,6 +121,7 @@ public class ElasticSearchWriter extends BaseThirdPartyWriter {
 
         super.stop();
         shutdownClient();
+        mapping.shutdown();
 
         LOG.info("Stopped Elasticsearch Writer.");
     }
@@ -103,26 +131,32 @@ public class ElasticSearchWriter extends BaseThirdPartyWriter {
      */
     @Override
     protected void processOperations(List<Collection<WriteOperation<?>>> operationGroups) {
-        createIndexIfNotExist();
-
-        OperationExecutor executor = executorFactory.newExecutor(client);
-
-        executor.start();
+        processOperations(operationGroups, false);
+    }
 
-        int actionsCount = 0;
-        for (Collection<WriteOperation<?>> operationGroup : operationGroups) {
-            for (WriteOperation<?> operation : operationGroup) {
-                List<BulkableAction<? extends JestResult>> actions = mapping.getActions(operation);
-                executor.execute(actions, operation);
-                actionsCount += actions.size();
-            }
-        }
+    /**
+     * Replicate operations produced by re-indexing the database. Unlike live updates, these only go to the new indices
+     * while {@link #beginVersionedReindex() re-indexing into new versions}.
+     *
+     * @param operationGroups operations to replicate.
+     */
+    protected void processReindexOperations(List<Collection<WriteOperation<?>>> operationGroups) {
+        processOperations(operationGroups, true);
+    }
 
-        if (actionsCount == 0) {
-            return;
-        }
+    /**
+     * Replicate operations recovered after they didn't fit in the queue, like live updates. Failed operations are not
+     * retried, but returned so that they can be recorded again.
+     *
+     * @param operationGroups operations to replicate.
+     * @return operations that failed. Never <code>null</code>.
+     */
+    protected List<WriteOperation<?>> processRecoveredOperations(List<Collection<WriteOperation<?>>> operationGroups) {
+        return replicate(operationGroups, false, false);
+    }
 
-        List<WriteOperation<?>> allFailed = executor.flush();
+    private void processOperations(List<Collection<WriteOperation<?>>> operationGroups, boolean reindexing) {
+        List<WriteOperation<?>> allFailed = replicate(operationGroups, reindexing, retryOnError);
 
         if (!allFailed.isEmpty()) {
             if (retryOnError) {
@@ -140,8 +174,379 @@ public class ElasticSearchWriter extends BaseThirdPartyWriter {
         }
     }
 
+    /**
+     * @param retrying whether failed operations will be retried, i.e. are not acknowledged yet.
+     * @return operations that failed.
+     */
+    private List<WriteOperation<?>> replicate(List<Collection<WriteOperation<?>>> operationGroups, boolean reindexing, boolean retrying) {
+        List<WriteOperation<?>> operations = new ArrayList<>();
+        for (Collection<WriteOperation<?>> operationGroup : operationGroups) {
+            operations.addAll(operationGroup);
+        }
+
+        List<WriteOperation<?>> allFailed = Collections.emptyList();
+        try {
+            createIndexIfNotExist();
+            mapping.beforeBatch();
+
+            indexSwapLock.readLock().lock();
+            try {
+                OperationExecutor executor = executorFactory.newExecutor(client);
+
+                executor.start();
+
+                int actionsCount = 0;
+                Set<String> indices = new HashSet<>();
+                for (WriteOperation<?> operation : operations) {
+                    List<BulkableAction<? extends JestResult>> actions = route(mapping.getActions(operation), reindexing);
+                    executor.execute(actions, operation);
+                    actionsCount += actions.size();
+                    for (BulkableAction<? extends JestResult> action : actions) {
+                        indices.add(action.getIndex());
+                    }
+                }
+
+                if (actionsCount == 0) {
+                    return allFailed;
+                }
+
+                allFailed = executor.flush();
+                flushed(indices);
+                refreshIfNeeded(indices);
+            } finally {
+                indexSwapLock.readLock().unlock();
+            }
+        } finally {
+            //also when mapping or flushing throws, the operations won't be flushed again and nobody should wait for them
+            replicationTracker.flushed(operations, retrying ? allFailed : Collections.<WriteOperation<?>>emptyList());
+        }
+
+        return allFailed;
+    }
+
+    /**
+     * Execute actions in a single bulk request, outside of the queue, e.g. to delete the documents of entities deleted
+     * while the queue was full.
+     *
+     * @param actions to execute.
+     * @return <code>true</code> iff the request succeeded.
+     */
+    protected boolean executeActions(Collection<BulkableAction<? extends JestResult>> actions) {
+        if (actions.isEmpty()) {
+            return true;
+        }
+
+        createIndexIfNotExist();
+
+        indexSwapLock.readLock().lock();
+        try {
+            List<BulkableAction<? extends JestResult>> routed = route(new ArrayList<>(actions), false);
+            Set<String> indices = new HashSet<>();
+            for (BulkableAction<? extends JestResult> action : routed) {
+                indices.add(action.getIndex());
+            }
+
+            Bulk.Builder bulk = new Bulk.Builder().addAction(routed);
+            if (refreshPolicy.getParameter() != null) {
+                bulk.setParameter("refresh", refreshPolicy.getParameter());
+            }
+
+            JestResult result = client.execute(bulk.build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to execute " + actions.size() + " actions against Elasticsearch. Details: " + result.getErrorMessage());
+                return false;
+            }
+
+            flushed(indices);
+            refreshIfNeeded(indices);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to execute " + actions.size() + " actions against Elasticsearch.", e);
+            return false;
+        } finally {
+            indexSwapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * While re-indexing into new versions of the indices, send live updates to both the current and new indices, and
+     * re-indexing updates to the new indices only.
+     *
+     * @param actions    produced by the mapping.
+     * @param reindexing whether the actions come from re-indexing the database.
+     * @return actions to execute.
+     */
+    private List<BulkableAction<? extends JestResult>> route(List<BulkableAction<? extends JestResult>> actions, boolean reindexing) {
+        VersionedReindex versionedReindex = this.versionedReindex;
+        if (versionedReindex == null || versionedReindex.getTargets().isEmpty()) {
+            return actions;
+        }
+
+        List<BulkableAction<? extends JestResult>> routed = new ArrayList<>(actions.size() * 2);
+        for (BulkableAction<? extends JestResult> action : actions) {
+            if (reindexing) {
+                routed.add(versionedReindex.redirect(action));
+            } else {
+                routed.add(action);
+                BulkableAction<? extends JestResult> duplicate = versionedReindex.duplicate(action);
+                if (duplicate != null) {
+                    routed.add(duplicate);
+                }
+            }
+        }
+        return routed;
+    }
+
+    /**
+     * Refresh indices according to the {@link RefreshPolicy}, unless the refresh has been requested with the writes.
+     *
+     * @param indices written to by the last flush.
+     */
+    private void refreshIfNeeded(Set<String> indices) {
+        boolean refreshedWithWrites = refreshPolicy.getParameter() != null && configuration.isExecuteBulk();
+
+        if (refreshPolicy == RefreshPolicy.NONE || refreshedWithWrites) {
+            return;
+        }
+
+        synchronized (indicesToRefresh) {
+            indicesToRefresh.addAll(indices);
+
+            if (refreshPolicy == RefreshPolicy.BATCH && ++flushesSinceRefresh < refreshEvery) {
+                return;
+            }
+
+            refresh(indicesToRefresh);
+            indicesToRefresh.clear();
+            flushesSinceRefresh = 0;
+        }
+    }
+
+    /**
+     * Record a flush of writes to the given indices, and when they can be found by searches.
+     *
+     * @param indices written to.
+     */
+    private void flushed(Set<String> indices) {
+        if (refreshPolicy.getParameter() != null && configuration.isExecuteBulk()) {
+            indexGenerations.flushed(indices, 0); //refreshed with the writes
+        } else if (bulkLoadSettings != null) {
+            indexGenerations.flushed(indices, Long.MAX_VALUE); //periodic refresh disabled until the end of bulk loading
+        } else {
+            indexGenerations.flushed(indices); //by the refresh_interval of the indices
+        }
+    }
+
+    /**
+     * Make all updates of the given indices searchable.
+     *
+     * @param indices to refresh.
+     * @return <code>true</code> iff the refresh succeeded.
+     */
+    protected boolean refresh(Collection<String> indices) {
+        if (indices.isEmpty()) {
+            return true;
+        }
+
+        JestClient client = this.client;
+        if (client == null) {
+            return false;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        try {
+            JestResult result = client.execute(new Refresh.Builder().addIndex(indices).build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to refresh Elasticsearch indices " + indices + ". Details: " + result.getErrorMessage());
+                return false;
+            }
+            indexGenerations.refreshed(indices, startedAt);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Failed to refresh Elasticsearch indices " + indices, e);
+            return false;
+        }
+    }
+
+    /**
+     * Wait until all transactions up to the given sequence number have been replicated.
+     *
+     * @param sequence of the last transaction to wait for, see {@link ReplicationTracker#getLastCommitted()}.
+     * @param timeout  maximum time to wait in ms.
+     * @param refresh  whether to refresh the indices written to once replicated, so that the updates are searchable. Ignored if
+     *                 the updates have already been made searchable by the {@link RefreshPolicy}.
+     * @return <code>true</code> iff replicated (and refreshed, if requested) within the timeout.
+     */
+    public boolean awaitReplication(long sequence, long timeout, boolean refresh) {
+        try {
+            if (!replicationTracker.await(sequence, timeout)) {
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        boolean refreshedWithWrites = refreshPolicy == RefreshPolicy.IMMEDIATE || refreshPolicy == RefreshPolicy.WAIT_FOR;
+        if (!refresh || refreshedWithWrites) {
+            return true;
+        }
+
+        return refresh(indexGenerations.getIndices());
+    }
+
+    /**
+     * Switch the indices to settings optimized for bulk loading, if enabled by configuration. Must be followed by
+     * {@link #endBulkLoad()}.
+     */
+    public synchronized void beginBulkLoad() {
+        if (!configuration.isBulkLoadMode() || bulkLoadSettings != null) {
+            return;
+        }
+
+        createIndexIfNotExist();
+
+        VersionedReindex versionedReindex = this.versionedReindex;
+        Collection<String> indices = versionedReindex != null ? versionedReindex.getTargets().values() : mapping.getIndices();
+
+        LOG.info("Entering bulk load mode...");
+        bulkLoadSettings = new BulkLoadSettings(client, indices);
+        bulkLoadSettings.apply();
+        indexGenerations.settingsChanged();
+    }
+
+    /**
+     * Restore the settings of the indices changed by {@link #beginBulkLoad()}, then force-merge and refresh them.
+     */
+    public synchronized void endBulkLoad() {
+        if (bulkLoadSettings == null) {
+            return;
+        }
+
+        LOG.info("Leaving bulk load mode...");
+        bulkLoadSettings.restore(configuration.getBulkLoadMaxSegments());
+        bulkLoadSettings = null;
+        indexGenerations.settingsChanged();
+        refresh(indexGenerations.getIndices()); //writes flushed while loading are searchable now
+        LOG.info("Left bulk load mode.");
+    }
+
+    /**
+     * Start re-indexing into new versions of the indices, if enabled by configuration. Must be followed by
+     * {@link #endVersionedReindex(boolean)}.
+     *
+     * @return <code>true</code> iff the new indices have been created. If not, re-indexing goes to the live indices.
+     */
+    public synchronized boolean beginVersionedReindex() {
+        if (!configuration.isVersionedReindex() || versionedReindex != null) {
+            return false;
+        }
+
+        createIndexIfNotExist();
+
+        VersionedReindex reindex = new VersionedReindex(client, mapping.getIndices());
+        if (!reindex.begin()) {
+            LOG.warn("Failed to create new versions of the indices, will re-index into the live indices.");
+            return false;
+        }
+
+        versionedReindex = reindex;
+        return true;
+    }
+
+    /**
+     * Finish re-indexing into new versions of the indices: on success, swap the aliases to the new indices and drop the
+     * old ones; otherwise drop the new indices.
+     *
+     * @param success whether re-indexing has completed.
+     */
+    public synchronized void endVersionedReindex(boolean success) {
+        VersionedReindex reindex = versionedReindex;
+        if (reindex == null) {
+            return;
+        }
+
+        //no flushes while swapping, so that no update goes to an index about to be dropped or overtakes the live updates
+        //written to the new indices again
+        indexSwapLock.writeLock().lock();
+        try {
+            if (success) {
+                reindex.complete();
+            } else {
+                reindex.abort();
+            }
+            versionedReindex = null;
+            indexGenerations.aliasesChanged();
+        } finally {
+            indexSwapLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return tracker of the replication of committed transactions.
+     */
+    public ReplicationTracker getReplicationTracker() {
+        return replicationTracker;
+    }
+
+    /**
+     * @param index name of an index or alias.
+     * @return names of the concrete indices behind it, <code>null</code> if they can't be found.
+     */
+    private Map<String, Long> resolveIndices(String index) {
+        JestClient client = this.client;
+        if (client == null) {
+            return null;
+        }
+
+        try {
+            //settings are keyed by the concrete indices behind an alias
+            JestResult result = client.execute(new GetSettings.Builder().addIndex(index).build());
+            if (!result.isSucceeded() || result.getJsonObject() == null) {
+                return null;
+            }
+            Map<String, Long> indices = new HashMap<>();
+            for (Map.Entry<String, JsonElement> entry : result.getJsonObject().entrySet()) {
+                indices.put(entry.getKey(), refreshInterval(entry.getValue()));
+            }
+            return indices;
+        } catch (IOException e) {
+            LOG.warn("Failed to resolve Elasticsearch index " + index, e);
+            return null;
+        }
+    }
+
+    private static long refreshInterval(JsonElement indexSettings) {
+        JsonElement value = null;
+        if (indexSettings.isJsonObject() && indexSettings.getAsJsonObject().has("settings")) {
+            JsonObject settings = indexSettings.getAsJsonObject().getAsJsonObject("settings");
+            if (settings.has("index") && settings.get("index").isJsonObject()) {
+                value = settings.getAsJsonObject("index").get("refresh_interval");
+            } else {
+                value = settings.get("index.refresh_interval");
+            }
+        }
+
+        Long interval = value == null || !value.isJsonPrimitive() ? null : IndexGenerations.parseTimeValue(value.getAsString());
+        return interval == null ? IndexGenerations.DEFAULT_REFRESH_INTERVAL : interval;
+    }
+
     protected JestClient createClient() {
-        return Searcher.createClient(protocol, uri, port, authUser, authPassword);
+        return Searcher.createClient(configuration, compressionStatistics);
+    }
+
+    /**
+     * @return generations of the indices written to by this writer, bumped after every flush and refresh.
+     */
+    public IndexGenerations getIndexGenerations() {
+        return indexGenerations;
+    }
+
+    /**
+     * @return statistics of the request bodies gzipped by this writer.
+     */
+    public CompressionStatistics getCompressionStatistics() {
+        return compressionStatistics;
     }
 
     protected void shutdownClient() {
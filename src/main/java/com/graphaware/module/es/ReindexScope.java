@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Subset of the graph to re-index, see {@link ElasticSearchModule#reindex(org.neo4j.graphdb.GraphDatabaseService, ReindexScope)}.
+ * <p/>
+ * Nodes are re-indexed if they have one of the labels, relationships if they have one of the types. If only labels are
+ * given, no relationships are re-indexed and vice versa. A mapper (of a json mapping) restricts re-indexing to the nodes
+ * or relationships it maps. An empty scope covers the whole graph.
+ */
+public final class ReindexScope {
+
+    private static final String LABELS = "labels";
+    private static final String TYPES = "types";
+    private static final String MAPPER = "mapper";
+
+    private final Set<String> labels;
+    private final Set<String> types;
+    private final String mapper;
+
+    private ReindexScope(Set<String> labels, Set<String> types, String mapper) {
+        this.labels = labels;
+        this.types = types;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return scope covering the whole graph.
+     */
+    public static ReindexScope all() {
+        return new ReindexScope(Collections.emptySet(), Collections.emptySet(), null);
+    }
+
+    /**
+     * Create a scope from a map with optional <code>labels</code> (list), <code>types</code> (list) and
+     * <code>mapper</code> (name) keys, as passed to a procedure.
+     *
+     * @param scope map, can be <code>null</code> for the whole graph.
+     * @return scope.
+     * @throws IllegalArgumentException if the map contains unknown keys or values of the wrong type.
+     */
+    public static ReindexScope fromMap(Map<String, Object> scope) {
+        ReindexScope result = all();
+        if (scope == null) {
+            return result;
+        }
+
+        for (Map.Entry<String, Object> entry : scope.entrySet()) {
+            switch (entry.getKey()) {
+                case LABELS:
+                    result = result.withLabels(strings(entry.getKey(), entry.getValue()));
+                    break;
+                case TYPES:
+                    result = result.withTypes(strings(entry.getKey(), entry.getValue()));
+                    break;
+                case MAPPER:
+                    result = result.withMapper(entry.getValue() != null ? entry.getValue().toString() : null);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown re-index scope key " + entry.getKey() + ", expected " + LABELS + ", " + TYPES + " or " + MAPPER);
+            }
+        }
+
+        return result;
+    }
+
+    private static Collection<String> strings(String key, Object value) {
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        if (value instanceof String) {
+            return Collections.singleton((String) value);
+        }
+        if (!(value instanceof Collection)) {
+            throw new IllegalArgumentException("Re-index scope " + key + " must be a list of strings");
+        }
+
+        Set<String> strings = new LinkedHashSet<>();
+        for (Object item : (Collection<?>) value) {
+            strings.add(String.valueOf(item));
+        }
+        return strings;
+    }
+
+    public ReindexScope withLabels(Collection<String> labels) {
+        return new ReindexScope(Collections.unmodifiableSet(new LinkedHashSet<>(labels)), types, mapper);
+    }
+
+    public ReindexScope withTypes(Collection<String> types) {
+        return new ReindexScope(labels, Collections.unmodifiableSet(new LinkedHashSet<>(types)), mapper);
+    }
+
+    public ReindexScope withMapper(String mapper) {
+        return new ReindexScope(labels, types, mapper);
+    }
+
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    public Set<String> getTypes() {
+        return types;
+    }
+
+    public String getMapper() {
+        return mapper;
+    }
+
+    /**
+     * @return <code>true</code> iff nodes may be in scope, i.e. unless only relationship types are given.
+     */
+    public boolean includesNodes() {
+        return !labels.isEmpty() || types.isEmpty();
+    }
+
+    /**
+     * @return <code>true</code> iff relationships may be in scope, i.e. unless only labels are given.
+     */
+    public boolean includesRelationships() {
+        return !types.isEmpty() || labels.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "labels=" + labels + ", types=" + types + ", mapper=" + mapper;
+    }
+}
@@ -35,6 +35,7 @@ public class BulkOperationExecutor extends BaseOperationExecutor {
 
     private static final Log LOG = LoggerFactory.getLogger(BulkOperationExecutor.class);
 
+    private final String refresh;
     private Bulk.Builder bulkBuilder;
 
     /**
@@ -43,7 +44,18 @@ public class BulkOperationExecutor extends BaseOperationExecutor {
      * @param client      Jest client. Must not be <code>null</code>.
      */
     public BulkOperationExecutor(JestClient client) {
+        this(client, null);
+    }
+
+    /**
+     * Construct a new executor.
+     *
+     * @param client      Jest client. Must not be <code>null</code>.
+     * @param refresh     value of the <code>refresh</code> parameter of bulk requests, <code>null</code> for none.
+     */
+    public BulkOperationExecutor(JestClient client, String refresh) {
         super(client);
+        this.refresh = refresh;
     }
 
     /**
@@ -53,6 +65,9 @@ public class BulkOperationExecutor extends BaseOperationExecutor {
     public void start() {
         super.start();
         bulkBuilder = new Bulk.Builder();
+        if (refresh != null) {
+            bulkBuilder.setParameter("refresh", refresh);
+        }
     }
 
     /**
@@ -21,11 +21,24 @@ import io.searchbox.client.JestClient;
  */
 public class BulkOperationExecutorFactory implements OperationExecutorFactory {
 
+    private final String refresh;
+
+    public BulkOperationExecutorFactory() {
+        this(null);
+    }
+
+    /**
+     * @param refresh value of the <code>refresh</code> parameter of bulk requests, <code>null</code> for none.
+     */
+    public BulkOperationExecutorFactory(String refresh) {
+        this.refresh = refresh;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public OperationExecutor newExecutor(JestClient client) {
-        return new BulkOperationExecutor(client);
+        return new BulkOperationExecutor(client, refresh);
     }
 }
@@ -17,6 +17,8 @@ package com.graphaware.module.es.mapping;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.module.es.mapping.json.DocumentMappingRepresentation;
+import com.graphaware.module.es.mapping.json.GraphDocumentMapper;
+import com.graphaware.module.es.mapping.json.MappingFileWatcher;
 import com.graphaware.module.es.mapping.expression.NodeExpressions;
 import com.graphaware.module.es.mapping.expression.RelationshipExpressions;
 import io.searchbox.action.BulkableAction;
@@ -28,7 +30,13 @@ import org.springframework.core.io.ClassPathResource;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 public class JsonFileMapping implements Mapping {
 
@@ -36,10 +44,31 @@ public class JsonFileMapping implements Mapping {
 
     private static final String DEFAULT_KEY_PROPERTY = "uuid";
     private static final String FILE_PATH_KEY = "file";
+    private static final String COMPILE_KEY = "compileMapping";
+    private static final String WATCH_KEY = "watchMapping";
+    private static final String REINDEX_ON_CHANGE_KEY = "reindexOnMappingChange";
     private static final String NEO4j_HOME = "unsupported.dbms.directories.neo4j_home";
     private static final String NEO4j_CONF_DIR = "conf";
 
-    private DocumentMappingRepresentation mappingRepresentation;
+    private volatile DocumentMappingRepresentation mappingRepresentation;
+
+    //loaded and validated by the watcher, swapped in by the writer between batches
+    private final AtomicReference<DocumentMappingRepresentation> pendingRepresentation = new AtomicReference<>();
+
+    //versions replaced while entities are being re-indexed with the current one, guarded by this
+    private final List<DocumentMappingRepresentation> retiredRepresentations = new CopyOnWriteArrayList<>();
+    private int reindexesInProgress = 0;
+
+    //incremented whenever the above change, to know when the required properties must be worked out again
+    private final AtomicInteger representationsVersion = new AtomicInteger();
+    private volatile RequiredProperties requiredProperties;
+
+    private boolean compile;
+    private boolean reindexOnChange;
+    private MappingFileWatcher watcher;
+    private volatile BiConsumer<DocumentMappingRepresentation, DocumentMappingRepresentation> changeListener;
+    private volatile Function<Long, NodeExpressions> nodeReader;
+    private volatile Function<Long, RelationshipExpressions> relationshipReader;
 
     protected String keyProperty;
 
@@ -48,18 +77,155 @@ public class JsonFileMapping implements Mapping {
         if (!config.containsKey(FILE_PATH_KEY)) {
             throw new RuntimeException("Configuration is missing the " + FILE_PATH_KEY + "key");
         }
+
+        compile = Boolean.parseBoolean(config.getOrDefault(COMPILE_KEY, "false").trim());
+        LOG.info("Json mapping expression compilation set to %s", compile);
+
+        File file;
         try {
             ClassPathResource classPathResource = new ClassPathResource(config.get(FILE_PATH_KEY));
-			String file = null; 
 			if(classPathResource.exists()){
-				file = classPathResource.getFile().getAbsolutePath();
+				file = classPathResource.getFile().getAbsoluteFile();
 			}else{
-				file = config.get(NEO4j_HOME) + File.separator + NEO4j_CONF_DIR + File.separator + config.get(FILE_PATH_KEY);
+				file = new File(config.get(NEO4j_HOME) + File.separator + NEO4j_CONF_DIR + File.separator + config.get(FILE_PATH_KEY));
 			}
-            mappingRepresentation = new ObjectMapper().readValue(new File(file), DocumentMappingRepresentation.class);
+            mappingRepresentation = read(file);
         } catch (IOException e) {
             throw new RuntimeException("Unable to read json mapping file", e);
         }
+
+        mappingRepresentation.prepare(compile);
+
+        reindexOnChange = Boolean.parseBoolean(config.getOrDefault(REINDEX_ON_CHANGE_KEY, "false").trim());
+        if (Boolean.parseBoolean(config.getOrDefault(WATCH_KEY, "false").trim())) {
+            LOG.info("Json mapping re-indexing on change set to %s", reindexOnChange);
+            try {
+                watcher = new MappingFileWatcher(file.toPath(), this::reload);
+                watcher.start();
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to watch json mapping file", e);
+            }
+        }
+    }
+
+    private DocumentMappingRepresentation read(File file) throws IOException {
+        return new ObjectMapper().readValue(file, DocumentMappingRepresentation.class);
+    }
+
+    /**
+     * Load a changed mapping file and, if it is valid, have it swapped in before the writer's next batch. Runs in the
+     * watcher's thread, so that parsing and compiling the expressions doesn't hold up replication.
+     *
+     * @param file changed mapping file.
+     */
+    protected void reload(Path file) {
+        DocumentMappingRepresentation representation;
+        try {
+            representation = read(file.toFile());
+        } catch (IOException e) {
+            LOG.error("Unable to read changed json mapping file %s, keeping the current mapping: %s", file, e.getMessage());
+            return;
+        }
+
+        if (representation.getDefaults() == null || !representation.prepare(compile)) {
+            LOG.error("Changed json mapping file %s is invalid, keeping the current mapping", file);
+            return;
+        }
+
+        pendingRepresentation.set(representation);
+        representationsVersion.incrementAndGet();
+        LOG.info("Loaded changed json mapping file %s, it will be used from the next batch", file);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeBatch() {
+        if (pendingRepresentation.get() == null) {
+            return;
+        }
+
+        DocumentMappingRepresentation previous;
+        DocumentMappingRepresentation next;
+        BiConsumer<DocumentMappingRepresentation, DocumentMappingRepresentation> listener = changeListener;
+        synchronized (this) {
+            next = pendingRepresentation.get();
+            if (next == null) {
+                return; //swapped by another thread
+            }
+
+            previous = mappingRepresentation;
+            if (listener != null) {
+                retiredRepresentations.add(previous);
+                reindexesInProgress++;
+            }
+
+            //swapped in before it stops being pending, so that its required properties are always detached
+            mappingRepresentation = next;
+            pendingRepresentation.compareAndSet(next, null);
+            representationsVersion.incrementAndGet();
+        }
+
+        LOG.info("Swapped in changed json mapping");
+
+        if (listener != null) {
+            listener.accept(previous, next);
+        }
+    }
+
+    /**
+     * Register a listener that re-indexes the entities affected by a change of the mapping. Until it calls
+     * {@link #changeReindexed()}, created entities also have the documents of the replaced mapping deleted.
+     *
+     * @param listener notified with the replaced and the new mapping, in the writer's thread, so it must not block.
+     */
+    public void setChangeListener(BiConsumer<DocumentMappingRepresentation, DocumentMappingRepresentation> listener) {
+        this.changeListener = listener;
+    }
+
+    /**
+     * Register how to read entities from the graph again. Operations queued before a changed mapping was loaded carry
+     * entities detached without the properties only the changed mapping reads; these are read again before being
+     * mapped. Without readers, or if an entity no longer exists, such properties are missing from the documents.
+     *
+     * @param nodeReader         reads a node detached with the {@link #getRequiredNodeProperties()} by ID,
+     *                           <code>null</code> if it doesn't exist.
+     * @param relationshipReader reads a relationship detached with the {@link #getRequiredRelationshipProperties()}
+     *                           by ID, <code>null</code> if it doesn't exist.
+     */
+    public void setEntityReaders(Function<Long, NodeExpressions> nodeReader, Function<Long, RelationshipExpressions> relationshipReader) {
+        this.nodeReader = nodeReader;
+        this.relationshipReader = relationshipReader;
+    }
+
+    /**
+     * Notify that the entities affected by a change of the mapping have been re-indexed.
+     */
+    public synchronized void changeReindexed() {
+        if (--reindexesInProgress <= 0) {
+            reindexesInProgress = 0;
+            retiredRepresentations.clear();
+            representationsVersion.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return <code>true</code> iff entities affected by a change of the mapping file should be re-indexed.
+     */
+    public boolean isReindexOnChange() {
+        return reindexOnChange;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.stop();
+            watcher = null;
+        }
     }
 
     public DocumentMappingRepresentation getMappingRepresentation() {
@@ -67,20 +233,28 @@ public class JsonFileMapping implements Mapping {
     }
 
     public List<BulkableAction<? extends JestResult>> createNode(NodeExpressions node) {
+        node = current(node);
+        if (!retiredRepresentations.isEmpty()) {
+            return mappingRepresentation.createOrUpdateNode(node, retiredRepresentations);
+        }
         return mappingRepresentation.createOrUpdateNode(node);
     }
 
     public List<BulkableAction<? extends JestResult>> createRelationship(RelationshipExpressions relationship) {
+        relationship = current(relationship);
+        if (!retiredRepresentations.isEmpty()) {
+            return mappingRepresentation.createOrUpdateRelationship(relationship, retiredRepresentations);
+        }
         return mappingRepresentation.createOrUpdateRelationship(relationship);
     }
 
     public List<BulkableAction<? extends JestResult>> updateRelationship(RelationshipExpressions before, RelationshipExpressions after) {
-        return mappingRepresentation.updateRelationshipAndRemoveOldIndices(before, after);
+        return mappingRepresentation.updateRelationshipAndRemoveOldIndices(before, current(after));
     }
 
     @Override
     public List<BulkableAction<? extends JestResult>> updateNode(NodeExpressions before, NodeExpressions after) {
-        return mappingRepresentation.updateNodeAndRemoveOldIndices(before, after);
+        return mappingRepresentation.updateNodeAndRemoveOldIndices(before, current(after));
     }
 
     public List<BulkableAction<? extends JestResult>> deleteNode(NodeExpressions node) {
@@ -106,8 +280,116 @@ public class JsonFileMapping implements Mapping {
         return mappingRepresentation.getDefaults().getKeyProperty() != null ? mappingRepresentation.getDefaults().getKeyProperty() : DEFAULT_KEY_PROPERTY;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Includes the properties read by a changed mapping that is about to be swapped in, or whose replaced version
+     * still has to delete documents.
+     */
+    @Override
+    public String[] getRequiredNodeProperties() {
+        return requiredProperties().node;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String[] getRequiredRelationshipProperties() {
+        return requiredProperties().relationship;
+    }
+
+    /**
+     * @return the node, read again if it lacks properties the mapping reads, i.e. was detached before the mapping changed.
+     */
+    private NodeExpressions current(NodeExpressions node) {
+        Function<Long, NodeExpressions> reader = nodeReader;
+        if (reader == null || !lacksProperties(node.getDetachedProperties(), requiredProperties().node)) {
+            return node;
+        }
+        NodeExpressions read = reader.apply(node.getGraphId());
+        return read != null ? read : node;
+    }
+
+    /**
+     * @return the relationship, read again if it lacks properties the mapping reads.
+     */
+    private RelationshipExpressions current(RelationshipExpressions relationship) {
+        Function<Long, RelationshipExpressions> reader = relationshipReader;
+        if (reader == null || !lacksProperties(relationship.getDetachedProperties(), requiredProperties().relationship)) {
+            return relationship;
+        }
+        RelationshipExpressions read = reader.apply(relationship.getGraphId());
+        return read != null ? read : relationship;
+    }
+
+    private static boolean lacksProperties(String[] detached, String[] required) {
+        if (detached == null || detached == required) { //all detached, or with the current required properties
+            return false;
+        }
+        return required == null || !new HashSet<>(Arrays.asList(detached)).containsAll(Arrays.asList(required));
+    }
+
+    private RequiredProperties requiredProperties() {
+        int version = representationsVersion.get();
+        RequiredProperties required = requiredProperties;
+        if (required == null || required.version != version) {
+            List<DocumentMappingRepresentation> representations = new ArrayList<>(retiredRepresentations);
+            representations.add(mappingRepresentation);
+            DocumentMappingRepresentation pending = pendingRepresentation.get();
+            if (pending != null) {
+                representations.add(pending);
+            }
+
+            required = new RequiredProperties(version, representations);
+            requiredProperties = required;
+        }
+        return required;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getIndices() {
+        return mappingRepresentation.getIndices();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<String> getNodeLabels() {
+        List<GraphDocumentMapper> mappers = mappingRepresentation.getNodeMappers();
+        return mappers != null ? GraphDocumentMapper.requiredLabels(mappers) : Collections.emptySet();
+    }
+
     @Override
     public boolean bypassInclusionPolicies() {
         return true;
     }
+
+    private static final class RequiredProperties {
+        private final int version;
+        private final String[] node;
+        private final String[] relationship;
+
+        private RequiredProperties(int version, List<DocumentMappingRepresentation> representations) {
+            this.version = version;
+            this.node = union(representations, DocumentMappingRepresentation::getRequiredNodeProperties);
+            this.relationship = union(representations, DocumentMappingRepresentation::getRequiredRelationshipProperties);
+        }
+
+        private static String[] union(List<DocumentMappingRepresentation> representations, Function<DocumentMappingRepresentation, Set<String>> required) {
+            Set<String> keys = new HashSet<>();
+            for (DocumentMappingRepresentation representation : representations) {
+                Set<String> read = required.apply(representation);
+                if (read == null) {
+                    return null;
+                }
+                keys.addAll(read);
+            }
+            return keys.toArray(new String[keys.size()]);
+        }
+    }
 }
@@ -25,11 +25,15 @@ import io.searchbox.action.BulkableAction;
 import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
 import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.logging.Log;
 
 import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public interface Mapping {
 
@@ -88,4 +92,62 @@ public interface Mapping {
      * @return boolean
      */
     boolean bypassInclusionPolicies();
+
+    /**
+     * Names of the indices documents are written to, e.g. to switch them to bulk load settings.
+     *
+     * @return index names. Indices whose names depend on the mapped entity (e.g. given by an expression) can't be known
+     * upfront and are not included.
+     */
+    default Set<String> getIndices() {
+        Set<String> indices = new LinkedHashSet<>();
+        for (String index : new String[]{getIndexFor(Node.class), getIndexFor(Relationship.class)}) {
+            if (index != null) {
+                indices.add(index);
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Labels of nodes mapped to documents, used to re-index only nodes with these labels through the label scan store.
+     *
+     * @return labels of which all mapped nodes have at least one, <code>null</code> if nodes without any of them can be
+     * mapped (the default).
+     */
+    default Set<String> getNodeLabels() {
+        return null;
+    }
+
+    /**
+     * Keys of the node properties that mapping reads, so that only those are copied from the graph when a node is
+     * created, updated, deleted or re-indexed.
+     *
+     * @return property keys, <code>null</code> if all properties may be read (the default).
+     */
+    default String[] getRequiredNodeProperties() {
+        return null;
+    }
+
+    /**
+     * Keys of the relationship properties that mapping reads, see {@link #getRequiredNodeProperties()}.
+     *
+     * @return property keys, <code>null</code> if all properties may be read (the default).
+     */
+    default String[] getRequiredRelationshipProperties() {
+        return null;
+    }
+
+    /**
+     * Called by the writer before it maps a batch of operations, so that changes of the mapping (e.g. a reloaded
+     * definition) only take effect between batches.
+     */
+    default void beforeBatch() {
+    }
+
+    /**
+     * Release resources held by the mapping when the writer stops.
+     */
+    default void shutdown() {
+    }
 }
@@ -16,11 +16,6 @@ package com.graphaware.module.es.mapping.expression;
 
 import com.graphaware.common.expression.EntityExpressions;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
-import java.util.TimeZone;
-
 public interface ConvertingEntityExpressions extends EntityExpressions {
 
     String DEFAULT_TIMEZONE = "UTC";
@@ -36,12 +31,7 @@ public interface ConvertingEntityExpressions extends EntityExpressions {
             throw new IllegalArgumentException("Node doesn't contains the " + propertyKey + " property");
         }
 
-        Long timestamp = Long.valueOf(getProperty(propertyKey).toString());
-        Date date = new Date(timestamp);
-        DateFormat dateFormat = new SimpleDateFormat(format);
-        dateFormat.setTimeZone(TimeZone.getTimeZone(timezone));
-
-        return dateFormat.format(date);
+        return TimeFormatters.format(PropertyConversions.toLong(getProperty(propertyKey)), format, timezone);
     }
 
     default String asString(String key) {
@@ -54,7 +44,7 @@ public interface ConvertingEntityExpressions extends EntityExpressions {
 
     default Long asLong(String key) {
         if (hasProperty(key)) {
-            return Long.valueOf(getProperty(key).toString());
+            return PropertyConversions.toLong(getProperty(key));
         }
 
         return null;
@@ -62,7 +52,7 @@ public interface ConvertingEntityExpressions extends EntityExpressions {
 
     default Integer asInt(String key) {
         if (hasProperty(key)) {
-            return Integer.parseInt(getProperty(key).toString());
+            return PropertyConversions.toInt(getProperty(key));
         }
 
         return null;
@@ -70,7 +60,7 @@ public interface ConvertingEntityExpressions extends EntityExpressions {
 
     default Float asFloat(String key) {
         if (hasProperty(key)) {
-            return Float.valueOf(getProperty(key).toString());
+            return PropertyConversions.toFloat(getProperty(key));
         }
 
         return null;
@@ -78,7 +68,39 @@ public interface ConvertingEntityExpressions extends EntityExpressions {
 
     default Double asDouble(String key) {
         if (hasProperty(key)) {
-            return Double.valueOf(getProperty(key).toString());
+            return PropertyConversions.toDouble(getProperty(key));
+        }
+
+        return null;
+    }
+
+    default long[] asLongArray(String key) {
+        if (hasProperty(key)) {
+            return PropertyConversions.toLongArray(getProperty(key));
+        }
+
+        return null;
+    }
+
+    default int[] asIntArray(String key) {
+        if (hasProperty(key)) {
+            return PropertyConversions.toIntArray(getProperty(key));
+        }
+
+        return null;
+    }
+
+    default float[] asFloatArray(String key) {
+        if (hasProperty(key)) {
+            return PropertyConversions.toFloatArray(getProperty(key));
+        }
+
+        return null;
+    }
+
+    default double[] asDoubleArray(String key) {
+        if (hasProperty(key)) {
+            return PropertyConversions.toDoubleArray(getProperty(key));
         }
 
         return null;
@@ -21,12 +21,23 @@ public class NodeExpressions extends GraphDetachedNode implements ConvertingEnti
 
     private static final String GRAPH_TYPE_NODE = "node";
 
+    private final String[] detachedProperties;
+
     public NodeExpressions(Node node) {
         super(node);
+        this.detachedProperties = null;
     }
 
     public NodeExpressions(Node node, String[] properties) {
         super(node, properties);
+        this.detachedProperties = properties;
+    }
+
+    /**
+     * @return keys of the properties that have been detached from the graph, <code>null</code> if all have.
+     */
+    public String[] getDetachedProperties() {
+        return detachedProperties;
     }
 
     public boolean allNodes() {
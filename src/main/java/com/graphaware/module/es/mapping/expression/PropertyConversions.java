@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.expression;
+
+import java.lang.reflect.Array;
+
+/**
+ * Conversions of property values used by {@link ConvertingEntityExpressions}. Values that are already numbers are
+ * converted directly; only other values (typically strings) are converted through their string representation. Arrays
+ * are converted element by element into primitive arrays, without boxing.
+ * <p/>
+ * Conversions to <code>long</code> and <code>int</code> never silently change a value: like parsing <code>"1.5"</code>
+ * or a number out of range, converting a floating point number with a fractional part, or a number that doesn't fit,
+ * fails with a {@link NumberFormatException}.
+ */
+final class PropertyConversions {
+
+    private PropertyConversions() {
+    }
+
+    static long toLong(Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return exactLong(((Number) value).doubleValue());
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return Long.parseLong(value.toString());
+    }
+
+    static int toInt(Object value) {
+        if (value instanceof Number) {
+            return exactInt(toLong(value));
+        }
+        return Integer.parseInt(value.toString());
+    }
+
+    static float toFloat(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).floatValue();
+        }
+        return Float.parseFloat(value.toString());
+    }
+
+    static double toDouble(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        }
+        return Double.parseDouble(value.toString());
+    }
+
+    static long[] toLongArray(Object value) {
+        if (value instanceof long[]) {
+            return (long[]) value;
+        }
+        if (value instanceof int[]) {
+            int[] ints = (int[]) value;
+            long[] result = new long[ints.length];
+            for (int i = 0; i < ints.length; i++) {
+                result[i] = ints[i];
+            }
+            return result;
+        }
+        if (!value.getClass().isArray()) {
+            return new long[]{toLong(value)};
+        }
+
+        long[] result = new long[Array.getLength(value)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = value instanceof Object[] ? toLong(((Object[]) value)[i]) : longAt(value, i);
+        }
+        return result;
+    }
+
+    static int[] toIntArray(Object value) {
+        if (value instanceof int[]) {
+            return (int[]) value;
+        }
+        if (value instanceof long[]) {
+            long[] longs = (long[]) value;
+            int[] result = new int[longs.length];
+            for (int i = 0; i < longs.length; i++) {
+                result[i] = exactInt(longs[i]);
+            }
+            return result;
+        }
+        if (!value.getClass().isArray()) {
+            return new int[]{toInt(value)};
+        }
+
+        int[] result = new int[Array.getLength(value)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = value instanceof Object[] ? toInt(((Object[]) value)[i]) : exactInt(longAt(value, i));
+        }
+        return result;
+    }
+
+    static float[] toFloatArray(Object value) {
+        if (value instanceof float[]) {
+            return (float[]) value;
+        }
+        if (!value.getClass().isArray()) {
+            return new float[]{toFloat(value)};
+        }
+
+        float[] result = new float[Array.getLength(value)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = value instanceof Object[] ? toFloat(((Object[]) value)[i]) : (float) Array.getDouble(value, i);
+        }
+        return result;
+    }
+
+    static double[] toDoubleArray(Object value) {
+        if (value instanceof double[]) {
+            return (double[]) value;
+        }
+        if (value instanceof long[]) {
+            long[] longs = (long[]) value;
+            double[] result = new double[longs.length];
+            for (int i = 0; i < longs.length; i++) {
+                result[i] = longs[i];
+            }
+            return result;
+        }
+        if (!value.getClass().isArray()) {
+            return new double[]{toDouble(value)};
+        }
+
+        double[] result = new double[Array.getLength(value)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = value instanceof Object[] ? toDouble(((Object[]) value)[i]) : Array.getDouble(value, i);
+        }
+        return result;
+    }
+
+    /**
+     * Element of a primitive array as a long.
+     */
+    private static long longAt(Object array, int index) {
+        if (array instanceof double[] || array instanceof float[]) {
+            return exactLong(Array.getDouble(array, index));
+        }
+        return Array.getLong(array, index);
+    }
+
+    private static long exactLong(double value) {
+        if (value != Math.rint(value) || value < Long.MIN_VALUE || value >= -(double) Long.MIN_VALUE) {
+            throw new NumberFormatException("Value " + value + " can't be converted to a long without changing it");
+        }
+        return (long) value;
+    }
+
+    private static int exactInt(long value) {
+        if (value != (int) value) {
+            throw new NumberFormatException("Value " + value + " can't be converted to an int without changing it");
+        }
+        return (int) value;
+    }
+}
@@ -21,12 +21,23 @@ public class RelationshipExpressions extends GraphDetachedRelationship implement
 
     private static final String GRAPH_TYPE_RELATIONSHIP = "relationship";
 
+    private final String[] detachedProperties;
+
     public RelationshipExpressions(Relationship relationship) {
         super(relationship);
+        this.detachedProperties = null;
     }
 
     public RelationshipExpressions(Relationship relationship, String[] properties) {
         super(relationship, properties);
+        this.detachedProperties = properties;
+    }
+
+    /**
+     * @return keys of the properties that have been detached from the graph, <code>null</code> if all have.
+     */
+    public String[] getDetachedProperties() {
+        return detachedProperties;
     }
 
     public boolean allRelationships() {
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.expression;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.SignStyle;
+import java.time.format.TextStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalField;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Cache of thread-safe formatters of timestamps, keyed by pattern and time zone, used by
+ * {@link ConvertingEntityExpressions#formatTime(String, String, String)}.
+ * <p/>
+ * Patterns are {@link java.text.SimpleDateFormat} ones, translated to equivalent {@link DateTimeFormatter}s, whose
+ * own pattern letters mean different things (e.g. <code>u</code> is the year, <code>S</code> a fraction of second).
+ * <p/>
+ * Patterns that only depend on the date (e.g. <code>yyyy-MM-dd</code>, typical for time-partitioned index names)
+ * remember the last formatted day: timestamps falling within it are formatted by comparing them to the day's bounds,
+ * without any allocation.
+ */
+final class TimeFormatters {
+
+    private static final String DATE_ONLY_LETTERS = "GyYMLwWDdFEu";
+    private static final int MAX_CACHED = 1000;
+    private static final ZoneId GMT = ZoneId.of("GMT");
+
+    private static final ConcurrentMap<String, TimeFormatter> FORMATTERS = new ConcurrentHashMap<>();
+
+    private TimeFormatters() {
+    }
+
+    /**
+     * Format a timestamp.
+     *
+     * @param timestamp ms since epoch.
+     * @param pattern   {@link java.text.SimpleDateFormat} pattern.
+     * @param timezone  time zone ID. Unknown IDs fall back to GMT.
+     * @return formatted timestamp.
+     * @throws IllegalArgumentException if the pattern is invalid.
+     */
+    static String format(long timestamp, String pattern, String timezone) {
+        String key = pattern + '\u0000' + timezone;
+
+        TimeFormatter formatter = FORMATTERS.get(key);
+        if (formatter == null) {
+            if (FORMATTERS.size() >= MAX_CACHED) {
+                FORMATTERS.clear(); //patterns built from data, don't grow without bounds
+            }
+            formatter = FORMATTERS.computeIfAbsent(key, k -> new TimeFormatter(pattern, zone(timezone)));
+        }
+
+        return formatter.format(timestamp);
+    }
+
+    private static ZoneId zone(String timezone) {
+        try {
+            return ZoneId.of(timezone, ZoneId.SHORT_IDS);
+        } catch (DateTimeException e) {
+            return GMT; //same as java.util.TimeZone
+        }
+    }
+
+    /**
+     * Translate a {@link java.text.SimpleDateFormat} pattern, formatting the same text for the default locale.
+     *
+     * @param pattern to translate.
+     * @return formatter.
+     * @throws IllegalArgumentException if the pattern is invalid.
+     */
+    static DateTimeFormatter translate(String pattern) {
+        DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+        WeekFields weeks = WeekFields.of(Locale.getDefault(Locale.Category.FORMAT));
+
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+                int end = pattern.indexOf('\'', i + 1);
+                if (end == i + 1) {
+                    builder.appendLiteral('\''); //escaped quote
+                    i += 2;
+                    continue;
+                }
+
+                StringBuilder literal = new StringBuilder();
+                while (true) {
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Unterminated quote in pattern " + pattern);
+                    }
+                    literal.append(pattern, i + 1, end);
+                    i = end + 1;
+                    if (i < pattern.length() && pattern.charAt(i) == '\'') { //escaped quote within quotes
+                        literal.append('\'');
+                        end = pattern.indexOf('\'', i + 1);
+                        continue;
+                    }
+                    break;
+                }
+                builder.appendLiteral(literal.toString());
+                continue;
+            }
+
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                builder.appendLiteral(c);
+                i++;
+                continue;
+            }
+
+            int count = 1;
+            while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                count++;
+            }
+            i += count;
+
+            switch (c) {
+                case 'G':
+                    builder.appendText(ChronoField.ERA, TextStyle.SHORT);
+                    break;
+                case 'y':
+                    year(builder, ChronoField.YEAR_OF_ERA, count);
+                    break;
+                case 'Y':
+                    year(builder, weeks.weekBasedYear(), count);
+                    break;
+                case 'M':
+                case 'L':
+                    if (count >= 3) {
+                        builder.appendText(ChronoField.MONTH_OF_YEAR, count >= 4 ? TextStyle.FULL : TextStyle.SHORT);
+                    } else {
+                        number(builder, ChronoField.MONTH_OF_YEAR, count);
+                    }
+                    break;
+                case 'w':
+                    number(builder, weeks.weekOfWeekBasedYear(), count);
+                    break;
+                case 'W':
+                    number(builder, weeks.weekOfMonth(), count);
+                    break;
+                case 'D':
+                    number(builder, ChronoField.DAY_OF_YEAR, count);
+                    break;
+                case 'd':
+                    number(builder, ChronoField.DAY_OF_MONTH, count);
+                    break;
+                case 'F':
+                    number(builder, ChronoField.ALIGNED_WEEK_OF_MONTH, count);
+                    break;
+                case 'E':
+                    builder.appendText(ChronoField.DAY_OF_WEEK, count >= 4 ? TextStyle.FULL : TextStyle.SHORT);
+                    break;
+                case 'u':
+                    number(builder, ChronoField.DAY_OF_WEEK, count); //1 is Monday in both
+                    break;
+                case 'a':
+                    builder.appendText(ChronoField.AMPM_OF_DAY, TextStyle.SHORT);
+                    break;
+                case 'H':
+                    number(builder, ChronoField.HOUR_OF_DAY, count);
+                    break;
+                case 'k':
+                    number(builder, ChronoField.CLOCK_HOUR_OF_DAY, count);
+                    break;
+                case 'K':
+                    number(builder, ChronoField.HOUR_OF_AMPM, count);
+                    break;
+                case 'h':
+                    number(builder, ChronoField.CLOCK_HOUR_OF_AMPM, count);
+                    break;
+                case 'm':
+                    number(builder, ChronoField.MINUTE_OF_HOUR, count);
+                    break;
+                case 's':
+                    number(builder, ChronoField.SECOND_OF_MINUTE, count);
+                    break;
+                case 'S':
+                    number(builder, ChronoField.MILLI_OF_SECOND, count);
+                    break;
+                case 'z':
+                    builder.appendZoneText(count >= 4 ? TextStyle.FULL : TextStyle.SHORT);
+                    break;
+                case 'Z':
+                    builder.appendOffset("+HHMM", "+0000");
+                    break;
+                case 'X':
+                    if (count > 3) {
+                        throw new IllegalArgumentException("Invalid ISO 8601 time zone in pattern " + pattern);
+                    }
+                    builder.appendOffset(count == 1 ? "+HH" : count == 2 ? "+HHMM" : "+HH:MM", "Z");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Illegal pattern character '" + c + "' in pattern " + pattern);
+            }
+        }
+
+        return builder.toFormatter(Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    private static void year(DateTimeFormatterBuilder builder, TemporalField field, int count) {
+        if (count == 2) {
+            builder.appendValueReduced(field, 2, 2, 2000); //last two digits
+        } else {
+            number(builder, field, count);
+        }
+    }
+
+    private static void number(DateTimeFormatterBuilder builder, TemporalField field, int count) {
+        int width = Math.min(count, 19);
+        builder.appendValue(field, width, 19, SignStyle.NORMAL);
+    }
+
+    static boolean isDateOnly(String pattern) {
+        boolean quoted = false;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && Character.isLetter(c) && DATE_ONLY_LETTERS.indexOf(c) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class TimeFormatter {
+        private final DateTimeFormatter formatter;
+        private final ZoneId zone;
+        private final boolean dateOnly;
+        private volatile FormattedDay lastDay;
+
+        private TimeFormatter(String pattern, ZoneId zone) {
+            this.formatter = translate(pattern).withZone(zone);
+            this.zone = zone;
+            this.dateOnly = isDateOnly(pattern);
+        }
+
+        private String format(long timestamp) {
+            if (!dateOnly) {
+                return formatter.format(Instant.ofEpochMilli(timestamp));
+            }
+
+            FormattedDay day = lastDay;
+            if (day != null && timestamp >= day.start && timestamp < day.end) {
+                return day.text;
+            }
+
+            LocalDate date = Instant.ofEpochMilli(timestamp).atZone(zone).toLocalDate();
+            day = new FormattedDay(
+                    date.atStartOfDay(zone).toInstant().toEpochMilli(),
+                    date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli(),
+                    formatter.format(date));
+            lastDay = day;
+            return day.text;
+        }
+    }
+
+    private static final class FormattedDay {
+        private final long start;
+        private final long end;
+        private final String text;
+
+        private FormattedDay(long start, long end, String text) {
+            this.start = start;
+            this.end = end;
+            this.text = text;
+        }
+    }
+}
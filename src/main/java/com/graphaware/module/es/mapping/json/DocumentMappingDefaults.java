@@ -18,6 +18,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class DocumentMappingDefaults {
 
@@ -73,4 +74,19 @@ public class DocumentMappingDefaults {
     public boolean excludeEmptyProperties() {
         return null != excludeEmptyProperties ? excludeEmptyProperties : DEFAULT_SKIP_NULL_PROPERTIES;
     }
+
+    /**
+     * @param other defaults to compare with, can be <code>null</code>.
+     * @return <code>true</code> iff the other defaults are the same, i.e. lead to the same documents.
+     */
+    public boolean isSameAs(DocumentMappingDefaults other) {
+        return other != null
+                && Objects.equals(keyProperty, other.keyProperty)
+                && Objects.equals(defaultNodesIndex, other.defaultNodesIndex)
+                && Objects.equals(defaultRelationshipsIndex, other.defaultRelationshipsIndex)
+                && includeRemainingProperties() == other.includeRemainingProperties()
+                && getBlacklistedNodeProperties().equals(other.getBlacklistedNodeProperties())
+                && getBlacklistedRelationshipProperties().equals(other.getBlacklistedRelationshipProperties())
+                && excludeEmptyProperties() == other.excludeEmptyProperties();
+    }
 }
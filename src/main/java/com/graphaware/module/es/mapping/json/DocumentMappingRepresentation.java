@@ -24,7 +24,12 @@ import io.searchbox.core.Delete;
 import io.searchbox.core.Index;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import org.neo4j.logging.Log;
 
 public class DocumentMappingRepresentation {
@@ -39,6 +44,128 @@ public class DocumentMappingRepresentation {
     @JsonProperty("relationship_mappings")
     private List<GraphDocumentMapper> relationshipMappers;
 
+    /**
+     * Parse the expressions of all mappers upfront.
+     *
+     * @param compile whether to compile the expressions to bytecode, see {@link GraphDocumentMapper#prepare(boolean, String)}.
+     * @return <code>true</code> iff all expressions are valid.
+     */
+    public boolean prepare(boolean compile) {
+        String nodesIndex = defaults != null ? defaults.getDefaultNodesIndex() : null;
+        String relationshipsIndex = defaults != null ? defaults.getDefaultRelationshipsIndex() : null;
+        return prepare(nodeMappers, compile, nodesIndex) & prepare(relationshipMappers, compile, relationshipsIndex);
+    }
+
+    private static boolean prepare(List<GraphDocumentMapper> mappers, boolean compile, String defaultIndex) {
+        boolean valid = true;
+        if (mappers != null) {
+            for (GraphDocumentMapper mapper : mappers) {
+                valid &= mapper.prepare(compile, defaultIndex);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Find the node mappers that produce different documents than in a previous version of the mapping.
+     *
+     * @param previous version of the mapping.
+     * @return mappers of both versions that don't have an identical counterpart in the other one. All mappers if the
+     * defaults have changed.
+     */
+    public List<GraphDocumentMapper> getChangedNodeMappers(DocumentMappingRepresentation previous) {
+        return changedMappers(nodeMappers, previous.nodeMappers, previous);
+    }
+
+    /**
+     * Find the relationship mappers that produce different documents than in a previous version of the mapping.
+     *
+     * @param previous version of the mapping.
+     * @return mappers of both versions that don't have an identical counterpart in the other one. All mappers if the
+     * defaults have changed.
+     */
+    public List<GraphDocumentMapper> getChangedRelationshipMappers(DocumentMappingRepresentation previous) {
+        return changedMappers(relationshipMappers, previous.relationshipMappers, previous);
+    }
+
+    private List<GraphDocumentMapper> changedMappers(List<GraphDocumentMapper> current, List<GraphDocumentMapper> old, DocumentMappingRepresentation previous) {
+        current = current != null ? current : Collections.emptyList();
+        old = old != null ? old : Collections.emptyList();
+
+        boolean sameDefaults = defaults != null ? defaults.isSameAs(previous.defaults) : previous.defaults == null;
+
+        List<GraphDocumentMapper> changed = new ArrayList<>();
+        for (GraphDocumentMapper mapper : current) {
+            if (!sameDefaults || old.stream().noneMatch(mapper::isSameAs)) {
+                changed.add(mapper);
+            }
+        }
+        for (GraphDocumentMapper mapper : old) {
+            if (!sameDefaults || current.stream().noneMatch(mapper::isSameAs)) {
+                changed.add(mapper);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return keys of the node properties that mapping nodes reads, <code>null</code> if all properties may be read.
+     */
+    public Set<String> getRequiredNodeProperties() {
+        return requiredProperties(nodeMappers, defaults.getDefaultNodesIndex());
+    }
+
+    /**
+     * @return keys of the relationship properties that mapping relationships reads, <code>null</code> if all properties
+     * (or properties of their nodes) may be read.
+     */
+    public Set<String> getRequiredRelationshipProperties() {
+        return requiredProperties(relationshipMappers, defaults.getDefaultRelationshipsIndex());
+    }
+
+    private Set<String> requiredProperties(List<GraphDocumentMapper> mappers, String defaultIndex) {
+        if (defaults.includeRemainingProperties()) {
+            return null;
+        }
+
+        Set<String> keys = new HashSet<>();
+        if (defaults.getKeyProperty() != null) {
+            keys.add(defaults.getKeyProperty());
+        }
+        if (mappers != null) {
+            for (GraphDocumentMapper mapper : mappers) {
+                Set<String> read = mapper.getReadProperties(defaultIndex);
+                if (read == null) {
+                    return null;
+                }
+                keys.addAll(read);
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * @return names of the indices the mappers write to, except those given by expressions.
+     */
+    public Set<String> getIndices() {
+        Set<String> indices = new LinkedHashSet<>();
+        addIndices(indices, nodeMappers, defaults.getDefaultNodesIndex());
+        addIndices(indices, relationshipMappers, defaults.getDefaultRelationshipsIndex());
+        return indices;
+    }
+
+    private static void addIndices(Set<String> indices, List<GraphDocumentMapper> mappers, String defaultIndex) {
+        if (mappers == null) {
+            return;
+        }
+        for (GraphDocumentMapper mapper : mappers) {
+            String index = mapper.getStaticIndex(defaultIndex);
+            if (index != null) {
+                indices.add(index);
+            }
+        }
+    }
+
     public DocumentMappingDefaults getDefaults() {
         return defaults;
     }
@@ -88,6 +215,59 @@ public class DocumentMappingRepresentation {
         return actions;
     }
 
+    /**
+     * Create or update a node's documents and delete the documents that previous versions of the mapping produced for
+     * it, which this version doesn't produce any more.
+     *
+     * @param node     node to index.
+     * @param previous versions of the mapping that the node may have been indexed with.
+     * @return actions.
+     */
+    public List<BulkableAction<? extends JestResult>> createOrUpdateNode(NodeExpressions node, Collection<DocumentMappingRepresentation> previous) {
+        List<BulkableAction<? extends JestResult>> actions = createOrUpdateNode(node);
+        Set<String> documents = documentKeys(getNodeMappingRepresentations(node, defaults));
+        for (DocumentMappingRepresentation representation : previous) {
+            addObsoleteDeletes(actions, documents, representation.getNodeMappingRepresentations(node, representation.defaults));
+        }
+        return actions;
+    }
+
+    /**
+     * Create or update a relationship's documents and delete the documents that previous versions of the mapping
+     * produced for it, which this version doesn't produce any more.
+     *
+     * @param relationship relationship to index.
+     * @param previous     versions of the mapping that the relationship may have been indexed with.
+     * @return actions.
+     */
+    public List<BulkableAction<? extends JestResult>> createOrUpdateRelationship(RelationshipExpressions relationship, Collection<DocumentMappingRepresentation> previous) {
+        List<BulkableAction<? extends JestResult>> actions = createOrUpdateRelationship(relationship);
+        Set<String> documents = documentKeys(getRelationshipMappingRepresentations(relationship, defaults));
+        for (DocumentMappingRepresentation representation : previous) {
+            addObsoleteDeletes(actions, documents, representation.getRelationshipMappingRepresentations(relationship, representation.defaults));
+        }
+        return actions;
+    }
+
+    private Set<String> documentKeys(List<DocumentRepresentation> documents) {
+        Set<String> keys = new HashSet<>();
+        for (DocumentRepresentation document : documents) {
+            keys.add(document.getIndex() + "_" + document.getType() + "_" + document.getId());
+        }
+        return keys;
+    }
+
+    /**
+     * @param handled keys of documents already created or deleted, the obsolete documents are added to them.
+     */
+    private void addObsoleteDeletes(List<BulkableAction<? extends JestResult>> actions, Set<String> handled, List<DocumentRepresentation> obsolete) {
+        for (DocumentRepresentation document : obsolete) {
+            if (handled.add(document.getIndex() + "_" + document.getType() + "_" + document.getId())) {
+                actions.add(new Delete.Builder(document.getId()).index(document.getIndex()).type(document.getType()).build());
+            }
+        }
+    }
+
     public List<BulkableAction<? extends JestResult>> getDeleteRelationshipActions(RelationshipExpressions relationship) {
         List<BulkableAction<? extends JestResult>> actions = new ArrayList<>();
 
@@ -17,18 +17,37 @@ import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.common.representation.DetachedEntity;
 import com.graphaware.module.es.mapping.expression.NodeExpressions;
 import com.graphaware.module.es.mapping.expression.RelationshipExpressions;
+import com.graphaware.module.es.util.LabelConditions;
 import org.neo4j.logging.Log;
 import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.springframework.expression.ParseException;
 
 public class GraphDocumentMapper {
 
     private static final Log LOG = LoggerFactory.getLogger(GraphDocumentMapper.class);
 
+    private static final SpelExpressionParser INTERPRETING_PARSER = new SpelExpressionParser();
+
+    //compiled classes must see the expression root objects, which live in the plugin class loader
+    private static final SpelExpressionParser COMPILING_PARSER = new SpelExpressionParser(
+            new SpelParserConfiguration(SpelCompilerMode.MIXED, GraphDocumentMapper.class.getClassLoader()));
+
+    private String name;
+
     private String condition;
 
     private String index;
@@ -37,14 +56,22 @@ public class GraphDocumentMapper {
 
     private Map<String, String> properties;
     
-    private SpelExpressionParser expressionParser;
+    private volatile SpelExpressionParser expressionParser;
     
-    //Some cache to avoid continous parsing
-    private Map<String, Expression> expressions;
-    private Expression typeExpression;
-    private Map<String, Expression> indexsExpression;
+    //Some cache to avoid continous parsing, used by the writer and re-indexing threads
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+    private volatile Expression conditionExpression;
+    private volatile Expression typeExpression;
+    private final Map<String, Expression> indexsExpression = new ConcurrentHashMap<>();
     
     
+    /**
+     * @return optional name of the mapper, used to refer to it e.g. when re-indexing. Can be <code>null</code>.
+     */
+    public String getName() {
+        return name;
+    }
+
     public String getCondition() {
         return condition;
     }
@@ -53,6 +80,19 @@ public class GraphDocumentMapper {
         return index;
     }
 
+    /**
+     * @param defaultIndex index used when the mapper doesn't define one.
+     * @return name of the index this mapper writes to, <code>null</code> if it's an expression evaluated per entity.
+     */
+    public String getStaticIndex(String defaultIndex) {
+        String indexName = index != null ? index : defaultIndex;
+        return indexName == null || isExpression(indexName) ? null : indexName;
+    }
+
+    private static boolean isExpression(String value) {
+        return value.contains("(") && value.contains(")");
+    }
+
     public String getType() {
         return type;
     }
@@ -61,13 +101,105 @@ public class GraphDocumentMapper {
         return properties;
     }
 
+    /**
+     * Parse all expressions of this mapper upfront, rather than on first use.
+     *
+     * @param compile      whether to compile the expressions to bytecode once they've been evaluated a few times. Compiled
+     *                     expressions that fail fall back to interpretation, so the results are the same either way.
+     * @param defaultIndex index used when the mapper doesn't define one, possibly an expression too.
+     * @return <code>true</code> iff all expressions are valid.
+     */
+    public boolean prepare(boolean compile, String defaultIndex) {
+        expressionParser = compile ? COMPILING_PARSER : INTERPRETING_PARSER;
+        expressions.clear();
+        indexsExpression.clear();
+        conditionExpression = null;
+        typeExpression = null;
+
+        try {
+            if (condition != null) {
+                getConditionExpression();
+            }
+            if (properties != null) {
+                for (String key : properties.keySet()) {
+                    getExpression(key);
+                }
+            }
+            getTypeExpression();
+            getIndexExpression(defaultIndex);
+            return true;
+        } catch (ParseException e) {
+            LOG.error("Invalid expression in mapping with condition %s: %s", condition, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * @param other mapper to compare with.
+     * @return <code>true</code> iff the other mapper has the same definition, i.e. produces the same documents.
+     */
+    public boolean isSameAs(GraphDocumentMapper other) {
+        return Objects.equals(condition, other.condition)
+                && Objects.equals(index, other.index)
+                && Objects.equals(type, other.type)
+                && Objects.equals(properties, other.properties);
+    }
+
+    /**
+     * @param mappers node mappers.
+     * @return labels of which all nodes supported by any of the mappers have at least one, <code>null</code> if the
+     * conditions of the mappers don't tell, see {@link LabelConditions}.
+     */
+    public static Set<String> requiredLabels(Collection<GraphDocumentMapper> mappers) {
+        List<String> conditions = new ArrayList<>();
+        for (GraphDocumentMapper mapper : mappers) {
+            if (mapper.getCondition() != null) { //mappers without condition don't support anything
+                conditions.add(mapper.getCondition());
+            }
+        }
+        return LabelConditions.requiredLabels(conditions);
+    }
+
+    /**
+     * @param defaultIndex index used when the mapper doesn't define one.
+     * @return keys of the properties read by the expressions of this mapper, <code>null</code> if they may read any
+     * property. Doesn't include the key property nor remaining properties, see {@link DocumentMappingDefaults}.
+     */
+    public Set<String> getReadProperties(String defaultIndex) {
+        List<String> expressions = new ArrayList<>();
+        expressions.add(condition);
+        if (properties != null) {
+            expressions.addAll(properties.values());
+        }
+        try {
+            if (getTypeExpression() != null) {
+                expressions.add(type);
+            }
+            if (getIndexExpression(defaultIndex) != null) {
+                expressions.add(index != null ? index : defaultIndex);
+            }
+        } catch (ParseException e) {
+            return null;
+        }
+
+        Set<String> keys = new LinkedHashSet<>();
+        for (String expression : expressions) {
+            Set<String> read = PropertyReferences.of(expression);
+            if (read == null) {
+                return null;
+            }
+            keys.addAll(read);
+        }
+        return keys;
+    }
+
     public boolean supports(DetachedEntity element) {
         if (null == condition) {
             return false;
         }
 
         try {
-            Expression expression = getExpressionParser().parseExpression(condition);
+            Expression expression = getConditionExpression();
 
             if (element instanceof NodeExpressions) {
                 return (Boolean) expression.getValue(element);
@@ -197,16 +329,22 @@ public class GraphDocumentMapper {
 
     private SpelExpressionParser getExpressionParser() {
         if (null == expressionParser) {
-            expressionParser = new SpelExpressionParser();
+            expressionParser = INTERPRETING_PARSER;
         }
 
         return expressionParser;
     }        
     
-    private Expression getExpression(String key) {
-        if (null == expressions) {
-            expressions = new HashMap<>();
+    Expression getConditionExpression() throws ParseException {
+        Expression expression = conditionExpression;
+        if (expression == null) {
+            expression = getExpressionParser().parseExpression(condition);
+            conditionExpression = expression;
         }
+        return expression;
+    }
+
+    private Expression getExpression(String key) {
         if (expressions.containsKey(key)) {
             return expressions.get(key);
         } else {
@@ -231,10 +369,7 @@ public class GraphDocumentMapper {
     
     private Expression getIndexExpression(String defaultIndex) throws ParseException {
         String indexName = index != null ? index : defaultIndex;
-        if (indexName != null && indexName.contains("(") && indexName.contains(")")) {
-            if (null == indexsExpression) {
-                indexsExpression = new HashMap<>();
-            }
+        if (indexName != null && isExpression(indexName)) {
             if (indexsExpression.containsKey(indexName)) {
                 return indexsExpression.get(indexName);
             }
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.json;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+/**
+ * Watches a mapping file in a background thread and notifies a listener when it has changed. Editors and deployment
+ * tools often write a file in several steps, so the listener is only notified once the file hasn't changed for a while.
+ */
+public class MappingFileWatcher {
+
+    private static final Log LOG = LoggerFactory.getLogger(MappingFileWatcher.class);
+
+    private static final long QUIET_PERIOD_MS = 500;
+
+    private final Path file;
+    private final Consumer<Path> listener;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Create a new watcher.
+     *
+     * @param file     to watch.
+     * @param listener notified in the watcher's thread when the file has changed.
+     * @throws IOException if the file's directory can't be watched.
+     */
+    public MappingFileWatcher(Path file, Consumer<Path> listener) throws IOException {
+        this.file = file.toAbsolutePath();
+        this.listener = listener;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.file.getParent().register(watchService, ENTRY_CREATE, ENTRY_MODIFY); //atomic replacements create the file
+        this.thread = new Thread(this::watch, "Elasticsearch mapping watcher");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        thread.start();
+        LOG.info("Watching json mapping file %s for changes", file);
+    }
+
+    public void stop() {
+        thread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            LOG.warn("Unable to close mapping file watcher: %s", e.getMessage());
+        }
+    }
+
+    private void watch() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (!concernsFile(watchService.take())) {
+                    continue;
+                }
+
+                WatchKey key;
+                while ((key = watchService.poll(QUIET_PERIOD_MS, TimeUnit.MILLISECONDS)) != null) {
+                    concernsFile(key);
+                }
+
+                try {
+                    listener.accept(file);
+                } catch (RuntimeException e) {
+                    LOG.error("Error while processing changed json mapping file " + file, e);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //stopped
+        }
+    }
+
+    private boolean concernsFile(WatchKey key) {
+        boolean concerns = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (file.getFileName().equals(event.context())) {
+                concerns = true;
+            }
+        }
+        key.reset();
+        return concerns;
+    }
+}
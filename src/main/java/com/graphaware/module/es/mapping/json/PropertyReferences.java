@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.json;
+
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Finds the keys of the properties that mapping expressions read, so that only those need to be copied from the graph.
+ * <p/>
+ * Property accessors (e.g. <code>getProperty('name')</code> or <code>asLong('time')</code>) are understood when the key
+ * is a string literal. Expressions that read properties any other way (e.g. <code>getProperty(...)</code> with a
+ * computed key, <code>properties</code>, or properties of the start and end nodes of a relationship) may read any
+ * property.
+ */
+final class PropertyReferences {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+
+    private static final Set<String> PROPERTY_ACCESSORS = new HashSet<>(Arrays.asList(
+            "getProperty", "hasProperty", "formatTime", "asString", "asLong", "asInt", "asFloat", "asDouble",
+            "asLongArray", "asIntArray", "asFloatArray", "asDoubleArray"));
+
+    private static final Set<String> ANY_PROPERTY = new HashSet<>(Arrays.asList(
+            "properties", "getProperties", "startNode", "getStartNode", "endNode", "getEndNode"));
+
+    private PropertyReferences() {
+    }
+
+    /**
+     * @param expression SpEL expression, can be <code>null</code>.
+     * @return keys of the properties the expression reads, <code>null</code> if it may read any property or can't be
+     * parsed.
+     */
+    static Set<String> of(String expression) {
+        Set<String> keys = new LinkedHashSet<>();
+        if (expression == null) {
+            return keys;
+        }
+
+        try {
+            return collect(PARSER.parseRaw(expression).getAST(), keys) ? keys : null;
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    private static boolean collect(SpelNode node, Set<String> keys) {
+        if (node instanceof VariableReference) {
+            return false; //e.g. #root passed to a function
+        }
+
+        if (node instanceof PropertyOrFieldReference && ANY_PROPERTY.contains(((PropertyOrFieldReference) node).getName())) {
+            return false;
+        }
+
+        if (node instanceof MethodReference) {
+            String name = ((MethodReference) node).getName();
+            if (ANY_PROPERTY.contains(name)) {
+                return false;
+            }
+            if (PROPERTY_ACCESSORS.contains(name)) {
+                if (node.getChildCount() == 0 || !(node.getChild(0) instanceof StringLiteral)) {
+                    return false;
+                }
+                keys.add(String.valueOf(((StringLiteral) node.getChild(0)).getLiteralValue().getValue()));
+            }
+        }
+
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (!collect(node.getChild(i), keys)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
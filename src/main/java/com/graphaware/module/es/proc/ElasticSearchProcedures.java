@@ -18,17 +18,30 @@ package com.graphaware.module.es.proc;
 
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.module.es.ElasticSearchModule;
+import com.graphaware.module.es.ReindexScope;
 import com.graphaware.module.es.proc.result.JsonSearchResult;
+import com.graphaware.module.es.proc.result.NodeMultiSearchResult;
 import com.graphaware.module.es.proc.result.NodeSearchResult;
+import com.graphaware.module.es.proc.result.RelationshipMultiSearchResult;
 import com.graphaware.module.es.proc.result.RelationshipSearchResult;
+import com.graphaware.module.es.proc.result.StatisticResult;
 import com.graphaware.module.es.proc.result.StatusResult;
+import com.graphaware.module.es.search.SearchMatch;
 import com.graphaware.module.es.search.Searcher;
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static com.graphaware.runtime.RuntimeRegistry.getStartedRuntime;
@@ -80,6 +93,42 @@ public class ElasticSearchProcedures {
         });
     }
 
+    @Procedure(value = "ga.es.queryNodeFiltered", mode = Mode.WRITE)
+    public Stream<NodeSearchResult> queryNodeFiltered(@Name("query") String query, @Name("labels") List<String> labels, @Name("limit") long limit) {
+        Label[] required = labels.stream().map(Label::label).toArray(Label[]::new);
+        Predicate<Node> filter = node -> required.length == 0 || Arrays.stream(required).anyMatch(node::hasLabel);
+
+        return getSearcher(database).search(query, Node.class, filter, (int) limit).stream().map(match -> {
+            return new NodeSearchResult(match.getItem(), match.score);
+        });
+    }
+
+    @Procedure(value = "ga.es.queryRelationshipFiltered", mode = Mode.WRITE)
+    public Stream<RelationshipSearchResult> queryRelationshipFiltered(@Name("query") String query, @Name("types") List<String> types, @Name("limit") long limit) {
+        Set<String> required = new HashSet<>(types);
+        Predicate<Relationship> filter = relationship -> required.isEmpty() || required.contains(relationship.getType().name());
+
+        return getSearcher(database).search(query, Relationship.class, filter, (int) limit).stream().map(match -> {
+            return new RelationshipSearchResult(match.getItem(), match.score);
+        });
+    }
+
+    @Procedure(value = "ga.es.queryNodeMulti", mode = Mode.WRITE)
+    public Stream<NodeMultiSearchResult> queryNodeMulti(@Name("queries") List<String> queries) {
+        List<List<SearchMatch<Node>>> matches = getSearcher(database).multiSearch(queries, Node.class);
+        return IntStream.range(0, matches.size()).boxed().flatMap(index -> matches.get(index).stream().map(match -> {
+            return new NodeMultiSearchResult(index, match.getItem(), match.score);
+        }));
+    }
+
+    @Procedure(value = "ga.es.queryRelationshipMulti", mode = Mode.WRITE)
+    public Stream<RelationshipMultiSearchResult> queryRelationshipMulti(@Name("queries") List<String> queries) {
+        List<List<SearchMatch<Relationship>>> matches = getSearcher(database).multiSearch(queries, Relationship.class);
+        return IntStream.range(0, matches.size()).boxed().flatMap(index -> matches.get(index).stream().map(match -> {
+            return new RelationshipMultiSearchResult(index, match.getItem(), match.score);
+        }));
+    }
+
     @Procedure(value = "ga.es.queryNodeRaw", mode = Mode.WRITE)
     public Stream<JsonSearchResult> queryNodeRaw(@Name("query") String query) {
         return Stream.of(new JsonSearchResult(getSearcher(database).rawSearch(query, Node.class)));
@@ -105,6 +154,31 @@ public class ElasticSearchProcedures {
         return Stream.of(new StatusResult(getModule(database).isReindexCompleted()));
     }
 
+    @Procedure("ga.es.awaitReplication")
+    public Stream<StatusResult> awaitReplication(@Name("timeout") long timeout, @Name(value = "refresh", defaultValue = "false") boolean refresh) {
+        return Stream.of(new StatusResult(getModule(database).awaitReplication(timeout, refresh)));
+    }
+
+    @Procedure("ga.es.reindex")
+    public Stream<StatisticResult> reindex(@Name(value = "scope", defaultValue = "{}") Map<String, Object> scope) {
+        return getModule(database).reindex(database, ReindexScope.fromMap(scope)).entrySet().stream().map(entry -> new StatisticResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure("ga.es.reconcile")
+    public Stream<StatisticResult> reconcile() {
+        return getModule(database).reconcile(database).entrySet().stream().map(entry -> new StatisticResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure("ga.es.checkConsistency")
+    public Stream<StatisticResult> checkConsistency(@Name(value = "repair", defaultValue = "true") boolean repair) {
+        return getModule(database).checkConsistency(database, repair).entrySet().stream().map(entry -> new StatisticResult(entry.getKey(), entry.getValue()));
+    }
+
+    @Procedure("ga.es.stats")
+    public Stream<StatisticResult> stats() {
+        return getModule(database).getStatistics().entrySet().stream().map(entry -> new StatisticResult(entry.getKey(), entry.getValue()));
+    }
+
     @Procedure("ga.es.info")
     public Stream<JsonSearchResult> info() {
         return Stream.of(new JsonSearchResult(getSearcher(database).getEsInfo()));
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Per-index counters of writes flushed to and refreshed in Elasticsearch. A search result obtained at a certain
+ * generation of its index is up to date for as long as the generation doesn't change, provided the writes flushed
+ * before were {@link #isSearchable(String) searchable} when the search was sent. Thread-safe.
+ * <p/>
+ * Generations are kept per concrete index. Names of indices written to or searched (e.g. aliases) are resolved to the
+ * concrete indices behind them, so that writes through one name invalidate searches through another. Resolution also
+ * tells the <code>refresh_interval</code> of each concrete index, i.e. when writes flushed to it become searchable
+ * without an explicit refresh. Resolutions are remembered for a while, failed ones for a shorter while, so that a
+ * failing cluster isn't asked again by every search.
+ */
+public class IndexGenerations {
+
+    /**
+     * Elasticsearch's default <code>refresh_interval</code> in ms, assumed for indices whose settings can't be read.
+     */
+    public static final long DEFAULT_REFRESH_INTERVAL = 1000;
+
+    /**
+     * <code>refresh_interval</code> of indices that are only refreshed explicitly.
+     */
+    public static final long NO_REFRESH = -1;
+
+    static final long RESOLUTION_TTL = 60_000;
+    static final long FAILED_RESOLUTION_TTL = 5_000;
+
+    private final AtomicLong clock = new AtomicLong();
+    private final ConcurrentMap<String, Generation> generations = new ConcurrentHashMap<>(); //by concrete index
+    private final ConcurrentMap<String, Resolution> resolved = new ConcurrentHashMap<>();
+    private volatile Function<String, Map<String, Long>> resolver;
+
+    /**
+     * Set the function that resolves index names and aliases to concrete indices.
+     *
+     * @param resolver returning the concrete indices behind a name with their <code>refresh_interval</code> in ms
+     *                 ({@link #NO_REFRESH} if disabled), <code>null</code> or empty if it can't tell (e.g. the index
+     *                 doesn't exist yet), in which case the name is taken as is, with the default refresh interval.
+     */
+    public void setResolver(Function<String, Map<String, Long>> resolver) {
+        this.resolver = resolver;
+        resolved.clear();
+    }
+
+    /**
+     * @param index name of an index or alias.
+     * @return names of the concrete indices behind it.
+     */
+    public Set<String> resolve(String index) {
+        return resolution(index).refreshIntervals.keySet();
+    }
+
+    /**
+     * @param index name of an index or alias.
+     * @return current generation of the index, which changes with every flush and refresh of writes to it.
+     */
+    public long get(String index) {
+        long latest = 0;
+        for (String concrete : resolve(index)) {
+            Generation generation = generations.get(concrete);
+            if (generation != null) {
+                latest = Math.max(latest, generation.stamp);
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * @param index name of an index or alias.
+     * @return <code>true</code> iff all writes flushed to the index so far can be found by searches.
+     */
+    public boolean isSearchable(String index) {
+        long now = System.currentTimeMillis();
+        for (String concrete : resolve(index)) {
+            Generation generation = generations.get(concrete);
+            if (generation != null && generation.visibleBy > now) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Record that writes to the given indices have been flushed, and become searchable with the next periodic refresh
+     * of each index, i.e. within its <code>refresh_interval</code>, or not until the index is explicitly
+     * {@link #refreshed(Collection, long) refreshed} if periodic refresh is disabled.
+     *
+     * @param indices names of the indices written to.
+     */
+    public void flushed(Collection<String> indices) {
+        long now = System.currentTimeMillis();
+        long stamp = clock.incrementAndGet();
+        for (String index : indices) {
+            if (index == null) {
+                continue;
+            }
+            for (Map.Entry<String, Long> concrete : resolution(index).refreshIntervals.entrySet()) {
+                long interval = concrete.getValue();
+                long visibleBy = interval < 0 ? Long.MAX_VALUE : now + interval;
+                generations.computeIfAbsent(concrete.getKey(), i -> new Generation()).flushed(stamp, now, visibleBy);
+            }
+        }
+    }
+
+    /**
+     * Record that writes to the given indices have been flushed.
+     *
+     * @param indices   names of the indices written to.
+     * @param visibleBy time by which the writes can be found by searches, {@link Long#MAX_VALUE} if not until the
+     *                  indices are {@link #refreshed(Collection, long) refreshed}.
+     */
+    public void flushed(Collection<String> indices, long visibleBy) {
+        long now = System.currentTimeMillis();
+        long stamp = clock.incrementAndGet();
+        for (String concrete : resolveAll(indices)) {
+            generations.computeIfAbsent(concrete, i -> new Generation()).flushed(stamp, now, visibleBy);
+        }
+    }
+
+    /**
+     * Record that the given indices have been refreshed, i.e. the writes flushed before the refresh can be found by
+     * searches.
+     *
+     * @param indices   names of the refreshed indices.
+     * @param startedAt time the refresh was requested at.
+     */
+    public void refreshed(Collection<String> indices, long startedAt) {
+        long stamp = clock.incrementAndGet();
+        for (String concrete : resolveAll(indices)) {
+            generations.computeIfAbsent(concrete, i -> new Generation()).refreshed(stamp, startedAt);
+        }
+    }
+
+    /**
+     * Record that aliases have been changed, so that index names resolve to other concrete indices. Invalidates all
+     * search results.
+     */
+    public void aliasesChanged() {
+        resolved.clear();
+        long stamp = clock.incrementAndGet();
+        for (Generation generation : generations.values()) {
+            generation.bump(stamp);
+        }
+    }
+
+    /**
+     * Record that index settings have been changed, so that the refresh intervals of the indices are read again.
+     */
+    public void settingsChanged() {
+        resolved.clear();
+    }
+
+    /**
+     * @return names of the concrete indices written to so far.
+     */
+    public Set<String> getIndices() {
+        return new HashSet<>(generations.keySet());
+    }
+
+    /**
+     * Parse an Elasticsearch time value, such as a <code>refresh_interval</code>.
+     *
+     * @param value e.g. <code>1s</code>, <code>500ms</code> or <code>-1</code>.
+     * @return time in ms, negative if disabled, <code>null</code> if the value can't be parsed.
+     */
+    public static Long parseTimeValue(String value) {
+        if (value == null) {
+            return null;
+        }
+
+        String trimmed = value.trim().toLowerCase();
+        if (trimmed.startsWith("-")) {
+            return NO_REFRESH;
+        }
+
+        String[][] units = {{"nanos", "0.000001"}, {"micros", "0.001"}, {"ms", "1"}, {"s", "1000"}, {"m", "60000"}, {"h", "3600000"}, {"d", "86400000"}};
+        try {
+            for (String[] unit : units) {
+                if (trimmed.endsWith(unit[0])) {
+                    double amount = Double.parseDouble(trimmed.substring(0, trimmed.length() - unit[0].length()).trim());
+                    return (long) Math.ceil(amount * Double.parseDouble(unit[1]));
+                }
+            }
+            return Long.parseLong(trimmed);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Resolution resolution(String index) {
+        long now = System.currentTimeMillis();
+        Resolution resolution = resolved.get(index);
+        if (resolution != null && resolution.expires > now) {
+            return resolution;
+        }
+
+        Function<String, Map<String, Long>> resolver = this.resolver;
+        Map<String, Long> concrete = resolver == null ? null : resolver.apply(index);
+
+        if (concrete == null || concrete.isEmpty()) {
+            //remembered briefly, the index may be created (or become an alias) any moment
+            resolution = new Resolution(Collections.singletonMap(index, DEFAULT_REFRESH_INTERVAL), now + FAILED_RESOLUTION_TTL);
+        } else {
+            resolution = new Resolution(Collections.unmodifiableMap(new HashMap<>(concrete)), now + RESOLUTION_TTL);
+        }
+
+        if (resolver != null) {
+            resolved.put(index, resolution);
+        }
+        return resolution;
+    }
+
+    private Set<String> resolveAll(Collection<String> indices) {
+        Set<String> result = new HashSet<>();
+        for (String index : indices) {
+            if (index != null) {
+                result.addAll(resolve(index));
+            }
+        }
+        return result;
+    }
+
+    private static final class Resolution {
+        private final Map<String, Long> refreshIntervals; //by concrete index
+        private final long expires;
+
+        private Resolution(Map<String, Long> refreshIntervals, long expires) {
+            this.refreshIntervals = refreshIntervals;
+            this.expires = expires;
+        }
+    }
+
+    private static final class Generation {
+        private volatile long stamp = 0;
+        private volatile long visibleBy = 0;
+        private long lastFlushed = 0;
+
+        private synchronized void flushed(long stamp, long now, long visibleBy) {
+            this.stamp = stamp;
+            this.lastFlushed = now;
+            this.visibleBy = Math.max(this.visibleBy, visibleBy);
+        }
+
+        private synchronized void refreshed(long stamp, long startedAt) {
+            this.stamp = stamp;
+            if (lastFlushed <= startedAt) {
+                visibleBy = 0;
+            }
+        }
+
+        private synchronized void bump(long stamp) {
+            this.stamp = stamp;
+        }
+    }
+}
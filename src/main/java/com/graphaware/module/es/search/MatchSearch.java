@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.google.gson.Gson;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+
+/**
+ * {@link Search} whose successful responses are kept as a string and not parsed into a Gson tree, so that they can be
+ * read with {@link SearchHitsParser}. {@link SearchResult#getJsonObject()} of a successful result is therefore
+ * <code>null</code>.
+ */
+public class MatchSearch extends Search {
+
+    protected MatchSearch(Builder builder) {
+        super(builder);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SearchResult createNewElasticSearchResult(String responseBody, int statusCode, String reasonPhrase, Gson gson) {
+        if (statusCode / 100 != 2) {
+            //error responses are small, let Jest extract the error message
+            return super.createNewElasticSearchResult(responseBody, statusCode, reasonPhrase, gson);
+        }
+
+        SearchResult result = new SearchResult(gson);
+        result.setResponseCode(statusCode);
+        result.setJsonString(responseBody);
+        result.setPathToResult(getPathToResult());
+        result.setSucceeded(true);
+        return result;
+    }
+
+    public static class Builder extends Search.Builder {
+
+        public Builder(String query) {
+            super(query);
+        }
+
+        @Override
+        public MatchSearch build() {
+            return new MatchSearch(this);
+        }
+    }
+}
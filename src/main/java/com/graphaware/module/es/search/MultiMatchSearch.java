@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import io.searchbox.action.AbstractAction;
+import io.searchbox.client.JestResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <code>_msearch</code> action that runs several queries against a single index in one request. Like
+ * {@link MatchSearch}, a successful response is kept as a string to be read by {@link SearchHitsParser#parseMulti}.
+ */
+public class MultiMatchSearch extends AbstractAction<JestResult> {
+
+    private final String body;
+
+    protected MultiMatchSearch(Builder builder) {
+        super(builder);
+
+        JsonObject header = new JsonObject();
+        header.addProperty("index", builder.index);
+        String headerLine = header.toString();
+
+        StringBuilder body = new StringBuilder();
+        for (String query : builder.queries) {
+            //each query must be on a single line, which is guaranteed by Searcher normalizing queries through Gson
+            body.append(headerLine).append('\n').append(query).append('\n');
+        }
+        this.body = body.toString();
+
+        setURI(buildURI());
+    }
+
+    @Override
+    protected String buildURI() {
+        return "/_msearch";
+    }
+
+    @Override
+    public String getRestMethodName() {
+        return "POST";
+    }
+
+    @Override
+    public Object getData(Gson gson) {
+        return body;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public JestResult createNewElasticSearchResult(String responseBody, int statusCode, String reasonPhrase, Gson gson) {
+        if (statusCode / 100 != 2) {
+            return createNewElasticSearchResult(new JestResult(gson), responseBody, statusCode, reasonPhrase, gson);
+        }
+
+        JestResult result = new JestResult(gson);
+        result.setResponseCode(statusCode);
+        result.setJsonString(responseBody);
+        result.setSucceeded(true);
+        return result;
+    }
+
+    public static class Builder extends AbstractAction.Builder<MultiMatchSearch, Builder> {
+
+        private final String index;
+        private final List<String> queries = new ArrayList<>();
+
+        public Builder(String index) {
+            this.index = index;
+        }
+
+        public Builder addQuery(String query) {
+            queries.add(query);
+            return this;
+        }
+
+        @Override
+        public MultiMatchSearch build() {
+            return new MultiMatchSearch(this);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of threads that talk to Elasticsearch on behalf of {@link Searcher}s, so that a slow cluster can only
+ * ever hold a fixed number of threads and the callers (Cypher worker threads) wait for at most a fixed amount of time.
+ * <p/>
+ * When all threads are busy and the queue is full, searches are rejected straight away rather than piling up.
+ * <p/>
+ * A search that times out is cancelled, but a thread blocked on socket I/O isn't woken up by that. It is only released
+ * by the client's socket timeout, which must therefore not exceed the search timeout (see
+ * {@link com.graphaware.module.es.ElasticSearchModule#getSearchClient()}).
+ */
+public class SearchExecutor {
+
+    private static final Log LOG = LoggerFactory.getLogger(SearchExecutor.class);
+
+    private final ThreadPoolExecutor executor;
+    private final long timeout;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong unresolvedHits = new AtomicLong();
+
+    /**
+     * Construct a new executor.
+     *
+     * @param concurrency maximum number of searches executed at the same time. Must be positive.
+     * @param queueSize   maximum number of searches waiting for a thread, 0 for none.
+     * @param timeout     time in ms a caller waits for a search to complete, 0 or less to wait indefinitely.
+     */
+    public SearchExecutor(int concurrency, int queueSize, long timeout) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("Search concurrency must be positive");
+        }
+
+        this.timeout = timeout;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                queueSize > 0 ? new ArrayBlockingQueue<>(queueSize) : new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "Elasticsearch search " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Execute a request to Elasticsearch and wait for its result.
+     *
+     * @param request to execute.
+     * @param <T>     type of the result.
+     * @return result.
+     * @throws IOException if the request failed.
+     * @throws SearchRejectedException if too many searches are in progress, or the search timed out.
+     */
+    public <T> T execute(Callable<T> request) throws IOException {
+        Future<T> future;
+        try {
+            future = executor.submit(request);
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            throw new SearchRejectedException("Too many concurrent Elasticsearch searches, rejecting search", e);
+        }
+
+        try {
+            T result = timeout > 0 ? future.get(timeout, TimeUnit.MILLISECONDS) : future.get();
+            executed.incrementAndGet();
+            return result;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            timedOut.incrementAndGet();
+            throw new SearchRejectedException("Elasticsearch search did not complete within " + timeout + " ms", e);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for Elasticsearch search", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Record search hits that couldn't be resolved to graph entities, e.g. because the index isn't up to date.
+     *
+     * @param count number of hits.
+     */
+    public void recordUnresolvedHits(int count) {
+        unresolvedHits.addAndGet(count);
+    }
+
+    /**
+     * Stop accepting searches and interrupt the ones in progress.
+     */
+    public void shutdown() {
+        LOG.info("Shutting down Elasticsearch search executor...");
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return counters of this executor by name.
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("searchesExecuted", executed.get());
+        result.put("searchesRejected", rejected.get());
+        result.put("searchesTimedOut", timedOut.get());
+        result.put("searchesActive", executor.getActiveCount());
+        result.put("searchHitsUnresolved", unresolvedHits.get());
+        return result;
+    }
+
+    /**
+     * Thrown when a search is rejected because Elasticsearch is not keeping up.
+     */
+    public static class SearchRejectedException extends RuntimeException {
+        public SearchRejectedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.graphaware.common.log.LoggerFactory;
+import org.neo4j.graphdb.Entity;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Pull parser of Elasticsearch search responses that emits a {@link SearchMatch} per hit, without building a tree of
+ * the response. Everything but <code>hits.hits[]._id</code> and <code>hits.hits[]._score</code> is skipped.
+ */
+public final class SearchHitsParser {
+
+    private static final Log LOG = LoggerFactory.getLogger(SearchHitsParser.class);
+
+    private static final JsonFactory FACTORY = new ObjectMapper().getFactory(); //with a codec, to be able to log errors
+
+    private SearchHitsParser() {
+    }
+
+    /**
+     * Parse a search response.
+     *
+     * @param response JSON response.
+     * @param consumer of the matches, in the order of the response.
+     * @param <T>      {@link org.neo4j.graphdb.Node} or {@link org.neo4j.graphdb.Relationship}.
+     * @throws IOException if the response is not valid JSON.
+     */
+    public static <T extends Entity> void parse(String response, Consumer<SearchMatch<T>> consumer) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(new StringReader(response))) {
+            parse(parser, consumer);
+        }
+    }
+
+    /**
+     * Parse a multi search response.
+     *
+     * @param response JSON response.
+     * @param consumer of the matches and the (0-based) index of the query they belong to, in the order of the response.
+     * @param <T>      {@link org.neo4j.graphdb.Node} or {@link org.neo4j.graphdb.Relationship}.
+     * @throws IOException if the response is not valid JSON.
+     */
+    public static <T extends Entity> void parseMulti(String response, BiConsumer<Integer, SearchMatch<T>> consumer) throws IOException {
+        try (JsonParser parser = FACTORY.createParser(new StringReader(response))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+
+            if (!moveToField(parser, "responses") || parser.nextToken() != JsonToken.START_ARRAY) {
+                return;
+            }
+
+            int queryIndex = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY && token != null) {
+                final int index = queryIndex++;
+                if (token == JsonToken.START_OBJECT) {
+                    parseResponse(parser, (SearchMatch<T> match) -> consumer.accept(index, match));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private static <T extends Entity> void parse(JsonParser parser, Consumer<SearchMatch<T>> consumer) throws IOException {
+        if (parser.nextToken() == JsonToken.START_OBJECT) {
+            parseResponse(parser, consumer);
+        }
+    }
+
+    /**
+     * Parse a single search response, the parser being positioned on its opening brace. Consumes the whole response.
+     */
+    private static <T extends Entity> void parseResponse(JsonParser parser, Consumer<SearchMatch<T>> consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("hits".equals(field) && value == JsonToken.START_OBJECT) {
+                parseHits(parser, consumer);
+            } else if ("error".equals(field)) {
+                LOG.warn("Elasticsearch search failed: " + (value.isScalarValue() ? parser.getValueAsString() : parser.readValueAsTree()));
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static <T extends Entity> void parseHits(JsonParser parser, Consumer<SearchMatch<T>> consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("hits".equals(field) && value == JsonToken.START_ARRAY) {
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    parseHit(parser, consumer);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    private static <T extends Entity> void parseHit(JsonParser parser, Consumer<SearchMatch<T>> consumer) throws IOException {
+        String key = null;
+        Double score = null;
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+
+            if ("_id".equals(field) && value.isScalarValue()) {
+                key = parser.getValueAsString();
+            } else if ("_score".equals(field) && value.isNumeric()) {
+                score = parser.getDoubleValue();
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (key == null) {
+            LOG.warn("No key found in search result");
+        } else {
+            consumer.accept(new SearchMatch<>(key, score));
+        }
+    }
+
+    /**
+     * Advance to the value of the given field of the current object, skipping all other fields.
+     *
+     * @return <code>true</code> iff the field has been found; the parser is then positioned on the field name.
+     */
+    private static boolean moveToField(JsonParser parser, String name) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            if (name.equals(parser.getCurrentName())) {
+                return true;
+            }
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        return false;
+    }
+}
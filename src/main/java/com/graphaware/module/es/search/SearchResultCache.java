@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import io.searchbox.client.JestResult;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import static org.springframework.util.Assert.notNull;
+
+/**
+ * Size- and time-bounded cache of Elasticsearch search responses, shared by all {@link Searcher}s of a module.
+ * <p/>
+ * A cached response is only served while the {@link IndexGenerations generation} of its index is the same as when the
+ * search was sent, i.e. until the next flush of writes to any of the concrete indices behind it. Responses are not cached
+ * while writes flushed to the index may not be searchable yet, nor for searches of unknown indices (<code>null</code>).
+ * Thread-safe.
+ */
+public class SearchResultCache {
+
+    private final int maxSize;
+    private final long ttl;
+    private final IndexGenerations generations;
+    private final Map<Key, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Construct a new cache.
+     *
+     * @param maxSize     maximum number of cached responses. Must be positive.
+     * @param ttl         time in ms a response is cached for, 0 or less for no time limit.
+     * @param generations of the indices. Must not be <code>null</code>.
+     */
+    public SearchResultCache(int maxSize, long ttl, IndexGenerations generations) {
+        notNull(generations);
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Search cache size must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+        this.generations = generations;
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                return size() > SearchResultCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Get a cached response, or perform the search and cache its response.
+     *
+     * @param index  searched index or alias, <code>null</code> if not known, in which case the search is not cached.
+     * @param type   of search, responses to the same query differ between search types (e.g. raw or matches only).
+     * @param query  normalized query.
+     * @param search performing the search. Only successful responses are cached.
+     * @return response.
+     */
+    public String get(String index, String type, String query, Supplier<? extends JestResult> search) {
+        if (index == null) {
+            return search.get().getJsonString();
+        }
+
+        Key key = new Key(index, type, query);
+        long generation = generations.get(index);
+        boolean searchable = generations.isSearchable(index);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.generation == generation && (ttl <= 0 || entry.expires > now)) {
+                    hits.incrementAndGet();
+                    return entry.response;
+                }
+                entries.remove(key);
+            }
+        }
+
+        misses.incrementAndGet();
+
+        //the generation read before searching: a write flushed in the meantime invalidates the response
+        JestResult result = search.get();
+        if (result.isSucceeded() && searchable) {
+            synchronized (entries) {
+                entries.put(key, new Entry(result.getJsonString(), generation, now + ttl));
+            }
+        }
+        return result.getJsonString();
+    }
+
+    /**
+     * @return counters of this cache by name.
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("searchCacheHits", hits.get());
+        result.put("searchCacheMisses", misses.get());
+        synchronized (entries) {
+            result.put("searchCacheSize", entries.size());
+        }
+        return result;
+    }
+
+    private static final class Key {
+        private final String index;
+        private final String type;
+        private final String query;
+
+        private Key(String index, String type, String query) {
+            this.index = index;
+            this.type = type;
+            this.query = query;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(index, key.index) && type.equals(key.type) && query.equals(key.query);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(index, type, query);
+        }
+    }
+
+    private static final class Entry {
+        private final String response;
+        private final long generation;
+        private final long expires;
+
+        private Entry(String response, long generation, long expires) {
+            this.response = response;
+            this.generation = generation;
+            this.expires = expires;
+        }
+    }
+}
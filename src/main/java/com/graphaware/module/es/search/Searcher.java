@@ -18,13 +18,16 @@ package com.graphaware.module.es.search;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
 import com.graphaware.common.log.LoggerFactory;
 import com.graphaware.module.es.ElasticSearchConfiguration;
 import com.graphaware.module.es.ElasticSearchModule;
 import com.graphaware.module.es.mapping.Mapping;
 import com.graphaware.module.es.search.resolver.KeyToIdResolver;
 import com.graphaware.module.es.search.resolver.ResolverFactory;
+import com.graphaware.module.es.util.ClusterJestClient;
+import com.graphaware.module.es.util.CompressionStatistics;
 import com.graphaware.module.es.util.CustomJestClientFactory;
 import io.searchbox.action.AbstractAction;
 import io.searchbox.action.GenericResultAbstractAction;
@@ -32,8 +35,8 @@ import io.searchbox.client.JestClient;
 import io.searchbox.client.JestResult;
 import io.searchbox.client.config.HttpClientConfig;
 import io.searchbox.core.Search;
-import io.searchbox.core.SearchResult;
 import io.searchbox.indices.mapping.GetMapping;
+import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.impl.client.BasicCredentialsProvider;
@@ -42,129 +45,248 @@ import org.neo4j.logging.Log;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import static com.graphaware.runtime.RuntimeRegistry.getStartedRuntime;
+import static org.springframework.util.Assert.notEmpty;
 import static org.springframework.util.Assert.notNull;
 
 public class Searcher {
     private static final Log LOG = LoggerFactory.getLogger(Searcher.class);
 
+    private static final String MATCH_FILTER_PATH = "hits.hits._id,hits.hits._score";
+    //took keeps responses without hits in the array, so that they stay aligned with the queries
+    private static final String MULTI_MATCH_FILTER_PATH = "responses.took,responses.error,responses.hits.hits._id,responses.hits.hits._score";
+
+    private static final int MIN_PAGE_SIZE = 10;
+    private static final int MAX_RESULT_WINDOW = 10000; //Elasticsearch's default index.max_result_window
+
     public final GraphDatabaseService database;
     private final JestClient client;
 
     private final String keyProperty;
     private final Mapping mapping;
     private final KeyToIdResolver keyResolver;
+    private final SearchExecutor executor;
+    private final SearchResultCache cache;
+    private final String[] prefetchProperties;
+    private final boolean prefetchLabels;
 
     public Searcher(GraphDatabaseService database) {
-        ElasticSearchConfiguration configuration = (ElasticSearchConfiguration) getStartedRuntime(database).getModule(ElasticSearchModule.class).getConfiguration();
+        ElasticSearchModule module = getStartedRuntime(database).getModule(ElasticSearchModule.class);
+        ElasticSearchConfiguration configuration = (ElasticSearchConfiguration) module.getConfiguration();
 
         this.keyProperty = configuration.getKeyProperty();
         this.database = database;
         this.mapping = configuration.getMapping();
         this.keyResolver = ResolverFactory.createResolver(database, mapping.getKeyProperty());
-        this.client = createClient(configuration.getProtocol(), configuration.getUri(), configuration.getPort(), configuration.getAuthUser(), configuration.getAuthPassword());
+        this.client = module.getSearchClient();
+        this.executor = module.getSearchExecutor();
+        this.cache = module.getSearchCache();
+        this.prefetchProperties = configuration.getSearchPrefetchProperties() == null ? new String[0] : Arrays.stream(configuration.getSearchPrefetchProperties().split(",")).map(String::trim).filter(key -> !key.isEmpty()).toArray(String[]::new);
+        this.prefetchLabels = configuration.isSearchPrefetchLabels();
     }
 
-    private Function<SearchMatch, Relationship> getRelationshipResolver() {
-        return match -> {
-            Relationship rel;
-            try {
-                long relId = keyResolver.getRelationshipID(match.key);
-                rel = database.getRelationshipById(relId);
-            } catch (NotFoundException e) {
-                rel = null;
+    /**
+     * Resolve matches to graph entities in one transaction. Keys are resolved to IDs in a batch, and entities are loaded
+     * in ID order for storage locality, optionally together with the configured properties and labels.
+     *
+     * @param searchMatches to resolve, their items are set.
+     * @param clazz         {@link Node} or {@link Relationship}
+     * @param <T>           {@link Node} or {@link Relationship}
+     * @return the resolved matches, in the original order. Matches whose entity can't be found are left out.
+     */
+    private <T extends Entity> List<SearchMatch<T>> resolveMatchItems(final List<SearchMatch<T>> searchMatches, Class<T> clazz) {
+        List<SearchMatch<T>> resolvedResults = new ArrayList<>(searchMatches.size());
+        if (searchMatches.isEmpty()) {
+            return resolvedResults;
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            Map<String, Long> ids = resolveIds(searchMatches, clazz);
+
+            long[] sortedIds = ids.values().stream().mapToLong(Long::longValue).distinct().sorted().toArray();
+            Map<Long, T> entities = new HashMap<>(sortedIds.length);
+            for (long id : sortedIds) {
+                T entity = loadEntity(id, clazz);
+                if (entity != null) {
+                    entities.put(id, entity);
+                }
             }
-            if (rel == null) {
-                LOG.warn("Could not find relationship with key (" + keyProperty + "): " + match.key);
+
+            for (SearchMatch<T> match : searchMatches) {
+                Long id = ids.get(match.key);
+                T item = id == null ? null : entities.get(id);
+                if (item != null) {
+                    match.setItem(item);
+                    resolvedResults.add(match);
+                }
             }
-            return rel;
-        };
+
+            tx.success();
+        }
+
+        int missing = searchMatches.size() - resolvedResults.size();
+        if (missing > 0) {
+            executor.recordUnresolvedHits(missing);
+            LOG.warn(missing + " of " + searchMatches.size() + " search results could not be found in the graph (key: " + keyProperty + "), is the index up to date?");
+        }
+
+        return resolvedResults;
     }
 
-    private Function<SearchMatch, Node> getNodeResolver() {
-        return match -> {
-            Node node = null;
+    /**
+     * Reject searches whose hits can't be resolved to graph entities, before sending them to Elasticsearch.
+     *
+     * @param clazz {@link Node} or {@link Relationship}
+     */
+    private void checkResolvable(Class<? extends Entity> clazz) {
+        if (Relationship.class.equals(clazz) && !keyResolver.canResolveRelationships()) {
+            throw new UnsupportedOperationException("Relationships can't be resolved from their " + keyProperty + " key property, use a raw search instead");
+        }
+    }
+
+    private <T extends Entity> Map<String, Long> resolveIds(List<SearchMatch<T>> searchMatches, Class<T> clazz) {
+        Set<String> keys = new LinkedHashSet<>();
+        for (SearchMatch<T> match : searchMatches) {
+            keys.add(match.key);
+        }
+
+        if (Node.class.equals(clazz)) {
+            return keyResolver.getNodeIDs(keys);
+        }
+
+        Map<String, Long> ids = new HashMap<>();
+        for (String key : keys) {
             try {
-                long nodeId = keyResolver.getNodeID(match.key);
-                node = database.getNodeById(nodeId);
+                ids.put(key, keyResolver.getRelationshipID(key));
             } catch (NotFoundException e) {
-                node = null;
+                // missing
             }
-            if (node == null) {
-                LOG.warn("Could not find node with key (" + keyProperty + "): " + match.key);
-            }
-            return node;
-        };
+        }
+        return ids;
     }
 
-    private <T extends Entity> List<SearchMatch<T>> resolveMatchItems(final List<SearchMatch<T>> searchMatches, final Function<SearchMatch, T> resolver) {
-        List<SearchMatch<T>> resolvedResults = new ArrayList<>();
-
-        try (Transaction tx = database.beginTx()) {
-            searchMatches.stream().forEach(match -> {
-                T item = resolver.apply(match);
-                if (item != null) {
-                    match.setItem(item);
-                    resolvedResults.add(match);
+    @SuppressWarnings("unchecked")
+    private <T extends Entity> T loadEntity(long id, Class<T> clazz) {
+        try {
+            if (Node.class.equals(clazz)) {
+                Node node = database.getNodeById(id);
+                if (prefetchLabels) {
+                    node.getLabels(); //read in the same pass as the node, so filters and Cypher find them in the page cache
                 }
-            });
-            tx.success();
+                prefetchProperties(node);
+                return (T) node;
+            }
+
+            Relationship relationship = database.getRelationshipById(id);
+            prefetchProperties(relationship);
+            return (T) relationship;
+        } catch (NotFoundException e) {
+            return null;
         }
-        return resolvedResults;
     }
 
-    private <T extends Entity> List<SearchMatch<T>> buildSearchMatches(SearchResult searchResult) {
+    private void prefetchProperties(Entity entity) {
+        if (prefetchProperties.length > 0) {
+            entity.getProperties(prefetchProperties);
+        }
+    }
+
+    private <T extends Entity> List<SearchMatch<T>> buildSearchMatches(String response) {
         List<SearchMatch<T>> matches = new ArrayList<>();
-        Set<Map.Entry<String, JsonElement>> entrySet = searchResult.getJsonObject().entrySet();
-        entrySet.stream()
-                .filter((item) -> (item.getKey().equalsIgnoreCase("hits")))
-                .map((item) -> (JsonObject) item.getValue())
-                .filter((hits) -> (hits != null))
-                .map((hits) -> hits.getAsJsonArray("hits"))
-                .filter((hitsArray) -> (hitsArray != null))
-                .forEach((hitsArray) -> {
-                    for (JsonElement element : hitsArray) {
-                        JsonObject obj = (JsonObject) element;
-
-                        // extract the result score
-                        JsonElement _score = obj.get("_score");
-                        Double score = null;
-                        if (_score != null && !_score.isJsonNull() && _score.isJsonPrimitive() && ((JsonPrimitive) _score).isNumber()) {
-                            score = _score.getAsDouble();
-                        }
+        if (response == null) {
+            return matches;
+        }
 
-                        // extract the result id
-                        String keyValue = obj.get("_id") != null ? obj.get("_id").getAsString() : null;
-                        if (keyValue == null) {
-                            LOG.warn("No key found in search result: " + obj.getAsString());
-                        } else {
-                            matches.add(new SearchMatch<>(keyValue, score));
-                        }
-                    }
-                });
+        try {
+            SearchHitsParser.<T>parse(response, matches::add);
+        } catch (IOException e) {
+            throw new RuntimeException("Error while parsing ElasticSearch response", e);
+        }
         return matches;
     }
 
-    public static JestClient createClient(String protocol, String uri, String port, String authUser, String authPassword) {
+    /**
+     * Create a client for the Elasticsearch host(s) in the configuration. When more than one host is configured or node
+     * discovery is enabled, requests are load-balanced over the hosts by a {@link ClusterJestClient}.
+     *
+     * @param configuration module configuration.
+     * @return client.
+     */
+    public static JestClient createClient(ElasticSearchConfiguration configuration) {
+        return createClient(configuration, (CompressionStatistics) null);
+    }
+
+    /**
+     * Create a client for the Elasticsearch host(s) in the configuration, recording compression of request bodies.
+     *
+     * @param configuration         module configuration.
+     * @param compressionStatistics to record compressed request bodies to, can be <code>null</code>.
+     * @return client.
+     */
+    public static JestClient createClient(ElasticSearchConfiguration configuration, CompressionStatistics compressionStatistics) {
+        String uri = configuration.getUri();
+        String port = configuration.getPort();
+
         notNull(uri);
         notNull(port);
 
-        LOG.info("Creating Jest Client...");
+        Set<String> servers = new LinkedHashSet<>();
+        for (String host : uri.split(",")) {
+            host = host.trim();
+            if (!host.isEmpty()) {
+                servers.add(String.format("%s://%s", configuration.getProtocol(), host.contains(":") ? host : host + ":" + port));
+            }
+        }
 
-        CustomJestClientFactory factory = new CustomJestClientFactory();
-        String esHost = String.format("%s://%s:%s", protocol, uri, port);
-        HttpClientConfig.Builder clientConfigBuilder = new HttpClientConfig.Builder(esHost).multiThreaded(true);
+        notEmpty(servers, "No Elasticsearch host configured");
+
+        if (servers.size() == 1 && !configuration.isDiscovery()) {
+            return createClient(configuration, servers.iterator().next(), compressionStatistics);
+        }
+
+        LOG.info("Creating load-balanced Jest Client for " + servers + "...");
+
+        ClusterJestClient client = new ClusterJestClient(server -> createClient(configuration, server, compressionStatistics), servers, configuration.getLoadBalancing(), configuration.getHostEjectionTime(), configuration.getProtocol());
+        if (configuration.isDiscovery()) {
+            client.startDiscovery(configuration.getDiscoveryFrequency());
+        }
+
+        return client;
+    }
+
+    /**
+     * Create a client for a single Elasticsearch host.
+     *
+     * @param configuration         module configuration.
+     * @param server                host URL, e.g. <code>http://localhost:9200</code>.
+     * @param compressionStatistics to record compressed request bodies to, can be <code>null</code>.
+     * @return client.
+     */
+    public static JestClient createClient(ElasticSearchConfiguration configuration, String server, CompressionStatistics compressionStatistics) {
+        String authUser = configuration.getAuthUser();
+        String authPassword = configuration.getAuthPassword();
+
+        LOG.info("Creating Jest Client for " + server + "...");
+
+        CustomJestClientFactory factory = new CustomJestClientFactory(configuration, compressionStatistics);
+        HttpClientConfig.Builder clientConfigBuilder = new HttpClientConfig.Builder(server).multiThreaded(true);
 
         if (authUser != null && authPassword != null) {
             BasicCredentialsProvider customCredentialsProvider = new BasicCredentialsProvider();
+            HttpHost host = HttpHost.create(server);
 
             customCredentialsProvider.setCredentials(
-                    new AuthScope(uri, Integer.parseInt(port)),
+                    new AuthScope(host.getHostName(), host.getPort()),
                     new UsernamePasswordCredentials(authUser, authPassword)
             );
 
@@ -180,13 +302,15 @@ public class Searcher {
     }
 
     /**
+     * Execute the action on the module's {@link SearchExecutor}, so that the calling thread waits for a bounded time.
+     *
      * @param action The action to send to the index
      * @return the query response
      */
     private <R extends JestResult> R doQuery(AbstractAction<R> action) {
         R result;
         try {
-            result = client.execute(action);
+            result = executor.execute(() -> client.execute(action));
         } catch (IOException ex) {
             throw new RuntimeException("Error while performing query on ElasticSearch", ex);
         }
@@ -197,11 +321,74 @@ public class Searcher {
      * @param query the search query to execute
      * @param clazz {@link Node} or {@link Relationship}, to decide which index to send the query to.
      * @param <T>   {@link Node} or {@link Relationship}
-     * @return the search results
+     * @return the search response
+     */
+    private <T extends Entity> String searchQuery(String query, Class<T> clazz) {
+        String index = mapping.getIndexFor(clazz);
+        String normalized = normalize(query);
+        return cachedQuery(index, "raw", normalized, () -> new MatchSearch.Builder(normalized).addIndex(index).build());
+    }
+
+    /**
+     * Execute a search whose hits are only used to look up graph entities. Elasticsearch is asked not to return the
+     * documents' source and to strip everything but the IDs and scores from the response.
+     *
+     * @param query the search query to execute
+     * @param clazz {@link Node} or {@link Relationship}, to decide which index to send the query to.
+     * @param <T>   {@link Node} or {@link Relationship}
+     * @return the search response
+     */
+    private <T extends Entity> String matchQuery(String query, Class<T> clazz) {
+        String index = mapping.getIndexFor(clazz);
+        String normalized = withoutSource(query);
+        return cachedQuery(index, "match", normalized, () -> matchSearch(index, normalized));
+    }
+
+    /**
+     * @return search for the IDs and scores of the hits of a query, see {@link #withoutSource(String)}.
+     */
+    static Search matchSearch(String index, String query) {
+        return new MatchSearch.Builder(query)
+                .addIndex(index)
+                .setParameter("filter_path", MATCH_FILTER_PATH)
+                .build();
+    }
+
+    private String cachedQuery(String index, String type, String query, Supplier<Search> search) {
+        if (cache == null) {
+            return doQuery(search.get()).getJsonString();
+        }
+        return cache.get(index, type, query, () -> doQuery(search.get()));
+    }
+
+    /**
+     * @return the query in compact form, so that equal queries are equal strings.
      */
-    private <T extends Entity> SearchResult searchQuery(String query, Class<T> clazz) {
-        Search search = new Search.Builder(query).addIndex(mapping.getIndexFor(clazz)).build();
-        return doQuery(search);
+    private static String normalize(String query) {
+        try {
+            return new JsonParser().parse(query).toString();
+        } catch (JsonParseException e) {
+            return query; //let Elasticsearch report the problem
+        }
+    }
+
+    /**
+     * @return the query, asking Elasticsearch not to return the documents' source. Left as is if it isn't a json object.
+     */
+    static String withoutSource(String query) {
+        JsonElement parsed;
+        try {
+            parsed = new JsonParser().parse(query);
+        } catch (JsonParseException e) {
+            return query; //let Elasticsearch report the problem
+        }
+
+        if (!parsed.isJsonObject()) {
+            return query;
+        }
+
+        parsed.getAsJsonObject().addProperty("_source", false);
+        return parsed.toString();
     }
 
     /**
@@ -213,14 +400,119 @@ public class Searcher {
      * @return a list of matches (with node or a relationship)
      */
     public <T extends Entity> List<SearchMatch<T>> search(String query, Class<T> clazz) {
-        SearchResult result = searchQuery(query, clazz);
-
-        List<SearchMatch<T>> matches = buildSearchMatches(result);
-        @SuppressWarnings("unchecked")
-        Function<SearchMatch, T> resolver = (Function<SearchMatch, T>) (
-                clazz.equals(Node.class) ? getNodeResolver() : getRelationshipResolver()
-        );
-        return resolveMatchItems(matches, resolver);
+        checkResolvable(clazz);
+        List<SearchMatch<T>> matches = buildSearchMatches(matchQuery(query, clazz));
+        return resolveMatchItems(matches, clazz);
+    }
+
+    /**
+     * Search for nodes or relationships that satisfy a graph predicate. Hits are fetched from Elasticsearch page by page
+     * and resolved until <code>limit</code> of them pass the filter, or there are no more hits. Pages grow when few hits
+     * pass the filter, and hits seen on an earlier page (e.g. shifted by a refresh in between) are skipped.
+     *
+     * @param query  An ElasticSearch query in JSON format (serialized as a string). Its <code>from</code> is respected,
+     *               its <code>size</code> is replaced by the page size.
+     * @param clazz  {@link Node} or {@link Relationship}
+     * @param filter graph predicate the results must satisfy.
+     * @param limit  maximum number of results.
+     * @param <T>    {@link Node} or {@link Relationship}
+     * @return a list of at most <code>limit</code> matches (with node or a relationship), in the order of the hits
+     */
+    public <T extends Entity> List<SearchMatch<T>> search(String query, Class<T> clazz, Predicate<T> filter, int limit) {
+        checkResolvable(clazz);
+        List<SearchMatch<T>> results = new ArrayList<>();
+        if (limit <= 0) {
+            return results;
+        }
+
+        JsonObject pagedQuery = new JsonParser().parse(query).getAsJsonObject();
+        int from = pagedQuery.has("from") ? pagedQuery.get("from").getAsInt() : 0;
+        int pageSize = Math.min(Math.max(limit * 2, MIN_PAGE_SIZE), MAX_RESULT_WINDOW);
+        Set<String> seen = new HashSet<>();
+
+        while (results.size() < limit && from < MAX_RESULT_WINDOW) {
+            int size = Math.min(pageSize, MAX_RESULT_WINDOW - from);
+            pagedQuery.addProperty("from", from);
+            pagedQuery.addProperty("size", size);
+
+            List<SearchMatch<T>> page = buildSearchMatches(matchQuery(pagedQuery.toString(), clazz));
+
+            int passed = 0;
+            try (Transaction tx = database.beginTx()) {
+                for (SearchMatch<T> match : resolveMatchItems(page, clazz)) {
+                    if (seen.add(match.key) && filter.test(match.getItem())) {
+                        results.add(match);
+                        passed++;
+                        if (results.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+                tx.success();
+            }
+
+            if (page.size() < size) {
+                break; //no more hits
+            }
+            from += size;
+            pageSize = nextPageSize(size, passed, limit - results.size());
+        }
+
+        return results;
+    }
+
+    /**
+     * @return size of the next page, large enough for the missing results at the rate hits passed the filter so far.
+     */
+    static int nextPageSize(int size, int passed, int missing) {
+        long next = passed == 0 ? 2L * size : (long) Math.ceil((double) missing * size / passed);
+        return (int) Math.min(Math.max(next, MIN_PAGE_SIZE), MAX_RESULT_WINDOW);
+    }
+
+    /**
+     * Search for nodes or relationships with several queries at once, in a single request to Elasticsearch.
+     *
+     * @param queries ElasticSearch queries in JSON format (serialized as strings)
+     * @param clazz   {@link Node} or {@link Relationship}
+     * @param <T>     {@link Node} or {@link Relationship}
+     * @return a list of matches (with node or a relationship) per query, in the order of the queries
+     */
+    public <T extends Entity> List<List<SearchMatch<T>>> multiSearch(List<String> queries, Class<T> clazz) {
+        checkResolvable(clazz);
+        List<List<SearchMatch<T>>> matchesPerQuery = new ArrayList<>(queries.size());
+        if (queries.isEmpty()) {
+            return matchesPerQuery;
+        }
+
+        MultiMatchSearch.Builder builder = new MultiMatchSearch.Builder(mapping.getIndexFor(clazz))
+                .setParameter("filter_path", MULTI_MATCH_FILTER_PATH);
+        for (String query : queries) {
+            builder.addQuery(withoutSource(query));
+            matchesPerQuery.add(new ArrayList<>());
+        }
+
+        JestResult result = doQuery(builder.build());
+        if (!result.isSucceeded()) {
+            throw new RuntimeException("Error while performing multi search on ElasticSearch: " + result.getErrorMessage());
+        }
+
+        List<SearchMatch<T>> allMatches = new ArrayList<>();
+        try {
+            SearchHitsParser.<T>parseMulti(result.getJsonString(), (index, match) -> {
+                matchesPerQuery.get(index).add(match);
+                allMatches.add(match);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Error while parsing ElasticSearch response", e);
+        }
+
+        resolveMatchItems(allMatches, clazz);
+
+        for (List<SearchMatch<T>> matches : matchesPerQuery) {
+            matches.removeIf(match -> match.getItem() == null);
+        }
+
+        return matchesPerQuery;
     }
 
     /**
@@ -230,8 +522,7 @@ public class Searcher {
      * @return a JSON string
      */
     public <T extends Entity> String rawSearch(String query, Class<T> clazz) {
-        SearchResult r = searchQuery(query, clazz);
-        return r.getJsonString();
+        return searchQuery(query, clazz);
     }
 
     public String nodeMapping() {
@@ -251,15 +542,6 @@ public class Searcher {
                 .toString();
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        super.finalize();
-        if (client == null) {
-            return;
-        }
-        client.shutdownClient();
-    }
-
     /***
      * @return the current ElasticSearch nodes information
      */
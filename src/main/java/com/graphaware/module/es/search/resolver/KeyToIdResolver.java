@@ -17,6 +17,11 @@
 package com.graphaware.module.es.search.resolver;
 
 import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.NotFoundException;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 
 public abstract class KeyToIdResolver {
 
@@ -39,6 +44,33 @@ public abstract class KeyToIdResolver {
      */
     public abstract long getNodeID(final String key);
 
+    /**
+     * Resolve the Neo4j IDs of several nodes at once. Resolvers that can do better than one key at a time should
+     * override this method.
+     *
+     * @param keys Values of the "_id" field in ElasticSearch
+     * @return the native Neo4j IDs of the nodes by key. Keys that can't be resolved are absent.
+     */
+    public Map<String, Long> getNodeIDs(final Collection<String> keys) {
+        Map<String, Long> result = new HashMap<>();
+        for (String key : keys) {
+            try {
+                result.put(key, getNodeID(key));
+            } catch (NotFoundException e) {
+                // absent from the result
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return <code>true</code> iff this resolver can resolve relationships. If not, {@link #getRelationshipID(String)}
+     * always throws {@link NotFoundException}.
+     */
+    public boolean canResolveRelationships() {
+        return true;
+    }
+
     /**
      * Resolve the Neo4j ID from the ElasticSearch ID.
      *
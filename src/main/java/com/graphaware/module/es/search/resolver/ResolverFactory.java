@@ -33,6 +33,12 @@ public final class ResolverFactory {
             // ignore and try next resolver
         }
 
+        try {
+            return new SchemaIndexResolver(database, keyProperty);
+        } catch (ResolverNotApplicable e) {
+            // ignore and try next resolver
+        }
+
         throw new RuntimeException("No fitting Key-to-ID resolver found");
     }
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of
+ * the GNU General Public License as published by the Free Software Foundation, either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ * See the GNU General Public License for more details. You should have received a copy of
+ * the GNU General Public License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search.resolver;
+
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.schema.ConstraintDefinition;
+import org.neo4j.graphdb.schema.ConstraintType;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.helpers.collection.Iterables;
+
+import java.util.*;
+
+/**
+ * Resolves keys through Neo4j schema indexes (or uniqueness constraints) on the key property. Applicable when at least
+ * one label has a single-property index on the key property.
+ * <p/>
+ * Relationships can't be resolved, as Neo4j has no schema indexes for them.
+ */
+class SchemaIndexResolver extends KeyToIdResolver {
+
+    private final GraphDatabaseService database;
+    private final String keyProperty;
+    private final List<Label> labels;
+    private final String batchQuery;
+
+    SchemaIndexResolver(GraphDatabaseService database, String keyProperty) throws ResolverNotApplicable {
+        super(database, keyProperty);
+
+        this.database = database;
+        this.keyProperty = keyProperty;
+        this.labels = findIndexedLabels(database, keyProperty);
+
+        if (labels.isEmpty()) {
+            throw new ResolverNotApplicable("no schema index on key property " + keyProperty);
+        }
+
+        StringBuilder query = new StringBuilder();
+        for (Label label : labels) {
+            if (query.length() > 0) {
+                query.append(" UNION ALL ");
+            }
+            query.append("UNWIND $keys AS key MATCH (n:`").append(label.name().replace("`", "``")).append("`) WHERE n.`")
+                    .append(keyProperty.replace("`", "``")).append("` = key RETURN key, id(n) AS id");
+        }
+        this.batchQuery = query.toString();
+    }
+
+    private static List<Label> findIndexedLabels(GraphDatabaseService database, String keyProperty) {
+        Set<Label> labels = new LinkedHashSet<>();
+
+        try (Transaction tx = database.beginTx()) {
+            for (ConstraintDefinition constraint : database.schema().getConstraints()) {
+                if (constraint.isConstraintType(ConstraintType.UNIQUENESS) && isKeyOnly(constraint.getPropertyKeys(), keyProperty)) {
+                    labels.add(constraint.getLabel());
+                }
+            }
+
+            for (IndexDefinition index : database.schema().getIndexes()) {
+                if (isKeyOnly(index.getPropertyKeys(), keyProperty)) {
+                    labels.add(index.getLabel());
+                }
+            }
+
+            tx.success();
+        }
+
+        return new ArrayList<>(labels);
+    }
+
+    private static boolean isKeyOnly(Iterable<String> propertyKeys, String keyProperty) {
+        List<String> keys = Iterables.asList(propertyKeys);
+        return keys.size() == 1 && keys.get(0).equals(keyProperty);
+    }
+
+    @Override
+    public long getNodeID(String key) {
+        Long id = getNodeIDs(Collections.singleton(key)).get(key);
+        if (id == null) {
+            throw new NotFoundException("No node with " + keyProperty + " " + key);
+        }
+        return id;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Keys are looked up both as strings and, when numeric, as numbers (Elasticsearch IDs are strings, but the key
+     * property may be numeric), all in one query. A string match wins over a numeric one. When several nodes have the
+     * same key (e.g. with a non-unique index), the one with the lowest ID is returned.
+     */
+    @Override
+    public Map<String, Long> getNodeIDs(Collection<String> keys) {
+        Map<String, Long> result = new HashMap<>();
+        if (keys.isEmpty()) {
+            return result;
+        }
+
+        List<Object> values = new ArrayList<>(keys);
+        Map<Long, List<String>> numericKeys = new HashMap<>();
+        for (String key : keys) {
+            try {
+                long numericKey = Long.parseLong(key);
+                List<String> originals = numericKeys.get(numericKey);
+                if (originals == null) {
+                    originals = new ArrayList<>();
+                    numericKeys.put(numericKey, originals);
+                    values.add(numericKey);
+                }
+                originals.add(key);
+            } catch (NumberFormatException e) {
+                // not a numeric key
+            }
+        }
+
+        Map<String, Long> numericMatches = new HashMap<>();
+        try (Result rows = database.execute(batchQuery, Collections.singletonMap("keys", values))) {
+            while (rows.hasNext()) {
+                Map<String, Object> row = rows.next();
+                Object key = row.get("key");
+                long id = ((Number) row.get("id")).longValue();
+                if (key instanceof String) {
+                    result.merge((String) key, id, Math::min);
+                } else if (key instanceof Number) {
+                    for (String original : numericKeys.getOrDefault(((Number) key).longValue(), Collections.emptyList())) {
+                        numericMatches.merge(original, id, Math::min);
+                    }
+                }
+            }
+        }
+
+        for (Map.Entry<String, Long> match : numericMatches.entrySet()) {
+            result.putIfAbsent(match.getKey(), match.getValue());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return <code>false</code>, Neo4j has no schema indexes for relationships.
+     */
+    @Override
+    public boolean canResolveRelationships() {
+        return false;
+    }
+
+    @Override
+    public long getRelationshipID(String key) {
+        throw new NotFoundException("Relationships can't be resolved through schema indexes, no relationship with " + keyProperty + " " + key);
+    }
+}
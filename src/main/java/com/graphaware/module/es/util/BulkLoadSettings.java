@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.graphaware.common.log.LoggerFactory;
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.AbstractMultiIndexActionBuilder;
+import io.searchbox.action.GenericResultAbstractAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static org.springframework.util.Assert.notNull;
+
+/**
+ * Index settings optimized for loading a large number of documents: no periodic refresh, no replicas and asynchronous
+ * translog. {@link #apply()} remembers the original settings of the indices, {@link #restore(int)} puts them back and
+ * makes the loaded documents searchable.
+ * <p/>
+ * The original settings are also stored in the {@link #MARKER_INDEX}, one document per index, until they are restored. If
+ * the database stops in between, {@link #recover()} puts them back the next time the module starts.
+ */
+public class BulkLoadSettings {
+
+    private static final Log LOG = LoggerFactory.getLogger(BulkLoadSettings.class);
+
+    /**
+     * Index holding the original settings of the indices in bulk load mode.
+     */
+    public static final String MARKER_INDEX = ".graphaware-bulk-load";
+    private static final String MARKER_TYPE = "settings";
+    private static final String NO_REFRESH = "-1";
+
+    private static final String REFRESH_INTERVAL = "refresh_interval";
+    private static final String NUMBER_OF_REPLICAS = "number_of_replicas";
+    private static final String TRANSLOG_DURABILITY = "translog.durability";
+
+    //Elasticsearch defaults, used when an index doesn't override them
+    private static final String DEFAULT_REFRESH_INTERVAL = "1s";
+    private static final String DEFAULT_NUMBER_OF_REPLICAS = "1";
+    private static final String DEFAULT_TRANSLOG_DURABILITY = "request";
+
+    private final JestClient client;
+    private final Set<String> indices;
+    private final Map<String, JsonObject> originalSettings = new LinkedHashMap<>();
+
+    /**
+     * Construct new settings.
+     *
+     * @param client  Jest client. Must not be <code>null</code>.
+     * @param indices names of the indices to load documents into, <code>null</code> names are ignored. Must not be
+     *                <code>null</code>.
+     */
+    public BulkLoadSettings(JestClient client, Collection<String> indices) {
+        notNull(client);
+        notNull(indices);
+
+        this.client = client;
+        this.indices = new LinkedHashSet<>(indices);
+        this.indices.remove(null);
+    }
+
+    /**
+     * Remember the current settings of the indices and switch them to bulk load settings. Indices behind an alias are
+     * switched individually. Indices whose settings can't be read or stored in the {@link #MARKER_INDEX} are left
+     * untouched.
+     */
+    public void apply() {
+        for (String index : indices) {
+            for (Map.Entry<String, JsonObject> entry : readSettings(index).entrySet()) {
+                String concrete = entry.getKey();
+                JsonObject original = entry.getValue();
+
+                if (!saveMarker(concrete, original)) {
+                    LOG.warn("Leaving settings of index " + concrete + " untouched, as they couldn't be restored after a restart");
+                    continue;
+                }
+
+                JsonObject bulk = new JsonObject();
+                bulk.addProperty(REFRESH_INTERVAL, NO_REFRESH);
+                bulk.addProperty(NUMBER_OF_REPLICAS, "0");
+                bulk.addProperty(TRANSLOG_DURABILITY, "async");
+
+                if (updateSettings(concrete, bulk)) {
+                    originalSettings.put(concrete, original);
+                    LOG.info("Applied bulk load settings to index " + concrete + ", original settings: " + original);
+                } else {
+                    deleteMarker(concrete);
+                }
+            }
+        }
+    }
+
+    /**
+     * Restore the original settings of the indices, then force-merge and refresh them.
+     *
+     * @param maxSegments number of segments to merge each shard into, 0 or less to let Elasticsearch decide.
+     */
+    public void restore(int maxSegments) {
+        for (Map.Entry<String, JsonObject> entry : originalSettings.entrySet()) {
+            if (updateSettings(entry.getKey(), entry.getValue())) {
+                deleteMarker(entry.getKey());
+                LOG.info("Restored settings of index " + entry.getKey());
+            }
+        }
+
+        if (originalSettings.isEmpty()) {
+            return;
+        }
+
+        LOG.info("Force-merging indices " + originalSettings.keySet() + "...");
+        execute(new ForceMerge.Builder(originalSettings.keySet(), maxSegments).build(), "force-merge indices " + originalSettings.keySet());
+        execute(new Refresh.Builder().addIndex(originalSettings.keySet()).build(), "refresh indices " + originalSettings.keySet());
+
+        originalSettings.clear();
+    }
+
+    /**
+     * Restore the settings of indices left in bulk load mode when the database stopped before {@link #restore(int)},
+     * and warn about indices with periodic refresh disabled for another reason, whose updates don't become searchable.
+     * Settings that can't be restored now are kept in the {@link #MARKER_INDEX} for the next attempt.
+     *
+     * @return <code>true</code> iff the settings of any index have been restored.
+     */
+    public boolean recover() {
+        boolean recovered = false;
+        Set<String> marked = new HashSet<>();
+
+        for (Map.Entry<String, JsonObject> marker : readMarkers().entrySet()) {
+            String index = marker.getKey();
+            JestResult result = executeQuietly(updateSettingsAction(index, marker.getValue()));
+
+            if (result != null && result.isSucceeded()) {
+                deleteMarker(index);
+                marked.add(index);
+                recovered = true;
+                LOG.warn("Restored settings of index " + index + " left in bulk load mode by a previous run: " + marker.getValue());
+            } else if (result != null && result.getResponseCode() == 404) {
+                deleteMarker(index); //the index is gone
+            } else {
+                LOG.warn("Failed to restore settings of index " + index + " left in bulk load mode by a previous run, will try again on next start");
+                marked.add(index);
+            }
+        }
+
+        for (String index : indices) {
+            for (Map.Entry<String, JsonObject> entry : readSettings(index).entrySet()) {
+                if (!marked.contains(entry.getKey()) && NO_REFRESH.equals(value(entry.getValue().get(REFRESH_INTERVAL), null))) {
+                    LOG.warn("Index " + entry.getKey() + " has periodic refresh disabled (refresh_interval: -1), updates won't become searchable until it is refreshed explicitly");
+                }
+            }
+        }
+
+        return recovered;
+    }
+
+    /**
+     * @return settings affected by bulk loading keyed by the name of the concrete index, more than one if the given name
+     * is an alias. Empty if they can't be read.
+     */
+    private Map<String, JsonObject> readSettings(String index) {
+        Map<String, JsonObject> result = new LinkedHashMap<>();
+
+        JestResult response = execute(new GetSettings.Builder().addIndex(index).build(), "read settings of index " + index);
+        if (response == null) {
+            return result;
+        }
+
+        for (Map.Entry<String, JsonElement> entry : response.getJsonObject().entrySet()) {
+            JsonObject settings = entry.getValue().isJsonObject() ? path(entry.getValue().getAsJsonObject(), "settings", "index") : null;
+            if (settings == null) {
+                continue;
+            }
+
+            JsonObject original = new JsonObject();
+            original.addProperty(REFRESH_INTERVAL, value(settings.get(REFRESH_INTERVAL), DEFAULT_REFRESH_INTERVAL));
+            original.addProperty(NUMBER_OF_REPLICAS, value(settings.get(NUMBER_OF_REPLICAS), DEFAULT_NUMBER_OF_REPLICAS));
+            JsonObject translog = path(settings, "translog");
+            original.addProperty(TRANSLOG_DURABILITY, value(translog == null ? settings.get(TRANSLOG_DURABILITY) : translog.get("durability"), DEFAULT_TRANSLOG_DURABILITY));
+            result.put(entry.getKey(), original);
+        }
+
+        if (result.isEmpty()) {
+            LOG.warn("No settings found for index " + index);
+        }
+
+        return result;
+    }
+
+    private boolean saveMarker(String index, JsonObject original) {
+        return execute(new Index.Builder(original.toString()).index(MARKER_INDEX).type(MARKER_TYPE).id(index).setParameter("refresh", "true").build(),
+                "store original settings of index " + index) != null;
+    }
+
+    private void deleteMarker(String index) {
+        execute(new Delete.Builder(index).index(MARKER_INDEX).type(MARKER_TYPE).setParameter("refresh", "true").build(),
+                "delete original settings of index " + index);
+    }
+
+    /**
+     * @return original settings stored in the {@link #MARKER_INDEX} keyed by the name of their index. Empty if there is
+     * no such index, i.e. bulk load mode has never been used.
+     */
+    private Map<String, JsonObject> readMarkers() {
+        Map<String, JsonObject> markers = new LinkedHashMap<>();
+
+        JestResult result = executeQuietly(new Search.Builder("{\"size\":1000}").addIndex(MARKER_INDEX).addType(MARKER_TYPE).build());
+        JsonObject hits = result == null || !result.isSucceeded() ? null : path(result.getJsonObject(), "hits");
+        if (hits == null || !hits.has("hits") || !hits.get("hits").isJsonArray()) {
+            return markers;
+        }
+
+        for (JsonElement hit : hits.getAsJsonArray("hits")) {
+            JsonObject source = path(hit.getAsJsonObject(), "_source");
+            if (source != null) {
+                markers.put(hit.getAsJsonObject().get("_id").getAsString(), source);
+            }
+        }
+
+        return markers;
+    }
+
+    private boolean updateSettings(String index, JsonObject settings) {
+        return execute(updateSettingsAction(index, settings), "update settings of index " + index) != null;
+    }
+
+    private static UpdateSettings updateSettingsAction(String index, JsonObject settings) {
+        JsonObject body = new JsonObject();
+        body.add("index", settings);
+        return new UpdateSettings.Builder(body.toString()).addIndex(index).build();
+    }
+
+    private JestResult execute(AbstractAction<? extends JestResult> action, String description) {
+        try {
+            JestResult result = client.execute(action);
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to " + description + ". Details: " + result.getErrorMessage());
+                return null;
+            }
+            return result;
+        } catch (IOException e) {
+            LOG.warn("Failed to " + description, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return result, whether succeeded or not, <code>null</code> if the request couldn't be sent.
+     */
+    private JestResult executeQuietly(AbstractAction<? extends JestResult> action) {
+        try {
+            return client.execute(action);
+        } catch (IOException e) {
+            LOG.warn("Failed to execute " + action.getURI(), e);
+            return null;
+        }
+    }
+
+    private static JsonObject path(JsonObject object, String... fields) {
+        JsonObject current = object;
+        for (String field : fields) {
+            if (current == null || !current.has(field) || !current.get(field).isJsonObject()) {
+                return null;
+            }
+            current = current.getAsJsonObject(field);
+        }
+        return current;
+    }
+
+    private static String value(JsonElement element, String defaultValue) {
+        return element == null || !element.isJsonPrimitive() ? defaultValue : element.getAsString();
+    }
+
+    private static class ForceMerge extends GenericResultAbstractAction {
+        protected ForceMerge(Builder builder) {
+            super(builder);
+            setURI(buildURI());
+        }
+
+        @Override
+        protected String buildURI() {
+            return super.buildURI() + "/_forcemerge";
+        }
+
+        @Override
+        public String getRestMethodName() {
+            return "POST";
+        }
+
+        public static class Builder extends AbstractMultiIndexActionBuilder<ForceMerge, Builder> {
+            public Builder(Collection<String> indices, int maxSegments) {
+                addIndex(indices);
+                if (maxSegments > 0) {
+                    setParameter("max_num_segments", maxSegments);
+                }
+            }
+
+            @Override
+            public ForceMerge build() {
+                return new ForceMerge(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.graphaware.common.log.LoggerFactory;
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.Action;
+import io.searchbox.action.GenericResultAbstractAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.springframework.util.Assert.notEmpty;
+import static org.springframework.util.Assert.notNull;
+
+/**
+ * {@link JestClient} that spreads requests over several Elasticsearch hosts.
+ * <p/>
+ * Every host gets its own pooled client. A host that fails with an {@link IOException} is ejected for a configurable
+ * period of time and the request is retried on the next available host. Optionally, the set of hosts is periodically
+ * refreshed from the cluster's <code>_nodes/http</code> API. Clients of hosts that leave the cluster are taken out of
+ * rotation straight away, but only shut down once the requests already sent to them have completed, or after a grace
+ * period.
+ * <p/>
+ * This class is thread-safe.
+ */
+public class ClusterJestClient implements JestClient {
+
+    private static final Log LOG = LoggerFactory.getLogger(ClusterJestClient.class);
+    private static final long RETIREMENT_GRACE_PERIOD = TimeUnit.MINUTES.toMillis(5);
+
+    private final Function<String, JestClient> hostClientFactory;
+    private final LoadBalancingStrategy strategy;
+    private final long ejectionTime;
+    private final String protocol;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private volatile List<Host> hosts = Collections.emptyList();
+    private final List<Host> retired = new ArrayList<>();
+    private ScheduledExecutorService discovery;
+
+    /**
+     * Construct a new client.
+     *
+     * @param hostClientFactory producing a client for a single host URL, e.g. <code>http://localhost:9200</code>. Must not be <code>null</code>.
+     * @param servers           initial host URLs. Must not be <code>null</code> or empty.
+     * @param strategy          load balancing strategy. Must not be <code>null</code>.
+     * @param ejectionTime      time in ms a failing host is excluded from load balancing.
+     * @param protocol          protocol used for hosts found by node discovery.
+     */
+    public ClusterJestClient(Function<String, JestClient> hostClientFactory, Set<String> servers, LoadBalancingStrategy strategy, long ejectionTime, String protocol) {
+        notNull(hostClientFactory);
+        notEmpty(servers);
+        notNull(strategy);
+
+        this.hostClientFactory = hostClientFactory;
+        this.strategy = strategy;
+        this.ejectionTime = ejectionTime;
+        this.protocol = protocol;
+
+        setServers(servers);
+    }
+
+    /**
+     * Start refreshing the host list from the cluster in the background.
+     *
+     * @param frequency in ms.
+     */
+    public synchronized void startDiscovery(long frequency) {
+        if (discovery != null) {
+            return;
+        }
+
+        discovery = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Elasticsearch node discovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        discovery.scheduleWithFixedDelay(this::discoverNodes, 0, frequency, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+        List<Host> tried = new ArrayList<>();
+        IOException lastFailure = null;
+
+        Host host;
+        while ((host = select(tried)) != null) {
+            if (!host.acquire()) {
+                tried.add(host); //removed from the cluster since it was selected
+                continue;
+            }
+            try {
+                return host.client.execute(clientRequest);
+            } catch (IOException e) {
+                LOG.warn("Request to Elasticsearch host " + host.url + " failed, ejecting it for " + ejectionTime + " ms: " + e.getMessage());
+                host.ejectedUntil = System.currentTimeMillis() + ejectionTime;
+                tried.add(host);
+                lastFailure = e;
+            } finally {
+                host.release();
+            }
+        }
+
+        throw lastFailure != null ? lastFailure : new IOException("No Elasticsearch host available");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T extends JestResult> void executeAsync(Action<T> clientRequest, JestResultHandler<? super T> jestResultHandler) {
+        List<Host> tried = new ArrayList<>();
+        Host host;
+        while ((host = select(tried)) != null) {
+            if (host.acquire()) {
+                break;
+            }
+            tried.add(host);
+        }
+
+        if (host == null) {
+            jestResultHandler.failed(new IOException("No Elasticsearch host available"));
+            return;
+        }
+
+        final Host selected = host;
+        try {
+            selected.client.executeAsync(clientRequest, new JestResultHandler<T>() {
+                @Override
+                public void completed(T result) {
+                    selected.release();
+                    jestResultHandler.completed(result);
+                }
+
+                @Override
+                public void failed(Exception ex) {
+                    selected.release();
+                    jestResultHandler.failed(ex);
+                }
+            });
+        } catch (RuntimeException e) {
+            selected.release();
+            throw e;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void shutdownClient() {
+        if (discovery != null) {
+            discovery.shutdownNow();
+            discovery = null;
+        }
+
+        for (Host host : hosts) {
+            host.close();
+        }
+        hosts = Collections.emptyList();
+
+        for (Host host : retired) {
+            host.close();
+        }
+        retired.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void setServers(Set<String> servers) {
+        Map<String, Host> current = new HashMap<>();
+        for (Host host : hosts) {
+            current.put(host.url, host);
+        }
+
+        List<Host> updated = new ArrayList<>();
+        for (String server : new TreeSet<>(servers)) {
+            Host existing = current.remove(server);
+            updated.add(existing != null ? existing : new Host(server, hostClientFactory.apply(server)));
+        }
+
+        hosts = Collections.unmodifiableList(updated);
+
+        for (Host removed : current.values()) {
+            LOG.info("Elasticsearch host " + removed.url + " removed from the cluster.");
+            removed.retire();
+            retired.add(removed);
+        }
+
+        closeRetired();
+    }
+
+    /**
+     * Shut down clients of hosts removed from the cluster that have no requests in flight anymore, or that have been
+     * removed for longer than the grace period.
+     */
+    private synchronized void closeRetired() {
+        long now = System.currentTimeMillis();
+        Iterator<Host> iterator = retired.iterator();
+        while (iterator.hasNext()) {
+            Host host = iterator.next();
+            if (host.isClosed()) {
+                iterator.remove();
+            } else if (host.retiredAt + RETIREMENT_GRACE_PERIOD <= now) {
+                LOG.warn("Shutting down client of removed Elasticsearch host " + host.url + " with " + host.inFlight.get() + " request(s) still in flight.");
+                host.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return URLs of the hosts requests are currently spread over.
+     */
+    public Set<String> getServers() {
+        Set<String> result = new TreeSet<>();
+        for (Host host : hosts) {
+            result.add(host.url);
+        }
+        return result;
+    }
+
+    /**
+     * Pick a host for the next request.
+     *
+     * @param excluded hosts that have already failed for this request.
+     * @return host, <code>null</code> if all hosts have been tried.
+     */
+    private Host select(Collection<Host> excluded) {
+        List<Host> snapshot = hosts;
+        long now = System.currentTimeMillis();
+
+        List<Host> candidates = new ArrayList<>(snapshot.size());
+        for (Host host : snapshot) {
+            if (!excluded.contains(host) && host.ejectedUntil <= now) {
+                candidates.add(host);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            // every host is ejected, better try one of them than give up
+            for (Host host : snapshot) {
+                if (!excluded.contains(host)) {
+                    candidates.add(host);
+                }
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            return null;
+        }
+
+        int offset = Math.floorMod(next.getAndIncrement(), candidates.size());
+
+        if (strategy == LoadBalancingStrategy.ROUND_ROBIN) {
+            return candidates.get(offset);
+        }
+
+        Host leastLoaded = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Host host = candidates.get((offset + i) % candidates.size());
+            if (leastLoaded == null || host.inFlight.get() < leastLoaded.inFlight.get()) {
+                leastLoaded = host;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private void discoverNodes() {
+        closeRetired();
+
+        try {
+            JestResult result = execute(new NodesHttpInfo.Builder().build());
+            if (!result.isSucceeded()) {
+                LOG.warn("Elasticsearch node discovery failed: " + result.getErrorMessage());
+                return;
+            }
+
+            Set<String> discovered = new HashSet<>();
+            JsonObject nodes = result.getJsonObject().getAsJsonObject("nodes");
+            if (nodes != null) {
+                for (Map.Entry<String, JsonElement> node : nodes.entrySet()) {
+                    String address = publishAddress(node.getValue().getAsJsonObject());
+                    if (address != null) {
+                        discovered.add(protocol + "://" + address);
+                    }
+                }
+            }
+
+            if (discovered.isEmpty()) {
+                LOG.warn("Elasticsearch node discovery found no HTTP-enabled nodes, keeping " + getServers());
+            } else if (!discovered.equals(getServers())) {
+                LOG.info("Discovered Elasticsearch nodes " + discovered);
+                setServers(discovered);
+            }
+        } catch (Exception e) {
+            LOG.warn("Elasticsearch node discovery failed", e);
+        }
+    }
+
+    /**
+     * Extract the HTTP publish address of a node. Depending on the Elasticsearch version it comes as
+     * <code>127.0.0.1:9200</code>, <code>hostname/127.0.0.1:9200</code> or <code>inet[/127.0.0.1:9200]</code>.
+     */
+    private static String publishAddress(JsonObject node) {
+        JsonElement address = null;
+        if (node.has("http") && node.getAsJsonObject("http").has("publish_address")) {
+            address = node.getAsJsonObject("http").get("publish_address");
+        } else if (node.has("http_address")) {
+            address = node.get("http_address");
+        }
+
+        if (address == null || address.isJsonNull()) {
+            return null;
+        }
+
+        String value = address.getAsString();
+        if (value.startsWith("inet[") && value.endsWith("]")) {
+            value = value.substring(5, value.length() - 1);
+        }
+        if (value.contains("/")) {
+            value = value.substring(value.indexOf('/') + 1);
+        }
+        return value.isEmpty() ? null : value;
+    }
+
+    private static class Host {
+        private final String url;
+        private final JestClient client;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile long ejectedUntil = 0;
+        private volatile boolean retiring = false;
+        private volatile long retiredAt;
+
+        private Host(String url, JestClient client) {
+            this.url = url;
+            this.client = client;
+        }
+
+        /**
+         * Register a request about to be sent to this host.
+         *
+         * @return <code>false</code> if the host has been removed from the cluster and must not be used anymore.
+         */
+        private boolean acquire() {
+            inFlight.incrementAndGet();
+            if (retiring) {
+                release();
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Register the completion of a request, closing the client if it was the last one of a removed host.
+         */
+        private void release() {
+            if (inFlight.decrementAndGet() == 0 && retiring) {
+                close();
+            }
+        }
+
+        /**
+         * Take the host out of rotation, closing its client as soon as no request is in flight.
+         */
+        private void retire() {
+            retiredAt = System.currentTimeMillis();
+            retiring = true;
+            if (inFlight.get() == 0) {
+                close();
+            }
+        }
+
+        private void close() {
+            if (closed.compareAndSet(false, true)) {
+                client.shutdownClient();
+            }
+        }
+
+        private boolean isClosed() {
+            return closed.get();
+        }
+    }
+
+    private static class NodesHttpInfo extends GenericResultAbstractAction {
+        protected NodesHttpInfo(Builder builder) {
+            super(builder);
+            setURI(buildURI());
+        }
+
+        @Override
+        protected String buildURI() {
+            return "/_nodes/http";
+        }
+
+        @Override
+        public String getRestMethodName() {
+            return "GET";
+        }
+
+        public static class Builder extends AbstractAction.Builder<NodesHttpInfo, Builder> {
+            @Override
+            public NodesHttpInfo build() {
+                return new NodesHttpInfo(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of request bodies gzipped by {@link GzipRequestInterceptor}. Thread-safe.
+ */
+public class CompressionStatistics {
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong compressionNanos = new AtomicLong();
+
+    void record(long uncompressed, long compressed, long nanos) {
+        requests.incrementAndGet();
+        uncompressedBytes.addAndGet(uncompressed);
+        compressedBytes.addAndGet(compressed);
+        compressionNanos.addAndGet(nanos);
+    }
+
+    /**
+     * @return number of compressed request bodies.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return total size of the request bodies before compression.
+     */
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    /**
+     * @return total size of the request bodies sent over the wire.
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return total time spent writing compressed request bodies, in ms. Includes the time spent on the socket.
+     */
+    public long getCompressionMillis() {
+        return compressionNanos.get() / 1_000_000;
+    }
+
+    /**
+     * @return all counters by name.
+     */
+    public Map<String, Number> asMap() {
+        Map<String, Number> result = new LinkedHashMap<>();
+        result.put("compressedRequests", getRequests());
+        result.put("uncompressedBytes", getUncompressedBytes());
+        result.put("compressedBytes", getCompressedBytes());
+        result.put("compressionMillis", getCompressionMillis());
+        return result;
+    }
+}
@@ -1,29 +1,95 @@
 package com.graphaware.module.es.util;
 
+import com.graphaware.module.es.ElasticSearchConfiguration;
 import io.searchbox.client.JestClientFactory;
 import io.searchbox.client.config.HttpClientConfig;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.util.Assert.notNull;
+
 /**
  * Customizations:
  * - connectionManagerShared: true
- * - readTimeout: 20s
- * - connTimeout: 10s
+ * - pool size, timeouts, keep-alive and idle connection eviction taken from {@link ElasticSearchConfiguration}
+ * - gzip-compressed request bodies (all or bulk only), if enabled
  */
 public class CustomJestClientFactory extends JestClientFactory {
 
+    private final ElasticSearchConfiguration configuration;
+    private final CompressionStatistics compressionStatistics;
+
+    public CustomJestClientFactory(ElasticSearchConfiguration configuration) {
+        this(configuration, null);
+    }
+
+    public CustomJestClientFactory(ElasticSearchConfiguration configuration, CompressionStatistics compressionStatistics) {
+        notNull(configuration);
+        this.configuration = configuration;
+        this.compressionStatistics = compressionStatistics;
+    }
+
     @Override
     protected HttpClientBuilder configureHttpClient(HttpClientBuilder builder) {
-        return builder
-                .setConnectionManagerShared(true);
+        builder.setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig());
+
+        ConnectionKeepAliveStrategy keepAliveStrategy = keepAliveStrategy();
+        if (keepAliveStrategy != null) {
+            builder.setKeepAliveStrategy(keepAliveStrategy);
+        }
+
+        if (configuration.isRequestCompression() || configuration.isBulkCompression()) {
+            // must run before RequestContent computes the Content-Length of the original entity
+            builder.addInterceptorFirst(new GzipRequestInterceptor(!configuration.isRequestCompression(), compressionStatistics));
+        }
+
+        return builder;
     }
 
     @Override
     public void setHttpClientConfig(HttpClientConfig httpClientConfig) {
-        super.setHttpClientConfig(new HttpClientConfig.Builder(httpClientConfig)
-                .readTimeout(20000) // 20s
-                .connTimeout(10000) // 10s
-                .build()
-        );
+        super.setHttpClientConfig(customize(httpClientConfig));
+    }
+
+    RequestConfig requestConfig() {
+        return RequestConfig.custom()
+                .setConnectTimeout(configuration.getConnectTimeout())
+                .setSocketTimeout(configuration.getReadTimeout())
+                .setConnectionRequestTimeout(configuration.getConnectionRequestTimeout())
+                .build();
+    }
+
+    /**
+     * @return strategy that caps the keep-alive announced by the server at the configured one, <code>null</code> to keep connections alive for as long as the server allows.
+     */
+    ConnectionKeepAliveStrategy keepAliveStrategy() {
+        final long keepAlive = configuration.getKeepAlive();
+        if (keepAlive <= 0) {
+            return null;
+        }
+
+        return (response, context) -> {
+            long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+            return serverKeepAlive > 0 ? Math.min(serverKeepAlive, keepAlive) : keepAlive;
+        };
+    }
+
+    HttpClientConfig customize(HttpClientConfig httpClientConfig) {
+        HttpClientConfig.Builder builder = new HttpClientConfig.Builder(httpClientConfig)
+                .maxTotalConnection(configuration.getMaxTotalConnections())
+                .defaultMaxTotalConnectionPerRoute(configuration.getMaxConnectionsPerRoute())
+                .readTimeout(configuration.getReadTimeout())
+                .connTimeout(configuration.getConnectTimeout());
+
+        if (configuration.getMaxIdleTime() > 0) {
+            builder.maxConnectionIdleTime(configuration.getMaxIdleTime(), TimeUnit.MILLISECONDS);
+        }
+
+        return builder.build();
     }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.entity.GzipCompressingEntity;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * {@link HttpRequestInterceptor} that gzips request bodies. The body is compressed while it is being written to the
+ * socket, so it is never held in memory in its compressed form.
+ */
+public class GzipRequestInterceptor implements HttpRequestInterceptor {
+
+    private final boolean bulkOnly;
+    private final CompressionStatistics statistics;
+
+    /**
+     * Construct a new interceptor.
+     *
+     * @param bulkOnly   <code>true</code> to only compress <code>_bulk</code> requests, <code>false</code> to compress all requests with a body.
+     * @param statistics to record compression ratio to, can be <code>null</code>.
+     */
+    public GzipRequestInterceptor(boolean bulkOnly, CompressionStatistics statistics) {
+        this.bulkOnly = bulkOnly;
+        this.statistics = statistics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        if (!(request instanceof HttpEntityEnclosingRequest)) {
+            return;
+        }
+
+        if (bulkOnly && !isBulk(request)) {
+            return;
+        }
+
+        HttpEntityEnclosingRequest enclosingRequest = (HttpEntityEnclosingRequest) request;
+        HttpEntity entity = enclosingRequest.getEntity();
+
+        if (entity == null || entity.getContentEncoding() != null) {
+            return;
+        }
+
+        enclosingRequest.setEntity(statistics == null ? new GzipCompressingEntity(entity) : new MeteredGzipCompressingEntity(entity, statistics));
+    }
+
+    private static boolean isBulk(HttpRequest request) {
+        String uri = request.getRequestLine().getUri();
+        int query = uri.indexOf('?');
+        String path = query < 0 ? uri : uri.substring(0, query);
+        return path.endsWith("/_bulk");
+    }
+
+    /**
+     * {@link GzipCompressingEntity} that counts bytes on both sides of the compressor.
+     */
+    private static class MeteredGzipCompressingEntity extends GzipCompressingEntity {
+
+        private final CompressionStatistics statistics;
+
+        MeteredGzipCompressingEntity(HttpEntity entity, CompressionStatistics statistics) {
+            super(entity);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public void writeTo(OutputStream outstream) throws IOException {
+            long start = System.nanoTime();
+
+            CountingOutputStream compressed = new CountingOutputStream(outstream);
+            GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+            CountingOutputStream uncompressed = new CountingOutputStream(gzip);
+
+            wrappedEntity.writeTo(uncompressed);
+            // only close the gzip stream, not the socket stream underneath
+            gzip.finish();
+            gzip.flush();
+
+            statistics.record(uncompressed.count, compressed.count, System.nanoTime() - start);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
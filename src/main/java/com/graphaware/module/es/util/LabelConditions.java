@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import org.springframework.expression.ParseException;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.ast.MethodReference;
+import org.springframework.expression.spel.ast.OpAnd;
+import org.springframework.expression.spel.ast.OpOr;
+import org.springframework.expression.spel.ast.StringLiteral;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Finds the labels that nodes must have to match SpEL conditions, such as those of node inclusion policies or json
+ * mappings, so that the nodes can be found through the label scan store rather than by scanning all nodes.
+ * <p/>
+ * Only <code>hasLabel('...')</code> calls combined with <code>||</code> and <code>&&</code> are understood, any
+ * other condition (e.g. on properties) may match nodes without labels. Such conditions can still be <code>&&</code>-ed
+ * with label checks.
+ */
+public final class LabelConditions {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+    private static final String HAS_LABEL = "hasLabel";
+
+    private LabelConditions() {
+    }
+
+    /**
+     * @param condition SpEL condition on nodes.
+     * @return labels of which matching nodes have at least one, <code>null</code> if there's no such set of labels or
+     * the condition can't be parsed.
+     */
+    public static Set<String> requiredLabels(String condition) {
+        if (condition == null) {
+            return null;
+        }
+
+        try {
+            return requiredLabels(PARSER.parseRaw(condition).getAST());
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param conditions SpEL conditions on nodes.
+     * @return labels of which nodes matching any of the conditions have at least one, <code>null</code> if there's no
+     * such set of labels.
+     */
+    public static Set<String> requiredLabels(Collection<String> conditions) {
+        Set<String> labels = new LinkedHashSet<>();
+        for (String condition : conditions) {
+            Set<String> required = requiredLabels(condition);
+            if (required == null) {
+                return null;
+            }
+            labels.addAll(required);
+        }
+        return labels;
+    }
+
+    private static Set<String> requiredLabels(SpelNode node) {
+        if (node instanceof MethodReference) {
+            MethodReference method = (MethodReference) node;
+            if (HAS_LABEL.equals(method.getName()) && method.getChildCount() == 1 && method.getChild(0) instanceof StringLiteral) {
+                Set<String> labels = new LinkedHashSet<>();
+                labels.add(String.valueOf(((StringLiteral) method.getChild(0)).getLiteralValue().getValue()));
+                return labels;
+            }
+            return null;
+        }
+
+        if (node instanceof OpOr) {
+            Set<String> labels = new LinkedHashSet<>();
+            for (int i = 0; i < node.getChildCount(); i++) {
+                Set<String> required = requiredLabels(node.getChild(i));
+                if (required == null) {
+                    return null;
+                }
+                labels.addAll(required);
+            }
+            return labels;
+        }
+
+        if (node instanceof OpAnd) {
+            Set<String> labels = null;
+            for (int i = 0; i < node.getChildCount(); i++) {
+                Set<String> required = requiredLabels(node.getChild(i));
+                if (required != null && (labels == null || required.size() < labels.size())) {
+                    labels = required;
+                }
+            }
+            return labels;
+        }
+
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+/**
+ * How {@link ClusterJestClient} picks the Elasticsearch host a request is sent to.
+ */
+public enum LoadBalancingStrategy {
+
+    /**
+     * Hosts take turns.
+     */
+    ROUND_ROBIN,
+
+    /**
+     * The host with the fewest requests in flight is chosen, hosts take turns on a tie.
+     */
+    LEAST_LOADED;
+
+    /**
+     * Parse a strategy from its configuration value, e.g. <code>roundRobin</code> or <code>least_loaded</code>.
+     *
+     * @param value configuration value. Must not be <code>null</code>.
+     * @return strategy.
+     * @throws IllegalArgumentException if the value doesn't name a strategy.
+     */
+    public static LoadBalancingStrategy fromString(String value) {
+        String normalized = value.replace("_", "").replace("-", "").trim();
+        for (LoadBalancingStrategy strategy : values()) {
+            if (strategy.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown load balancing strategy " + value);
+    }
+}
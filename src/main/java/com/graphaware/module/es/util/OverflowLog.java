@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.graphaware.common.log.LoggerFactory;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Delete;
+import org.neo4j.logging.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Updates that didn't fit in the replication queue, recorded so that they can be reconciled later: the IDs of the
+ * nodes and relationships to re-index from their current state in the graph, and the documents to delete.
+ * <p/>
+ * Entries are kept in memory, or appended to a local file (one json object per line) so that they survive a restart.
+ * Entries that can't be written to the file are kept in memory. Thread-safe.
+ */
+public class OverflowLog {
+
+    private static final Log LOG = LoggerFactory.getLogger(OverflowLog.class);
+
+    private static final String NODE = "node";
+    private static final String RELATIONSHIP = "relationship";
+    private static final String DELETE = "delete";
+
+    private final File file;
+    private Entries entries = new Entries();
+    private Writer writer;
+    private long size;
+
+    /**
+     * Create a log kept in memory.
+     */
+    public OverflowLog() {
+        this(null);
+    }
+
+    /**
+     * Create a log appended to a file. Entries already in the file (e.g. left by a previous run) are part of the log.
+     *
+     * @param file to append to, <code>null</code> to keep the log in memory.
+     */
+    public OverflowLog(File file) {
+        this.file = file;
+        if (file != null && file.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                size = reader.lines().filter(line -> !line.trim().isEmpty()).count();
+            } catch (IOException e) {
+                LOG.error("Failed to read overflow file " + file, e);
+            }
+        }
+    }
+
+    /**
+     * Record entries.
+     *
+     * @param added entries to record.
+     */
+    public synchronized void append(Entries added) {
+        if (added.isEmpty()) {
+            return;
+        }
+
+        if (file != null) {
+            try {
+                write(added);
+                size += added.size();
+                return;
+            } catch (IOException e) {
+                LOG.error("Failed to write to overflow file " + file + ", keeping " + added.size() + " entries in memory", e);
+                close();
+            }
+        }
+
+        size -= entries.size();
+        entries.addAll(added);
+        size += entries.size();
+    }
+
+    private void write(Entries added) throws IOException {
+        if (writer == null) {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+            writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        for (Long id : added.getNodes()) {
+            writeLine(NODE, id);
+        }
+        for (Long id : added.getRelationships()) {
+            writeLine(RELATIONSHIP, id);
+        }
+        for (BulkableAction<? extends JestResult> delete : added.getDeletes()) {
+            JsonObject key = new JsonObject();
+            key.addProperty("index", delete.getIndex());
+            key.addProperty("type", delete.getType());
+            key.addProperty("id", delete.getId());
+            JsonObject line = new JsonObject();
+            line.add(DELETE, key);
+            writer.write(line.toString());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private void writeLine(String kind, long id) throws IOException {
+        JsonObject line = new JsonObject();
+        line.addProperty(kind, id);
+        writer.write(line.toString());
+        writer.write('\n');
+    }
+
+    /**
+     * Take all entries out of the log, e.g. to reconcile them.
+     *
+     * @return entries recorded so far, de-duplicated.
+     */
+    public synchronized Entries drain() {
+        Entries drained = entries;
+        entries = new Entries();
+        size = 0;
+
+        if (file != null && file.exists()) {
+            close();
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                reader.lines().forEach(line -> read(line, drained));
+                Files.delete(file.toPath());
+            } catch (IOException e) {
+                LOG.error("Failed to read overflow file " + file, e);
+            }
+        }
+
+        return drained;
+    }
+
+    private void read(String line, Entries entries) {
+        if (line.trim().isEmpty()) {
+            return;
+        }
+
+        try {
+            JsonObject object = new JsonParser().parse(line).getAsJsonObject();
+            if (object.has(NODE)) {
+                entries.addNode(object.get(NODE).getAsLong());
+            } else if (object.has(RELATIONSHIP)) {
+                entries.addRelationship(object.get(RELATIONSHIP).getAsLong());
+            } else if (object.has(DELETE)) {
+                JsonObject key = object.getAsJsonObject(DELETE);
+                entries.addDelete(new Delete.Builder(key.get("id").getAsString())
+                        .index(key.get("index").getAsString())
+                        .type(key.get("type").getAsString())
+                        .build());
+            }
+        } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+            LOG.warn("Skipping malformed line of overflow file " + file + ": " + line);
+        }
+    }
+
+    /**
+     * @return number of entries recorded since the log was last drained. Entries appended to a file are not
+     * de-duplicated until drained.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Close the file, if any. It is re-opened when more entries are recorded.
+     */
+    public synchronized void close() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close overflow file " + file, e);
+            }
+            writer = null;
+        }
+    }
+
+    /**
+     * Entries of an {@link OverflowLog}. Not thread-safe.
+     */
+    public static class Entries {
+
+        private final Set<Long> nodes = new LinkedHashSet<>();
+        private final Set<Long> relationships = new LinkedHashSet<>();
+        private final Map<String, BulkableAction<? extends JestResult>> deletes = new LinkedHashMap<>(); //by index, type and ID
+
+        public void addNode(long id) {
+            nodes.add(id);
+        }
+
+        public void addRelationship(long id) {
+            relationships.add(id);
+        }
+
+        public void addDelete(BulkableAction<? extends JestResult> delete) {
+            deletes.put(delete.getIndex() + "/" + delete.getType() + "/" + delete.getId(), delete);
+        }
+
+        public void addAll(Entries other) {
+            nodes.addAll(other.nodes);
+            relationships.addAll(other.relationships);
+            deletes.putAll(other.deletes);
+        }
+
+        /**
+         * @return IDs of nodes to re-index.
+         */
+        public Set<Long> getNodes() {
+            return nodes;
+        }
+
+        /**
+         * @return IDs of relationships to re-index.
+         */
+        public Set<Long> getRelationships() {
+            return relationships;
+        }
+
+        /**
+         * @return documents to delete.
+         */
+        public Collection<BulkableAction<? extends JestResult>> getDeletes() {
+            return deletes.values();
+        }
+
+        public int size() {
+            return nodes.size() + relationships.size() + deletes.size();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+    }
+}
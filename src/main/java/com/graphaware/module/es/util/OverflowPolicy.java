@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+/**
+ * What happens to the updates of a committed transaction when the queue of updates waiting to be replicated to
+ * Elasticsearch is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Leave it to the writer's queue, which drops updates it has no room for.
+     */
+    NONE,
+
+    /**
+     * The committing thread waits for room in the queue, up to a timeout. Updates still without room after the timeout
+     * are marked for reconciliation, as with {@link #DROP}.
+     */
+    BLOCK,
+
+    /**
+     * Updates are appended to a local file and replayed once the queue has drained.
+     */
+    SPILL,
+
+    /**
+     * Updates are dropped, the IDs of the updated entities (and the keys of deleted documents) are kept in memory until
+     * reconciled on demand.
+     */
+    DROP;
+
+    /**
+     * Parse a policy from its configuration value, e.g. <code>block</code>.
+     *
+     * @param value configuration value. Must not be <code>null</code>.
+     * @return policy.
+     * @throws IllegalArgumentException if the value doesn't name a policy.
+     */
+    public static OverflowPolicy fromString(String value) {
+        for (OverflowPolicy policy : values()) {
+            if (policy.name().equalsIgnoreCase(value.trim())) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown overflow policy " + value);
+    }
+}
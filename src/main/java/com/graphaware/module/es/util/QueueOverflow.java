@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.common.log.LoggerFactory;
+import com.graphaware.common.representation.DetachedEntity;
+import com.graphaware.common.util.Change;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Delete;
+import org.neo4j.logging.Log;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Applies an {@link OverflowPolicy} to the updates of committed transactions when the writer's queue is full, i.e.
+ * when as many transactions as the queue capacity are {@link ReplicationTracker#getPending() pending}. Updates without
+ * room in the queue are recorded in an {@link OverflowLog}, as the IDs of the entities to re-index and the documents
+ * to delete. Thread-safe.
+ */
+public class QueueOverflow {
+
+    private static final Log LOG = LoggerFactory.getLogger(QueueOverflow.class);
+
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final long timeout;
+    private final ReplicationTracker tracker;
+    private final Function<WriteOperation<?>, List<BulkableAction<? extends JestResult>>> mapping;
+    private final OverflowLog log;
+
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong reconciled = new AtomicLong();
+
+    /**
+     * Create a new overflow handler.
+     *
+     * @param policy   to apply when the queue is full.
+     * @param capacity of the queue, in transactions.
+     * @param timeout  maximum time in ms a committing thread waits for room in the queue with {@link OverflowPolicy#BLOCK}.
+     * @param tracker  tracking the transactions in the queue, admitted transactions are registered with it.
+     * @param mapping  producing the actions of an operation, to find the documents deleted by it.
+     * @param log      to record updates without room in the queue.
+     */
+    public QueueOverflow(OverflowPolicy policy, int capacity, long timeout, ReplicationTracker tracker, Function<WriteOperation<?>, List<BulkableAction<? extends JestResult>>> mapping, OverflowLog log) {
+        this.policy = policy;
+        this.capacity = capacity;
+        this.timeout = timeout;
+        this.tracker = tracker;
+        this.mapping = mapping;
+        this.log = log;
+    }
+
+    /**
+     * Find out whether the operations of a committed transaction can be queued, waiting for room in the queue if the
+     * policy says so, and register them with the tracker if so. Checking for room and registering are atomic, so that
+     * admitted operations always fit in the queue and are never dropped by it untracked. Operations without room are
+     * recorded for reconciliation. With {@link OverflowPolicy#NONE}, all operations are admitted and the writer's queue
+     * drops those it has no room for.
+     *
+     * @param operations of the transaction.
+     * @return <code>true</code> iff the operations should be queued.
+     */
+    public boolean admit(Collection<WriteOperation<?>> operations) {
+        if (operations.isEmpty() || policy == OverflowPolicy.NONE) {
+            tracker.committed(operations);
+            return true;
+        }
+
+        try {
+            if (tracker.committed(operations, capacity, 0) > 0) {
+                return true;
+            }
+
+            if (policy == OverflowPolicy.BLOCK) {
+                long start = System.nanoTime();
+                try {
+                    if (tracker.committed(operations, capacity, timeout) > 0) {
+                        return true;
+                    }
+                } finally {
+                    blockedNanos.addAndGet(System.nanoTime() - start);
+                }
+
+                if (timeouts.incrementAndGet() == 1) {
+                    LOG.warn("No room in the Elasticsearch replication queue after " + timeout + " ms, marking updates for reconciliation (logged once)");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        record(operations);
+
+        AtomicLong counter = policy == OverflowPolicy.SPILL ? spilled : dropped;
+        if (counter.getAndAdd(operations.size()) == 0) {
+            LOG.warn("Elasticsearch replication queue is full, " + (policy == OverflowPolicy.SPILL ? "spilling" : "dropping") + " updates for reconciliation (logged once)");
+        }
+
+        return false;
+    }
+
+    /**
+     * Record operations in the overflow log instead of queuing them.
+     *
+     * @param operations to record.
+     */
+    public void record(Collection<WriteOperation<?>> operations) {
+        OverflowLog.Entries entries = new OverflowLog.Entries();
+
+        for (WriteOperation<?> operation : operations) {
+            switch (operation.getType()) {
+                case NODE_CREATED:
+                    entries.addNode(((DetachedEntity) operation.getDetails()).getGraphId());
+                    break;
+                case RELATIONSHIP_CREATED:
+                    entries.addRelationship(((DetachedEntity) operation.getDetails()).getGraphId());
+                    break;
+                case NODE_UPDATED:
+                    entries.addNode(((DetachedEntity) ((Change<?>) operation.getDetails()).getCurrent()).getGraphId());
+                    addDeletes(operation, entries); //e.g. documents in an index the entity no longer maps to
+                    break;
+                case RELATIONSHIP_UPDATED:
+                    entries.addRelationship(((DetachedEntity) ((Change<?>) operation.getDetails()).getCurrent()).getGraphId());
+                    addDeletes(operation, entries);
+                    break;
+                case NODE_DELETED:
+                case RELATIONSHIP_DELETED:
+                    addDeletes(operation, entries);
+                    break;
+                default:
+                    LOG.warn("Unsupported operation " + operation.getType());
+            }
+        }
+
+        log.append(entries);
+    }
+
+    /**
+     * Record entries in the overflow log again, e.g. because they failed to be reconciled.
+     *
+     * @param entries to record.
+     */
+    public void record(OverflowLog.Entries entries) {
+        log.append(entries);
+    }
+
+    private void addDeletes(WriteOperation<?> operation, OverflowLog.Entries entries) {
+        for (BulkableAction<? extends JestResult> action : mapping.apply(operation)) {
+            if (action instanceof Delete) {
+                entries.addDelete(action);
+            }
+        }
+    }
+
+    /**
+     * Take the recorded updates out of the log to reconcile them. Those that fail to be reconciled must be
+     * {@link #record(OverflowLog.Entries) recorded} again, the others reported as {@link #reconciled(long) reconciled}.
+     *
+     * @return recorded updates.
+     */
+    public OverflowLog.Entries drain() {
+        return log.drain();
+    }
+
+    /**
+     * Count updates taken out of the log as reconciled, once they have been replicated.
+     *
+     * @param count of reconciled updates.
+     */
+    public void reconciled(long count) {
+        reconciled.addAndGet(count);
+    }
+
+    /**
+     * @return <code>true</code> iff spilled updates should be replayed now, i.e. the queue is less than half full.
+     */
+    public boolean shouldReplay() {
+        return policy == OverflowPolicy.SPILL && log.size() > 0 && tracker.getPending() < capacity / 2;
+    }
+
+    public OverflowPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Release the overflow log.
+     */
+    public void close() {
+        log.close();
+    }
+
+    /**
+     * @return statistics of the overflow by name.
+     */
+    public Map<String, Number> getStatistics() {
+        Map<String, Number> statistics = new LinkedHashMap<>();
+        statistics.put("queuePending", tracker.getPending());
+        statistics.put("overflowBlockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()));
+        statistics.put("overflowBlockTimeouts", timeouts.get());
+        statistics.put("overflowSpilled", spilled.get());
+        statistics.put("overflowDropped", dropped.get());
+        statistics.put("overflowUnreconciled", log.size());
+        statistics.put("overflowReconciled", reconciled.get());
+        return statistics;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+/**
+ * When replicated updates are made visible to searches.
+ */
+public enum RefreshPolicy {
+
+    /**
+     * Fire-and-forget: updates become searchable with the next periodic refresh of the index (its
+     * <code>refresh_interval</code>). Highest throughput.
+     */
+    NONE(null),
+
+    /**
+     * Every request forces a refresh of the affected shards (<code>refresh=true</code>). Updates are searchable as soon
+     * as the request completes, at a high cost in throughput.
+     */
+    IMMEDIATE("true"),
+
+    /**
+     * Every request waits for the next periodic refresh of the index (<code>refresh=wait_for</code>, Elasticsearch 5.0+).
+     * Updates are searchable as soon as the request completes, without forcing extra refreshes. Elasticsearch 2.x treats
+     * this as {@link #IMMEDIATE}.
+     */
+    WAIT_FOR("wait_for"),
+
+    /**
+     * The affected indices are refreshed once every configured number of flushes.
+     */
+    BATCH(null);
+
+    private final String parameter;
+
+    RefreshPolicy(String parameter) {
+        this.parameter = parameter;
+    }
+
+    /**
+     * @return value of the <code>refresh</code> parameter of write requests, <code>null</code> if none should be sent.
+     */
+    public String getParameter() {
+        return parameter;
+    }
+
+    /**
+     * Parse a policy from its configuration value, e.g. <code>none</code> or <code>wait_for</code>.
+     *
+     * @param value configuration value. Must not be <code>null</code>.
+     * @return policy.
+     * @throws IllegalArgumentException if the value doesn't name a policy.
+     */
+    public static RefreshPolicy fromString(String value) {
+        String normalized = value.replace("_", "").replace("-", "").trim();
+        for (RefreshPolicy policy : values()) {
+            if (policy.name().replace("_", "").equalsIgnoreCase(normalized)) {
+                return policy;
+            }
+        }
+        throw new IllegalArgumentException("Unknown refresh policy " + value);
+    }
+}
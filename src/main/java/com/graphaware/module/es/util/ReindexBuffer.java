@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.writer.thirdparty.WriteOperation;
+import org.neo4j.graphdb.NotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Fixed-size buffer of the IDs of nodes or relationships to re-index. Entities are only detached (i.e. their properties
+ * copied) into write operations when the buffer is flushed, right before they are mapped, so memory use is bounded by
+ * the batch size and doesn't depend on how long it takes to fill a batch. Neither the IDs nor the operations are hashed.
+ * <p/>
+ * Must be flushed in a transaction. Not thread-safe.
+ */
+public class ReindexBuffer {
+
+    private final long[] ids;
+    private final List<WriteOperation<?>> operations;
+    private final LongFunction<WriteOperation<?>> operationFactory;
+    private final Consumer<List<Collection<WriteOperation<?>>>> writer;
+    private int size = 0;
+    private long written = 0;
+
+    /**
+     * Create a new buffer.
+     *
+     * @param capacity         number of entities in a batch.
+     * @param operationFactory creates a write operation for the entity with the given ID.
+     * @param writer           writes a batch of operations, synchronously.
+     */
+    public ReindexBuffer(int capacity, LongFunction<WriteOperation<?>> operationFactory, Consumer<List<Collection<WriteOperation<?>>>> writer) {
+        this.ids = new long[capacity];
+        this.operations = new ArrayList<>(capacity);
+        this.operationFactory = operationFactory;
+        this.writer = writer;
+    }
+
+    /**
+     * Add an entity, writing the batch if it is full.
+     *
+     * @param id of the entity.
+     * @return <code>true</code> iff the batch has been written.
+     */
+    public boolean add(long id) {
+        ids[size++] = id;
+        if (size == ids.length) {
+            flush();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Write the buffered entities, if any.
+     */
+    public void flush() {
+        if (size == 0) {
+            return;
+        }
+
+        for (int i = 0; i < size; i++) {
+            try {
+                operations.add(operationFactory.apply(ids[i]));
+            } catch (NotFoundException e) {
+                //deleted since it was scanned, the deletion is replicated anyway
+            }
+        }
+        size = 0;
+
+        try {
+            writer.accept(Collections.singletonList(operations));
+            written += operations.size();
+        } finally {
+            operations.clear();
+        }
+    }
+
+    /**
+     * @return number of entities written so far.
+     */
+    public long getWritten() {
+        return written;
+    }
+}
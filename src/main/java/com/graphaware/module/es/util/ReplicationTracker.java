@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.writer.thirdparty.WriteOperation;
+
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks the replication of committed transactions to Elasticsearch. Every committed transaction gets the next number
+ * of a monotonically increasing sequence; a transaction is acknowledged once all of its operations have been flushed
+ * (successfully, or failed without being retried). Thread-safe.
+ */
+public class ReplicationTracker {
+
+    private long lastCommitted = 0;
+    private final TreeMap<Long, Integer> outstanding = new TreeMap<>(); //sequence -> number of operations not flushed yet
+    private final Map<WriteOperation<?>, Long> sequences = new IdentityHashMap<>();
+
+    /**
+     * Register a committed transaction, before its operations are handed to the writer.
+     *
+     * @param operations of the transaction.
+     * @return sequence number of the transaction.
+     */
+    public synchronized long committed(Collection<WriteOperation<?>> operations) {
+        long sequence = ++lastCommitted;
+
+        int count = 0;
+        for (WriteOperation<?> operation : operations) {
+            if (sequences.put(operation, sequence) == null) {
+                count++;
+            }
+        }
+
+        if (count > 0) {
+            outstanding.put(sequence, count);
+        } else {
+            notifyAll();
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Register a committed transaction once fewer than the given number of transactions are {@link #getPending() pending},
+     * so that checking for room in a queue of that capacity and registering the transaction are atomic.
+     *
+     * @param operations of the transaction.
+     * @param limit      number of pending transactions to get below.
+     * @param timeout    maximum time to wait in ms, 0 not to wait.
+     * @return sequence number of the transaction, 0 if not registered because still too many transactions are pending
+     * after the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized long committed(Collection<WriteOperation<?>> operations, int limit, long timeout) throws InterruptedException {
+        if (!awaitPendingBelow(limit, timeout)) {
+            return 0;
+        }
+        return committed(operations);
+    }
+
+    /**
+     * Record that operations have been flushed.
+     *
+     * @param operations flushed.
+     * @param retried    those of the flushed operations that failed and will be retried, i.e. flushed again later.
+     */
+    public synchronized void flushed(Collection<WriteOperation<?>> operations, Collection<WriteOperation<?>> retried) {
+        if (sequences.isEmpty()) {
+            return;
+        }
+
+        Map<WriteOperation<?>, Boolean> pending = new IdentityHashMap<>();
+        for (WriteOperation<?> operation : retried) {
+            pending.put(operation, Boolean.TRUE);
+        }
+
+        boolean acknowledged = false;
+        for (WriteOperation<?> operation : operations) {
+            if (pending.containsKey(operation)) {
+                continue;
+            }
+
+            Long sequence = sequences.remove(operation);
+            if (sequence == null) {
+                continue; //not from a tracked transaction, e.g. re-indexing
+            }
+
+            Integer remaining = outstanding.get(sequence);
+            if (remaining == null || remaining <= 1) {
+                outstanding.remove(sequence);
+                acknowledged = true;
+            } else {
+                outstanding.put(sequence, remaining - 1);
+            }
+        }
+
+        if (acknowledged) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return sequence number of the last committed transaction, 0 if none.
+     */
+    public synchronized long getLastCommitted() {
+        return lastCommitted;
+    }
+
+    /**
+     * @return sequence number up to which (inclusive) all transactions have been acknowledged.
+     */
+    public synchronized long getAcknowledged() {
+        return outstanding.isEmpty() ? lastCommitted : outstanding.firstKey() - 1;
+    }
+
+    /**
+     * @return number of committed transactions with operations that haven't all been flushed yet, i.e. the occupancy of
+     * the writer's queue (including the batch being flushed).
+     */
+    public synchronized int getPending() {
+        return outstanding.size();
+    }
+
+    /**
+     * Wait until fewer than the given number of transactions are {@link #getPending() pending}.
+     *
+     * @param limit   number of pending transactions to get below.
+     * @param timeout maximum time to wait in ms.
+     * @return <code>true</code> iff fewer transactions are pending within the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized boolean awaitPendingBelow(int limit, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (outstanding.size() >= limit) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Wait until all transactions up to the given sequence number have been acknowledged.
+     *
+     * @param sequence sequence number to wait for.
+     * @param timeout  maximum time to wait in ms.
+     * @return <code>true</code> iff acknowledged within the timeout.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public synchronized boolean await(long sequence, long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        while (getAcknowledged() < sequence) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return false;
+            }
+            wait(remaining);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,430 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.graphaware.common.log.LoggerFactory;
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.Action;
+import io.searchbox.action.GenericResultAbstractAction;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Update;
+import io.searchbox.indices.CreateIndex;
+import io.searchbox.indices.DeleteIndex;
+import io.searchbox.indices.IndicesExists;
+import io.searchbox.indices.Refresh;
+import io.searchbox.indices.aliases.AddAliasMapping;
+import io.searchbox.indices.aliases.ModifyAliases;
+import io.searchbox.indices.aliases.RemoveAliasMapping;
+import io.searchbox.indices.mapping.GetMapping;
+import io.searchbox.indices.settings.GetSettings;
+import org.neo4j.logging.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.springframework.util.Assert.notNull;
+
+/**
+ * Re-indexing into fresh versioned indices (e.g. <code>neo4j-index-node-v2</code>), which replace the live ones by an
+ * alias swap once populated. The live index names (as returned by {@link com.graphaware.module.es.mapping.Mapping#getIndices()})
+ * become aliases of the versioned indices.
+ * <p/>
+ * The new indices are created with the mappings and analysis settings of the live ones. Between {@link #begin()} and
+ * {@link #complete()}, live replication must write to both (see {@link #duplicate(BulkableAction)}), re-indexing only
+ * to the new ones (see {@link #redirect(BulkableAction)}).
+ * <p/>
+ * Re-indexing reads entities that may be updated before their documents are written, so a document written by
+ * re-indexing can be older than one written by live replication. Therefore, the live updates written to the new indices
+ * are remembered (the last one per document) and written again by {@link #complete()}, once re-indexing is done and
+ * before the aliases are swapped.
+ */
+public class VersionedReindex {
+
+    private static final Log LOG = LoggerFactory.getLogger(VersionedReindex.class);
+
+    private static final Gson GSON = new Gson();
+    private static final String[] COPIED_SETTINGS = {"number_of_shards", "number_of_replicas", "refresh_interval", "analysis"};
+    private static final String[] COPIED_PARAMETERS = {"routing", "parent", "version", "version_type", "ttl", "timestamp", "retry_on_conflict"};
+    private static final int ALIAS_ATTEMPTS = 3;
+    private static final int REPLAY_BATCH_SIZE = 1000;
+
+    private final JestClient client;
+    private final Set<String> aliases;
+    private final Map<String, String> current = new LinkedHashMap<>(); //alias -> concrete index being replaced
+    private volatile Map<String, String> targets = Collections.emptyMap(); //alias -> new concrete index
+    private final Map<String, List<BulkableAction<? extends JestResult>>> liveUpdates = new LinkedHashMap<>(); //document -> actions to replay
+
+    /**
+     * Construct a new re-index.
+     *
+     * @param client  Jest client. Must not be <code>null</code>.
+     * @param aliases live index names. Must not be <code>null</code>.
+     */
+    public VersionedReindex(JestClient client, Collection<String> aliases) {
+        notNull(client);
+        notNull(aliases);
+
+        this.client = client;
+        this.aliases = new LinkedHashSet<>(aliases);
+    }
+
+    /**
+     * Create the new versioned indices.
+     *
+     * @return <code>true</code> iff all indices have been created; if not, the ones that have are dropped.
+     */
+    public boolean begin() {
+        Map<String, String> created = new LinkedHashMap<>();
+
+        for (String alias : aliases) {
+            JsonObject settings = execute(new GetSettings.Builder().addIndex(alias).build(), "read settings of index " + alias);
+            JsonObject mappings = execute(new GetMapping.Builder().addIndex(alias).build(), "read mappings of index " + alias);
+
+            if (settings == null || mappings == null || settings.entrySet().size() != 1) {
+                LOG.error("Index " + alias + " must exist and be or point to a single index to be re-indexed into a new version");
+                drop(created.values());
+                return false;
+            }
+
+            String concrete = settings.entrySet().iterator().next().getKey();
+            String next = nextVersion(alias, concrete);
+
+            if (indexExists(next)) {
+                LOG.warn("Dropping index " + next + " left over from an unfinished re-index");
+                drop(Collections.singleton(next));
+            }
+
+            JsonObject body = new JsonObject();
+            body.add("settings", copySettings(settings.getAsJsonObject(concrete)));
+            JsonElement indexMappings = mappings.has(concrete) ? mappings.getAsJsonObject(concrete).get("mappings") : null;
+            if (indexMappings != null) {
+                body.add("mappings", indexMappings);
+            }
+
+            if (execute(new CreateIndex.Builder(next).settings(body.toString()).build(), "create index " + next) == null) {
+                drop(created.values());
+                return false;
+            }
+
+            LOG.info("Created index " + next + " to replace " + concrete + " behind " + alias);
+            current.put(alias, concrete);
+            created.put(alias, next);
+        }
+
+        targets = Collections.unmodifiableMap(created);
+        return true;
+    }
+
+    /**
+     * Write the live updates made while re-indexing to the new indices again, then point the aliases to them and drop
+     * the old ones. Must be called once re-indexing has been flushed, with live replication paused. If the live updates
+     * can't be written, the new indices are dropped, as they'd be out of date.
+     *
+     * @return <code>true</code> iff all aliases have been swapped.
+     */
+    public boolean complete() {
+        Map<String, String> targets = this.targets;
+        if (targets.isEmpty()) {
+            return false;
+        }
+
+        if (!replayLiveUpdates()) {
+            LOG.error("Failed to write live updates made while re-indexing to " + targets.values() + ", dropping them");
+            abort();
+            return false;
+        }
+
+        execute(new Refresh.Builder().addIndex(targets.values()).build(), "refresh indices " + targets.values());
+
+        boolean success = true;
+        for (Map.Entry<String, String> target : targets.entrySet()) {
+            String alias = target.getKey();
+            String old = current.get(alias);
+
+            if (alias.equals(old)) {
+                //a concrete index is being replaced by an alias of the same name
+                if (replace(alias, target.getValue())) {
+                    continue;
+                }
+            } else if (swap(alias, old, target.getValue())) {
+                drop(Collections.singleton(old));
+                continue;
+            }
+
+            LOG.error("Failed to point " + alias + " to " + target.getValue());
+            success = false;
+        }
+
+        this.targets = Collections.emptyMap();
+        return success;
+    }
+
+    /**
+     * Drop the new indices, leaving the live ones untouched.
+     */
+    public void abort() {
+        drop(targets.values());
+        targets = Collections.emptyMap();
+        synchronized (liveUpdates) {
+            liveUpdates.clear();
+        }
+    }
+
+    /**
+     * @return live index names mapped to the new indices, empty if none are being populated.
+     */
+    public Map<String, String> getTargets() {
+        return targets;
+    }
+
+    /**
+     * @param action of live replication.
+     * @return a copy of the action writing to the corresponding new index, <code>null</code> if none.
+     */
+    public BulkableAction<? extends JestResult> duplicate(BulkableAction<? extends JestResult> action) {
+        String target = targets.get(action.getIndex());
+        if (target == null) {
+            return null;
+        }
+
+        BulkableAction<? extends JestResult> copy = copy(action, target);
+        if (copy != null) {
+            remember(copy);
+        }
+        return copy;
+    }
+
+    /**
+     * @param action of re-indexing.
+     * @return the action writing to the corresponding new index instead of the live one.
+     */
+    public BulkableAction<? extends JestResult> redirect(BulkableAction<? extends JestResult> action) {
+        String target = targets.get(action.getIndex());
+        if (target == null) {
+            return action;
+        }
+        BulkableAction<? extends JestResult> copy = copy(action, target);
+        return copy == null ? action : copy;
+    }
+
+    /**
+     * Remember a live update of the new indices. An index or delete replaces whatever was remembered for the document,
+     * partial updates are remembered in order.
+     */
+    private void remember(BulkableAction<? extends JestResult> action) {
+        String document = action.getIndex() + "/" + action.getType() + "/" + action.getId();
+        synchronized (liveUpdates) {
+            List<BulkableAction<? extends JestResult>> actions = liveUpdates.remove(document);
+            if (actions == null || !(action instanceof Update)) {
+                actions = new ArrayList<>(1);
+            }
+            actions.add(action);
+            liveUpdates.put(document, actions);
+        }
+    }
+
+    /**
+     * @return <code>true</code> iff all remembered live updates have been written.
+     */
+    private boolean replayLiveUpdates() {
+        List<BulkableAction<? extends JestResult>> actions = new ArrayList<>();
+        synchronized (liveUpdates) {
+            liveUpdates.values().forEach(actions::addAll);
+            liveUpdates.clear();
+        }
+
+        if (actions.isEmpty()) {
+            return true;
+        }
+
+        LOG.info("Writing " + actions.size() + " live updates made while re-indexing to " + targets.values() + " again...");
+        for (int i = 0; i < actions.size(); i += REPLAY_BATCH_SIZE) {
+            List<BulkableAction<? extends JestResult>> batch = actions.subList(i, Math.min(actions.size(), i + REPLAY_BATCH_SIZE));
+            if (execute(new Bulk.Builder().addAction(batch).build(), "write " + batch.size() + " live updates") == null) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static BulkableAction<? extends JestResult> copy(BulkableAction<? extends JestResult> action, String index) {
+        AbstractAction.Builder<? extends BulkableAction<? extends JestResult>, ?> builder;
+        if (action instanceof Index) {
+            builder = new Index.Builder(action.getData(GSON)).index(index).type(action.getType()).id(action.getId());
+        } else if (action instanceof Update) {
+            builder = new Update.Builder(action.getData(GSON)).index(index).type(action.getType()).id(action.getId());
+        } else if (action instanceof Delete) {
+            builder = new Delete.Builder(action.getId()).index(index).type(action.getType());
+        } else {
+            LOG.warn("Unsupported action " + action.getClass().getSimpleName() + ", it won't be written to " + index);
+            return null;
+        }
+
+        //routing, versioning etc. must be the same in both indices
+        if (action instanceof AbstractAction) {
+            for (String parameter : COPIED_PARAMETERS) {
+                for (Object value : ((AbstractAction<?>) action).getParameter(parameter)) {
+                    builder.setParameter(parameter, value);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    private static String nextVersion(String alias, String concrete) {
+        Matcher matcher = Pattern.compile(Pattern.quote(alias) + "-v(\\d+)").matcher(concrete);
+        long version = matcher.matches() ? Long.parseLong(matcher.group(1)) + 1 : 1;
+        return alias + "-v" + version;
+    }
+
+    private static JsonObject copySettings(JsonObject indexSettings) {
+        JsonObject copy = new JsonObject();
+        JsonObject settings = indexSettings.has("settings") ? indexSettings.getAsJsonObject("settings") : new JsonObject();
+        JsonObject index = settings.has("index") ? settings.getAsJsonObject("index") : new JsonObject();
+        for (String setting : COPIED_SETTINGS) {
+            if (index.has(setting)) {
+                copy.add(setting, index.get(setting));
+            }
+        }
+        return copy;
+    }
+
+    private boolean swap(String alias, String from, String to) {
+        ModifyAliases.Builder builder = new ModifyAliases.Builder(new AddAliasMapping.Builder(to, alias).build());
+        if (from != null) {
+            builder.addAlias(new RemoveAliasMapping.Builder(from, alias).build());
+        }
+
+        if (execute(builder.build(), "point " + alias + " to " + to) == null) {
+            return false;
+        }
+
+        LOG.info("Index " + alias + " now points to " + to);
+        return true;
+    }
+
+    /**
+     * Replace a concrete index by an alias of the same name pointing to another index. This is done in a single
+     * atomic <code>_aliases</code> request where Elasticsearch supports removing indices through it. Otherwise, the
+     * index is dropped and the alias added right after, retrying the latter so that the name isn't left missing.
+     */
+    private boolean replace(String name, String to) {
+        if (execute(new ReplaceIndex(name, to), "replace index " + name + " by an alias of " + to) != null) {
+            LOG.info("Index " + name + " now points to " + to);
+            return true;
+        }
+
+        LOG.warn("Index " + name + " can't be replaced by an alias atomically, it will be missing until the alias is added");
+        if (!drop(Collections.singleton(name))) {
+            return false;
+        }
+
+        for (int attempt = 0; attempt < ALIAS_ATTEMPTS; attempt++) {
+            if (swap(name, null, to)) {
+                return true;
+            }
+        }
+
+        LOG.error("Index " + name + " has been dropped but couldn't be pointed to " + to + ", which holds its documents. Add the alias manually.");
+        return false;
+    }
+
+    private boolean drop(Collection<String> indices) {
+        boolean success = true;
+        for (String index : indices) {
+            success &= execute(new DeleteIndex.Builder(index).build(), "drop index " + index) != null;
+        }
+        return success;
+    }
+
+    private boolean indexExists(String index) {
+        try {
+            return client.execute(new IndicesExists.Builder(index).build()).isSucceeded();
+        } catch (IOException e) {
+            LOG.warn("Failed to check whether index " + index + " exists", e);
+            return false;
+        }
+    }
+
+    private JsonObject execute(Action<? extends JestResult> action, String description) {
+        try {
+            JestResult result = client.execute(action);
+            if (!result.isSucceeded()) {
+                LOG.warn("Failed to " + description + ". Details: " + result.getErrorMessage());
+                return null;
+            }
+            return result.getJsonObject();
+        } catch (IOException e) {
+            LOG.warn("Failed to " + description, e);
+            return null;
+        }
+    }
+
+    /**
+     * Atomically add an alias and remove the concrete index of the same name.
+     */
+    private static class ReplaceIndex extends GenericResultAbstractAction {
+        protected ReplaceIndex(String name, String to) {
+            JsonObject add = new JsonObject();
+            add.addProperty("index", to);
+            add.addProperty("alias", name);
+            JsonObject remove = new JsonObject();
+            remove.addProperty("index", name);
+
+            JsonArray actions = new JsonArray();
+            actions.add(wrap("add", add));
+            actions.add(wrap("remove_index", remove));
+
+            this.payload = wrap("actions", actions).toString();
+            setURI(buildURI());
+        }
+
+        private static JsonObject wrap(String name, JsonElement element) {
+            JsonObject object = new JsonObject();
+            object.add(name, element);
+            return object;
+        }
+
+        @Override
+        protected String buildURI() {
+            return super.buildURI() + "/_aliases";
+        }
+
+        @Override
+        public String getRestMethodName() {
+            return "POST";
+        }
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.graphaware.module.es.mapping.JsonFileMapping;
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.tx.executor.input.AllNodes;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.ClearScroll;
+import io.searchbox.core.MultiGet;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchScroll;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistencyCheckTest {
+
+    private GraphDatabaseService database;
+    private JsonFileMapping mapping;
+    private ElasticSearchWriter writer;
+    private final RecordingClient client = new RecordingClient();
+    private final Map<String, Long> keys = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = database.beginTx()) {
+            for (String uuid : new String[]{"p1", "p2"}) {
+                Node person = database.createNode(Label.label("Person"));
+                person.setProperty("uuid", uuid);
+                person.setProperty("firstName", "Jane");
+                person.setProperty("lastName", "Doe");
+                keys.put(uuid, person.getId());
+            }
+            database.createNode().setProperty("uuid", "unmapped");
+            tx.success();
+        }
+
+        mapping = new JsonFileMapping();
+        writer = new ElasticSearchWriter(ElasticSearchConfiguration.defaultConfiguration()
+                .withMapping(mapping, Collections.singletonMap("file", "integration/mapping-basic.json")));
+    }
+
+    @After
+    public void tearDown() {
+        mapping.shutdown();
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldFindMissingDocumentsOfJsonMappingWithoutLookingForOrphans() {
+        Map<String, Number> counts = check(mapping.getIndexFor(Node.class), this::resolve).run(false);
+
+        assertEquals(3L, counts.get("nodes"));
+        assertEquals(2L, counts.get("documents"));
+        assertEquals(2L, counts.get("missing"));
+        assertEquals(0L, counts.get("orphaned"));
+        assertTrue(client.scrolled.isEmpty());
+    }
+
+    @Test
+    public void shouldCompareHitsFoundThroughAliasWithTheirConcreteIndex() {
+        client.hits.add(hit("default-index-node-v2", "persons", "p1"));
+        client.hits.add(hit("default-index-node-v2", "persons", "gone"));
+
+        Map<String, Number> counts = check("default-index-node", this::resolve).run(false);
+
+        assertEquals(Collections.singletonList("default-index-node"), client.scrolled);
+        assertEquals(1L, counts.get("orphaned"));
+        assertEquals(1, client.cleared);
+    }
+
+    @Test
+    public void shouldStopLookingForOrphansWhenKeysCantBeResolved() {
+        client.hits.add(hit("default-index-node", "persons", "p1"));
+
+        Map<String, Number> counts = check("default-index-node", requested -> {
+            throw new UnsupportedOperationException("Keys can't be resolved");
+        }).run(false);
+
+        assertEquals(2L, counts.get("missing"));
+        assertEquals(0L, counts.get("orphaned"));
+        assertEquals(1, client.cleared);
+    }
+
+    @Test
+    public void shouldNotLookForOrphansWithoutResolver() {
+        client.hits.add(hit("default-index-node", "persons", "p1"));
+
+        Map<String, Number> counts = check("default-index-node", null).run(false);
+
+        assertEquals(2L, counts.get("missing"));
+        assertEquals(0L, counts.get("orphaned"));
+        assertTrue(client.scrolled.isEmpty());
+        assertEquals(0, client.cleared);
+    }
+
+    private ConsistencyCheck check(String index, Function<Collection<String>, Map<String, Long>> resolver) {
+        return new ConsistencyCheck(database, writer, mapping, client, 10, 0)
+                .withEntityType("nodes", index, () -> new AllNodes(database, 10),
+                        id -> new NodeCreated<>(new NodeExpressions(database.getNodeById(id))),
+                        resolver);
+    }
+
+    private Map<String, Long> resolve(Collection<String> requested) {
+        Map<String, Long> resolved = new HashMap<>();
+        for (String key : requested) {
+            if (keys.containsKey(key)) {
+                resolved.put(key, keys.get(key));
+            }
+        }
+        return resolved;
+    }
+
+    private static JsonObject hit(String index, String type, String id) {
+        JsonObject hit = new JsonObject();
+        hit.addProperty("_index", index);
+        hit.addProperty("_type", type);
+        hit.addProperty("_id", id);
+        return hit;
+    }
+
+    /**
+     * Finds no documents, scrolls through the given hits in a single page, and counts cleared scrolls.
+     */
+    private static class RecordingClient implements JestClient {
+
+        private final List<JsonObject> hits = new ArrayList<>();
+        private final List<String> scrolled = new ArrayList<>();
+        private int cleared;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) {
+            JsonObject response = new JsonObject();
+
+            if (clientRequest instanceof MultiGet) {
+                JsonObject request = new JsonParser().parse(clientRequest.getData(new Gson())).getAsJsonObject();
+                JsonArray docs = new JsonArray();
+                for (int i = 0; i < request.getAsJsonArray("docs").size(); i++) {
+                    JsonObject doc = new JsonObject();
+                    doc.addProperty("found", false);
+                    docs.add(doc);
+                }
+                response.add("docs", docs);
+            } else if (clientRequest instanceof Search || clientRequest instanceof SearchScroll) {
+                JsonArray page = new JsonArray();
+                if (clientRequest instanceof Search) {
+                    scrolled.add(clientRequest.getURI().replaceFirst("^/", "").split("/")[0]);
+                    hits.forEach(page::add);
+                }
+                JsonObject pageHits = new JsonObject();
+                pageHits.add("hits", page);
+                response.add("hits", pageHits);
+                response.addProperty("_scroll_id", "scroll");
+            } else if (clientRequest instanceof ClearScroll) {
+                cleared++;
+            }
+
+            JestResult result = new JestResult(new Gson());
+            result.setJsonString(response.toString());
+            result.setJsonObject(response);
+            result.setSucceeded(true);
+            return (T) result;
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> jestResultHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdownClient() {
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+        }
+    }
+}
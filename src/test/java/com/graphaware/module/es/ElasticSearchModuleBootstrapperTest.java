@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ElasticSearchModuleBootstrapperTest {
+
+    @Test
+    public void shouldConfigureConnectionPoolTimeoutsAndKeepAlive() {
+        Map<String, String> config = minimalConfig();
+        config.put("maxTotalConnections", "50");
+        config.put("maxConnectionsPerRoute", "25");
+        config.put("connectTimeout", "1000");
+        config.put("readTimeout", "2000");
+        config.put("connectionRequestTimeout", "3000");
+        config.put("keepAlive", "4000");
+        config.put("maxIdleTime", "5000");
+
+        ElasticSearchConfiguration configuration = bootstrap(config);
+
+        assertEquals(50, configuration.getMaxTotalConnections());
+        assertEquals(25, configuration.getMaxConnectionsPerRoute());
+        assertEquals(1000, configuration.getConnectTimeout());
+        assertEquals(2000, configuration.getReadTimeout());
+        assertEquals(3000, configuration.getConnectionRequestTimeout());
+        assertEquals(4000, configuration.getKeepAlive());
+        assertEquals(5000, configuration.getMaxIdleTime());
+    }
+
+    @Test
+    public void shouldKeepConnectionDefaultsWhenNotConfigured() {
+        ElasticSearchConfiguration configuration = bootstrap(minimalConfig());
+        ElasticSearchConfiguration defaults = ElasticSearchConfiguration.defaultConfiguration();
+
+        assertEquals(defaults.getMaxTotalConnections(), configuration.getMaxTotalConnections());
+        assertEquals(defaults.getMaxConnectionsPerRoute(), configuration.getMaxConnectionsPerRoute());
+        assertEquals(defaults.getConnectTimeout(), configuration.getConnectTimeout());
+        assertEquals(defaults.getReadTimeout(), configuration.getReadTimeout());
+        assertEquals(defaults.getConnectionRequestTimeout(), configuration.getConnectionRequestTimeout());
+        assertEquals(defaults.getKeepAlive(), configuration.getKeepAlive());
+        assertEquals(defaults.getMaxIdleTime(), configuration.getMaxIdleTime());
+        assertFalse(configuration.isRequestCompression());
+        assertFalse(configuration.isBulkCompression());
+    }
+
+    @Test
+    public void shouldConfigureCompression() {
+        Map<String, String> config = minimalConfig();
+        config.put("bulkCompression", "true");
+
+        ElasticSearchConfiguration configuration = bootstrap(config);
+        assertTrue(configuration.isBulkCompression());
+        assertFalse(configuration.isRequestCompression());
+
+        config.put("requestCompression", "true");
+        assertTrue(bootstrap(config).isRequestCompression());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectInvalidTimeout() {
+        Map<String, String> config = minimalConfig();
+        config.put("readTimeout", "20s");
+
+        bootstrap(config);
+    }
+
+    @Test
+    public void shouldCapSearchClientTimeoutsAtSearchTimeout() {
+        Map<String, String> config = minimalConfig();
+        config.put("searchTimeout", "5000");
+        config.put("connectTimeout", "1000");
+        config.put("readTimeout", "20000");
+
+        ElasticSearchConfiguration configuration = bootstrap(config);
+        ElasticSearchConfiguration search = ElasticSearchModule.searchClientConfiguration(configuration);
+
+        assertEquals(20000, configuration.getReadTimeout()); //replication isn't affected
+        assertEquals(5000, search.getReadTimeout());
+        assertEquals(1000, search.getConnectTimeout());
+
+        config.put("readTimeout", "0");
+        assertEquals(5000, ElasticSearchModule.searchClientConfiguration(bootstrap(config)).getReadTimeout());
+
+        config.put("searchTimeout", "0");
+        assertEquals(0, ElasticSearchModule.searchClientConfiguration(bootstrap(config)).getReadTimeout());
+    }
+
+    @Test
+    public void shouldResolveSpillFileAgainstNeo4jHome() {
+        Map<String, String> config = minimalConfig();
+        File home = new File("/var/lib/neo4j");
+        config.put("unsupported.dbms.directories.neo4j_home", home.getPath());
+
+        assertEquals(new File(home, "data/elasticsearch-overflow.ndjson").getPath(), bootstrap(config).getSpillFile());
+
+        config.put("spillFile", "overflow/es.ndjson");
+        assertEquals(new File(home, "overflow/es.ndjson").getPath(), bootstrap(config).getSpillFile());
+
+        String absolute = new File("/tmp/es.ndjson").getAbsolutePath();
+        config.put("spillFile", absolute);
+        assertEquals(absolute, bootstrap(config).getSpillFile());
+    }
+
+    private static Map<String, String> minimalConfig() {
+        Map<String, String> config = new HashMap<>();
+        config.put("uri", "localhost");
+        config.put("port", "9200");
+        return config;
+    }
+
+    private static ElasticSearchConfiguration bootstrap(Map<String, String> config) {
+        CapturingBootstrapper bootstrapper = new CapturingBootstrapper();
+        bootstrapper.doBootstrapModule("ES", config, null, ElasticSearchConfiguration.defaultConfiguration());
+        return bootstrapper.configuration;
+    }
+
+    private static class CapturingBootstrapper extends ElasticSearchModuleBootstrapper {
+
+        private ElasticSearchConfiguration configuration;
+
+        @Override
+        protected ElasticSearchWriter produceWriter(ElasticSearchConfiguration esConf) {
+            this.configuration = esConf;
+            return super.produceWriter(esConf);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es;
+
+import com.graphaware.module.es.mapping.DefaultMapping;
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks that the writer acknowledges the operations it gets, even when it fails to replicate them.
+ */
+public class ElasticSearchWriterReplicationTest {
+
+    private GraphDatabaseService database;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldAcknowledgeOperationsWhenMappingFails() throws InterruptedException {
+        ElasticSearchWriter writer = new ElasticSearchWriter(ElasticSearchConfiguration.defaultConfiguration()
+                .withMapping(new FailingMapping(), Collections.emptyMap()));
+
+        List<WriteOperation<?>> operations = Arrays.asList(nodeCreated(), nodeCreated());
+        long sequence = writer.getReplicationTracker().committed(operations);
+
+        try {
+            writer.processOperations(Collections.<Collection<WriteOperation<?>>>singletonList(operations));
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+
+        assertEquals(0, writer.getReplicationTracker().getPending());
+        assertTrue(writer.getReplicationTracker().await(sequence, 0));
+    }
+
+    private WriteOperation<?> nodeCreated() {
+        try (Transaction tx = database.beginTx()) {
+            NodeCreated<NodeExpressions> operation = new NodeCreated<>(new NodeExpressions(database.createNode()));
+            tx.success();
+            return operation;
+        }
+    }
+
+    private static class FailingMapping extends DefaultMapping {
+
+        @Override
+        public void createIndexAndMapping(JestClient client) {
+        }
+
+        @Override
+        public List<BulkableAction<? extends JestResult>> getActions(WriteOperation<?> operation) {
+            throw new IllegalStateException("Broken mapping");
+        }
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.es;
+
+import com.graphaware.module.es.search.Searcher;
+import com.graphaware.module.es.util.RefreshPolicy;
+import com.graphaware.module.uuid.UuidConfiguration;
+import com.graphaware.module.uuid.UuidModule;
+import com.graphaware.runtime.GraphAwareRuntime;
+import com.graphaware.runtime.GraphAwareRuntimeFactory;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Count;
+import io.searchbox.core.CountResult;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+
+import java.io.IOException;
+
+import static com.graphaware.module.es.util.TestUtil.waitFor;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the cost of the {@link RefreshPolicy}s: the time it takes to replicate a number of small transactions and
+ * for all of them to become searchable.
+ * <p/>
+ * Timings only, so it is skipped unless run with <code>-Dbenchmark=true</code>. The <code>refresh</code> parameter sent
+ * for each policy is covered by {@link com.graphaware.module.es.executor.BulkOperationExecutorTest}.
+ */
+public class RefreshPolicyBenchmarkTest extends ElasticSearchModuleIntegrationTest {
+
+    private static final int TRANSACTIONS = 200;
+    private static final int NODES_PER_TRANSACTION = 5;
+
+    @BeforeClass
+    public static void onlyWhenAsked() {
+        Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+    }
+
+    @Test
+    public void fireAndForget() throws IOException {
+        benchmark(RefreshPolicy.NONE, 1);
+    }
+
+    @Test
+    public void immediate() throws IOException {
+        benchmark(RefreshPolicy.IMMEDIATE, 1);
+    }
+
+    @Test
+    public void waitFor() throws IOException {
+        benchmark(RefreshPolicy.WAIT_FOR, 1);
+    }
+
+    @Test
+    public void batchRefresh() throws IOException {
+        benchmark(RefreshPolicy.BATCH, 20);
+    }
+
+    private void benchmark(RefreshPolicy policy, int refreshEvery) throws IOException {
+        GraphAwareRuntime runtime = GraphAwareRuntimeFactory.createRuntime(database);
+        runtime.registerModule(new UuidModule("UUID", UuidConfiguration.defaultConfiguration(), database));
+
+        configuration = ElasticSearchConfiguration.defaultConfiguration()
+                .withUri(HOST)
+                .withPort(PORT)
+                .withRefreshPolicy(policy)
+                .withRefreshEvery(refreshEvery);
+
+        runtime.registerModule(new ElasticSearchModule("ES", new ElasticSearchWriter(configuration), configuration));
+        runtime.start();
+        runtime.waitUntilStarted();
+
+        String index = configuration.getMapping().getIndexFor(Node.class);
+        JestClient client = Searcher.createClient(configuration);
+
+        try {
+            long start = System.currentTimeMillis();
+
+            for (int i = 0; i < TRANSACTIONS; i++) {
+                try (Transaction tx = database.beginTx()) {
+                    for (int j = 0; j < NODES_PER_TRANSACTION; j++) {
+                        database.createNode(PERSON).setProperty("name", "person" + i + "-" + j);
+                    }
+                    tx.success();
+                }
+            }
+
+            long committed = System.currentTimeMillis();
+
+            int expected = TRANSACTIONS * NODES_PER_TRANSACTION;
+            long searchable = 0;
+            while (searchable < expected && System.currentTimeMillis() - committed < 60_000) {
+                CountResult result = client.execute(new Count.Builder().addIndex(index).build());
+                searchable = result.isSucceeded() ? result.getCount().longValue() : 0;
+                if (searchable < expected) {
+                    waitFor(10);
+                }
+            }
+
+            long end = System.currentTimeMillis();
+
+            System.out.println(String.format("Refresh policy %s: %d transactions committed in %d ms, all searchable after %d ms (%.1f tx/s)",
+                    policy, TRANSACTIONS, committed - start, end - start, TRANSACTIONS * 1000.0 / Math.max(1, end - start)));
+
+            assertEquals(expected, searchable);
+        } finally {
+            client.shutdownClient();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.executor;
+
+import com.google.gson.Gson;
+import com.graphaware.module.es.util.RefreshPolicy;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkOperationExecutorTest {
+
+    private final RecordingClient client = new RecordingClient();
+
+    @Test
+    public void shouldNotRefreshWithoutPolicy() {
+        assertEquals("/_bulk", flush(RefreshPolicy.NONE));
+    }
+
+    @Test
+    public void shouldForceRefreshWithImmediatePolicy() {
+        assertEquals("/_bulk?refresh=true", flush(RefreshPolicy.IMMEDIATE));
+    }
+
+    @Test
+    public void shouldWaitForRefreshWithWaitForPolicy() {
+        assertEquals("/_bulk?refresh=wait_for", flush(RefreshPolicy.WAIT_FOR));
+    }
+
+    @Test
+    public void shouldLeaveRefreshToWriterWithBatchPolicy() {
+        assertEquals("/_bulk", flush(RefreshPolicy.BATCH));
+    }
+
+    @Test
+    public void shouldSendRefreshWithEveryBulk() {
+        OperationExecutor executor = new BulkOperationExecutorFactory(RefreshPolicy.WAIT_FOR.getParameter()).newExecutor(client);
+
+        for (int i = 0; i < 2; i++) {
+            executor.start();
+            executor.execute(Collections.singletonList(index(i)), null);
+            assertTrue(executor.flush().isEmpty());
+        }
+
+        assertEquals(2, client.bulks.size());
+        for (Bulk bulk : client.bulks) {
+            assertEquals("/_bulk?refresh=wait_for", bulk.getURI());
+        }
+    }
+
+    @Test
+    public void shouldReportOperationsOfFailedBulkWhateverThePolicy() {
+        client.succeed = false;
+
+        for (RefreshPolicy policy : RefreshPolicy.values()) {
+            OperationExecutor executor = new BulkOperationExecutorFactory(policy.getParameter()).newExecutor(client);
+            executor.start();
+            executor.execute(Collections.singletonList(index(0)), null);
+            assertFalse(executor.flush().isEmpty());
+        }
+    }
+
+    private String flush(RefreshPolicy policy) {
+        OperationExecutor executor = new BulkOperationExecutorFactory(policy.getParameter()).newExecutor(client);
+        executor.start();
+        executor.execute(Collections.singletonList(index(0)), null);
+        assertTrue(executor.flush().isEmpty());
+
+        assertEquals(1, client.bulks.size());
+        return client.bulks.get(0).getURI();
+    }
+
+    private static Index index(int id) {
+        return new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id(String.valueOf(id)).build();
+    }
+
+    /**
+     * Records the bulk requests it receives and answers them without contacting Elasticsearch.
+     */
+    private static class RecordingClient implements JestClient {
+
+        private final List<Bulk> bulks = new ArrayList<>();
+        private boolean succeed = true;
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) {
+            bulks.add((Bulk) clientRequest);
+
+            JestResult result = new JestResult(new Gson());
+            result.setSucceeded(succeed);
+            result.setErrorMessage(succeed ? null : "Deliberate failure");
+            return (T) result;
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> jestResultHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdownClient() {
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.module.es.mapping.json.DocumentMappingRepresentation;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class JsonFileMappingTest {
+
+    private static final Set<String> BASIC_INDICES = new LinkedHashSet<>(Arrays.asList("default-index-node", "default-index-relationship"));
+    private static final Set<String> ADVANCED_INDICES = new LinkedHashSet<>(Arrays.asList("node-index", "females", "relationship-index"));
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private JsonFileMapping mapping;
+
+    @After
+    public void tearDown() {
+        if (mapping != null) {
+            mapping.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldListStaticIndicesOfAllMappers() {
+        mapping = mapping("integration/mapping-advanced.json");
+
+        //the tweets index is an expression, evaluated per node
+        assertEquals(new LinkedHashSet<>(Arrays.asList("node-index", "females", "relationship-index")), mapping.getIndices());
+    }
+
+    @Test
+    public void shouldListDefaultIndicesOfMappersWithoutIndex() {
+        mapping = mapping("integration/mapping-basic.json");
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("default-index-node", "default-index-relationship")), mapping.getIndices());
+    }
+
+    @Test
+    public void shouldListIndicesOfDefaultMapping() {
+        DefaultMapping defaultMapping = new DefaultMapping();
+        defaultMapping.configure(Collections.singletonMap("index", "test"));
+
+        assertEquals(new LinkedHashSet<>(Arrays.asList("test-node", "test-relationship")), defaultMapping.getIndices());
+    }
+
+    @Test
+    public void shouldSwapInReloadedMappingBeforeNextBatch() throws IOException {
+        Path file = mappingFile("integration/mapping-basic.json");
+        mapping = watchedMapping(false);
+
+        List<DocumentMappingRepresentation[]> changes = new ArrayList<>();
+        mapping.setChangeListener((previous, next) -> changes.add(new DocumentMappingRepresentation[]{previous, next}));
+        DocumentMappingRepresentation initial = mapping.getMappingRepresentation();
+
+        copy("integration/mapping-advanced.json", file);
+        mapping.reload(file);
+
+        assertSame(initial, mapping.getMappingRepresentation()); //not before the next batch
+
+        mapping.beforeBatch();
+
+        assertEquals(ADVANCED_INDICES, mapping.getIndices());
+        assertEquals(1, changes.size());
+        assertSame(initial, changes.get(0)[0]);
+        assertSame(mapping.getMappingRepresentation(), changes.get(0)[1]);
+
+        mapping.beforeBatch();
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void shouldKeepCurrentMappingWhenReloadedFileIsInvalid() throws IOException {
+        Path file = mappingFile("integration/mapping-basic.json");
+        mapping = watchedMapping(false);
+        DocumentMappingRepresentation initial = mapping.getMappingRepresentation();
+
+        String advanced = new String(Files.readAllBytes(new ClassPathResource("integration/mapping-advanced.json").getFile().toPath()), StandardCharsets.UTF_8);
+        String[] invalid = {
+                advanced.substring(0, advanced.length() / 2), //half written
+                "{\"node_mappings\": []}", //no defaults
+                advanced.replace("hasLabel('Person')", "hasLabel('Person'"), //invalid condition
+                advanced.replace("\"index\": \"females\"", "\"index\": \"'females-' + (getProperty('age')\"") //invalid index
+        };
+
+        for (String content : invalid) {
+            Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+            mapping.reload(file);
+            mapping.beforeBatch();
+
+            assertSame(initial, mapping.getMappingRepresentation());
+            assertEquals(BASIC_INDICES, mapping.getIndices());
+        }
+    }
+
+    @Test
+    public void shouldReloadMappingWhenWatchedFileChanges() throws Exception {
+        Path file = mappingFile("integration/mapping-basic.json");
+        mapping = watchedMapping(true);
+
+        copy("integration/mapping-advanced.json", file);
+
+        assertTrue(awaitIndices(ADVANCED_INDICES));
+    }
+
+    @Test
+    public void shouldReloadLastVersionOfRapidlyRewrittenFile() throws Exception {
+        Path file = mappingFile("integration/mapping-basic.json");
+        mapping = watchedMapping(true);
+
+        byte[] advanced = Files.readAllBytes(new ClassPathResource("integration/mapping-advanced.json").getFile().toPath());
+        Files.write(file, Arrays.copyOf(advanced, advanced.length / 2)); //first write of an editor saving in steps
+        Files.write(file, advanced);
+
+        assertTrue(awaitIndices(ADVANCED_INDICES));
+    }
+
+    @Test
+    public void shouldKeepCurrentMappingWhenWatchedFileBecomesInvalid() throws Exception {
+        Path file = mappingFile("integration/mapping-basic.json");
+        mapping = watchedMapping(true);
+        DocumentMappingRepresentation initial = mapping.getMappingRepresentation();
+
+        Files.write(file, "{\"defaults\": ".getBytes(StandardCharsets.UTF_8));
+        Thread.sleep(1500); //well over the watcher's quiet period
+        mapping.beforeBatch();
+
+        assertSame(initial, mapping.getMappingRepresentation());
+
+        copy("integration/mapping-advanced.json", file); //the watcher is still running
+        assertTrue(awaitIndices(ADVANCED_INDICES));
+    }
+
+    @Test
+    public void shouldReadEntitiesQueuedBeforeReloadAgainWhenTheyLackNewlyMappedProperties() throws IOException {
+        String first = "{\"defaults\": {\"key_property\": \"uuid\", \"nodes_index\": \"people\", \"relationships_index\": \"relationships\", \"include_remaining_properties\": false}, "
+                + "\"node_mappings\": [{\"condition\": \"hasLabel('Person')\", \"type\": \"persons\", \"properties\": {\"first\": \"getProperty('firstName')\"}}], \"relationship_mappings\": []}";
+        String second = first.replace("}}]", ", \"last\": \"getProperty('lastName')\"}}]");
+
+        Path file = mappingFile("integration/mapping-basic.json");
+        Files.write(file, first.getBytes(StandardCharsets.UTF_8));
+        mapping = watchedMapping(false);
+
+        GraphDatabaseService database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try {
+            long id;
+            WriteOperation<?> queued;
+            try (Transaction tx = database.beginTx()) {
+                Node node = database.createNode(Label.label("Person"));
+                node.setProperty("uuid", "p1");
+                node.setProperty("firstName", "Jane");
+                node.setProperty("lastName", "Doe");
+                id = node.getId();
+                queued = new NodeCreated<>(new NodeExpressions(node, mapping.getRequiredNodeProperties()));
+                tx.success();
+            }
+            assertFalse(Arrays.asList(mapping.getRequiredNodeProperties()).contains("lastName"));
+
+            List<Long> read = new ArrayList<>();
+            mapping.setEntityReaders(nodeId -> {
+                read.add(nodeId);
+                try (Transaction tx = database.beginTx()) {
+                    NodeExpressions node = new NodeExpressions(database.getNodeById(nodeId), mapping.getRequiredNodeProperties());
+                    tx.success();
+                    return node;
+                }
+            }, relationshipId -> null);
+
+            //queued before the changed mapping is loaded and swapped in
+            Files.write(file, second.getBytes(StandardCharsets.UTF_8));
+            mapping.reload(file);
+            mapping.beforeBatch();
+
+            assertEquals("Doe", source(mapping.getActions(queued)).get("last").getAsString());
+            assertEquals(Collections.singletonList(id), read);
+
+            //detached with the properties of the changed mapping, no need to read it again
+            try (Transaction tx = database.beginTx()) {
+                queued = new NodeCreated<>(new NodeExpressions(database.getNodeById(id), mapping.getRequiredNodeProperties()));
+                tx.success();
+            }
+            assertEquals("Doe", source(mapping.getActions(queued)).get("last").getAsString());
+            assertEquals(1, read.size());
+        } finally {
+            database.shutdown();
+        }
+    }
+
+    private static JsonObject source(List<BulkableAction<? extends JestResult>> actions) {
+        assertEquals(1, actions.size());
+        return new JsonParser().parse(actions.get(0).getData(new Gson())).getAsJsonObject();
+    }
+
+    private boolean awaitIndices(Set<String> indices) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            mapping.beforeBatch();
+            if (indices.equals(mapping.getIndices())) {
+                return true;
+            }
+            Thread.sleep(50);
+        }
+        return false;
+    }
+
+    private Path mappingFile(String resource) throws IOException {
+        Path file = new File(folder.newFolder("conf"), "watched-mapping.json").toPath();
+        copy(resource, file);
+        return file;
+    }
+
+    private JsonFileMapping watchedMapping(boolean watch) {
+        Map<String, String> config = new HashMap<>();
+        config.put("file", "watched-mapping.json");
+        config.put("unsupported.dbms.directories.neo4j_home", folder.getRoot().getAbsolutePath());
+        config.put("watchMapping", Boolean.toString(watch));
+
+        JsonFileMapping mapping = new JsonFileMapping();
+        mapping.configure(config);
+        return mapping;
+    }
+
+    private static void copy(String resource, Path file) throws IOException {
+        Files.write(file, Files.readAllBytes(new ClassPathResource(resource).getFile().toPath()));
+    }
+
+    private static JsonFileMapping mapping(String file) {
+        Map<String, String> config = new HashMap<>();
+        config.put("file", file);
+
+        JsonFileMapping mapping = new JsonFileMapping();
+        mapping.configure(config);
+        return mapping;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.expression;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class PropertyConversionsTest {
+
+    private GraphDatabaseService database;
+    private NodeExpressions expressions;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = database.beginTx()) {
+            Node node = database.createNode();
+            node.setProperty("time", 1480000000000L);
+            node.setProperty("count", 123456);
+            node.setProperty("lat", 51.5074d);
+            node.setProperty("scores", new long[]{1000L, 2000L, 3000L});
+            expressions = new NodeExpressions(node);
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldConvertWithoutChangingValues() {
+        assertEquals(Long.valueOf(1480000000000L), expressions.asLong("time"));
+        assertEquals(Integer.valueOf(123456), expressions.asInt("count"));
+        assertEquals(51.5074d, expressions.asDouble("lat"), 0);
+        assertEquals(51.5074f, expressions.asFloat("lat"), 0);
+        assertEquals(Long.valueOf(123456), expressions.asLong("count"));
+        assertArrayEquals(new long[]{1000L, 2000L, 3000L}, expressions.asLongArray("scores"));
+        assertArrayEquals(new double[]{1000d, 2000d, 3000d}, expressions.asDoubleArray("scores"), 0);
+        assertArrayEquals(new long[]{123456}, expressions.asLongArray("count"));
+    }
+
+    @Test
+    public void shouldReturnMissingPropertiesAsNull() {
+        assertNull(expressions.asLong("missing"));
+        assertNull(expressions.asLongArray("missing"));
+    }
+
+    @Test
+    public void shouldConvertNumbersDirectly() {
+        assertEquals(123L, PropertyConversions.toLong(123));
+        assertEquals(1480000000000L, PropertyConversions.toLong(1480000000000L));
+        assertEquals(51L, PropertyConversions.toLong(51.0d));
+        assertEquals(3, PropertyConversions.toInt(3.0f));
+        assertEquals(-1, PropertyConversions.toInt(-1L));
+        assertEquals(2.5f, PropertyConversions.toFloat(2.5d), 0);
+        assertEquals(7d, PropertyConversions.toDouble((byte) 7), 0);
+    }
+
+    @Test
+    public void shouldConvertOtherValuesThroughStrings() {
+        assertEquals(1480000000000L, PropertyConversions.toLong("1480000000000"));
+        assertEquals(42, PropertyConversions.toInt("42"));
+        assertEquals(0.5f, PropertyConversions.toFloat("0.5"), 0);
+        assertEquals(51.5074d, PropertyConversions.toDouble("51.5074"), 0);
+        assertEquals(9L, PropertyConversions.toLong('9'));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldFailToConvertNonNumericStrings() {
+        PropertyConversions.toLong("tomorrow");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotTruncateDecimalStringsToLongs() {
+        PropertyConversions.toLong("1.5");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotTruncateFractionsToLongs() {
+        PropertyConversions.toLong(51.9d);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotTruncateFractionsToInts() {
+        PropertyConversions.toInt(1.5f);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotOverflowInts() {
+        PropertyConversions.toInt(1480000000000L);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotSaturateLongs() {
+        PropertyConversions.toLong(1e19d);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotConvertNaN() {
+        PropertyConversions.toLong(Double.NaN);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotTruncateArrayElements() {
+        PropertyConversions.toLongArray(new double[]{1d, 1.9d});
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldNotOverflowArrayElements() {
+        PropertyConversions.toIntArray(new long[]{1L, 1480000000000L});
+    }
+
+    @Test
+    public void shouldReturnArraysOfRequestedTypeAsTheyAre() {
+        long[] longs = {1L, 2L};
+        int[] ints = {1, 2};
+        float[] floats = {1f, 2f};
+        double[] doubles = {1d, 2d};
+
+        assertSame(longs, PropertyConversions.toLongArray(longs));
+        assertSame(ints, PropertyConversions.toIntArray(ints));
+        assertSame(floats, PropertyConversions.toFloatArray(floats));
+        assertSame(doubles, PropertyConversions.toDoubleArray(doubles));
+    }
+
+    @Test
+    public void shouldConvertArraysElementByElement() {
+        assertArrayEquals(new long[]{1L, 2L}, PropertyConversions.toLongArray(new int[]{1, 2}));
+        assertArrayEquals(new long[]{1L, -2L}, PropertyConversions.toLongArray(new double[]{1d, -2d}));
+        assertArrayEquals(new long[]{3L, 4L}, PropertyConversions.toLongArray(new short[]{3, 4}));
+        assertArrayEquals(new long[]{5L, 6L}, PropertyConversions.toLongArray(new String[]{"5", "6"}));
+        assertArrayEquals(new int[]{1, 2}, PropertyConversions.toIntArray(new long[]{1L, 2L}));
+        assertArrayEquals(new int[]{1, 2}, PropertyConversions.toIntArray(new float[]{1f, 2f}));
+        assertArrayEquals(new int[]{7}, PropertyConversions.toIntArray(new Integer[]{7}));
+        assertArrayEquals(new float[]{1f, 2f}, PropertyConversions.toFloatArray(new int[]{1, 2}), 0);
+        assertArrayEquals(new float[]{0.5f}, PropertyConversions.toFloatArray(new String[]{"0.5"}), 0);
+        assertArrayEquals(new double[]{1d, 2d}, PropertyConversions.toDoubleArray(new long[]{1L, 2L}), 0);
+        assertArrayEquals(new double[]{1.5d}, PropertyConversions.toDoubleArray(new float[]{1.5f}), 0);
+        assertArrayEquals(new double[]{2.5d}, PropertyConversions.toDoubleArray(new String[]{"2.5"}), 0);
+    }
+
+    @Test
+    public void shouldConvertSingleValuesToArrays() {
+        assertArrayEquals(new long[]{5L}, PropertyConversions.toLongArray(5));
+        assertArrayEquals(new int[]{5}, PropertyConversions.toIntArray("5"));
+        assertArrayEquals(new float[]{5f}, PropertyConversions.toFloatArray(5L), 0);
+        assertArrayEquals(new double[]{5d}, PropertyConversions.toDoubleArray("5"), 0);
+    }
+
+    @Test
+    public void shouldConvertEmptyArrays() {
+        assertArrayEquals(new long[0], PropertyConversions.toLongArray(new String[0]));
+        assertArrayEquals(new double[0], PropertyConversions.toDoubleArray(new int[0]), 0);
+    }
+}
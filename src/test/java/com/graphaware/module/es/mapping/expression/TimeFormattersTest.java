@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.expression;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimeFormattersTest {
+
+    private static final long TIMESTAMP = 1480000000000L; //2016-11-24T15:06:40Z
+
+    private static final String[] PATTERNS = {
+            "yyyy-MM-dd", "yyyy-MM-dd HH:mm:ss", "yyyy.MM", "'day-'dd", "y", "yy", "yyy", "yyyyy", "G yyyy",
+            "YYYY-'W'ww", "YY", "M", "MMM", "MMMM", "MMMMM", "L", "LLL", "D", "DDDD", "d", "F", "W", "E", "EEEE",
+            "u", "uu", "a h:mm", "K k", "HH:mm:ss.SSS", "S", "SSSS", "Z", "X", "XX", "XXX", "z",
+            "'o''clock' h", "''", "yyyy-MM-dd'T'HH:mm:ss.SSSZ"
+    };
+
+    @Test
+    public void shouldFormatLikeSimpleDateFormat() {
+        long[] timestamps = {TIMESTAMP, TIMESTAMP + 45, 1451606399999L, 1451606400000L, 1483225200000L};
+        for (String pattern : PATTERNS) {
+            for (String zone : new String[]{"UTC", "GMT+10", "America/New_York", "Asia/Kolkata", "Nowhere/Unknown"}) {
+                for (long timestamp : timestamps) {
+                    assertEquals(pattern + " in " + zone, simpleDateFormat(timestamp, pattern, zone), TimeFormatters.format(timestamp, pattern, zone));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldKeepSimpleDateFormatMeaningOfLetters() {
+        assertEquals("4", TimeFormatters.format(TIMESTAMP, "u", "UTC")); //day of week, not year
+        assertEquals("045", TimeFormatters.format(TIMESTAMP + 45, "SSS", "UTC")); //milliseconds, not fraction
+        assertEquals("4", TimeFormatters.format(TIMESTAMP, "F", "UTC")); //day of week in month, not aligned week
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectPatternsRejectedBySimpleDateFormat() {
+        TimeFormatters.format(TIMESTAMP, "yyyy-QQ", "UTC");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectUnterminatedQuotes() {
+        TimeFormatters.format(TIMESTAMP, "'day-dd", "UTC");
+    }
+
+    @Test
+    public void shouldFormatDaysAcrossBoundaries() {
+        long day = 24 * 60 * 60 * 1000L;
+        long midnight = TIMESTAMP - TIMESTAMP % day;
+
+        assertEquals("2016-11-24", TimeFormatters.format(midnight, "yyyy-MM-dd", "UTC"));
+        assertEquals("2016-11-24", TimeFormatters.format(midnight + day - 1, "yyyy-MM-dd", "UTC"));
+        assertEquals("2016-11-25", TimeFormatters.format(midnight + day, "yyyy-MM-dd", "UTC"));
+        assertEquals("2016-11-23", TimeFormatters.format(midnight - 1, "yyyy-MM-dd", "UTC"));
+        assertEquals("2016-11-24", TimeFormatters.format(midnight - 1, "yyyy-MM-dd", "GMT+10"));
+    }
+
+    @Test
+    public void shouldFallBackToUtcForUnknownZones() {
+        assertEquals(TimeFormatters.format(TIMESTAMP, "yyyy-MM-dd HH", "UTC"), TimeFormatters.format(TIMESTAMP, "yyyy-MM-dd HH", "Nowhere/Unknown"));
+    }
+
+    @Test
+    public void shouldDetectDateOnlyPatterns() {
+        assertTrue(TimeFormatters.isDateOnly("YYYY-MM-dd"));
+        assertTrue(TimeFormatters.isDateOnly("'hour'-yyyy"));
+        assertTrue(TimeFormatters.isDateOnly("yyyy-'W'ww-u"));
+        assertFalse(TimeFormatters.isDateOnly("yyyy-MM-dd-HH"));
+        assertFalse(TimeFormatters.isDateOnly("yyyy-MM-dd a"));
+    }
+
+    private static String simpleDateFormat(long timestamp, String pattern, String zone) {
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setTimeZone(TimeZone.getTimeZone(zone));
+        return format.format(new Date(timestamp));
+    }
+}
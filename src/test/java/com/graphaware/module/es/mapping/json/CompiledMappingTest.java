@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.gson.Gson;
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpression;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that mappings with compiled expressions produce the same documents as interpreted ones, also once the
+ * expressions have been evaluated often enough to get compiled.
+ */
+public class CompiledMappingTest {
+
+    private static final Gson GSON = new Gson();
+
+    private GraphDatabaseService database;
+    private final List<NodeExpressions> nodes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = database.beginTx()) {
+            Node person = database.createNode(Label.label("Person"), Label.label("Female"));
+            person.setProperty("uuid", "p1");
+            person.setProperty("firstName", "Jane");
+            person.setProperty("lastName", "Doe");
+            person.setProperty("password", "secret");
+
+            Node tweet = database.createNode(Label.label("Tweet"));
+            tweet.setProperty("uuid", "t1");
+            tweet.setProperty("timestamp", 1480000000000L);
+
+            Node dynamic = database.createNode(Label.label("DynaType"));
+            dynamic.setProperty("uuid", "d1");
+            dynamic.setProperty("action", "click");
+
+            Node unlabelled = database.createNode();
+            unlabelled.setProperty("uuid", "u1");
+
+            for (Node node : new Node[]{person, tweet, dynamic, unlabelled}) {
+                nodes.add(new NodeExpressions(node));
+            }
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void compiledMappingShouldProduceSameDocuments() throws IOException {
+        DocumentMappingRepresentation interpreted = load(false);
+        DocumentMappingRepresentation compiled = load(true);
+
+        for (int i = 0; i < 500; i++) {
+            for (NodeExpressions node : nodes) {
+                List<String> expected = describe(interpreted.createOrUpdateNode(node));
+                assertFalse(expected.isEmpty());
+                assertEquals(expected, describe(compiled.createOrUpdateNode(node)));
+            }
+        }
+
+        int conditions = 0;
+        for (int i = 0; i < compiled.getNodeMappers().size(); i++) {
+            if (compiled.getNodeMappers().get(i).getCondition().startsWith("hasLabel(")) {
+                assertTrue(isCompiled(compiled.getNodeMappers().get(i).getConditionExpression()));
+                assertFalse(isCompiled(interpreted.getNodeMappers().get(i).getConditionExpression()));
+                conditions++;
+            }
+        }
+        assertEquals(6, conditions);
+    }
+
+    @Test
+    public void shouldRejectInvalidIndexExpressionsWhenPrepared() throws IOException {
+        String invalid = "{\"defaults\": {\"nodes_index\": \"default-index\"}, \"node_mappings\": [{\"condition\": \"hasLabel('Tweet')\", \"type\": \"tweets\", \"index\": \"'tweets-' + formatTime('timestamp', 'yyyy') +\"}]}";
+        String invalidDefault = "{\"defaults\": {\"nodes_index\": \"'tweets-' + (getProperty('year')\"}, \"node_mappings\": [{\"condition\": \"hasLabel('Tweet')\", \"type\": \"tweets\"}]}";
+        String valid = "{\"defaults\": {\"nodes_index\": \"default-index\"}, \"node_mappings\": [{\"condition\": \"hasLabel('Tweet')\", \"type\": \"tweets\", \"index\": \"'tweets-' + formatTime('timestamp', 'yyyy')\"}]}";
+
+        for (boolean compile : new boolean[]{false, true}) {
+            assertFalse(new ObjectMapper().readValue(invalid, DocumentMappingRepresentation.class).prepare(compile));
+            assertFalse(new ObjectMapper().readValue(invalidDefault, DocumentMappingRepresentation.class).prepare(compile));
+            assertTrue(new ObjectMapper().readValue(valid, DocumentMappingRepresentation.class).prepare(compile));
+        }
+    }
+
+    private DocumentMappingRepresentation load(boolean compile) throws IOException {
+        DocumentMappingRepresentation representation = new ObjectMapper().readValue(new ClassPathResource("integration/mapping-advanced.json").getInputStream(), DocumentMappingRepresentation.class);
+        representation.prepare(compile);
+        return representation;
+    }
+
+    /**
+     * @return <code>true</code> iff the expression has been compiled to bytecode, which Spring doesn't expose otherwise.
+     */
+    private static boolean isCompiled(Expression expression) {
+        try {
+            Field compiledAst = SpelExpression.class.getDeclaredField("compiledAst");
+            compiledAst.setAccessible(true);
+            return compiledAst.get(expression) != null;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<String> describe(List<BulkableAction<? extends JestResult>> actions) {
+        List<String> result = new ArrayList<>();
+        for (BulkableAction<? extends JestResult> action : actions) {
+            result.add(action.getIndex() + "/" + action.getType() + "/" + action.getId() + ":" + action.getData(GSON));
+        }
+        return result;
+    }
+}
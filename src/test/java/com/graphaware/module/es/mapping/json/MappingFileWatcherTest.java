@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.json;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MappingFileWatcherTest {
+
+    private static final long TIMEOUT_MS = 10_000;
+    private static final long SETTLE_MS = 1_500; //well over the quiet period
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<String> notified = new CopyOnWriteArrayList<>();
+    private Path file;
+    private MappingFileWatcher watcher;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("mapping.json");
+        write(file, "initial");
+
+        watcher = new MappingFileWatcher(file, changed -> notified.add(read(changed)));
+        watcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        watcher.stop();
+    }
+
+    @Test
+    public void shouldNotifyWhenFileChanges() throws Exception {
+        write(file, "changed");
+
+        awaitNotifications(1);
+        assertEquals("changed", notified.get(0));
+    }
+
+    @Test
+    public void shouldNotifyOnceWithLastContentOfRapidWrites() throws Exception {
+        write(file, "half written");
+        write(file, "complete");
+
+        awaitNotifications(1);
+        Thread.sleep(SETTLE_MS);
+
+        assertEquals(1, notified.size());
+        assertEquals("complete", notified.get(0));
+    }
+
+    @Test
+    public void shouldNotifyWhenFileIsReplaced() throws Exception {
+        Path temporary = folder.getRoot().toPath().resolve("mapping.json.tmp");
+        write(temporary, "replaced");
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        awaitNotifications(1);
+        assertEquals("replaced", notified.get(notified.size() - 1));
+    }
+
+    @Test
+    public void shouldIgnoreOtherFilesInDirectory() throws Exception {
+        write(folder.getRoot().toPath().resolve("other.json"), "other");
+
+        Thread.sleep(SETTLE_MS);
+
+        assertTrue(notified.isEmpty());
+    }
+
+    @Test
+    public void shouldNotNotifyOnceStopped() throws Exception {
+        watcher.stop();
+
+        write(file, "changed");
+        Thread.sleep(SETTLE_MS);
+
+        assertTrue(notified.isEmpty());
+    }
+
+    private void awaitNotifications(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (notified.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertTrue("Expected " + count + " notifications, got " + notified.size(), notified.size() >= count);
+    }
+
+    private static void write(Path path, String content) throws IOException {
+        Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String read(Path path) {
+        try {
+            return new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
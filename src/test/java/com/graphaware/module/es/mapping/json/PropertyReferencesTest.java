@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.mapping.json;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PropertyReferencesTest {
+
+    @Test
+    public void shouldFindPropertiesReadWithLiteralKeys() {
+        assertEquals(Collections.emptySet(), PropertyReferences.of(null));
+        assertEquals(Collections.emptySet(), PropertyReferences.of("hasLabel('Person')"));
+        assertEquals(new HashSet<>(Arrays.asList("firstName", "lastName")), PropertyReferences.of("getProperty('firstName') + ' ' + getProperty('lastName')"));
+        assertEquals(Collections.singleton("count"), PropertyReferences.of("isType('CLICKS_ON') && hasProperty('count')"));
+        assertEquals(Collections.singleton("time"), PropertyReferences.of("'index-' + formatTime('time', 'yyyy-MM-dd', 'UTC')"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), PropertyReferences.of("asLong('a') > asDoubleArray('b')[0]"));
+    }
+
+    @Test
+    public void shouldNotKnowPropertiesReadOtherwise() {
+        assertNull(PropertyReferences.of("getProperty(getProperty('key'))"));
+        assertNull(PropertyReferences.of("properties['name']"));
+        assertNull(PropertyReferences.of("getProperties().size()"));
+        assertNull(PropertyReferences.of("startNode.getProperty('name')"));
+        assertNull(PropertyReferences.of("getProperty('name'"));
+    }
+}
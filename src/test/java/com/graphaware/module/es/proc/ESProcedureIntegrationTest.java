@@ -19,15 +19,29 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import com.graphaware.integration.es.test.ElasticSearchServer;
 import com.graphaware.integration.es.test.EmbeddedElasticSearchServer;
+import com.graphaware.module.es.ElasticSearchConfiguration;
+import com.graphaware.module.es.search.Searcher;
 import com.graphaware.test.integration.GraphAwareIntegrationTest;
+import io.searchbox.client.JestClient;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
 import org.junit.Test;
 import org.neo4j.graphdb.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.graphaware.module.es.util.TestUtil.waitFor;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public abstract class ESProcedureIntegrationTest extends GraphAwareIntegrationTest {
@@ -72,6 +86,24 @@ public abstract class ESProcedureIntegrationTest extends GraphAwareIntegrationTe
 
             testIsReindexedProcedure();
             cleanUpData();
+
+            testAwaitReplicationProc();
+            cleanUpData();
+
+            testQueryFilteredProcs();
+            cleanUpData();
+
+            testQueryMultiProcs();
+            cleanUpData();
+
+            testSearchResolution();
+            cleanUpData();
+
+            testReindexProc();
+            cleanUpData();
+
+            testCheckConsistencyProc();
+            cleanUpData();
         } catch (Throwable e) {
             throw e;
         }
@@ -120,6 +152,265 @@ public abstract class ESProcedureIntegrationTest extends GraphAwareIntegrationTe
         }
     }
 
+    public void testAwaitReplicationProc() {
+        writeSomeStuffToNeo4j();
+
+        //no sleeping: the procedure waits for the writes to be replicated and searchable
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.awaitReplication(10000, true) YIELD status return status");
+            assertTrue((Boolean) result.next().get("status"));
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryNode('{\"query\":{\"match_all\":{}}}') YIELD node return node");
+            ResourceIterator<Node> resIterator = result.columnAs("node");
+            assertEquals(4, resIterator.stream().count());
+            tx.success();
+        }
+    }
+
+    public void testQueryFilteredProcs() {
+        writeSomeStuffToNeo4j();
+
+        //hits without the label score higher, so that they fill the first pages
+        httpClient.executeCypher(baseNeoUrl(), "UNWIND range(1, 40) AS i CREATE (:Robot {name:'Filtered'})");
+        httpClient.executeCypher(baseNeoUrl(), "UNWIND range(1, 15) AS i CREATE (:Person {name:'Filtered person number ' + i})");
+        awaitReplication();
+
+        String query = "{\"query\":{\"match\":{\"name\":\"filtered\"}}}";
+
+        List<Node> persons = queryNodeFiltered(query, "['Person']", 10);
+        assertEquals(10, persons.size());
+        try (Transaction tx = getDatabase().beginTx()) {
+            for (Node node : persons) {
+                assertTrue(node.hasLabel(Label.label("Person")));
+            }
+            tx.success();
+        }
+
+        assertEquals(15, queryNodeFiltered(query, "['Person']", 100).size());
+        assertEquals(15, new HashSet<>(queryNodeFiltered(query, "['Person']", 100)).size());
+        assertEquals(55, queryNodeFiltered(query, "[]", 100).size());
+        assertEquals(40, queryNodeFiltered(query, "['Robot', 'Unknown']", 100).size());
+        assertEquals(0, queryNodeFiltered(query, "['Unknown']", 100).size());
+        assertEquals(0, queryNodeFiltered(query, "['Person']", 0).size());
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryRelationshipFiltered('{\"query\":{\"match_all\":{}}}', ['WORKS_FOR'], 2) YIELD relationship RETURN relationship");
+            ResourceIterator<Relationship> relationships = result.columnAs("relationship");
+            assertEquals(2, relationships.stream().filter(r -> r.isType(RelationshipType.withName("WORKS_FOR"))).count());
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryRelationshipFiltered('{\"query\":{\"match_all\":{}}}', ['LIKES'], 10) YIELD relationship RETURN relationship");
+            assertEquals(0, result.columnAs("relationship").stream().count());
+            tx.success();
+        }
+    }
+
+    private List<Node> queryNodeFiltered(String query, String labels, int limit) {
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryNodeFiltered('" + query + "', " + labels + ", " + limit + ") YIELD node RETURN node");
+            ResourceIterator<Node> nodes = result.columnAs("node");
+            List<Node> list = nodes.stream().collect(Collectors.toList());
+            tx.success();
+            return list;
+        }
+    }
+
+    private void awaitReplication() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertTrue((Boolean) getDatabase().execute("CALL ga.es.awaitReplication(10000, true) YIELD status return status").next().get("status"));
+            tx.success();
+        }
+    }
+
+    public void testQueryMultiProcs() {
+        writeSomeStuffToNeo4j();
+        awaitReplication();
+
+        Map<Long, List<String>> names = new HashMap<>();
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryNodeMulti([" +
+                    "'{\"query\":{\"match\":{\"name\":\"michal\"}}}', " +
+                    "'{\"query\":{\"match\":{\"name\":\"alessandro\"}}}', " +
+                    "'{\"query\":{\"match\":{\"name\":\"daniela\"}}}'" +
+                    "]) YIELD queryIndex, node, score RETURN queryIndex, node, score");
+            assertEquals(Arrays.asList("queryIndex", "node", "score"), result.columns());
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                assertTrue(row.get("score") instanceof Double);
+                names.computeIfAbsent((Long) row.get("queryIndex"), i -> new ArrayList<>()).add((String) ((Node) row.get("node")).getProperty("name"));
+            }
+            tx.success();
+        }
+
+        assertEquals(2, names.size());
+        assertEquals(new HashSet<>(Arrays.asList("Michal Bachman", "Michal Teck")), new HashSet<>(names.get(0L)));
+        assertEquals(Collections.singletonList("Daniela"), names.get(2L));
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.queryRelationshipMulti([" +
+                    "'{\"query\":{\"match_all\":{}}}', " +
+                    "'{\"query\":{\"match\":{\"since\":\"2014\"}}}'" +
+                    "]) YIELD queryIndex, relationship RETURN queryIndex, relationship");
+            Map<Long, Long> counts = new HashMap<>();
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                assertTrue(row.get("relationship") instanceof Relationship);
+                counts.merge((Long) row.get("queryIndex"), 1L, Long::sum);
+            }
+            assertEquals(3L, counts.get(0L).longValue());
+            assertEquals(1L, counts.get(1L).longValue());
+            tx.success();
+        }
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertFalse(getDatabase().execute("CALL ga.es.queryNodeMulti([]) YIELD node RETURN node").hasNext());
+            tx.success();
+        }
+    }
+
+    public void testSearchResolution() {
+        writeSomeStuffToNeo4j();
+        awaitReplication();
+
+        //a document without entity in the graph, e.g. not deleted yet
+        JestClient client = Searcher.createClient(ElasticSearchConfiguration.defaultConfiguration().withUri("localhost").withPort("9201"));
+        String type;
+        try {
+            JsonObject hit = client.execute(new Search.Builder("{\"query\":{\"match_all\":{}}}").addIndex("neo4j-index-node").build())
+                    .getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits").get(0).getAsJsonObject();
+            type = hit.get("_type").getAsString();
+            assertTrue(client.execute(new Index.Builder("{\"name\":\"Michal Ghost\"}").index("neo4j-index-node").type(type).id("999999").setParameter("refresh", "true").build()).isSucceeded());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+
+        long unresolvedBefore = unresolvedHits();
+        try {
+            //resolved in one batch, in the order of the hits, without the missing entity
+            try (Transaction tx = getDatabase().beginTx()) {
+                Result result = getDatabase().execute("CALL ga.es.queryNode('{\"query\":{\"match\":{\"name\":\"michal\"}},\"sort\":[{\"age\":{\"order\":\"desc\",\"unmapped_type\":\"long\"}}]}') YIELD node RETURN node");
+                List<Object> names = result.columnAs("node").stream().map(node -> ((Node) node).getProperty("name")).collect(Collectors.toList());
+                assertEquals(Arrays.asList("Michal Teck", "Michal Bachman"), names);
+                tx.success();
+            }
+
+            assertEquals(unresolvedBefore + 1, unresolvedHits());
+
+            try (Transaction tx = getDatabase().beginTx()) {
+                Result result = getDatabase().execute("CALL ga.es.queryNodeMulti(['{\"query\":{\"match\":{\"name\":\"ghost\"}}}', '{\"query\":{\"match\":{\"name\":\"daniela\"}}}']) YIELD queryIndex, node RETURN queryIndex, node");
+                Map<String, Object> row = result.next();
+                assertEquals(1L, row.get("queryIndex"));
+                assertEquals("Daniela", ((Node) row.get("node")).getProperty("name"));
+                assertFalse(result.hasNext());
+                tx.success();
+            }
+        } finally {
+            try {
+                client.execute(new Delete.Builder("999999").index("neo4j-index-node").type(type).setParameter("refresh", "true").build());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            } finally {
+                client.shutdownClient();
+            }
+        }
+    }
+
+    private long unresolvedHits() {
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.stats() YIELD name, value WHERE name = 'searchHitsUnresolved' RETURN value");
+            long value = ((Number) result.next().get("value")).longValue();
+            tx.success();
+            return value;
+        }
+    }
+
+    public void testReindexProc() {
+        writeSomeStuffToNeo4j();
+
+        //nodes with both labels are only re-indexed once
+        httpClient.executeCypher(baseNeoUrl(), "MATCH (p:Person {name:'Daniela'}) SET p:Employee");
+
+        assertEquals(4L, reindex("{labels: ['Person', 'Employee', 'Company']}").get("nodes").longValue());
+        assertEquals(0L, reindex("{labels: ['Person', 'Employee', 'Company']}").get("relationships").longValue());
+        assertEquals(0L, reindex("{types: ['WORKS_FOR']}").get("nodes").longValue());
+        assertEquals(3L, reindex("{types: ['WORKS_FOR']}").get("relationships").longValue());
+        assertEquals(0L, reindex("{labels: ['Unknown']}").get("nodes").longValue());
+    }
+
+    private Map<String, Number> reindex(String scope) {
+        Map<String, Number> counts = new HashMap<>();
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.reindex(" + scope + ") YIELD name, value RETURN name, value");
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                counts.put((String) row.get("name"), (Number) row.get("value"));
+            }
+            tx.success();
+        }
+        return counts;
+    }
+
+    public void testCheckConsistencyProc() {
+        writeSomeStuffToNeo4j();
+
+        try (Transaction tx = getDatabase().beginTx()) {
+            assertTrue((Boolean) getDatabase().execute("CALL ga.es.awaitReplication(10000, true) YIELD status return status").next().get("status"));
+            tx.success();
+        }
+
+        Map<String, Number> counts = checkConsistency(false);
+        assertEquals(4L, counts.get("nodes").longValue());
+        assertEquals(3L, counts.get("relationships").longValue());
+        assertEquals(0L, counts.get("missing").longValue());
+        assertEquals(0L, counts.get("stale").longValue());
+        assertEquals(0L, counts.get("orphaned").longValue());
+
+        //lose a document, and leave one without entity
+        JestClient client = Searcher.createClient(ElasticSearchConfiguration.defaultConfiguration().withUri("localhost").withPort("9201"));
+        try {
+            JsonObject hit = client.execute(new Search.Builder("{\"query\":{\"match_all\":{}}}").addIndex("neo4j-index-node").build())
+                    .getJsonObject().getAsJsonObject("hits").getAsJsonArray("hits").get(0).getAsJsonObject();
+            String type = hit.get("_type").getAsString();
+            assertTrue(client.execute(new Delete.Builder(hit.get("_id").getAsString()).index("neo4j-index-node").type(type).build()).isSucceeded());
+            assertTrue(client.execute(new Index.Builder("{\"name\":\"Nobody\"}").index("neo4j-index-node").type(type).id("orphan").setParameter("refresh", "true").build()).isSucceeded());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            client.shutdownClient();
+        }
+
+        counts = checkConsistency(false);
+        assertEquals(1L, counts.get("missing").longValue());
+        assertEquals(1L, counts.get("orphaned").longValue());
+        assertEquals(0L, counts.get("repaired").longValue());
+
+        assertEquals(2L, checkConsistency(true).get("repaired").longValue());
+
+        waitFor(WAIT_TIME); //until the deletion of the orphan is searchable
+
+        counts = checkConsistency(false);
+        assertEquals(0L, counts.get("missing").longValue());
+        assertEquals(0L, counts.get("orphaned").longValue());
+    }
+
+    private Map<String, Number> checkConsistency(boolean repair) {
+        Map<String, Number> counts = new HashMap<>();
+        try (Transaction tx = getDatabase().beginTx()) {
+            Result result = getDatabase().execute("CALL ga.es.checkConsistency(" + repair + ") YIELD name, value RETURN name, value");
+            while (result.hasNext()) {
+                Map<String, Object> row = result.next();
+                counts.put((String) row.get("name"), (Number) row.get("value"));
+            }
+            tx.success();
+        }
+        return counts;
+    }
+
     public void testEsMapping(boolean node) {
         String item = node ? "node" : "relationship";
 
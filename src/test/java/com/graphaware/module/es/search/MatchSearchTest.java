@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.core.Search;
+import io.searchbox.core.SearchResult;
+import org.junit.Test;
+
+import java.net.URLDecoder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MatchSearchTest {
+
+    @Test
+    public void shouldDisableSourceOfQuery() {
+        JsonObject query = new JsonParser().parse(Searcher.withoutSource("{\"query\":{\"match_all\":{}},\"size\":5}")).getAsJsonObject();
+
+        assertFalse(query.get("_source").getAsBoolean());
+        assertEquals(5, query.get("size").getAsInt());
+        assertTrue(query.has("query"));
+    }
+
+    @Test
+    public void shouldOverrideRequestedSource() {
+        JsonObject query = new JsonParser().parse(Searcher.withoutSource("{\"query\":{\"match_all\":{}},\"_source\":[\"name\"]}")).getAsJsonObject();
+
+        assertFalse(query.get("_source").getAsBoolean());
+    }
+
+    @Test
+    public void shouldLeaveInvalidQueriesToElasticsearch() {
+        assertEquals("not json {", Searcher.withoutSource("not json {"));
+        assertEquals("[1,2]", Searcher.withoutSource("[1,2]"));
+    }
+
+    @Test
+    public void shouldOnlyAskForIdsAndScores() throws Exception {
+        Search search = Searcher.matchSearch("neo4j-index-node", "{\"query\":{\"match_all\":{}},\"_source\":false}");
+
+        String uri = URLDecoder.decode(search.getURI(), "UTF-8");
+        assertTrue(uri.contains("neo4j-index-node"));
+        assertTrue(uri.contains("filter_path=hits.hits._id,hits.hits._score"));
+        assertEquals("{\"query\":{\"match_all\":{}},\"_source\":false}", search.getData(new Gson()));
+    }
+
+    @Test
+    public void shouldKeepResponseBodyOfMatchSearchAsIs() {
+        Search search = Searcher.matchSearch("neo4j-index-node", "{}");
+        String body = "{\"hits\":{\"hits\":[{\"_id\":\"1\",\"_score\":1.0}]}}";
+
+        SearchResult result = search.createNewElasticSearchResult(body, 200, "OK", new Gson());
+
+        assertTrue(result.isSucceeded());
+        assertEquals(body, result.getJsonString());
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SearchExecutorTest {
+
+    private SearchExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldReturnResultOfSearch() throws IOException {
+        executor = new SearchExecutor(2, 0, 5000);
+
+        assertEquals("result", executor.execute(() -> "result"));
+        assertEquals(1L, executor.getStatistics().get("searchesExecuted"));
+    }
+
+    @Test
+    public void shouldPropagateFailureOfSearch() {
+        executor = new SearchExecutor(2, 0, 5000);
+
+        try {
+            executor.execute(() -> {
+                throw new IOException("Elasticsearch is down");
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("Elasticsearch is down", e.getMessage());
+        }
+    }
+
+    @Test
+    public void shouldGiveUpOnSlowSearch() throws IOException {
+        executor = new SearchExecutor(1, 0, 100);
+
+        try {
+            executor.execute(this::blockedSearch);
+            fail();
+        } catch (SearchExecutor.SearchRejectedException e) {
+            //expected
+        }
+
+        assertEquals(1L, executor.getStatistics().get("searchesTimedOut"));
+    }
+
+    @Test
+    public void shouldRejectSearchesWhenAllThreadsAreBusy() throws Exception {
+        executor = new SearchExecutor(1, 0, 0);
+
+        Thread busy = startBlockedSearch();
+
+        try {
+            executor.execute(() -> "too many");
+            fail();
+        } catch (SearchExecutor.SearchRejectedException e) {
+            //expected
+        }
+
+        assertEquals(1L, executor.getStatistics().get("searchesRejected"));
+
+        release.countDown();
+        busy.join(5000);
+    }
+
+    @Test
+    public void shouldQueueSearchesUpToQueueSize() throws Exception {
+        executor = new SearchExecutor(1, 1, 0);
+
+        Thread busy = startBlockedSearch();
+
+        Thread queued = new Thread(() -> {
+            try {
+                assertEquals("queued", executor.execute(() -> "queued"));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        queued.start();
+        waitForQueuedSearch();
+
+        try {
+            executor.execute(() -> "too many");
+            fail();
+        } catch (SearchExecutor.SearchRejectedException e) {
+            //expected, the queue is full
+        }
+
+        release.countDown();
+        busy.join(5000);
+        queued.join(5000);
+
+        assertEquals(2L, executor.getStatistics().get("searchesExecuted"));
+        assertEquals(1L, executor.getStatistics().get("searchesRejected"));
+    }
+
+    private String blockedSearch() throws InterruptedException {
+        release.await(5, TimeUnit.SECONDS);
+        return "released";
+    }
+
+    private Thread startBlockedSearch() throws InterruptedException {
+        Thread thread = new Thread(() -> {
+            try {
+                executor.execute(this::blockedSearch);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        thread.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (executor.getStatistics().get("searchesActive").intValue() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, executor.getStatistics().get("searchesActive").intValue());
+        return thread;
+    }
+
+    private void waitForQueuedSearch() throws InterruptedException {
+        //the queued search can't start before the busy one is released, give it time to be submitted
+        Thread.sleep(200);
+    }
+}
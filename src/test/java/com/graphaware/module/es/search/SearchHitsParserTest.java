@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.graphaware.module.es.search;
+
+import org.junit.Test;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SearchHitsParserTest {
+
+    @Test
+    public void shouldExtractIdsAndScoresOfHits() throws Exception {
+        String response = "{\"took\":3,\"timed_out\":false,\"_shards\":{\"total\":5,\"successful\":5,\"failed\":0}," +
+                "\"hits\":{\"total\":2,\"max_score\":1.5,\"hits\":[" +
+                "{\"_index\":\"neo4j-index-node\",\"_type\":\"Person\",\"_id\":\"abc\",\"_score\":1.5,\"_source\":{\"name\":\"Michal\",\"tags\":[\"a\",{\"_id\":\"nested\"}]}}," +
+                "{\"_index\":\"neo4j-index-node\",\"_type\":\"Person\",\"_id\":\"def\",\"_score\":null,\"sort\":[1]}" +
+                "]},\"aggregations\":{\"hits\":{\"hits\":[]}}}";
+
+        List<SearchMatch<Node>> matches = new ArrayList<>();
+        SearchHitsParser.<Node>parse(response, matches::add);
+
+        assertEquals(2, matches.size());
+        assertEquals("abc", matches.get(0).key);
+        assertEquals(1.5, matches.get(0).score, 0.0001);
+        assertEquals("def", matches.get(1).key);
+        assertNull(matches.get(1).score);
+    }
+
+    @Test
+    public void shouldHandleFilteredAndEmptyResponses() throws Exception {
+        List<SearchMatch<Node>> matches = new ArrayList<>();
+
+        SearchHitsParser.<Node>parse("{\"hits\":{\"hits\":[{\"_id\":\"1\",\"_score\":0.3}]}}", matches::add);
+        assertEquals(1, matches.size());
+        assertEquals("1", matches.get(0).key);
+
+        matches.clear();
+        SearchHitsParser.<Node>parse("{}", matches::add);
+        SearchHitsParser.<Node>parse("{\"error\":{\"type\":\"index_not_found_exception\"},\"status\":404}", matches::add);
+        assertTrue(matches.isEmpty());
+    }
+}
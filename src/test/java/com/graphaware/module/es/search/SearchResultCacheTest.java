@@ -0,0 +1,296 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search;
+
+import com.google.gson.Gson;
+import io.searchbox.client.JestResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+
+public class SearchResultCacheTest {
+
+    private static final String QUERY = "{\"query\":{\"match_all\":{}}}";
+
+    private final Map<String, Set<String>> aliases = new HashMap<>();
+    private final Map<String, Long> refreshIntervals = new HashMap<>();
+    private final Set<String> missing = new HashSet<>();
+    private int resolutions;
+    private IndexGenerations generations;
+    private SearchResultCache cache;
+    private int searches;
+
+    @Before
+    public void setUp() {
+        generations = new IndexGenerations();
+        generations.setResolver(this::resolve);
+        cache = new SearchResultCache(10, 0, generations);
+        searches = 0;
+    }
+
+    @Test
+    public void shouldServeCachedResponseUntilIndexIsWrittenTo() {
+        assertEquals("{\"n\":1}", search("index"));
+        assertEquals("{\"n\":1}", search("index"));
+        assertEquals(1, searches);
+
+        generations.flushed(Collections.singleton("index"), 0);
+
+        assertEquals("{\"n\":2}", search("index"));
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldNotInvalidateResponsesOfOtherIndices() {
+        search("index");
+        generations.flushed(Collections.singleton("other"), 0);
+        search("index");
+
+        assertEquals(1, searches);
+    }
+
+    @Test
+    public void shouldInvalidateResponsesOfAliasWhenConcreteIndexIsWrittenTo() {
+        aliases.put("alias", Collections.singleton("index-v2"));
+
+        search("alias");
+        generations.flushed(Collections.singleton("index-v2"), 0);
+        search("alias");
+
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldInvalidateResponsesOfConcreteIndexWhenWrittenToThroughAlias() {
+        aliases.put("alias", new HashSet<>(Arrays.asList("index-a", "index-b")));
+
+        search("index-b");
+        generations.flushed(Collections.singleton("alias"), 0);
+        search("index-b");
+
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldInvalidateAllResponsesWhenAliasesChange() {
+        aliases.put("alias", Collections.singleton("index-v1"));
+        generations.flushed(Collections.singleton("alias"), 0);
+
+        search("alias");
+        aliases.put("alias", Collections.singleton("index-v2"));
+        generations.aliasesChanged();
+        search("alias");
+        generations.flushed(Collections.singleton("index-v2"), 0);
+        search("alias");
+
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldNotCacheWhileWritesAreNotSearchable() {
+        generations.flushed(Collections.singleton("index"), Long.MAX_VALUE);
+
+        search("index");
+        search("index");
+        assertEquals(2, searches);
+
+        generations.refreshed(Collections.singleton("index"), System.currentTimeMillis());
+
+        search("index");
+        search("index");
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldNotConsiderWritesFlushedDuringRefreshSearchable() throws InterruptedException {
+        long refreshStarted = System.currentTimeMillis();
+        Thread.sleep(5);
+        generations.flushed(Collections.singleton("index"), Long.MAX_VALUE);
+        generations.refreshed(Collections.singleton("index"), refreshStarted);
+
+        search("index");
+        search("index");
+
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldCacheOnceRefreshIntervalHasPassed() throws InterruptedException {
+        generations.flushed(Collections.singleton("index"), System.currentTimeMillis() + 50);
+
+        search("index");
+        Thread.sleep(100);
+        search("index");
+        search("index");
+
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldWaitForRefreshIntervalOfIndex() throws InterruptedException {
+        refreshIntervals.put("index", 200L);
+        generations.flushed(Collections.singleton("index"));
+
+        search("index");
+        Thread.sleep(50);
+        search("index");
+        assertEquals(2, searches); //not searchable yet
+
+        Thread.sleep(250);
+        search("index");
+        search("index");
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldNotCacheIndexWithoutPeriodicRefreshUntilRefreshed() {
+        refreshIntervals.put("index", IndexGenerations.NO_REFRESH);
+        generations.flushed(Collections.singleton("index"));
+
+        search("index");
+        search("index");
+        assertEquals(2, searches);
+
+        generations.refreshed(Collections.singleton("index"), System.currentTimeMillis());
+
+        search("index");
+        search("index");
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldReadRefreshIntervalAgainWhenSettingsChange() {
+        refreshIntervals.put("index", IndexGenerations.NO_REFRESH);
+        generations.flushed(Collections.singleton("index"));
+
+        refreshIntervals.put("index", 0L);
+        generations.refreshed(Collections.singleton("index"), System.currentTimeMillis());
+        generations.flushed(Collections.singleton("index")); //still without periodic refresh as far as it knows
+
+        search("index");
+        search("index");
+        assertEquals(2, searches);
+
+        generations.settingsChanged();
+        generations.refreshed(Collections.singleton("index"), System.currentTimeMillis());
+        generations.flushed(Collections.singleton("index"));
+
+        search("index");
+        search("index");
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldRememberFailedResolutions() {
+        missing.add("index");
+
+        search("index");
+        search("index");
+        generations.flushed(Collections.singleton("index"), 0);
+        search("index");
+
+        assertEquals(1, resolutions);
+    }
+
+    @Test
+    public void shouldParseTimeValues() {
+        assertEquals(Long.valueOf(1000), IndexGenerations.parseTimeValue("1s"));
+        assertEquals(Long.valueOf(500), IndexGenerations.parseTimeValue("500ms"));
+        assertEquals(Long.valueOf(120000), IndexGenerations.parseTimeValue("2m"));
+        assertEquals(Long.valueOf(1500), IndexGenerations.parseTimeValue("1.5s"));
+        assertEquals(Long.valueOf(30), IndexGenerations.parseTimeValue("30"));
+        assertEquals(Long.valueOf(IndexGenerations.NO_REFRESH), IndexGenerations.parseTimeValue("-1"));
+        assertEquals(null, IndexGenerations.parseTimeValue("soon"));
+    }
+
+    @Test
+    public void shouldNotCacheSearchesOfUnknownIndex() {
+        search(null);
+        search(null);
+
+        assertEquals(2, searches);
+        assertEquals(0L, cache.getStatistics().get("searchCacheMisses"));
+    }
+
+    @Test
+    public void shouldNotCacheFailedResponses() {
+        cache.get("index", "raw", QUERY, () -> result(false));
+        cache.get("index", "raw", QUERY, () -> result(false));
+        search("index");
+
+        assertEquals(3, searches);
+    }
+
+    @Test
+    public void shouldExpireResponses() throws InterruptedException {
+        cache = new SearchResultCache(10, 20, generations);
+
+        search("index");
+        search("index");
+        Thread.sleep(50);
+        search("index");
+
+        assertEquals(2, searches);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedResponses() {
+        cache = new SearchResultCache(2, 0, generations);
+
+        search("a");
+        search("b");
+        search("a");
+        search("c");
+        search("a");
+        search("b");
+
+        assertEquals(4, searches);
+        assertEquals(2, cache.getStatistics().get("searchCacheSize"));
+    }
+
+    private Map<String, Long> resolve(String index) {
+        resolutions++;
+        if (missing.contains(index)) {
+            return null;
+        }
+
+        Map<String, Long> resolved = new HashMap<>();
+        for (String concrete : aliases.getOrDefault(index, Collections.singleton(index))) {
+            resolved.put(concrete, refreshIntervals.getOrDefault(concrete, IndexGenerations.DEFAULT_REFRESH_INTERVAL));
+        }
+        return resolved;
+    }
+
+    private String search(String index) {
+        return cache.get(index, "raw", QUERY, (Supplier<JestResult>) () -> result(true));
+    }
+
+    private JestResult result(boolean succeeded) {
+        searches++;
+        JestResult result = new JestResult(new Gson());
+        result.setJsonString("{\"n\":" + searches + "}");
+        result.setSucceeded(succeeded);
+        return result;
+    }
+}
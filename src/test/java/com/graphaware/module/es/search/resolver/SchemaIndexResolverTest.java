@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.search.resolver;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.NotFoundException;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class SchemaIndexResolverTest {
+
+    private static final Label PERSON = Label.label("Person");
+    private static final Label COMPANY = Label.label("Company");
+
+    private GraphDatabaseService database;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+
+        try (Transaction tx = database.beginTx()) {
+            database.schema().indexFor(PERSON).on("code").create();
+            database.schema().constraintFor(COMPANY).assertPropertyIsUnique("code").create();
+            tx.success();
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            database.schema().awaitIndexesOnline(10, TimeUnit.SECONDS);
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldNotApplyWithoutSchemaIndexOnKey() {
+        try {
+            new SchemaIndexResolver(database, "name");
+            fail();
+        } catch (ResolverNotApplicable e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void shouldResolveKeysOfAllIndexedLabelsInBatch() throws ResolverNotApplicable {
+        long alice = createNode(PERSON, "alice");
+        long acme = createNode(COMPANY, "acme");
+
+        Map<String, Long> ids = new SchemaIndexResolver(database, "code").getNodeIDs(Arrays.asList("alice", "acme", "missing"));
+
+        assertEquals(2, ids.size());
+        assertEquals(alice, (long) ids.get("alice"));
+        assertEquals(acme, (long) ids.get("acme"));
+    }
+
+    @Test
+    public void shouldResolveNumericKeys() throws ResolverNotApplicable {
+        long person = createNode(PERSON, 12L);
+        long company = createNode(COMPANY, 13);
+
+        KeyToIdResolver resolver = new SchemaIndexResolver(database, "code");
+        Map<String, Long> ids = resolver.getNodeIDs(Arrays.asList("12", "13", "14"));
+
+        assertEquals(2, ids.size());
+        assertEquals(person, (long) ids.get("12"));
+        assertEquals(company, (long) ids.get("13"));
+        assertEquals(person, resolver.getNodeID("12"));
+    }
+
+    @Test
+    public void shouldPreferStringKeysOverNumericOnes() throws ResolverNotApplicable {
+        createNode(PERSON, 7L);
+        long string = createNode(PERSON, "7");
+
+        assertEquals(string, new SchemaIndexResolver(database, "code").getNodeID("7"));
+    }
+
+    @Test
+    public void shouldResolveDuplicateKeysOfNonUniqueIndex() throws ResolverNotApplicable {
+        long first = createNode(PERSON, "dup");
+        createNode(PERSON, "dup");
+
+        KeyToIdResolver resolver = new SchemaIndexResolver(database, "code");
+
+        assertEquals(first, resolver.getNodeID("dup"));
+        assertEquals(first, (long) resolver.getNodeIDs(Arrays.asList("dup", "other")).get("dup"));
+    }
+
+    @Test
+    public void shouldNotFindMissingNode() throws ResolverNotApplicable {
+        createNode(PERSON, "alice");
+
+        try {
+            new SchemaIndexResolver(database, "code").getNodeID("bob");
+            fail();
+        } catch (NotFoundException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void shouldNotResolveRelationships() throws ResolverNotApplicable {
+        KeyToIdResolver resolver = new SchemaIndexResolver(database, "code");
+
+        assertFalse(resolver.canResolveRelationships());
+        try {
+            resolver.getRelationshipID("1");
+            fail();
+        } catch (NotFoundException e) {
+            //expected, like any other key that can't be resolved
+        }
+    }
+
+    private long createNode(Label label, Object code) {
+        try (Transaction tx = database.beginTx()) {
+            Node node = database.createNode(label);
+            node.setProperty("code", code);
+            tx.success();
+            return node.getId();
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Search;
+import io.searchbox.indices.settings.GetSettings;
+import io.searchbox.indices.settings.UpdateSettings;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BulkLoadSettingsTest {
+
+    private final FakeElasticsearch client = new FakeElasticsearch();
+
+    @Before
+    public void setUp() {
+        client.createIndex("nodes", "5s", "2");
+        client.createIndex("females", "5s", "2");
+    }
+
+    @Test
+    public void shouldApplyBulkLoadSettingsAndRestoreOriginalOnes() throws Exception {
+        BulkLoadSettings settings = new BulkLoadSettings(client, Arrays.asList("nodes", "females"));
+
+        settings.apply();
+
+        JsonObject bulk = client.settings.get("nodes");
+        assertEquals("-1", bulk.get("refresh_interval").getAsString());
+        assertEquals("0", bulk.get("number_of_replicas").getAsString());
+        assertEquals("async", bulk.get("translog.durability").getAsString());
+        assertEquals("-1", client.settings.get("females").get("refresh_interval").getAsString());
+
+        assertEquals(2, client.markers.size());
+        assertEquals("5s", client.markers.get("nodes").get("refresh_interval").getAsString());
+
+        client.requests.clear();
+        settings.restore(1);
+
+        JsonObject restored = client.settings.get("nodes");
+        assertEquals("5s", restored.get("refresh_interval").getAsString());
+        assertEquals("2", restored.get("number_of_replicas").getAsString());
+        assertEquals("request", restored.get("translog.durability").getAsString());
+        assertTrue(client.markers.isEmpty());
+        assertTrue(client.requested("_forcemerge"));
+        assertTrue(client.requested("max_num_segments=1"));
+        assertTrue(client.requested("_refresh"));
+    }
+
+    @Test
+    public void shouldIgnoreUnknownIndices() {
+        BulkLoadSettings settings = new BulkLoadSettings(client, Arrays.asList("nodes", null));
+
+        settings.apply();
+
+        assertEquals("-1", client.settings.get("nodes").get("refresh_interval").getAsString());
+        assertEquals("5s", client.settings.get("females").get("refresh_interval").getAsString());
+        assertEquals(1, client.markers.size());
+    }
+
+    @Test
+    public void shouldLeaveIndicesWhoseSettingsCantBeRead() throws Exception {
+        client.failing = true;
+        BulkLoadSettings settings = new BulkLoadSettings(client, Arrays.asList("nodes", "females"));
+
+        settings.apply();
+        client.requests.clear();
+        settings.restore(0);
+
+        assertEquals(0, client.requests.size());
+    }
+
+    @Test
+    public void shouldLeaveIndicesWhoseSettingsCantBeRemembered() {
+        client.markersFailing = true;
+        BulkLoadSettings settings = new BulkLoadSettings(client, Arrays.asList("nodes", "females"));
+
+        settings.apply();
+
+        assertEquals("5s", client.settings.get("nodes").get("refresh_interval").getAsString());
+        assertEquals("5s", client.settings.get("females").get("refresh_interval").getAsString());
+    }
+
+    @Test
+    public void shouldApplySettingsToIndicesBehindAlias() {
+        client.createIndex("nodes-v2", "30s", "1");
+        client.aliases.put("people", "nodes-v2");
+        BulkLoadSettings settings = new BulkLoadSettings(client, Arrays.asList("people"));
+
+        settings.apply();
+
+        assertEquals("-1", client.settings.get("nodes-v2").get("refresh_interval").getAsString());
+        assertEquals("30s", client.markers.get("nodes-v2").get("refresh_interval").getAsString());
+
+        settings.restore(0);
+
+        assertEquals("30s", client.settings.get("nodes-v2").get("refresh_interval").getAsString());
+        assertTrue(client.markers.isEmpty());
+    }
+
+    @Test
+    public void shouldRestoreSettingsLeftInBulkLoadModeByPreviousRun() {
+        new BulkLoadSettings(client, Arrays.asList("nodes", "females")).apply(); //never restored
+
+        assertTrue(new BulkLoadSettings(client, Arrays.asList("nodes", "females")).recover());
+
+        assertEquals("5s", client.settings.get("nodes").get("refresh_interval").getAsString());
+        assertEquals("2", client.settings.get("females").get("number_of_replicas").getAsString());
+        assertTrue(client.markers.isEmpty());
+
+        assertFalse(new BulkLoadSettings(client, Arrays.asList("nodes", "females")).recover());
+    }
+
+    @Test
+    public void shouldKeepSettingsForNextStartWhenTheyCantBeRestored() {
+        new BulkLoadSettings(client, Arrays.asList("nodes")).apply();
+        client.updatesFailing = true;
+
+        assertFalse(new BulkLoadSettings(client, Arrays.asList("nodes")).recover());
+        assertEquals(1, client.markers.size());
+
+        client.updatesFailing = false;
+        assertTrue(new BulkLoadSettings(client, Arrays.asList("nodes")).recover());
+        assertTrue(client.markers.isEmpty());
+    }
+
+    @Test
+    public void shouldForgetSettingsOfDeletedIndices() {
+        new BulkLoadSettings(client, Arrays.asList("nodes")).apply();
+        client.settings.remove("nodes");
+
+        assertFalse(new BulkLoadSettings(client, Arrays.asList("females")).recover());
+        assertTrue(client.markers.isEmpty());
+    }
+
+    @Test
+    public void shouldLeaveIndicesWithoutPeriodicRefreshAloneWhenNotLeftByBulkLoad() {
+        client.createIndex("manual", "-1", "1");
+
+        assertFalse(new BulkLoadSettings(client, Arrays.asList("manual")).recover()); //only warns
+
+        assertEquals("-1", client.settings.get("manual").get("refresh_interval").getAsString());
+    }
+
+    /**
+     * Keeps index settings and documents of the {@link BulkLoadSettings#MARKER_INDEX} in memory.
+     */
+    private static class FakeElasticsearch implements JestClient {
+
+        private final List<String> requests = new ArrayList<>();
+        private final Map<String, JsonObject> settings = new LinkedHashMap<>();
+        private final Map<String, String> aliases = new HashMap<>();
+        private final Map<String, JsonObject> markers = new LinkedHashMap<>();
+        private boolean failing = false;
+        private boolean markersFailing = false;
+        private boolean updatesFailing = false;
+
+        private void createIndex(String index, String refreshInterval, String replicas) {
+            JsonObject indexSettings = new JsonObject();
+            indexSettings.addProperty("refresh_interval", refreshInterval);
+            indexSettings.addProperty("number_of_replicas", replicas);
+            settings.put(index, indexSettings);
+        }
+
+        private boolean requested(String part) throws UnsupportedEncodingException {
+            for (String request : requests) {
+                if (URLDecoder.decode(request, "UTF-8").contains(part)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) {
+            requests.add(clientRequest.getURI());
+
+            String[] path = clientRequest.getURI().replaceFirst("^/", "").split("\\?")[0].split("/");
+            String index = aliases.getOrDefault(path[0], path[0]);
+
+            JsonObject response = new JsonObject();
+            boolean succeeded = !failing;
+            int code = 200;
+
+            if (clientRequest instanceof GetSettings || clientRequest instanceof UpdateSettings) {
+                if (!settings.containsKey(index)) {
+                    succeeded = false;
+                    code = 404;
+                } else if (clientRequest instanceof GetSettings) {
+                    JsonObject indexSettings = new JsonObject();
+                    indexSettings.add("index", settings.get(index));
+                    JsonObject concrete = new JsonObject();
+                    concrete.add("settings", indexSettings);
+                    response.add(index, concrete);
+                } else if (updatesFailing) {
+                    succeeded = false;
+                    code = 500;
+                } else {
+                    JsonObject update = new JsonParser().parse(clientRequest.getData(new Gson())).getAsJsonObject().getAsJsonObject("index");
+                    update.entrySet().forEach(e -> settings.get(index).add(e.getKey(), e.getValue()));
+                }
+            } else if (clientRequest instanceof Index) {
+                succeeded &= !markersFailing;
+                if (succeeded) {
+                    markers.put(path[2], new JsonParser().parse(clientRequest.getData(new Gson())).getAsJsonObject());
+                }
+            } else if (clientRequest instanceof Delete) {
+                succeeded &= markers.remove(path[2]) != null;
+            } else if (clientRequest instanceof Search) {
+                JsonArray hits = new JsonArray();
+                for (Map.Entry<String, JsonObject> marker : markers.entrySet()) {
+                    JsonObject hit = new JsonObject();
+                    hit.addProperty("_id", marker.getKey());
+                    hit.add("_source", marker.getValue());
+                    hits.add(hit);
+                }
+                JsonObject outer = new JsonObject();
+                outer.add("hits", hits);
+                response.add("hits", outer);
+            } else {
+                response.addProperty("acknowledged", true);
+            }
+
+            JestResult result = new JestResult(new Gson());
+            result.setJsonString(response.toString());
+            result.setJsonObject(response);
+            result.setSucceeded(succeeded);
+            result.setResponseCode(failing ? 500 : code);
+            return (T) result;
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> jestResultHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdownClient() {
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+        }
+    }
+}
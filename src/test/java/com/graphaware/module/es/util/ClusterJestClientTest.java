@@ -0,0 +1,301 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.action.Action;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.indices.Refresh;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ClusterJestClientTest {
+
+    private static final String A = "http://a:9200";
+    private static final String B = "http://b:9200";
+    private static final String C = "http://c:9200";
+
+    private final Map<String, FakeHostClient> hostClients = new ConcurrentHashMap<>();
+    private ClusterJestClient client;
+
+    @After
+    public void tearDown() {
+        if (client != null) {
+            client.shutdownClient();
+        }
+    }
+
+    @Test
+    public void shouldSpreadRequestsRoundRobin() throws IOException {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A, B, C);
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(client.execute(request()).isSucceeded());
+        }
+
+        assertEquals(2, host(A).executed.get());
+        assertEquals(2, host(B).executed.get());
+        assertEquals(2, host(C).executed.get());
+    }
+
+    @Test
+    public void shouldEjectFailingHostAndRetryOnAnother() throws IOException {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A, B);
+        host(A).failing = true;
+
+        for (int i = 0; i < 4; i++) {
+            assertTrue(client.execute(request()).isSucceeded());
+        }
+
+        assertEquals(1, host(A).executed.get()); //ejected after its first failure
+        assertEquals(4, host(B).executed.get());
+    }
+
+    @Test
+    public void shouldTryEjectedHostsRatherThanGiveUp() throws IOException {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A, B);
+        host(A).failing = true;
+        host(B).failing = true;
+
+        try {
+            client.execute(request());
+            fail();
+        } catch (IOException e) {
+            //expected, all hosts failed
+        }
+
+        host(A).failing = false;
+        host(B).failing = false;
+
+        assertTrue(client.execute(request()).isSucceeded());
+    }
+
+    @Test
+    public void shouldPreferLeastLoadedHost() throws Exception {
+        client = newClient(LoadBalancingStrategy.LEAST_LOADED, 60000, A, B, C);
+
+        CountDownLatch release = new CountDownLatch(1);
+        for (FakeHostClient host : hostClients.values()) {
+            host.block = release;
+        }
+
+        Thread slow = new Thread(() -> {
+            try {
+                client.execute(request());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        slow.start();
+
+        FakeHostClient busy = null;
+        long deadline = System.currentTimeMillis() + 5000;
+        while (busy == null && System.currentTimeMillis() < deadline) {
+            for (FakeHostClient host : hostClients.values()) {
+                if (host.executed.get() > 0) {
+                    busy = host;
+                }
+            }
+            Thread.sleep(10);
+        }
+        assertTrue(busy != null);
+
+        for (FakeHostClient host : hostClients.values()) {
+            host.block = null;
+        }
+
+        for (int i = 0; i < 4; i++) {
+            client.execute(request());
+        }
+
+        assertEquals(1, busy.executed.get()); //still busy with the slow request
+
+        release.countDown();
+        slow.join(5000);
+    }
+
+    @Test
+    public void shouldMergeDiscoveredNodes() throws Exception {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A);
+        host(A).response = "{\"nodes\":{" +
+                "\"n1\":{\"http\":{\"publish_address\":\"127.0.0.1:9201\"}}," +
+                "\"n2\":{\"http_address\":\"inet[/127.0.0.1:9202]\"}," +
+                "\"n3\":{\"name\":\"no http\"}}}";
+
+        client.startDiscovery(60000);
+
+        Set<String> expected = new HashSet<>(Arrays.asList("http://127.0.0.1:9201", "http://127.0.0.1:9202"));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!expected.equals(client.getServers()) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(expected, client.getServers());
+        assertTrue(host(A).shutdown); //no longer part of the cluster
+        assertFalse(host("http://127.0.0.1:9201").shutdown);
+    }
+
+    @Test
+    public void shouldKeepHostsWhenNothingIsDiscovered() throws Exception {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A, B);
+        host(A).response = "{\"nodes\":{}}";
+        host(B).response = "{\"nodes\":{}}";
+
+        client.startDiscovery(60000);
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (host(A).executed.get() + host(B).executed.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(50);
+
+        assertEquals(new HashSet<>(Arrays.asList(A, B)), client.getServers());
+        assertFalse(host(A).shutdown);
+        assertFalse(host(B).shutdown);
+    }
+
+    @Test
+    public void shouldOnlyShutDownRemovedHostOnceItsRequestsComplete() throws Exception {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A);
+
+        CountDownLatch release = new CountDownLatch(1);
+        host(A).block = release;
+
+        AtomicReference<JestResult> result = new AtomicReference<>();
+        Thread running = new Thread(() -> {
+            try {
+                result.set(client.execute(request()));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        running.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (host(A).executed.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, host(A).executed.get());
+
+        client.setServers(new HashSet<>(Arrays.asList(B)));
+
+        assertFalse(host(A).shutdown); //still busy with the running request
+        assertTrue(client.execute(request()).isSucceeded());
+        assertEquals(1, host(A).executed.get()); //out of rotation
+        assertEquals(1, host(B).executed.get());
+
+        release.countDown();
+        running.join(5000);
+
+        assertTrue(result.get().isSucceeded());
+        assertTrue(host(A).shutdown);
+        assertFalse(host(B).shutdown);
+    }
+
+    @Test
+    public void shouldShutDownIdleRemovedHostStraightAway() {
+        client = newClient(LoadBalancingStrategy.ROUND_ROBIN, 60000, A, B);
+
+        client.setServers(new HashSet<>(Arrays.asList(B, C)));
+
+        assertTrue(host(A).shutdown);
+        assertFalse(host(B).shutdown);
+        assertFalse(host(C).shutdown);
+    }
+
+    private ClusterJestClient newClient(LoadBalancingStrategy strategy, long ejectionTime, String... servers) {
+        return new ClusterJestClient(server -> hostClients.computeIfAbsent(server, FakeHostClient::new), new HashSet<>(Arrays.asList(servers)), strategy, ejectionTime, "http");
+    }
+
+    private FakeHostClient host(String url) {
+        return hostClients.get(url);
+    }
+
+    private static Action<JestResult> request() {
+        return new Refresh.Builder().build();
+    }
+
+    private static class FakeHostClient implements JestClient {
+
+        private final String url;
+        private final AtomicInteger executed = new AtomicInteger();
+        private volatile boolean failing = false;
+        private volatile CountDownLatch block;
+        private volatile String response = "{}";
+        private volatile boolean shutdown = false;
+
+        private FakeHostClient(String url) {
+            this.url = url;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) throws IOException {
+            executed.incrementAndGet();
+
+            CountDownLatch latch = block;
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (failing) {
+                throw new IOException(url + " is down");
+            }
+
+            JestResult result = new JestResult(new Gson());
+            result.setJsonString(response);
+            result.setJsonObject(new JsonParser().parse(response).getAsJsonObject());
+            result.setSucceeded(true);
+            return (T) result;
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> jestResultHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdownClient() {
+            shutdown = true;
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.module.es.ElasticSearchConfiguration;
+import com.graphaware.module.es.search.Searcher;
+import com.sun.net.httpserver.HttpServer;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.config.HttpClientConfig;
+import io.searchbox.core.Bulk;
+import io.searchbox.core.Index;
+import io.searchbox.indices.Refresh;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CustomJestClientFactoryTest {
+
+    private HttpServer server;
+    private final List<Request> received = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            received.add(new Request(exchange.getRequestURI().getPath(), exchange.getRequestHeaders().getFirst("Content-Encoding"), read(exchange.getRequestBody())));
+
+            byte[] response = "{\"took\":1,\"errors\":false,\"items\":[]}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void shouldConfigurePoolAndTimeouts() {
+        ElasticSearchConfiguration configuration = ElasticSearchConfiguration.defaultConfiguration()
+                .withMaxTotalConnections(50)
+                .withMaxConnectionsPerRoute(25)
+                .withConnectTimeout(1000)
+                .withReadTimeout(2000)
+                .withConnectionRequestTimeout(3000)
+                .withMaxIdleTime(4000);
+
+        CustomJestClientFactory factory = new CustomJestClientFactory(configuration);
+
+        HttpClientConfig clientConfig = factory.customize(new HttpClientConfig.Builder("http://localhost:9200").multiThreaded(true).build());
+        assertEquals(50, clientConfig.getMaxTotalConnection());
+        assertEquals(25, (int) clientConfig.getDefaultMaxTotalConnectionPerRoute());
+        assertEquals(1000, clientConfig.getConnTimeout());
+        assertEquals(2000, clientConfig.getReadTimeout());
+        assertEquals(4000, clientConfig.getMaxConnectionIdleTime());
+        assertEquals(TimeUnit.MILLISECONDS, clientConfig.getMaxConnectionIdleTimeDurationTimeUnit());
+
+        RequestConfig requestConfig = factory.requestConfig();
+        assertEquals(1000, requestConfig.getConnectTimeout());
+        assertEquals(2000, requestConfig.getSocketTimeout());
+        assertEquals(3000, requestConfig.getConnectionRequestTimeout());
+    }
+
+    @Test
+    public void shouldNotEvictIdleConnectionsByDefault() {
+        HttpClientConfig clientConfig = new CustomJestClientFactory(ElasticSearchConfiguration.defaultConfiguration())
+                .customize(new HttpClientConfig.Builder("http://localhost:9200").multiThreaded(true).build());
+
+        assertTrue(clientConfig.getMaxConnectionIdleTime() <= 0);
+    }
+
+    @Test
+    public void shouldCapKeepAliveAnnouncedByServer() {
+        ConnectionKeepAliveStrategy strategy = new CustomJestClientFactory(ElasticSearchConfiguration.defaultConfiguration().withKeepAlive(5000)).keepAliveStrategy();
+
+        assertEquals(5000, strategy.getKeepAliveDuration(response(null), new BasicHttpContext()));
+        assertEquals(2000, strategy.getKeepAliveDuration(response("timeout=2"), new BasicHttpContext()));
+        assertEquals(5000, strategy.getKeepAliveDuration(response("timeout=60"), new BasicHttpContext()));
+    }
+
+    @Test
+    public void shouldKeepServerKeepAliveByDefault() {
+        assertNull(new CustomJestClientFactory(ElasticSearchConfiguration.defaultConfiguration()).keepAliveStrategy());
+    }
+
+    @Test
+    public void shouldGzipBulkRequestsOnly() throws Exception {
+        CompressionStatistics statistics = new CompressionStatistics();
+        JestClient client = client(ElasticSearchConfiguration.defaultConfiguration().withBulkCompression(true), statistics);
+
+        try {
+            assertTrue(client.execute(bulk()).isSucceeded());
+            client.execute(new Refresh.Builder().build());
+        } finally {
+            client.shutdownClient();
+        }
+
+        assertEquals(2, received.size());
+
+        Request bulk = received.get(0);
+        assertEquals("/_bulk", bulk.path);
+        assertEquals("gzip", bulk.contentEncoding);
+        String uncompressed = gunzip(bulk.body);
+        assertTrue(uncompressed.contains("\"name\":\"Michal\""));
+
+        Request refresh = received.get(1);
+        assertNull(refresh.contentEncoding);
+
+        assertEquals(1, statistics.getRequests());
+        assertEquals(uncompressed.getBytes(StandardCharsets.UTF_8).length, statistics.getUncompressedBytes());
+        assertEquals(bulk.body.length, statistics.getCompressedBytes());
+    }
+
+    @Test
+    public void shouldNotGzipByDefault() throws Exception {
+        CompressionStatistics statistics = new CompressionStatistics();
+        JestClient client = client(ElasticSearchConfiguration.defaultConfiguration(), statistics);
+
+        try {
+            client.execute(bulk());
+        } finally {
+            client.shutdownClient();
+        }
+
+        assertNull(received.get(0).contentEncoding);
+        assertTrue(new String(received.get(0).body, StandardCharsets.UTF_8).contains("\"name\":\"Michal\""));
+        assertEquals(0, statistics.getRequests());
+    }
+
+    private JestClient client(ElasticSearchConfiguration configuration, CompressionStatistics statistics) {
+        return Searcher.createClient(configuration, "http://127.0.0.1:" + server.getAddress().getPort(), statistics);
+    }
+
+    private static Bulk bulk() {
+        return new Bulk.Builder()
+                .addAction(new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id("1").build())
+                .build();
+    }
+
+    private static HttpResponse response(String keepAlive) {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        if (keepAlive != null) {
+            response.addHeader("Keep-Alive", keepAlive);
+        }
+        return response;
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        return new String(read(new GZIPInputStream(new ByteArrayInputStream(compressed))), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] read(InputStream stream) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int read;
+        while ((read = stream.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+
+    private static class Request {
+        private final String path;
+        private final String contentEncoding;
+        private final byte[] body;
+
+        private Request(String path, String contentEncoding, byte[] body) {
+            this.path = path;
+            this.contentEncoding = contentEncoding;
+            this.body = body;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GzipRequestInterceptorTest {
+
+    private static final String BULK_BODY;
+
+    static {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            body.append("{\"index\":{\"_index\":\"nodes\",\"_type\":\"Person\",\"_id\":\"").append(i).append("\"}}\n");
+            body.append("{\"name\":\"Michal\",\"age\":").append(i).append("}\n");
+        }
+        BULK_BODY = body.toString();
+    }
+
+    private final CompressionStatistics statistics = new CompressionStatistics();
+
+    @Test
+    public void shouldCompressBodyAndRecordSizes() throws IOException {
+        BasicHttpEntityEnclosingRequest request = request("/_bulk");
+
+        new GzipRequestInterceptor(false, statistics).process(request, new BasicHttpContext());
+
+        HttpEntity entity = request.getEntity();
+        assertEquals("gzip", entity.getContentEncoding().getValue());
+
+        byte[] compressed = write(entity);
+        assertEquals(BULK_BODY, gunzip(compressed));
+
+        assertEquals(1, statistics.getRequests());
+        assertEquals(BULK_BODY.getBytes(StandardCharsets.UTF_8).length, statistics.getUncompressedBytes());
+        assertEquals(compressed.length, statistics.getCompressedBytes());
+        assertTrue(statistics.getCompressedBytes() < statistics.getUncompressedBytes());
+    }
+
+    @Test
+    public void shouldAccumulateCounters() throws IOException {
+        GzipRequestInterceptor interceptor = new GzipRequestInterceptor(false, statistics);
+
+        long compressed = 0;
+        for (int i = 0; i < 3; i++) {
+            BasicHttpEntityEnclosingRequest request = request("/nodes/Person/" + i);
+            interceptor.process(request, new BasicHttpContext());
+            compressed += write(request.getEntity()).length;
+        }
+
+        Map<String, Number> counters = statistics.asMap();
+        assertEquals(3L, counters.get("compressedRequests"));
+        assertEquals(3L * BULK_BODY.getBytes(StandardCharsets.UTF_8).length, counters.get("uncompressedBytes"));
+        assertEquals(compressed, counters.get("compressedBytes"));
+        assertTrue(counters.containsKey("compressionMillis"));
+    }
+
+    @Test
+    public void shouldOnlyCompressBulkRequestsWhenAsked() throws IOException {
+        GzipRequestInterceptor interceptor = new GzipRequestInterceptor(true, statistics);
+
+        BasicHttpEntityEnclosingRequest search = request("/nodes/_search");
+        HttpEntity original = search.getEntity();
+        interceptor.process(search, new BasicHttpContext());
+        assertSame(original, search.getEntity());
+
+        BasicHttpEntityEnclosingRequest bulk = request("/nodes/_bulk?refresh=true");
+        interceptor.process(bulk, new BasicHttpContext());
+        assertEquals("gzip", bulk.getEntity().getContentEncoding().getValue());
+        assertEquals(BULK_BODY, gunzip(write(bulk.getEntity())));
+    }
+
+    @Test
+    public void shouldLeaveRequestsWithoutBodyOrWithEncodingAlone() {
+        GzipRequestInterceptor interceptor = new GzipRequestInterceptor(false, statistics);
+
+        interceptor.process(new BasicHttpRequest("GET", "/_nodes/http"), new BasicHttpContext());
+
+        BasicHttpEntityEnclosingRequest empty = new BasicHttpEntityEnclosingRequest("POST", "/_refresh");
+        interceptor.process(empty, new BasicHttpContext());
+        assertNull(empty.getEntity());
+
+        BasicHttpEntityEnclosingRequest encoded = request("/_bulk");
+        ((StringEntity) encoded.getEntity()).setContentEncoding("deflate");
+        HttpEntity original = encoded.getEntity();
+        interceptor.process(encoded, new BasicHttpContext());
+        assertSame(original, encoded.getEntity());
+
+        assertEquals(0, statistics.getRequests());
+    }
+
+    @Test
+    public void shouldCompressWithoutStatistics() throws IOException {
+        BasicHttpEntityEnclosingRequest request = request("/_bulk");
+
+        new GzipRequestInterceptor(false, null).process(request, new BasicHttpContext());
+
+        assertEquals(BULK_BODY, gunzip(write(request.getEntity())));
+        assertTrue(request.getEntity().isChunked()); //length unknown until compressed
+    }
+
+    private static BasicHttpEntityEnclosingRequest request(String uri) {
+        BasicHttpEntityEnclosingRequest request = new BasicHttpEntityEnclosingRequest("POST", uri);
+        request.setEntity(new StringEntity(BULK_BODY, ContentType.APPLICATION_JSON));
+        return request;
+    }
+
+    private static byte[] write(HttpEntity entity) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        entity.writeTo(result);
+        return result.toByteArray();
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream stream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                result.write(buffer, 0, read);
+            }
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
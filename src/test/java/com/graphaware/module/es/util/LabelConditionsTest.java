@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LabelConditionsTest {
+
+    @Test
+    public void shouldFindLabelsOfLabelConditions() {
+        assertEquals(Collections.singleton("Person"), LabelConditions.requiredLabels("hasLabel('Person')"));
+        assertEquals(new HashSet<>(Arrays.asList("Person", "Company")), LabelConditions.requiredLabels("hasLabel('Person') || hasLabel('Company')"));
+        assertEquals(Collections.singleton("Person"), LabelConditions.requiredLabels("hasLabel('Person') && hasProperty('name')"));
+        assertEquals(Collections.singleton("Person"), LabelConditions.requiredLabels("(hasLabel('Person') || hasLabel('Company')) && hasLabel('Person')"));
+        assertEquals(new HashSet<>(Arrays.asList("Person", "Company")), LabelConditions.requiredLabels(Arrays.asList("hasLabel('Person')", "hasLabel('Company')")));
+    }
+
+    @Test
+    public void shouldNotFindLabelsOfOtherConditions() {
+        assertNull(LabelConditions.requiredLabels((String) null));
+        assertNull(LabelConditions.requiredLabels("true"));
+        assertNull(LabelConditions.requiredLabels("hasProperty('name')"));
+        assertNull(LabelConditions.requiredLabels("!hasLabel('Person')"));
+        assertNull(LabelConditions.requiredLabels("hasLabel('Person') || hasProperty('name')"));
+        assertNull(LabelConditions.requiredLabels("hasLabel(getProperty('label'))"));
+        assertNull(LabelConditions.requiredLabels("hasLabel('Person"));
+        assertNull(LabelConditions.requiredLabels(Arrays.asList("hasLabel('Person')", "true")));
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestResult;
+import io.searchbox.core.Delete;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OverflowLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldKeepDeduplicatedEntriesInMemory() {
+        OverflowLog log = new OverflowLog();
+        log.append(entries(1, 2));
+        log.append(entries(2, 3));
+
+        assertEquals(5, log.size());
+
+        OverflowLog.Entries drained = log.drain();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), drained.getNodes());
+        assertEquals(new HashSet<>(Arrays.asList(2L, 3L)), drained.getRelationships());
+        assertEquals(1, drained.getDeletes().size());
+        assertEquals(0, log.size());
+        assertTrue(log.drain().isEmpty());
+    }
+
+    @Test
+    public void shouldAppendEntriesToFileAndReadThemBack() throws IOException {
+        File file = new File(folder.getRoot(), "spill/overflow.ndjson");
+
+        OverflowLog log = new OverflowLog(file);
+        log.append(entries(1, 2));
+        log.close();
+
+        assertTrue(file.exists());
+
+        OverflowLog reopened = new OverflowLog(file);
+        assertEquals(3, reopened.size());
+        reopened.append(entries(5, 6));
+
+        OverflowLog.Entries drained = reopened.drain();
+        assertEquals(new HashSet<>(Arrays.asList(1L, 5L)), drained.getNodes());
+        assertEquals(new HashSet<>(Arrays.asList(2L, 6L)), drained.getRelationships());
+
+        BulkableAction<? extends JestResult> delete = drained.getDeletes().iterator().next();
+        assertEquals("index", delete.getIndex());
+        assertEquals("type", delete.getType());
+        assertEquals("key", delete.getId());
+
+        assertFalse(file.exists());
+        assertEquals(0, reopened.size());
+    }
+
+    private OverflowLog.Entries entries(long node, long relationship) {
+        OverflowLog.Entries entries = new OverflowLog.Entries();
+        entries.addNode(node);
+        entries.addRelationship(relationship);
+        entries.addDelete(new Delete.Builder("key").index("index").type("type").build());
+        return entries;
+    }
+}
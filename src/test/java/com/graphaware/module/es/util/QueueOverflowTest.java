@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class QueueOverflowTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private GraphDatabaseService database;
+    private final List<NodeExpressions> nodes = new ArrayList<>();
+    private final ReplicationTracker tracker = new ReplicationTracker();
+    private QueueOverflow overflow;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < 4; i++) {
+                nodes.add(new NodeExpressions(database.createNode()));
+            }
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (overflow != null) {
+            overflow.close();
+        }
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldAdmitAndRegisterTransactionsWhileThereIsRoom() {
+        overflow = overflow(OverflowPolicy.DROP, 2, 0, new OverflowLog());
+
+        assertTrue(overflow.admit(transaction(0)));
+        assertTrue(overflow.admit(transaction(1)));
+        assertEquals(2, tracker.getPending());
+
+        assertFalse(overflow.admit(transaction(2)));
+        assertEquals(2, tracker.getPending()); //not registered, so it can't be leaked
+    }
+
+    @Test
+    public void shouldAdmitEmptyTransactionsWithoutRoom() {
+        overflow = overflow(OverflowPolicy.DROP, 1, 0, new OverflowLog());
+
+        assertTrue(overflow.admit(transaction(0)));
+        assertTrue(overflow.admit(Collections.emptyList()));
+        assertEquals(0L, overflow.getStatistics().get("overflowDropped"));
+    }
+
+    @Test
+    public void shouldLeaveFullQueueToWriterWithoutPolicy() {
+        overflow = overflow(OverflowPolicy.NONE, 1, 0, new OverflowLog());
+
+        assertTrue(overflow.admit(transaction(0)));
+        assertTrue(overflow.admit(transaction(1, 2)));
+
+        assertEquals(2, tracker.getPending());
+        assertEquals(0L, overflow.getStatistics().get("overflowUnreconciled"));
+        assertTrue(overflow.drain().isEmpty());
+    }
+
+    @Test
+    public void shouldRecordDroppedUpdatesForReconciliation() {
+        overflow = overflow(OverflowPolicy.DROP, 1, 0, new OverflowLog());
+
+        overflow.admit(transaction(0));
+        assertFalse(overflow.admit(transaction(1, 2)));
+
+        assertEquals(2L, overflow.getStatistics().get("overflowDropped"));
+        assertEquals(2L, overflow.getStatistics().get("overflowUnreconciled"));
+        assertFalse(overflow.shouldReplay()); //reconciled on demand only
+        assertEquals(ids(1, 2), overflow.drain().getNodes());
+    }
+
+    @Test
+    public void shouldBlockUntilThereIsRoom() throws Exception {
+        overflow = overflow(OverflowPolicy.BLOCK, 1, 10_000, new OverflowLog());
+        List<WriteOperation<?>> first = transaction(0);
+        overflow.admit(first);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> blocked = executor.submit(() -> overflow.admit(transaction(1)));
+            Thread.sleep(100);
+            assertFalse(blocked.isDone());
+
+            tracker.flushed(first, Collections.emptyList());
+
+            assertTrue(blocked.get(5, TimeUnit.SECONDS));
+            assertEquals(1, tracker.getPending());
+            assertTrue(overflow.getStatistics().get("overflowBlockedMillis").longValue() >= 50);
+            assertEquals(0L, overflow.getStatistics().get("overflowBlockTimeouts"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRecordUpdatesWhenBlockingTimesOut() {
+        overflow = overflow(OverflowPolicy.BLOCK, 1, 50, new OverflowLog());
+
+        overflow.admit(transaction(0));
+        assertFalse(overflow.admit(transaction(1)));
+
+        assertEquals(1L, overflow.getStatistics().get("overflowBlockTimeouts"));
+        assertEquals(1, tracker.getPending());
+        assertEquals(ids(1), overflow.drain().getNodes());
+    }
+
+    @Test
+    public void shouldSpillUpdatesAndReplayThemOnceQueueHasRoom() {
+        File file = new File(folder.getRoot(), "overflow.ndjson");
+        overflow = overflow(OverflowPolicy.SPILL, 2, 0, new OverflowLog(file));
+
+        List<WriteOperation<?>> first = transaction(0);
+        List<WriteOperation<?>> second = transaction(1);
+        overflow.admit(first);
+        overflow.admit(second);
+        assertFalse(overflow.admit(transaction(2, 3)));
+
+        assertEquals(2L, overflow.getStatistics().get("overflowSpilled"));
+        assertTrue(file.length() > 0);
+        assertFalse(overflow.shouldReplay());
+
+        tracker.flushed(first, Collections.emptyList());
+        assertFalse(overflow.shouldReplay()); //still half full
+
+        tracker.flushed(second, Collections.emptyList());
+        assertTrue(overflow.shouldReplay());
+
+        assertEquals(ids(2, 3), overflow.drain().getNodes());
+        assertFalse(overflow.shouldReplay());
+    }
+
+    @Test
+    public void shouldCountUpdatesAsReconciledOnlyOnceReported() {
+        overflow = overflow(OverflowPolicy.DROP, 1, 0, new OverflowLog());
+        overflow.admit(transaction(0));
+        overflow.admit(transaction(1, 2));
+
+        OverflowLog.Entries entries = overflow.drain();
+        assertEquals(0L, overflow.getStatistics().get("overflowReconciled"));
+
+        OverflowLog.Entries failed = new OverflowLog.Entries();
+        failed.addNode(nodes.get(2).getGraphId());
+        overflow.record(failed);
+        overflow.reconciled(entries.size() - failed.size());
+
+        assertEquals(1L, overflow.getStatistics().get("overflowReconciled"));
+        assertEquals(1L, overflow.getStatistics().get("overflowUnreconciled"));
+        assertEquals(ids(2), overflow.drain().getNodes());
+    }
+
+    private QueueOverflow overflow(OverflowPolicy policy, int capacity, long timeout, OverflowLog log) {
+        return new QueueOverflow(policy, capacity, timeout, tracker, operation -> Collections.emptyList(), log);
+    }
+
+    private List<WriteOperation<?>> transaction(int... indices) {
+        List<WriteOperation<?>> operations = new ArrayList<>();
+        for (int index : indices) {
+            operations.add(new NodeCreated<>(nodes.get(index)));
+        }
+        return operations;
+    }
+
+    private HashSet<Long> ids(int... indices) {
+        HashSet<Long> ids = new HashSet<>();
+        for (int index : indices) {
+            ids.add(nodes.get(index).getGraphId());
+        }
+        return ids;
+    }
+}
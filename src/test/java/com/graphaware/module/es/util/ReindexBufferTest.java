@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReindexBufferTest {
+
+    private GraphDatabaseService database;
+    private final List<Long> nodes = new ArrayList<>();
+    private final List<Long> detached = new ArrayList<>();
+    private final List<List<WriteOperation<?>>> batches = new ArrayList<>();
+    private boolean failing = false;
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try (Transaction tx = database.beginTx()) {
+            for (int i = 0; i < 7; i++) {
+                nodes.add(database.createNode().getId());
+            }
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldWriteFullBatchesAndRemainderOnFlush() {
+        try (Transaction tx = database.beginTx()) {
+            ReindexBuffer buffer = buffer(3);
+
+            List<Boolean> written = new ArrayList<>();
+            for (long node : nodes) {
+                written.add(buffer.add(node));
+            }
+            assertEquals(Arrays.asList(false, false, true, false, false, true, false), written);
+            assertEquals(2, batches.size());
+            assertEquals(6, buffer.getWritten());
+
+            buffer.flush();
+
+            assertEquals(3, batches.size());
+            assertEquals(Arrays.asList(3, 3, 1), sizes());
+            assertEquals(nodes, detached);
+            assertEquals(7, buffer.getWritten());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldDetachEntitiesOnlyWhenBatchIsWritten() {
+        try (Transaction tx = database.beginTx()) {
+            ReindexBuffer buffer = buffer(3);
+
+            buffer.add(nodes.get(0));
+            buffer.add(nodes.get(1));
+            assertTrue(detached.isEmpty());
+
+            buffer.add(nodes.get(2));
+            assertEquals(nodes.subList(0, 3), detached);
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldNotWriteEmptyBatches() {
+        try (Transaction tx = database.beginTx()) {
+            ReindexBuffer buffer = buffer(3);
+
+            buffer.flush();
+            buffer.add(nodes.get(0));
+            buffer.flush();
+            buffer.flush();
+
+            assertEquals(1, batches.size());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldSkipEntitiesDeletedSinceTheyWereAdded() {
+        try (Transaction tx = database.beginTx()) {
+            database.getNodeById(nodes.get(1)).delete();
+            tx.success();
+        }
+
+        try (Transaction tx = database.beginTx()) {
+            ReindexBuffer buffer = buffer(3);
+
+            assertTrue(buffer.add(nodes.get(0)) | buffer.add(nodes.get(1)) | buffer.add(nodes.get(2)));
+
+            assertEquals(Arrays.asList(2), sizes());
+            assertEquals(2, buffer.getWritten());
+            tx.success();
+        }
+    }
+
+    @Test
+    public void shouldNotCountNorKeepBatchesThatFailedToBeWritten() {
+        try (Transaction tx = database.beginTx()) {
+            ReindexBuffer buffer = buffer(2);
+
+            buffer.add(nodes.get(0));
+            failing = true;
+            try {
+                buffer.add(nodes.get(1));
+                fail();
+            } catch (IllegalStateException e) {
+                //expected
+            }
+            assertEquals(0, buffer.getWritten());
+
+            failing = false;
+            assertFalse(buffer.add(nodes.get(2)));
+            buffer.flush();
+
+            assertEquals(Arrays.asList(1), sizes()); //the failed batch isn't written again
+            assertEquals(1, buffer.getWritten());
+            tx.success();
+        }
+    }
+
+    private ReindexBuffer buffer(int capacity) {
+        return new ReindexBuffer(capacity, this::operation, this::write);
+    }
+
+    private WriteOperation<?> operation(long id) {
+        Node node = database.getNodeById(id);
+        detached.add(id);
+        return new NodeCreated<>(new NodeExpressions(node));
+    }
+
+    private void write(List<Collection<WriteOperation<?>>> groups) {
+        if (failing) {
+            throw new IllegalStateException("Elasticsearch unavailable");
+        }
+        assertEquals(1, groups.size());
+        batches.add(new ArrayList<>(groups.get(0))); //the buffer reuses its list
+    }
+
+    private List<Integer> sizes() {
+        List<Integer> sizes = new ArrayList<>();
+        for (List<WriteOperation<?>> batch : batches) {
+            sizes.add(batch.size());
+        }
+        return sizes;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.graphaware.module.es.mapping.expression.NodeExpressions;
+import com.graphaware.writer.thirdparty.NodeCreated;
+import com.graphaware.writer.thirdparty.WriteOperation;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.test.TestGraphDatabaseFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ReplicationTrackerTest {
+
+    private GraphDatabaseService database;
+    private NodeExpressions node;
+    private final ReplicationTracker tracker = new ReplicationTracker();
+
+    @Before
+    public void setUp() {
+        database = new TestGraphDatabaseFactory().newImpermanentDatabase();
+        try (Transaction tx = database.beginTx()) {
+            node = new NodeExpressions(database.createNode());
+            tx.success();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    public void shouldAcknowledgeTransactionOnceAllItsOperationsAreFlushed() throws InterruptedException {
+        List<WriteOperation<?>> first = operations(2);
+        List<WriteOperation<?>> second = operations(1);
+
+        long sequence = tracker.committed(first);
+        tracker.committed(second);
+        assertEquals(2, tracker.getPending());
+
+        tracker.flushed(first.subList(0, 1), Collections.emptyList());
+        assertEquals(0, tracker.getAcknowledged());
+        assertFalse(tracker.await(sequence, 0));
+
+        tracker.flushed(first.subList(1, 2), Collections.emptyList());
+        assertEquals(1, tracker.getAcknowledged());
+        assertTrue(tracker.await(sequence, 0));
+        assertEquals(1, tracker.getPending());
+    }
+
+    @Test
+    public void shouldNotAcknowledgeLaterTransactionsBeforeEarlierOnes() {
+        List<WriteOperation<?>> first = operations(1);
+        List<WriteOperation<?>> second = operations(1);
+        tracker.committed(first);
+        tracker.committed(second);
+
+        tracker.flushed(second, Collections.emptyList());
+
+        assertEquals(0, tracker.getAcknowledged());
+        assertEquals(1, tracker.getPending());
+    }
+
+    @Test
+    public void shouldKeepRetriedOperationsPending() {
+        List<WriteOperation<?>> operations = operations(2);
+        tracker.committed(operations);
+
+        tracker.flushed(operations, operations.subList(1, 2));
+        assertEquals(1, tracker.getPending());
+
+        tracker.flushed(operations.subList(1, 2), Collections.emptyList());
+        assertEquals(0, tracker.getPending());
+        assertEquals(1, tracker.getAcknowledged());
+    }
+
+    @Test
+    public void shouldIgnoreUntrackedOperations() {
+        tracker.committed(operations(1));
+
+        tracker.flushed(operations(3), Collections.emptyList());
+
+        assertEquals(1, tracker.getPending());
+    }
+
+    @Test
+    public void shouldAcknowledgeEmptyTransactionsRightAway() {
+        long sequence = tracker.committed(Collections.emptyList());
+
+        assertEquals(sequence, tracker.getAcknowledged());
+        assertEquals(0, tracker.getPending());
+    }
+
+    @Test
+    public void shouldNotRegisterTransactionWithoutRoom() throws InterruptedException {
+        tracker.committed(operations(1));
+        tracker.committed(operations(1));
+
+        assertEquals(0, tracker.committed(operations(1), 2, 0));
+        assertEquals(2, tracker.getLastCommitted());
+        assertEquals(2, tracker.getPending());
+
+        assertEquals(3, tracker.committed(operations(1), 3, 0));
+        assertEquals(3, tracker.getPending());
+    }
+
+    @Test
+    public void shouldRegisterTransactionOnceThereIsRoom() throws InterruptedException {
+        List<WriteOperation<?>> queued = operations(1);
+        tracker.committed(queued);
+
+        Thread flusher = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                return;
+            }
+            tracker.flushed(queued, Collections.emptyList());
+        });
+        flusher.start();
+
+        assertEquals(2, tracker.committed(operations(1), 1, 5000));
+        assertEquals(1, tracker.getPending());
+
+        flusher.join(5000);
+    }
+
+    private List<WriteOperation<?>> operations(int count) {
+        List<WriteOperation<?>> operations = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            operations.add(new NodeCreated<>(node));
+        }
+        return operations;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2013-2016 GraphAware
+ *
+ * This file is part of the GraphAware Framework.
+ *
+ * GraphAware Framework is free software: you can redistribute it and/or modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ * warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.graphaware.module.es.util;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+import io.searchbox.action.AbstractAction;
+import io.searchbox.action.Action;
+import io.searchbox.action.BulkableAction;
+import io.searchbox.client.JestClient;
+import io.searchbox.client.JestResult;
+import io.searchbox.client.JestResultHandler;
+import io.searchbox.core.Delete;
+import io.searchbox.core.Index;
+import io.searchbox.core.Update;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class VersionedReindexTest {
+
+    private final RecordingClient client = new RecordingClient();
+
+    @Test
+    public void shouldReplaceConcreteIndexByAliasAtomically() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+
+        assertTrue(reindex.begin());
+        assertEquals("nodes-v1", reindex.getTargets().get("nodes"));
+
+        client.requests.clear();
+        assertTrue(reindex.complete());
+
+        assertEquals(2, client.requests.size()); //refresh, then a single _aliases request
+        assertTrue(client.uri(1).endsWith("_aliases"));
+        String body = client.body(1);
+        assertTrue(body.contains("\"add\":{\"index\":\"nodes-v1\",\"alias\":\"nodes\"}"));
+        assertTrue(body.contains("\"remove_index\":{\"index\":\"nodes\"}"));
+        assertFalse(client.sent("DELETE"));
+    }
+
+    @Test
+    public void shouldAddAliasRightAfterDroppingIndexWhenItCantBeReplacedAtomically() {
+        client.failWhen = action -> client.body(action).contains("remove_index");
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+
+        assertTrue(reindex.begin());
+        client.requests.clear();
+        assertTrue(reindex.complete());
+
+        assertEquals(4, client.requests.size());
+        assertEquals("DELETE", client.requests.get(2).getRestMethodName());
+        assertEquals("nodes", client.uri(2));
+        assertTrue(client.body(client.requests.get(3)).contains("\"add\""));
+    }
+
+    @Test
+    public void shouldNotDropIndexWhoseReplacementFailed() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+
+        assertTrue(reindex.begin());
+        client.failWhen = action -> client.uri(action).endsWith("_aliases") || "DELETE".equals(action.getRestMethodName());
+        assertFalse(reindex.complete());
+
+        assertFalse(client.requests.stream().anyMatch(action -> client.body(action).contains("\"add\"") && !client.body(action).contains("remove_index")));
+    }
+
+    @Test
+    public void shouldSwapAliasAndDropPreviousVersion() {
+        client.concrete = "nodes-v1";
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+
+        assertTrue(reindex.begin());
+        assertEquals("nodes-v2", reindex.getTargets().get("nodes"));
+
+        client.requests.clear();
+        assertTrue(reindex.complete());
+
+        String body = client.body(1);
+        assertTrue(body.contains("\"add\""));
+        assertTrue(body.contains("\"remove\""));
+        assertTrue(body.contains("nodes-v2"));
+        assertFalse(body.contains("remove_index"));
+        assertEquals("DELETE", client.requests.get(2).getRestMethodName());
+        assertEquals("nodes-v1", client.uri(2));
+    }
+
+    @Test
+    public void shouldDuplicateActionsWithTheirParameters() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+        assertTrue(reindex.begin());
+
+        Index.Builder index = new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id("1");
+        index.setParameter("routing", "r1");
+        index.setParameter("version", 3);
+        BulkableAction<? extends JestResult> copy = reindex.duplicate(index.build());
+
+        assertTrue(copy instanceof Index);
+        assertEquals("nodes-v1", copy.getIndex());
+        assertEquals("1", copy.getId());
+        assertEquals(Collections.singletonList("r1"), new ArrayList<>(((AbstractAction<?>) copy).getParameter("routing")));
+        assertEquals(Collections.singletonList(3), new ArrayList<>(((AbstractAction<?>) copy).getParameter("version")));
+
+        Update.Builder update = new Update.Builder("{\"doc\":{\"name\":\"Vince\"}}").index("nodes").type("Person").id("1");
+        update.setParameter("retry_on_conflict", 2);
+        copy = reindex.duplicate(update.build());
+
+        assertTrue(copy instanceof Update);
+        assertEquals("nodes-v1", copy.getIndex());
+        assertEquals("{\"doc\":{\"name\":\"Vince\"}}", copy.getData(new Gson()));
+        assertEquals(Collections.singletonList(2), new ArrayList<>(((AbstractAction<?>) copy).getParameter("retry_on_conflict")));
+
+        copy = reindex.duplicate(new Delete.Builder("1").index("nodes").type("Person").build());
+        assertTrue(copy instanceof Delete);
+        assertEquals("nodes-v1", copy.getIndex());
+
+        assertNull(reindex.duplicate(new Delete.Builder("1").index("other").type("Person").build()));
+    }
+
+    @Test
+    public void shouldWriteLastLiveUpdateOfEachDocumentAgainBeforeSwapping() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+        assertTrue(reindex.begin());
+
+        reindex.duplicate(new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id("1").build());
+        reindex.duplicate(new Index.Builder("{\"name\":\"Vince\"}").index("nodes").type("Person").id("1").build());
+        reindex.duplicate(new Index.Builder("{\"name\":\"Luanne\"}").index("nodes").type("Person").id("2").build());
+        reindex.duplicate(new Delete.Builder("2").index("nodes").type("Person").build());
+        //written by re-indexing after the live updates, from an older read of the graph
+        reindex.redirect(new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id("1").build());
+
+        client.requests.clear();
+        assertTrue(reindex.complete());
+
+        assertEquals(3, client.requests.size()); //live updates, refresh, aliases
+        assertEquals("_bulk", client.uri(0));
+        String body = client.body(0);
+        assertTrue(body.contains("Vince"));
+        assertFalse(body.contains("Michal"));
+        assertFalse(body.contains("Luanne"));
+        assertTrue(body.contains("\"delete\""));
+        assertTrue(client.uri(2).endsWith("_aliases"));
+
+        assertTrue(reindex.begin());
+        client.requests.clear();
+        assertTrue(reindex.complete());
+        assertEquals(2, client.requests.size()); //nothing left to write again
+    }
+
+    @Test
+    public void shouldDropNewIndicesWhenLiveUpdatesCantBeWrittenAgain() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+        assertTrue(reindex.begin());
+        reindex.duplicate(new Index.Builder("{\"name\":\"Michal\"}").index("nodes").type("Person").id("1").build());
+
+        client.failWhen = action -> client.uri(action).equals("_bulk");
+        client.requests.clear();
+        assertFalse(reindex.complete());
+
+        assertEquals(2, client.requests.size());
+        assertEquals("DELETE", client.requests.get(1).getRestMethodName());
+        assertEquals("nodes-v1", client.uri(1));
+        assertTrue(reindex.getTargets().isEmpty());
+    }
+
+    @Test
+    public void shouldOnlyDropNewIndicesOnAbort() {
+        VersionedReindex reindex = new VersionedReindex(client, Collections.singleton("nodes"));
+        assertTrue(reindex.begin());
+
+        client.requests.clear();
+        reindex.abort();
+
+        assertEquals(1, client.requests.size());
+        assertEquals("DELETE", client.requests.get(0).getRestMethodName());
+        assertEquals("nodes-v1", client.uri(0));
+        assertTrue(reindex.getTargets().isEmpty());
+    }
+
+    private static class RecordingClient implements JestClient {
+
+        private final List<Action<?>> requests = new ArrayList<>();
+        private String concrete = "nodes";
+        private Predicate<Action<?>> failWhen = action -> false;
+
+        private String uri(int request) {
+            return uri(requests.get(request));
+        }
+
+        private String uri(Action<?> action) {
+            return action.getURI().replaceFirst("^/", "");
+        }
+
+        private String body(int request) {
+            return body(requests.get(request));
+        }
+
+        private String body(Action<?> action) {
+            String data = action.getData(new Gson());
+            return data == null ? "" : data;
+        }
+
+        private boolean sent(String method) {
+            return requests.stream().anyMatch(action -> method.equals(action.getRestMethodName()));
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T extends JestResult> T execute(Action<T> clientRequest) {
+            requests.add(clientRequest);
+
+            String uri = uri(clientRequest);
+            String method = clientRequest.getRestMethodName();
+            boolean succeeded = !failWhen.test(clientRequest);
+            String response = "{\"acknowledged\":true}";
+
+            if ("HEAD".equals(method)) {
+                succeeded = false; //no left-over indices
+            } else if ("GET".equals(method) && uri.contains("_settings")) {
+                response = "{\"" + concrete + "\":{\"settings\":{\"index\":{\"number_of_shards\":\"1\"}}}}";
+            } else if ("GET".equals(method) && uri.contains("_mapping")) {
+                response = "{\"" + concrete + "\":{\"mappings\":{\"Person\":{}}}}";
+            }
+
+            JestResult result = new JestResult(new Gson());
+            result.setJsonString(response);
+            result.setJsonObject(new JsonParser().parse(response).getAsJsonObject());
+            result.setSucceeded(succeeded);
+            return (T) result;
+        }
+
+        @Override
+        public <T extends JestResult> void executeAsync(Action<T> action, JestResultHandler<? super T> jestResultHandler) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdownClient() {
+        }
+
+        @Override
+        public void setServers(Set<String> servers) {
+        }
+    }
+}